@@ -0,0 +1,59 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import model.FHIRPatient;
+
+/**
+ * Benchmarks of FHIRPatient.equals, which every refresh calls once per patient: two equal patients (every field is
+ * compared), patients whose latest cholesterol differs and patients that differ only in their identifier, which is
+ * compared last.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FHIRPatientEqualsBenchmark {
+	private FHIRPatient patient;
+	private FHIRPatient equalPatient;
+	private FHIRPatient patientWithOtherCholesterol;
+	private FHIRPatient otherPatient;
+
+	@Setup
+	public void setUp() {
+		patient = Fixtures.patient(1, 180);
+		equalPatient = Fixtures.patient(1, 180);
+		patientWithOtherCholesterol = Fixtures.patient(1, 181);
+		otherPatient = Fixtures.patient(1, 180);
+		otherPatient.setIdentifier(Fixtures.patient(2, 180).getIdentifier());
+	}
+
+	@Benchmark
+	public boolean equalPatients() {
+		return patient.equals(equalPatient);
+	}
+
+	@Benchmark
+	public boolean differentCholesterol() {
+		return patient.equals(patientWithOtherCholesterol);
+	}
+
+	@Benchmark
+	public boolean differentIdentifier() {
+		return patient.equals(otherPatient);
+	}
+}
@@ -0,0 +1,81 @@
+package benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import model.FHIRBloodPressure;
+import model.FHIRCholesterol;
+import model.FHIRPatient;
+import model.FHIRResponse;
+import model.FHIRTransport;
+
+/**
+ * Class which gives the benchmarks the Bundles recorded from the server, patients as a practitioner holds them, and a
+ * transport that serves the Bundles without going to the network so only the work done by the app is measured.
+ *
+ */
+public class Fixtures {
+	public static final String BLOOD_PRESSURE_BUNDLE = "/fixtures/blood-pressure-bundle.json"; // 50 Blood Pressure Observations of a patient
+	public static final String CHOLESTEROL_BUNDLE = "/fixtures/cholesterol-bundle.json"; // 50 TotalCholesterol Observations of a patient
+
+	/**
+	 * Read a recorded Bundle
+	 * @param name the name of the fixture, e.g. Fixtures.BLOOD_PRESSURE_BUNDLE
+	 * @return the bytes of the Bundle
+	 * @throws IOException if the fixture could not be read
+	 */
+	public static byte[] read(String name) throws IOException {
+		InputStream in = Fixtures.class.getResourceAsStream(name);
+		if (in == null) {
+			throw new IOException("No fixture " + name);
+		}
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+			return out.toByteArray();
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * A transport which answers every request with the same recorded Bundle
+	 * @param body the bytes of the Bundle
+	 * @return the transport
+	 */
+	public static FHIRTransport transportServing(final byte[] body) {
+		return new FHIRTransport() {
+			public FHIRResponse get(String urlString, Map<String, String> requestHeaders) {
+				return new FHIRResponse(200, Collections.<String, List<String>>emptyMap(), new ByteArrayInputStream(body));
+			}
+		};
+	}
+
+	/**
+	 * A patient with every field of a patient retrieved from the server set, each call gives a new but equal patient
+	 * @param i the number of the patient, patients with different numbers are different
+	 * @param cholesterolValue the value of the patient's latest TotalCholesterol
+	 * @return the patient
+	 */
+	public static FHIRPatient patient(int i, double cholesterolValue) {
+		FHIRCholesterol cholesterol = new FHIRCholesterol();
+		cholesterol.setCholesterol(cholesterolValue, "mg/dL", "http://unitsofmeasure.org", "2020-02-01T08:14:09+10:00");
+		FHIRBloodPressure bloodPressure = new FHIRBloodPressure();
+		bloodPressure.setSystolicBPObservation(120 + i % 40, "mm[Hg]", "http://unitsofmeasure.org", "2020-02-01T08:14:09+10:00");
+		bloodPressure.setDiastolicBPObservation(70 + i % 30, "mm[Hg]", "http://unitsofmeasure.org", "2020-02-01T08:14:09+10:00");
+		FHIRPatient patient = new FHIRPatient("Given" + i, "Family" + i, "https://github.com/synthetichealth/synthea", Integer.toString(29163 + i),
+				"AU", "Victoria", "Melbourne", "1970-01-01", (i % 2 == 0) ? "female" : "male", cholesterol, bloodPressure);
+		patient.setResourceId(Integer.toString(29163 + i));
+		return patient;
+	}
+}
@@ -0,0 +1,74 @@
+package benchmark;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import model.FHIRBloodPressure;
+import model.FHIRCholesterol;
+
+/**
+ * Class which reads a page of Observations the way FHIRBloodPressure and FHIRCholesterol used to, through the whole
+ * JSONObject tree of the page, kept here as the baseline the FHIRBundleReader is measured against. Only the Observations on
+ * the page are read, the benchmarks never follow the next page.
+ *
+ */
+public final class JSONObjectObservationReader {
+
+	private JSONObjectObservationReader() {
+	}
+
+	/**
+	 * Initialize a FHIRBloodPressure from the ith Observation of a page, 0 is the most recent
+	 * @param bloodPressure the FHIRBloodPressure to initialize
+	 * @param bloodPressurePageJSONObject the page of blood pressure Observations
+	 * @param i the position of the Observation on the page
+	 * @return a boolean indicating whether extraction of data succeeded or not
+	 */
+	public static boolean readBloodPressure(FHIRBloodPressure bloodPressure, JSONObject bloodPressurePageJSONObject, int i) {
+		if (bloodPressurePageJSONObject == null || i >= bloodPressurePageJSONObject.getInt("total")) {
+			return false;
+		}
+
+		// Get the relevant components and timeRecorded of the BloodPressure Observation
+		JSONObject bloodPressurePageResource = bloodPressurePageJSONObject.getJSONArray("entry").getJSONObject(i).getJSONObject("resource");
+		JSONArray component = bloodPressurePageResource.getJSONArray("component");
+		String timeRecorded = bloodPressurePageResource.getString("effectiveDateTime");
+
+		// Get the first and second component (Systolic and Diastolic Blood Pressure)
+		JSONObject firstObject = component.getJSONObject(0);
+		JSONObject secondObject = component.getJSONObject(1);
+		JSONObject firstObjectValueQuantity = firstObject.getJSONObject("valueQuantity");
+		JSONObject secondObjectValueQuantity = secondObject.getJSONObject("valueQuantity");
+
+		// if the firstObject is Diastolic, the 2nd would be Systolic
+		JSONObject diastolic = firstObjectValueQuantity;
+		JSONObject systolic = secondObjectValueQuantity;
+		if (!firstObject.getJSONObject("code").getJSONArray("coding").getJSONObject(0).getString("code").equals(FHIRBloodPressure.DIASTOLIC_BP_CODE)) {
+			diastolic = secondObjectValueQuantity;
+			systolic = firstObjectValueQuantity;
+		}
+		bloodPressure.setDiastolicBPObservation(Double.toString(diastolic.getDouble("value")), diastolic.getString("unit"), diastolic.getString("system"), timeRecorded);
+		bloodPressure.setSystolicBPObservation(Double.toString(systolic.getDouble("value")), systolic.getString("unit"), systolic.getString("system"), timeRecorded);
+		return true;
+	}
+
+	/**
+	 * Initialize a FHIRCholesterol from the ith Observation of a page, 0 is the most recent
+	 * @param cholesterol the FHIRCholesterol to initialize
+	 * @param cholesterolPageJSONObject the page of total cholesterol Observations
+	 * @param i the position of the Observation on the page
+	 * @return a boolean indicating whether extraction of data succeeded or not
+	 */
+	public static boolean readCholesterol(FHIRCholesterol cholesterol, JSONObject cholesterolPageJSONObject, int i) {
+		if (cholesterolPageJSONObject == null || i >= cholesterolPageJSONObject.getInt("total")) {
+			return false;
+		}
+
+		// Get the relevant components and timeRecorded of the TotalCholesterol Observation
+		JSONObject cholesterolPageResource = cholesterolPageJSONObject.getJSONArray("entry").getJSONObject(i).getJSONObject("resource");
+		JSONObject valueQuantity = cholesterolPageResource.getJSONObject("valueQuantity");
+		cholesterol.setCholesterol(Double.toString(valueQuantity.getDouble("value")), valueQuantity.getString("unit"),
+				valueQuantity.getString("system"), cholesterolPageResource.getString("effectiveDateTime"));
+		return true;
+	}
+}
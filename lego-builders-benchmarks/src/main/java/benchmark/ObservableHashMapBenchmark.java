@@ -0,0 +1,95 @@
+package benchmark;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import model.FHIRPatient;
+import model.Tuple;
+import observerpattern.MapChangeEvent;
+import observerpattern.MapObserver;
+import observerpattern.ObservableHashMap;
+
+/**
+ * Benchmarks of ObservableHashMap.putAllThenNotify with as many patients as a large practitioner has: filling an
+ * empty map, a refresh where no patient changed (every patient is compared with equals) and a refresh where every
+ * patient changed. A MapObserver is attached so the MapChangeEvent is built and delivered as in the app.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ObservableHashMapBenchmark {
+	@Param({"1000", "10000", "100000"})
+	private int size;
+
+	private HashMap<Tuple<String, String>, FHIRPatient> patients;
+	private HashMap<Tuple<String, String>, FHIRPatient> equalPatients; // new objects equal to patients
+	private HashMap<Tuple<String, String>, FHIRPatient> changedPatients; // every cholesterol is different from patients
+	private ObservableHashMap<Tuple<String, String>, FHIRPatient> unchangedMap;
+	private ObservableHashMap<Tuple<String, String>, FHIRPatient> changingMap;
+	private boolean changingMapHoldsChangedPatients = false;
+	private int changedKeys = 0; // counted by the observer so the events are not optimised away
+
+	@Setup
+	public void setUp() {
+		patients = new HashMap<Tuple<String, String>, FHIRPatient>();
+		equalPatients = new HashMap<Tuple<String, String>, FHIRPatient>();
+		changedPatients = new HashMap<Tuple<String, String>, FHIRPatient>();
+		for (int i = 0; i < size; i++) {
+			FHIRPatient patient = Fixtures.patient(i, 180);
+			patients.put(patient.getIdentifier(), patient);
+			equalPatients.put(patient.getIdentifier(), Fixtures.patient(i, 180));
+			changedPatients.put(patient.getIdentifier(), Fixtures.patient(i, 181));
+		}
+		unchangedMap = this.observedMap();
+		unchangedMap.putAllThenNotify(patients);
+		changingMap = this.observedMap();
+		changingMap.putAllThenNotify(patients);
+	}
+
+	@Benchmark
+	public int fillEmptyMap() {
+		ObservableHashMap<Tuple<String, String>, FHIRPatient> map = this.observedMap();
+		map.putAllThenNotify(patients);
+		return changedKeys;
+	}
+
+	@Benchmark
+	public int refreshWithNoChange() {
+		unchangedMap.putAllThenNotify(equalPatients);
+		return changedKeys;
+	}
+
+	@Benchmark
+	public int refreshWithEveryPatientChanged() {
+		// alternate between the two versions so every call changes every patient
+		changingMap.putAllThenNotify(changingMapHoldsChangedPatients ? patients : changedPatients);
+		changingMapHoldsChangedPatients = !changingMapHoldsChangedPatients;
+		return changedKeys;
+	}
+
+	private ObservableHashMap<Tuple<String, String>, FHIRPatient> observedMap() {
+		ObservableHashMap<Tuple<String, String>, FHIRPatient> map = new ObservableHashMap<Tuple<String, String>, FHIRPatient>();
+		map.attachMapObserver(new MapObserver<Tuple<String, String>, FHIRPatient>() {
+			public void mapChanged(MapChangeEvent<Tuple<String, String>, FHIRPatient> event) {
+				changedKeys += event.getAddedKeys().size() + event.getChangedKeys().size();
+			}
+		});
+		return map;
+	}
+}
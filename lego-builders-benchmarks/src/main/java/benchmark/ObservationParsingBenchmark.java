@@ -0,0 +1,88 @@
+package benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import model.FHIRBloodPressure;
+import model.FHIRBundleEntry;
+import model.FHIRBundlePage;
+import model.FHIRBundleReader;
+import model.FHIRCholesterol;
+
+/**
+ * Benchmarks of turning a recorded page of Observations into FHIRBloodPressure and FHIRCholesterol, both through
+ * the JSONObject tree (JSONObjectObservationReader) and through the streaming FHIRBundleReader. Every benchmark
+ * starts from the bytes of the page, as they arrive from the server, and reads every Observation on it.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ObservationParsingBenchmark {
+	private byte[] bloodPressureBundle;
+	private byte[] cholesterolBundle;
+
+	@Setup
+	public void setUp() throws IOException {
+		bloodPressureBundle = Fixtures.read(Fixtures.BLOOD_PRESSURE_BUNDLE);
+		cholesterolBundle = Fixtures.read(Fixtures.CHOLESTEROL_BUNDLE);
+	}
+
+	@Benchmark
+	public void bloodPressureFromJSONObject(Blackhole blackhole) {
+		JSONObject page = new JSONObject(new String(bloodPressureBundle, StandardCharsets.UTF_8));
+		for (int i = 0; i < page.getInt("total"); i++) {
+			FHIRBloodPressure bloodPressure = new FHIRBloodPressure();
+			blackhole.consume(JSONObjectObservationReader.readBloodPressure(bloodPressure, page, i));
+			blackhole.consume(bloodPressure);
+		}
+	}
+
+	@Benchmark
+	public void bloodPressureFromBundleReader(Blackhole blackhole) throws IOException {
+		FHIRBundlePage page = FHIRBundleReader.read(new ByteArrayInputStream(bloodPressureBundle));
+		for (FHIRBundleEntry entry: page.getEntries()) {
+			FHIRBloodPressure bloodPressure = new FHIRBloodPressure();
+			blackhole.consume(bloodPressure.retrieveDataFromBundleEntryAndInit(entry));
+			blackhole.consume(bloodPressure);
+		}
+	}
+
+	@Benchmark
+	public void cholesterolFromJSONObject(Blackhole blackhole) {
+		JSONObject page = new JSONObject(new String(cholesterolBundle, StandardCharsets.UTF_8));
+		for (int i = 0; i < page.getInt("total"); i++) {
+			FHIRCholesterol cholesterol = new FHIRCholesterol();
+			blackhole.consume(JSONObjectObservationReader.readCholesterol(cholesterol, page, i));
+			blackhole.consume(cholesterol);
+		}
+	}
+
+	@Benchmark
+	public void cholesterolFromBundleReader(Blackhole blackhole) throws IOException {
+		FHIRBundlePage page = FHIRBundleReader.read(new ByteArrayInputStream(cholesterolBundle));
+		for (FHIRBundleEntry entry: page.getEntries()) {
+			FHIRCholesterol cholesterol = new FHIRCholesterol();
+			blackhole.consume(cholesterol.retrieveDataFromBundleEntryAndInit(entry));
+			blackhole.consume(cholesterol);
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import model.FHIRClient;
+import model.FHIRTransport;
+import model.Observation;
+import model.ObservationTypes;
+import model.PatientWrapper;
+import model.Tuple;
+
+/**
+ * Benchmarks of PatientWrapper.getObservations, what the history charts ask for, against a transport that answers
+ * every request with the recorded Bundle. It measures the request building, the reading of the page and the
+ * building of the Observations, not the network.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PatientWrapperBenchmark {
+	@Param({"5", "50"})
+	private int numberOfObservations;
+
+	private FHIRTransport originalTransport;
+	private FHIRTransport bloodPressureTransport;
+	private FHIRTransport cholesterolTransport;
+	private PatientWrapper patientWrapper;
+
+	@Setup
+	public void setUp() throws IOException {
+		originalTransport = FHIRClient.getTransport();
+		bloodPressureTransport = Fixtures.transportServing(Fixtures.read(Fixtures.BLOOD_PRESSURE_BUNDLE));
+		cholesterolTransport = Fixtures.transportServing(Fixtures.read(Fixtures.CHOLESTEROL_BUNDLE));
+		patientWrapper = new PatientWrapper(Fixtures.patient(0, 180));
+	}
+
+	@TearDown
+	public void tearDown() {
+		FHIRClient.setTransport(originalTransport);
+	}
+
+	@Benchmark
+	public ArrayList<Tuple<ArrayList<Tuple<String, Observation>>, Boolean>> bloodPressure() {
+		FHIRClient.setTransport(bloodPressureTransport);
+		return patientWrapper.getObservations(ObservationTypes.BLOOD_PRESSURE.toString(), numberOfObservations);
+	}
+
+	@Benchmark
+	public ArrayList<Tuple<ArrayList<Tuple<String, Observation>>, Boolean>> cholesterol() {
+		FHIRClient.setTransport(cholesterolTransport);
+		return patientWrapper.getObservations(ObservationTypes.CHOLESTEROL.toString(), numberOfObservations);
+	}
+}
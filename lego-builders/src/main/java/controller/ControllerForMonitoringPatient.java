@@ -4,13 +4,14 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Timer;
-import java.util.TimerTask;
-import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
 
 import model.FHIRPatient;
 import model.FHIRPractitioner;
-import observerpattern.Observer;
+import model.Tuple;
+import observerpattern.MapChangeEvent;
+import observerpattern.MapObserver;
 import view.PatientObservationsMonitorGUI;
 
 /**
@@ -20,11 +21,12 @@ import view.PatientObservationsMonitorGUI;
  * and makes the requests based on that
  *
  */
-public class ControllerForMonitoringPatient implements Observer {
+public class ControllerForMonitoringPatient implements MapObserver<Tuple<String, String>, FHIRPatient> {
 	private FHIRPractitioner practitionerSearched;
 	private PatientObservationsMonitorGUI view;
 	private int freq;
-	private Timer timer;
+	// refreshes the practitioner's patients one run at a time on a background thread
+	private final RefreshScheduler refreshScheduler = new RefreshScheduler(new DataRetrieverRefresher(), "patient-refresher");
 	public ControllerForMonitoringPatient(FHIRPractitioner prac, PatientObservationsMonitorGUI view) {
 		this.practitionerSearched = prac;
 		this.view = view;
@@ -51,24 +53,12 @@ public class ControllerForMonitoringPatient implements Observer {
 				freq = (int) Math.round(tempFreq); 
 				
 				
-				// if the frequency is 0, then cancel updates
-				if (freq==0) {
-					timer.cancel();
-				}
-				else if (freq<0) {
+				if (freq<0) {
 					throw new IllegalArgumentException("Enter a valid positive integer number");
 				}
-				else {
-					if (timer != null) {
-						timer.cancel();
-					}
-					timer = new Timer();
-					// creates a new DataRetrieverRefresher which is a TimerTask and calls the overriden run method
-					// It is called every freq * 1000 (i.e., N seconds) seconds; where 0 is the delay, and freq * 1000 is how frequently we need to 
-					// refresh our data
-					timer.schedule(new DataRetrieverRefresher(), 0, freq * 1000);
-					
-				}
+				// refresh now and then freq seconds (i.e., N seconds) after the end of every refresh, replacing the previous frequency.
+				// if the frequency is 0, then cancel updates
+				refreshScheduler.setDelay(freq);
 			}
 			// throws IllegalArgumentException when the input is not a valid positive integer number  
 			catch(Exception e1) {
@@ -77,30 +67,29 @@ public class ControllerForMonitoringPatient implements Observer {
 		}
 	}
 	
-	class DataRetrieverRefresher extends TimerTask{
-		@Override
+	class DataRetrieverRefresher implements Runnable {
 		public void run() {
-			// TODO Auto-generated method stub
-			// creating a new thread to retrieve data
-			new Thread(new Runnable(){
-					public void run() {
-				try {
-					// retrieving the data from the server
-					practitionerSearched.retrieveDataFromServerAndInitWithLatest(practitionerSearched.getIdentifier());
-				
-				} catch (IOException e1) {
-					// TODO Auto-generated catch block
-					e1.printStackTrace();
-				}
-			}
-		}).start();
+			try {
+				// retrieving the data from the server
+				practitionerSearched.retrieveDataFromServerAndInitWithLatest(practitionerSearched.getIdentifier());
 			
+			} catch (IOException e1) {
+				// TODO Auto-generated catch block
+				e1.printStackTrace();
+			}
 		}
 	}
 
-	public void update() {
-		// TODO Auto-generated method stub
-		this.view.update();
+	/**
+	 * Pass on which patients changed so the view only patches what is affected.
+	 * The patients change on the refresh thread, the view is patched on the event dispatch thread.
+	 */
+	public void mapChanged(final MapChangeEvent<Tuple<String, String>, FHIRPatient> event) {
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				view.patientsChanged(event);
+			}
+		});
 	}
 
 
@@ -2,9 +2,13 @@ package controller;
 
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.IOException;
 import java.util.ArrayList;
 
+import javax.swing.SwingWorker;
+
 import model.FHIRPractitioner;
+import model.PatientStore;
 import view.PatientObservationsMonitorGUI;
 import view.PractitionerLoginGUI;
 
@@ -50,18 +54,41 @@ public class ControllerForPractitionerLogin {
 				// getting the prac ID
 				pracID=view.getPracID();
 				
-				// retrieve practitioner's patients
-				FHIRPractitioner practitioner = new FHIRPractitioner();
-				practitioner.retrieveDataFromServerAndInitWithLatest(pracID);
-
-				view.dispose();
-				
-				// GUI for patient cholesterol monitoring
-				PatientObservationsMonitorGUI sndView = new PatientObservationsMonitorGUI(practitioner, WINDOW_NAME);
+				final String practitionerResourceID = pracID;
+				final FHIRPractitioner practitioner = new FHIRPractitioner();
+				try {
+					practitioner.setPatientStore(PatientStore.forPractitioner(pracID));
+				} catch (IOException e2) {
+					e2.printStackTrace(); // carry on without the store, everything comes from the server
+				}
 				
-				ControllerForMonitoringPatient controllerForSndView = new ControllerForMonitoringPatient(practitioner, sndView);
-				practitioner.addObserversForTheObservableHashMapOfPractitioner(controllerForSndView);
-//				practitioner.addObserversForTheObservableHashMapOfPractitioner(sndView);
+				// warm start: show the patients kept from the last launch straight away
+				if (practitioner.restoreFromPatientStore()) {
+					openMonitoringWindow(practitioner);
+					// reconcile with the server in the background, the observers are told about whatever changed
+					Thread reconciler = new Thread(new Runnable() {
+						public void run() {
+							practitioner.retrieveDataFromServerAndInitWithLatest(practitionerResourceID);
+						}
+					}, "practitioner-reconciler");
+					reconciler.setDaemon(true);
+					reconciler.start();
+				}
+				else {
+					// otherwise retrieve practitioner's patients first, in the background so the login window doesn't freeze
+					view.setLoading(true);
+					new SwingWorker<Boolean, Void>() {
+						@Override
+						protected Boolean doInBackground() {
+							return practitioner.retrieveDataFromServerAndInitWithLatest(practitionerResourceID);
+						}
+
+						@Override
+						protected void done() {
+							openMonitoringWindow(practitioner);
+						}
+					}.execute();
+				}
 			}
 			catch (Exception e1){
 				System.out.println("Invalid Entry, please enter a number");
@@ -71,4 +98,23 @@ public class ControllerForPractitionerLogin {
 		}
 		
 	}
+	
+	/**
+	 * Replace the login window by the monitoring window of the practitioner
+	 * @param practitioner the practitioner that logged in
+	 */
+	private void openMonitoringWindow(FHIRPractitioner practitioner) {
+		view.dispose();
+		
+		// GUI for patient cholesterol monitoring
+		PatientObservationsMonitorGUI sndView = new PatientObservationsMonitorGUI(practitioner, WINDOW_NAME);
+		
+		// the alert engine follows every change of the practitioner's patients, starting from the ones known now
+		practitioner.addMapObserversForTheObservableHashMapOfPractitioner(sndView.getAlertEngine());
+		sndView.getAlertEngine().evaluatePatients(practitioner.getPatientsSnapshot());
+		
+		ControllerForMonitoringPatient controllerForSndView = new ControllerForMonitoringPatient(practitioner, sndView);
+		practitioner.addMapObserversForTheObservableHashMapOfPractitioner(controllerForSndView);
+//		practitioner.addObserversForTheObservableHashMapOfPractitioner(sndView);
+	}
 }
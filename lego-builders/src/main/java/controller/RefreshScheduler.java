@@ -0,0 +1,116 @@
+package controller;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Class which runs a refresh again and again with a fixed delay between the end of one run and the start of the next,
+ * on a single background thread. So a refresh never overlaps with another one: if the server is slow, the ticks that
+ * would have fallen into a run are simply skipped instead of piling up as new threads.
+ * Changing the frequency cancels the current schedule, a run that is already in progress is allowed to finish.
+ * refreshNow() queues at most one run: the calls made while that run is still waiting to start are merged into it.
+ *
+ */
+public class RefreshScheduler {
+	private final Runnable refresh;
+	private final Runnable runOnceTask = new Runnable() {
+		public void run() {
+			runOnce();
+		}
+	};
+	private final Runnable pendingTask = new Runnable() {
+		public void run() {
+			pending.set(false); // a refreshNow() from now on asks for another run after this one
+			runOnce();
+		}
+	};
+	private final ScheduledExecutorService executor;
+	private final AtomicBoolean running = new AtomicBoolean(false);
+	private final AtomicBoolean pending = new AtomicBoolean(false); // a run asked for by refreshNow() is waiting to start
+	private ScheduledFuture<?> schedule = null;
+
+	/**
+	 * Constructor of RefreshScheduler
+	 * @param refresh the refresh to be run, exceptions thrown by it are printed and don't stop the schedule
+	 * @param threadName the name of the background thread
+	 */
+	public RefreshScheduler(Runnable refresh, final String threadName) {
+		this.refresh = refresh;
+		this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, threadName);
+				thread.setDaemon(true); // never keeps the application alive
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Run the refresh now and then every delaySeconds after the previous run has finished, replacing the current schedule
+	 * @param delaySeconds the number of seconds between the end of a run and the start of the next one, 0 to stop refreshing
+	 */
+	public synchronized void setDelay(long delaySeconds) {
+		if (delaySeconds < 0) {
+			throw new IllegalArgumentException("Enter a valid positive integer number");
+		}
+		this.stop();
+		if (delaySeconds > 0) {
+			schedule = executor.scheduleWithFixedDelay(runOnceTask, 0, delaySeconds, TimeUnit.SECONDS);
+		}
+	}
+
+	/**
+	 * Stop refreshing, a run that is already in progress is allowed to finish
+	 */
+	public synchronized void stop() {
+		if (schedule != null) {
+			schedule.cancel(false);
+			schedule = null;
+		}
+	}
+
+	/**
+	 * Run the refresh once as soon as possible, after the run in progress if there is one. Calls made while such a run
+	 * is still waiting to start are merged into it.
+	 */
+	public void refreshNow() {
+		if (pending.compareAndSet(false, true)) {
+			executor.execute(pendingTask);
+		}
+	}
+
+	/**
+	 * Stop refreshing for good and let the background thread end
+	 */
+	public synchronized void shutdown() {
+		this.stop();
+		executor.shutdown();
+	}
+
+	/**
+	 * Check whether a refresh is in progress
+	 * @return true if a refresh is in progress, otherwise false
+	 */
+	public boolean isRunning() {
+		return running.get();
+	}
+
+	/**
+	 * Run the refresh, the single background thread never runs two of them at the same time
+	 */
+	private void runOnce() {
+		running.set(true);
+		try {
+			refresh.run();
+		} catch (RuntimeException e) { // an exception would otherwise silently cancel the schedule
+			e.printStackTrace();
+		}
+		finally {
+			running.set(false);
+		}
+	}
+}
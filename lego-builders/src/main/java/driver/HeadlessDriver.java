@@ -0,0 +1,61 @@
+package driver;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import model.AlertRule;
+import model.FHIRBloodPressure;
+import server.MonitoringHttpServer;
+import server.MonitoringService;
+
+/**
+ * Runs the monitoring without any window: the practitioners' patients are retrieved, refreshed and evaluated by one
+ * process, and served to the dashboards over a local HTTP/JSON API, see MonitoringHttpServer.
+ * Arguments: [port] [refresh delay in seconds] [systolic BP threshold] [diastolic BP threshold] [bind address]
+ * [comma separated resource ids of the practitioners that may be monitored]
+ * The API only listens on the loopback address unless a bind address is given, and asks for the token in the
+ * MONITORING_API_TOKEN environment variable if it is set.
+ *
+ */
+public class HeadlessDriver {
+	private static final int DEFAULT_PORT = 8080;
+	private static final long DEFAULT_REFRESH_DELAY_SECONDS = 60;
+	private static final double DEFAULT_SYSTOLIC_THRESHOLD = 140;
+	private static final double DEFAULT_DIASTOLIC_THRESHOLD = 90;
+	private static final int HTTP_THREADS = 8;
+	private static final String ACCESS_TOKEN_VARIABLE = "MONITORING_API_TOKEN";
+
+	public static void main(String[] args) throws IOException {
+		int port = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+		long refreshDelaySeconds = (args.length > 1) ? Long.parseLong(args[1]) : DEFAULT_REFRESH_DELAY_SECONDS;
+		double systolicThreshold = (args.length > 2) ? Double.parseDouble(args[2]) : DEFAULT_SYSTOLIC_THRESHOLD;
+		double diastolicThreshold = (args.length > 3) ? Double.parseDouble(args[3]) : DEFAULT_DIASTOLIC_THRESHOLD;
+		InetAddress bindAddress = (args.length > 4) ? InetAddress.getByName(args[4]) : InetAddress.getLoopbackAddress();
+		String accessToken = System.getenv(ACCESS_TOKEN_VARIABLE);
+
+		ArrayList<AlertRule> rules = new ArrayList<AlertRule>();
+		rules.add(new AlertRule("High systolic BP", FHIRBloodPressure.SYSTOLIC_BP_CODE, systolicThreshold, systolicThreshold, 1));
+		rules.add(new AlertRule("High diastolic BP", FHIRBloodPressure.DIASTOLIC_BP_CODE, diastolicThreshold, diastolicThreshold, 1));
+
+		final MonitoringService service = new MonitoringService(rules, refreshDelaySeconds);
+		if (args.length > 5) {
+			service.setAllowedPractitioners(Arrays.asList(args[5].split(",")));
+		}
+		final MonitoringHttpServer server = new MonitoringHttpServer(service, bindAddress, port, HTTP_THREADS);
+		server.setAccessToken((accessToken == null || accessToken.isEmpty()) ? null : accessToken);
+		if (!bindAddress.isLoopbackAddress() && (accessToken == null || accessToken.isEmpty())) {
+			System.out.println("Warning: the API serves patient data on " + bindAddress.getHostAddress() + " without an access token, set " + ACCESS_TOKEN_VARIABLE);
+		}
+		Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+			public void run() {
+				server.stop();
+				service.shutdown();
+			}
+		}, "monitoring-shutdown"));
+		server.start();
+		System.out.println("Serving the monitoring API on http://" + bindAddress.getHostAddress() + ":" + server.getPort() + MonitoringHttpServer.CONTEXT);
+	}
+
+}
@@ -0,0 +1,46 @@
+package driver;
+
+import java.io.IOException;
+
+import model.FHIRClientConfig;
+import server.MockFHIRServer;
+import server.SyntheticFHIRData;
+
+/**
+ * Runs a MockFHIRServer on the local machine so the app can be tried against large practitioners and a slow or
+ * failing server without the HAPI server. Start the app with -Dfhir.baseUrl={the base URL printed} to use it.
+ * Arguments: [port] [practitioners] [patients per practitioner] [latency in milliseconds] [error rate between 0 and 1] [max page size]
+ *
+ */
+public class MockFHIRServerDriver {
+	private static final int DEFAULT_PORT = 8090;
+	private static final int DEFAULT_PRACTITIONERS = 1;
+	private static final int DEFAULT_PATIENTS_PER_PRACTITIONER = 10000;
+	private static final int HTTP_THREADS = 32; // requests held back by the latency keep their thread
+
+	public static void main(String[] args) throws IOException {
+		int port = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+		int practitioners = (args.length > 1) ? Integer.parseInt(args[1]) : DEFAULT_PRACTITIONERS;
+		int patientsPerPractitioner = (args.length > 2) ? Integer.parseInt(args[2]) : DEFAULT_PATIENTS_PER_PRACTITIONER;
+
+		final MockFHIRServer server = new MockFHIRServer(new SyntheticFHIRData(practitioners, patientsPerPractitioner), port, HTTP_THREADS);
+		if (args.length > 3) {
+			server.setLatencyMillis(Long.parseLong(args[3]));
+		}
+		if (args.length > 4) {
+			server.setErrorRate(Double.parseDouble(args[4]));
+		}
+		if (args.length > 5) {
+			server.setMaxPageSize(Integer.parseInt(args[5]));
+		}
+		Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+			public void run() {
+				server.stop();
+			}
+		}, "mock-fhir-shutdown"));
+		server.start();
+		System.out.println("Serving " + practitioners + " practitioner(s) with " + patientsPerPractitioner + " patients each on " + server.getBaseUrl());
+		System.out.println("The practitioners' resource ids are 1 to " + practitioners + ", start the app with -D" + FHIRClientConfig.BASE_URL_PROPERTY + "=" + server.getBaseUrl());
+	}
+
+}
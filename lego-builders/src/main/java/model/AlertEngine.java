@@ -0,0 +1,389 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import observerpattern.MapChangeEvent;
+import observerpattern.MapObserver;
+
+/**
+ * Class which evaluates AlertRule(s) against the readings of every patient of the practitioner as they arrive,
+ * instead of re-scanning the patients on every click. For every loinc code it keeps the latest reading of each patient,
+ * indexed by value in a sorted map, so a new reading is evaluated in O(log n) and the patients above any threshold
+ * can be found without a scan. Listeners are only told when a patient goes into or comes out of alert.
+ * As a MapObserver of the practitioner's patients, it is fed the readings of the patients that were added or changed.
+ *
+ */
+public class AlertEngine implements MapObserver<Tuple<String, String>, FHIRPatient> {
+
+	/**
+	 * Listener for patients going into or coming out of alert. Called on the thread that fed the reading, outside of any lock of the engine.
+	 */
+	public interface AlertListener {
+		/**
+		 * @param rule the rule the patient is now in alert for
+		 * @param identifierOfPatient the patient's identifier
+		 * @param value the reading that raised the alert
+		 * @param timeRecorded the time the reading was recorded in epoch milliseconds
+		 */
+		public void alertRaised(AlertRule rule, Tuple<String, String> identifierOfPatient, double value, long timeRecorded);
+
+		/**
+		 * @param rule the rule the patient is no longer in alert for
+		 * @param identifierOfPatient the patient's identifier
+		 * @param value the reading that cleared the alert, NaN if the patient or the rule was removed
+		 * @param timeRecorded the time the reading was recorded in epoch milliseconds, Observation.NO_TIME_RECORDED if the patient or the rule was removed
+		 */
+		public void alertCleared(AlertRule rule, Tuple<String, String> identifierOfPatient, double value, long timeRecorded);
+	}
+
+	/**
+	 * The latest reading of a patient for a loinc code
+	 */
+	private static class Reading {
+		private long timeRecorded;
+		private double value;
+	}
+
+	/**
+	 * Where a patient stands with a rule
+	 */
+	private static class RuleState {
+		private int readingsAbove = 0; // in a row
+		private boolean alerting = false;
+	}
+
+	/**
+	 * A change of alert waiting to be told to the listeners once the lock is released
+	 */
+	private static class AlertChange {
+		private final AlertRule rule;
+		private final Tuple<String, String> identifierOfPatient;
+		private final double value;
+		private final long timeRecorded;
+		private final boolean raised;
+
+		private AlertChange(AlertRule rule, Tuple<String, String> identifierOfPatient, double value, long timeRecorded, boolean raised) {
+			this.rule = rule;
+			this.identifierOfPatient = identifierOfPatient;
+			this.value = value;
+			this.timeRecorded = timeRecorded;
+			this.raised = raised;
+		}
+	}
+
+	private final HashMap<String, ArrayList<AlertRule>> rulesOfCodes = new HashMap<String, ArrayList<AlertRule>>();
+	private final HashMap<AlertRule, HashMap<Tuple<String, String>, RuleState>> statesOfRules = new HashMap<AlertRule, HashMap<Tuple<String, String>, RuleState>>();
+	private final HashMap<String, HashMap<Tuple<String, String>, Reading>> latestReadingsOfCodes = new HashMap<String, HashMap<Tuple<String, String>, Reading>>();
+	private final HashMap<String, TreeMap<Double, HashSet<Tuple<String, String>>>> valueIndexesOfCodes = new HashMap<String, TreeMap<Double, HashSet<Tuple<String, String>>>>();
+	private final CopyOnWriteArrayList<AlertListener> listeners = new CopyOnWriteArrayList<AlertListener>();
+
+	/**
+	 * Add a listener for patients going into or coming out of alert
+	 * @param listener the listener
+	 */
+	public void addAlertListener(AlertListener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Remove a listener
+	 * @param listener the listener
+	 */
+	public void removeAlertListener(AlertListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Add a rule, it is evaluated straight away against the latest reading of every patient
+	 * @param rule the rule
+	 */
+	public void addRule(AlertRule rule) {
+		ArrayList<AlertChange> changes = new ArrayList<AlertChange>();
+		synchronized (this) {
+			if (statesOfRules.containsKey(rule)) {
+				return;
+			}
+			ArrayList<AlertRule> rulesOfCode = rulesOfCodes.get(rule.getCode());
+			if (rulesOfCode == null) {
+				rulesOfCode = new ArrayList<AlertRule>();
+				rulesOfCodes.put(rule.getCode(), rulesOfCode);
+			}
+			rulesOfCode.add(rule);
+			statesOfRules.put(rule, new HashMap<Tuple<String, String>, RuleState>());
+			HashMap<Tuple<String, String>, Reading> latestReadings = latestReadingsOfCodes.get(rule.getCode());
+			if (latestReadings != null) {
+				for (Map.Entry<Tuple<String, String>, Reading> latestReading: latestReadings.entrySet()) {
+					this.evaluateRule(rule, latestReading.getKey(), latestReading.getValue(), changes);
+				}
+			}
+		}
+		this.fire(changes);
+	}
+
+	/**
+	 * Remove a rule, the patients in alert for it come out of alert
+	 * @param rule the rule
+	 */
+	public void removeRule(AlertRule rule) {
+		ArrayList<AlertChange> changes = new ArrayList<AlertChange>();
+		synchronized (this) {
+			HashMap<Tuple<String, String>, RuleState> states = statesOfRules.remove(rule);
+			if (states == null) {
+				return;
+			}
+			rulesOfCodes.get(rule.getCode()).remove(rule);
+			for (Map.Entry<Tuple<String, String>, RuleState> state: states.entrySet()) {
+				if (state.getValue().alerting) {
+					changes.add(new AlertChange(rule, state.getKey(), Double.NaN, Observation.NO_TIME_RECORDED, false));
+				}
+			}
+		}
+		this.fire(changes);
+	}
+
+	/**
+	 * Evaluate a reading of a patient. A reading that is not newer than the latest one of the patient for the code is not
+	 * counted again, if its value differs it is taken as a correction of the latest reading.
+	 * @param identifierOfPatient the patient's identifier
+	 * @param code the loinc code of the reading
+	 * @param timeRecorded the time the reading was recorded in epoch milliseconds
+	 * @param value the value of the reading
+	 */
+	public void evaluate(Tuple<String, String> identifierOfPatient, String code, long timeRecorded, double value) {
+		ArrayList<AlertChange> changes = new ArrayList<AlertChange>();
+		synchronized (this) {
+			this.evaluateReading(identifierOfPatient, code, timeRecorded, value, changes);
+		}
+		this.fire(changes);
+	}
+
+	/**
+	 * Evaluate the latest readings of a patient, i.e. systolic and diastolic blood pressure and total cholesterol
+	 * @param identifierOfPatient the patient's identifier
+	 * @param patient the patient
+	 */
+	public void evaluatePatient(Tuple<String, String> identifierOfPatient, FHIRPatient patient) {
+		ArrayList<AlertChange> changes = new ArrayList<AlertChange>();
+		synchronized (this) {
+			this.evaluatePatientReadings(identifierOfPatient, patient, changes);
+		}
+		this.fire(changes);
+	}
+
+	/**
+	 * Evaluate the latest readings of many patients
+	 * @param patients the patients keyed by their identifier
+	 */
+	public void evaluatePatients(Map<Tuple<String, String>, FHIRPatient> patients) {
+		ArrayList<AlertChange> changes = new ArrayList<AlertChange>();
+		synchronized (this) {
+			for (Map.Entry<Tuple<String, String>, FHIRPatient> patient: patients.entrySet()) {
+				this.evaluatePatientReadings(patient.getKey(), patient.getValue(), changes);
+			}
+		}
+		this.fire(changes);
+	}
+
+	/**
+	 * Forget a patient, it comes out of alert for every rule
+	 * @param identifierOfPatient the patient's identifier
+	 */
+	public void removePatient(Tuple<String, String> identifierOfPatient) {
+		ArrayList<AlertChange> changes = new ArrayList<AlertChange>();
+		synchronized (this) {
+			this.removePatientReadings(identifierOfPatient, changes);
+		}
+		this.fire(changes);
+	}
+
+	/**
+	 * Feed the engine with the patients that were added, changed or removed
+	 * @param event what changed in the practitioner's patients
+	 */
+	@Override
+	public void mapChanged(MapChangeEvent<Tuple<String, String>, FHIRPatient> event) {
+		ArrayList<AlertChange> changes = new ArrayList<AlertChange>();
+		synchronized (this) {
+			for (Tuple<String, String> identifier: event.getRemovedKeys()) {
+				this.removePatientReadings(identifier, changes);
+			}
+			for (Tuple<String, String> identifier: event.getAddedKeys()) {
+				this.evaluatePatientReadings(identifier, event.getNewValue(identifier), changes);
+			}
+			for (Tuple<String, String> identifier: event.getChangedKeys()) {
+				this.evaluatePatientReadings(identifier, event.getNewValue(identifier), changes);
+			}
+		}
+		this.fire(changes);
+	}
+
+	/**
+	 * Get the patients whose latest reading of a code is above a value, using the index instead of a scan
+	 * @param code the loinc code
+	 * @param value the value
+	 * @return the identifiers of the patients
+	 */
+	public synchronized Set<Tuple<String, String>> getPatientsAbove(String code, double value) {
+		Set<Tuple<String, String>> patients = new HashSet<Tuple<String, String>>();
+		TreeMap<Double, HashSet<Tuple<String, String>>> valueIndex = valueIndexesOfCodes.get(code);
+		if (valueIndex != null) {
+			for (HashSet<Tuple<String, String>> patientsWithValue: valueIndex.tailMap(value, false).values()) {
+				patients.addAll(patientsWithValue);
+			}
+		}
+		return patients;
+	}
+
+	/**
+	 * Get the patients in alert for a rule
+	 * @param rule the rule
+	 * @return the identifiers of the patients
+	 */
+	public synchronized Set<Tuple<String, String>> getAlertingPatients(AlertRule rule) {
+		Set<Tuple<String, String>> patients = new HashSet<Tuple<String, String>>();
+		HashMap<Tuple<String, String>, RuleState> states = statesOfRules.get(rule);
+		if (states != null) {
+			for (Map.Entry<Tuple<String, String>, RuleState> state: states.entrySet()) {
+				if (state.getValue().alerting) {
+					patients.add(state.getKey());
+				}
+			}
+		}
+		return patients;
+	}
+
+	private void evaluatePatientReadings(Tuple<String, String> identifierOfPatient, FHIRPatient patient, Collection<AlertChange> changes) {
+		if (patient == null) {
+			return;
+		}
+		FHIRBloodPressure bloodPressure = patient.getBloodPressure();
+		if (bloodPressure != null) {
+			Observation systolic = bloodPressure.getSystolicBPObservation();
+			Observation diastolic = bloodPressure.getDiastolicBPObservation();
+			this.evaluateReading(identifierOfPatient, FHIRBloodPressure.SYSTOLIC_BP_CODE, systolic.getTimeRecordedMillis(), systolic.getNumericValue(), changes);
+			this.evaluateReading(identifierOfPatient, FHIRBloodPressure.DIASTOLIC_BP_CODE, diastolic.getTimeRecordedMillis(), diastolic.getNumericValue(), changes);
+		}
+		FHIRCholesterol cholesterol = patient.getCholesterol();
+		if (cholesterol != null) {
+			Observation totalCholesterol = cholesterol.getCholesterolObservation();
+			this.evaluateReading(identifierOfPatient, FHIRCholesterol.CODE, totalCholesterol.getTimeRecordedMillis(), totalCholesterol.getNumericValue(), changes);
+		}
+	}
+
+	private void evaluateReading(Tuple<String, String> identifierOfPatient, String code, long timeRecorded, double value, Collection<AlertChange> changes) {
+		if (Double.isNaN(value)) {
+			return;
+		}
+		HashMap<Tuple<String, String>, Reading> latestReadings = latestReadingsOfCodes.get(code);
+		if (latestReadings == null) {
+			latestReadings = new HashMap<Tuple<String, String>, Reading>();
+			latestReadingsOfCodes.put(code, latestReadings);
+		}
+		Reading latestReading = latestReadings.get(identifierOfPatient);
+		boolean newReading = latestReading == null || timeRecorded > latestReading.timeRecorded;
+		if (!newReading && (timeRecorded < latestReading.timeRecorded || Double.compare(value, latestReading.value) == 0)) {
+			return; // an older reading, or the latest one again
+		}
+		if (latestReading == null) {
+			latestReading = new Reading();
+			latestReadings.put(identifierOfPatient, latestReading);
+		}
+		else {
+			this.unindex(code, latestReading.value, identifierOfPatient);
+		}
+		latestReading.timeRecorded = timeRecorded;
+		latestReading.value = value;
+		this.index(code, value, identifierOfPatient);
+
+		if (!newReading) { // a correction, the index is up to date but it doesn't count as another reading
+			return;
+		}
+		ArrayList<AlertRule> rulesOfCode = rulesOfCodes.get(code);
+		if (rulesOfCode != null) {
+			for (AlertRule rule: rulesOfCode) {
+				this.evaluateRule(rule, identifierOfPatient, latestReading, changes);
+			}
+		}
+	}
+
+	private void evaluateRule(AlertRule rule, Tuple<String, String> identifierOfPatient, Reading reading, Collection<AlertChange> changes) {
+		HashMap<Tuple<String, String>, RuleState> states = statesOfRules.get(rule);
+		RuleState state = states.get(identifierOfPatient);
+		if (state == null) {
+			state = new RuleState();
+			states.put(identifierOfPatient, state);
+		}
+		if (reading.value > rule.getRaiseAbove()) {
+			state.readingsAbove++;
+			if (!state.alerting && state.readingsAbove >= rule.getSustainedReadings()) {
+				state.alerting = true;
+				changes.add(new AlertChange(rule, identifierOfPatient, reading.value, reading.timeRecorded, true));
+			}
+		}
+		else {
+			state.readingsAbove = 0;
+			if (state.alerting && reading.value < rule.getClearBelow()) {
+				state.alerting = false;
+				changes.add(new AlertChange(rule, identifierOfPatient, reading.value, reading.timeRecorded, false));
+			}
+		}
+	}
+
+	private void removePatientReadings(Tuple<String, String> identifierOfPatient, Collection<AlertChange> changes) {
+		for (Map.Entry<String, HashMap<Tuple<String, String>, Reading>> latestReadings: latestReadingsOfCodes.entrySet()) {
+			Reading latestReading = latestReadings.getValue().remove(identifierOfPatient);
+			if (latestReading != null) {
+				this.unindex(latestReadings.getKey(), latestReading.value, identifierOfPatient);
+			}
+		}
+		for (Map.Entry<AlertRule, HashMap<Tuple<String, String>, RuleState>> states: statesOfRules.entrySet()) {
+			RuleState state = states.getValue().remove(identifierOfPatient);
+			if (state != null && state.alerting) {
+				changes.add(new AlertChange(states.getKey(), identifierOfPatient, Double.NaN, Observation.NO_TIME_RECORDED, false));
+			}
+		}
+	}
+
+	private void index(String code, double value, Tuple<String, String> identifierOfPatient) {
+		TreeMap<Double, HashSet<Tuple<String, String>>> valueIndex = valueIndexesOfCodes.get(code);
+		if (valueIndex == null) {
+			valueIndex = new TreeMap<Double, HashSet<Tuple<String, String>>>();
+			valueIndexesOfCodes.put(code, valueIndex);
+		}
+		HashSet<Tuple<String, String>> patientsWithValue = valueIndex.get(value);
+		if (patientsWithValue == null) {
+			patientsWithValue = new HashSet<Tuple<String, String>>();
+			valueIndex.put(value, patientsWithValue);
+		}
+		patientsWithValue.add(identifierOfPatient);
+	}
+
+	private void unindex(String code, double value, Tuple<String, String> identifierOfPatient) {
+		TreeMap<Double, HashSet<Tuple<String, String>>> valueIndex = valueIndexesOfCodes.get(code);
+		HashSet<Tuple<String, String>> patientsWithValue = valueIndex.get(value);
+		patientsWithValue.remove(identifierOfPatient);
+		if (patientsWithValue.isEmpty()) {
+			valueIndex.remove(value);
+		}
+	}
+
+	private void fire(Collection<AlertChange> changes) {
+		for (AlertChange change: changes) {
+			for (AlertListener listener: listeners) {
+				if (change.raised) {
+					listener.alertRaised(change.rule, change.identifierOfPatient, change.value, change.timeRecorded);
+				}
+				else {
+					listener.alertCleared(change.rule, change.identifierOfPatient, change.value, change.timeRecorded);
+				}
+			}
+		}
+	}
+}
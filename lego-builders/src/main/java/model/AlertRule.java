@@ -0,0 +1,85 @@
+package model;
+
+/**
+ * Class which is a threshold rule of the AlertEngine for one kind of Observation (one loinc code).
+ * A patient goes into alert once sustainedReadings readings in a row are above raiseAbove, and only comes out of it
+ * once a reading is below clearBelow. A clearBelow lower than raiseAbove gives the rule hysteresis, so a patient
+ * whose readings hover around the threshold doesn't go in and out of alert with every reading.
+ *
+ */
+public class AlertRule {
+	private final String name;
+	private final String code;
+	private final double raiseAbove;
+	private final double clearBelow;
+	private final int sustainedReadings;
+
+	/**
+	 * Constructor of AlertRule
+	 * @param name the name of the rule shown to the practitioner e.g. "High systolic BP"
+	 * @param code the loinc code of the Observation e.g. FHIRBloodPressure.SYSTOLIC_BP_CODE
+	 * @param raiseAbove a reading above this value counts towards going into alert
+	 * @param clearBelow a reading below this value takes the patient out of alert, at most raiseAbove
+	 * @param sustainedReadings the number of readings in a row above raiseAbove to go into alert, at least 1
+	 */
+	public AlertRule(String name, String code, double raiseAbove, double clearBelow, int sustainedReadings) {
+		if (clearBelow > raiseAbove) {
+			throw new IllegalArgumentException("clearBelow must not be above raiseAbove");
+		}
+		if (sustainedReadings < 1) {
+			throw new IllegalArgumentException("sustainedReadings must be a positive integer");
+		}
+		this.name = name;
+		this.code = code;
+		this.raiseAbove = raiseAbove;
+		this.clearBelow = clearBelow;
+		this.sustainedReadings = sustainedReadings;
+	}
+
+	/**
+	 * Getter for the name of the rule
+	 * @return the name of the rule
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Getter for the loinc code of the Observation the rule is about
+	 * @return the loinc code of the Observation
+	 */
+	public String getCode() {
+		return code;
+	}
+
+	/**
+	 * Getter for the value a reading has to be above to count towards going into alert
+	 * @return the value a reading has to be above
+	 */
+	public double getRaiseAbove() {
+		return raiseAbove;
+	}
+
+	/**
+	 * Getter for the value a reading has to be below to take the patient out of alert
+	 * @return the value a reading has to be below
+	 */
+	public double getClearBelow() {
+		return clearBelow;
+	}
+
+	/**
+	 * Getter for the number of readings in a row above raiseAbove to go into alert
+	 * @return the number of readings in a row
+	 */
+	public int getSustainedReadings() {
+		return sustainedReadings;
+	}
+
+	/**
+	 * The String representation of an AlertRule
+	 */
+	public String toString() {
+		return name + " [code = " + code + ", raiseAbove = " + raiseAbove + ", clearBelow = " + clearBelow + ", sustainedReadings = " + sustainedReadings + "]";
+	}
+}
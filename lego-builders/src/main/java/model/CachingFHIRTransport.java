@@ -0,0 +1,416 @@
+package model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Class which is a FHIRTransport that keeps the successful responses of another FHIRTransport in memory, so that
+ * asking for the same URL again (e.g. the last readings of a patient on every update of the GUI) doesn't go to the server.
+ * Responses are keyed by their canonical URL, i.e. the order of the query parameters doesn't matter, and expire after
+ * the time to live of their resource type (e.g. a Patient changes less often than its Observations).
+ * The cache is bounded by the total size of the bodies, the least recently used responses are evicted first.
+ * A response is streamed to the caller as it arrives and only copied aside while it is read, up to maxBodyBytes, so
+ * a response too large to be kept is never buffered. The next pages of a search (HAPI's _getpages links) are not kept,
+ * they are only valid for a while on the server and are walked once.
+ *
+ * Requests with conditional or no-cache headers (e.g. the requests of a SyncState) always go to the server
+ * because they ask for what the server has now. Their successful responses replace the cached ones, so a later
+ * request without those headers doesn't get an older body.
+ *
+ */
+public class CachingFHIRTransport implements FHIRTransport {
+	public static final long DEFAULT_MAX_BYTES = 16L * 1024 * 1024;
+	public static final long DEFAULT_TIME_TO_LIVE_MILLIS = 30 * 1000;
+	public static final long DEFAULT_MAX_BODY_BYTES = 1024 * 1024; // a larger body would push out many small ones
+	private static final List<String> BYPASS_HEADERS = Arrays.asList("If-None-Match", "If-Modified-Since", "Cache-Control");
+	private static final String PAGING_PARAMETER = "_getpages"; // the parameter of the next page links of HAPI
+
+	private final FHIRTransport delegate;
+	private final long maxBytes;
+	private volatile long maxBodyBytes;
+	private final LongSupplier clock;
+	private final Map<String, Long> timeToLiveOfResourceType = new HashMap<String, Long>();
+	private final LinkedHashMap<String, CachedResponse> cache = new LinkedHashMap<String, CachedResponse>(16, 0.75f, true); // access order, eldest first
+	private long cachedBytes = 0;
+
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong missCount = new AtomicLong();
+	private final AtomicLong evictionCount = new AtomicLong();
+
+	/**
+	 * Constructor of CachingFHIRTransport that uses the DEFAULT_MAX_BYTES
+	 * @param delegate the transport that actually sends the requests
+	 */
+	public CachingFHIRTransport(FHIRTransport delegate) {
+		this(delegate, CachingFHIRTransport.DEFAULT_MAX_BYTES);
+	}
+
+	/**
+	 * Constructor of CachingFHIRTransport
+	 * @param delegate the transport that actually sends the requests
+	 * @param maxBytes the maximum total size of the cached bodies
+	 */
+	public CachingFHIRTransport(FHIRTransport delegate, long maxBytes) {
+		this(delegate, maxBytes, System::currentTimeMillis);
+	}
+
+	/**
+	 * Constructor of CachingFHIRTransport with the clock used for expiring responses, for testing
+	 */
+	CachingFHIRTransport(FHIRTransport delegate, long maxBytes, LongSupplier clock) {
+		if (delegate == null) {
+			throw new IllegalArgumentException("Transport must not be null");
+		}
+		if (maxBytes < 0) {
+			throw new IllegalArgumentException("Maximum size must not be negative");
+		}
+		this.delegate = delegate;
+		this.maxBytes = maxBytes;
+		this.maxBodyBytes = Math.min(CachingFHIRTransport.DEFAULT_MAX_BODY_BYTES, maxBytes);
+		this.clock = clock;
+		this.timeToLiveOfResourceType.put("Practitioner", 60 * 60 * 1000L);
+		this.timeToLiveOfResourceType.put("Patient", 10 * 60 * 1000L);
+		this.timeToLiveOfResourceType.put("Encounter", 60 * 1000L);
+		this.timeToLiveOfResourceType.put("Observation", 60 * 1000L);
+	}
+
+	/**
+	 * Send a GET request, or answer it from the cache if the response to the same URL hasn't expired yet
+	 */
+	public FHIRResponse get(String urlString, Map<String, String> requestHeaders) throws IOException {
+		boolean bypass = false;
+		for (String header: requestHeaders.keySet()) {
+			for (String bypassHeader: BYPASS_HEADERS) {
+				if (bypassHeader.equalsIgnoreCase(header)) {
+					bypass = true;
+				}
+			}
+		}
+		long timeToLive = this.getTimeToLive(CachingFHIRTransport.resourceTypeOf(urlString));
+		if (timeToLive == 0 || maxBodyBytes == 0 || urlString.contains(CachingFHIRTransport.PAGING_PARAMETER)) { // never kept, stream it straight through
+			return delegate.get(urlString, requestHeaders);
+		}
+
+		String key = CachingFHIRTransport.canonicalUrl(urlString);
+		long now = clock.getAsLong();
+		synchronized (this) {
+			CachedResponse cached = cache.get(key);
+			if (cached != null && cached.expiresAt > now && !bypass) {
+				hitCount.incrementAndGet();
+				return cached.toResponse();
+			}
+			if (cached != null) { // expired, or about to be replaced by what the server has now
+				this.remove(key);
+			}
+		}
+		if (!bypass) {
+			missCount.incrementAndGet();
+		}
+
+		FHIRResponse response = delegate.get(urlString, requestHeaders);
+		if (response.getStatusCode() != HttpURLConnection.HTTP_OK || CachingFHIRTransport.contentLength(response) > maxBodyBytes) { // only successful responses that fit are kept
+			return response;
+		}
+		RecordingInputStream body = new RecordingInputStream(response, key, now + timeToLive);
+		return new FHIRResponse(response.getStatusCode(), response.getHeaders(), body);
+	}
+
+	/**
+	 * Keep a response that was read to its end
+	 */
+	private synchronized void put(String key, CachedResponse cached) {
+		this.remove(key);
+		cache.put(key, cached);
+		cachedBytes += cached.body.length;
+		this.evictUntilWithinMaxBytes();
+	}
+
+	/**
+	 * Get the maximum size of a body that is kept
+	 * @return the maximum size of a cached body in bytes
+	 */
+	public long getMaxBodyBytes() {
+		return maxBodyBytes;
+	}
+
+	/**
+	 * Set the maximum size of a body that is kept, larger responses are streamed through without being kept
+	 * @param maxBodyBytes the maximum size of a cached body in bytes, at most the maximum size of the cache
+	 */
+	public void setMaxBodyBytes(long maxBodyBytes) {
+		if (maxBodyBytes < 0 || maxBodyBytes > maxBytes) {
+			throw new IllegalArgumentException("Maximum body size must be between 0 and the maximum size of the cache");
+		}
+		this.maxBodyBytes = maxBodyBytes;
+	}
+
+	/**
+	 * Get the time to live of the responses of a resource type
+	 * @param resourceType the resource type e.g. Patient
+	 * @return the time to live in milliseconds
+	 */
+	public synchronized long getTimeToLive(String resourceType) {
+		Long timeToLive = timeToLiveOfResourceType.get(resourceType);
+		return (timeToLive == null) ? CachingFHIRTransport.DEFAULT_TIME_TO_LIVE_MILLIS : timeToLive;
+	}
+
+	/**
+	 * Set the time to live of the responses of a resource type, 0 to not cache the resource type at all
+	 * @param resourceType the resource type e.g. Patient
+	 * @param timeToLiveMillis the time to live in milliseconds
+	 */
+	public synchronized void setTimeToLive(String resourceType, long timeToLiveMillis) {
+		if (timeToLiveMillis < 0) {
+			throw new IllegalArgumentException("Time to live must not be negative");
+		}
+		timeToLiveOfResourceType.put(resourceType, timeToLiveMillis);
+	}
+
+	/**
+	 * Remove every cached response
+	 */
+	public synchronized void invalidateAll() {
+		cache.clear();
+		cachedBytes = 0;
+	}
+
+	/**
+	 * Get the number of requests answered from the cache
+	 * @return the number of cache hits
+	 */
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	/**
+	 * Get the number of cacheable requests that had to go to the server
+	 * @return the number of cache misses
+	 */
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	/**
+	 * Get the number of responses evicted to stay within the maximum size
+	 * @return the number of evictions
+	 */
+	public long getEvictionCount() {
+		return evictionCount.get();
+	}
+
+	/**
+	 * Get the number of cached responses
+	 * @return the number of cached responses, including expired ones not removed yet
+	 */
+	public synchronized int size() {
+		return cache.size();
+	}
+
+	/**
+	 * Get the total size of the cached bodies
+	 * @return the total size of the cached bodies in bytes
+	 */
+	public synchronized long getCachedBytes() {
+		return cachedBytes;
+	}
+
+	/**
+	 * Remove the cached response of a key, if any
+	 */
+	private void remove(String key) {
+		CachedResponse removed = cache.remove(key);
+		if (removed != null) {
+			cachedBytes -= removed.body.length;
+		}
+	}
+
+	/**
+	 * Evict the least recently used responses until the cached bodies fit into maxBytes
+	 */
+	private void evictUntilWithinMaxBytes() {
+		Iterator<CachedResponse> eldestFirst = cache.values().iterator();
+		while (cachedBytes > maxBytes && eldestFirst.hasNext()) {
+			cachedBytes -= eldestFirst.next().body.length;
+			eldestFirst.remove();
+			evictionCount.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Turn a URL into the key of its response: the query parameters are sorted and the fragment is dropped,
+	 * so e.g. Patient?b=2&a=1 and Patient?a=1&b=2 share a response.
+	 * @param urlString the URL of a request
+	 * @return the canonical URL
+	 */
+	static String canonicalUrl(String urlString) {
+		int fragmentIndex = urlString.indexOf('#');
+		if (fragmentIndex >= 0) {
+			urlString = urlString.substring(0, fragmentIndex);
+		}
+		int queryIndex = urlString.indexOf('?');
+		if (queryIndex < 0 || queryIndex == urlString.length() - 1) {
+			return (queryIndex < 0) ? urlString : urlString.substring(0, queryIndex);
+		}
+		String[] parameters = urlString.substring(queryIndex + 1).split("&");
+		Arrays.sort(parameters);
+		StringBuilder canonical = new StringBuilder(urlString.substring(0, queryIndex)).append('?');
+		for (String parameter: parameters) {
+			if (parameter.isEmpty()) {
+				continue;
+			}
+			if (canonical.charAt(canonical.length() - 1) != '?') {
+				canonical.append('&');
+			}
+			canonical.append(parameter);
+		}
+		return canonical.toString();
+	}
+
+	/**
+	 * Get the resource type a URL asks for, i.e. the path segment after the base URL e.g. Patient for Patient/123 or Patient?identifier=...
+	 * @param urlString the URL of a request
+	 * @return the resource type, or null if the URL is not under the base URL
+	 */
+	static String resourceTypeOf(String urlString) {
+		String baseUrl = FHIRClient.getBaseUrl();
+		if (!urlString.startsWith(baseUrl)) {
+			return null;
+		}
+		String path = urlString.substring(baseUrl.length());
+		int end = path.length();
+		for (char separator: new char[] {'/', '?'}) {
+			int index = path.indexOf(separator);
+			if (index >= 0 && index < end) {
+				end = index;
+			}
+		}
+		return path.substring(0, end);
+	}
+
+	/**
+	 * Get the Content-Length of a response
+	 * @return the length of the body in bytes, or -1 if it is not known e.g. a chunked or compressed response
+	 */
+	private static long contentLength(FHIRResponse response) {
+		String contentLength = response.getHeader("Content-Length");
+		if (contentLength == null || response.getHeader("Content-Encoding") != null) { // the body is decompressed, its length is not the header's
+			return -1;
+		}
+		try {
+			return Long.parseLong(contentLength.trim());
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * The body of a response being streamed to the caller, the bytes read are copied aside and the response is kept once
+	 * the end of the body is reached. The copy is dropped as soon as it grows past maxBodyBytes.
+	 */
+	private class RecordingInputStream extends FilterInputStream {
+		private final FHIRResponse response;
+		private final String key;
+		private final long expiresAt;
+		private ByteArrayOutputStream recorded = new ByteArrayOutputStream(); // null once the response can't be kept
+
+		private RecordingInputStream(FHIRResponse response, String key, long expiresAt) {
+			super(response.getBody());
+			this.response = response;
+			this.key = key;
+			this.expiresAt = expiresAt;
+		}
+
+		public int read() throws IOException {
+			int read = super.read();
+			if (read == -1) {
+				this.complete();
+			}
+			else if (recorded != null) {
+				recorded.write(read);
+				this.dropIfTooLarge();
+			}
+			return read;
+		}
+
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			int read = super.read(buffer, offset, length);
+			if (read == -1) {
+				this.complete();
+			}
+			else if (recorded != null) {
+				recorded.write(buffer, offset, read);
+				this.dropIfTooLarge();
+			}
+			return read;
+		}
+
+		public long skip(long n) throws IOException {
+			recorded = null; // the skipped bytes are not copied
+			return super.skip(n);
+		}
+
+		public boolean markSupported() {
+			return false;
+		}
+
+		/**
+		 * A reader usually stops at the end of the JSON, read what's left (at most maxBodyBytes) so a complete body is kept
+		 */
+		public void close() throws IOException {
+			try {
+				byte[] buffer = new byte[8192];
+				while (recorded != null && this.read(buffer, 0, buffer.length) != -1) {
+					// read() records the rest of the body, and drops it if the body is too large
+				}
+			}
+			finally {
+				response.close();
+			}
+		}
+
+		private void dropIfTooLarge() {
+			if (recorded.size() > maxBodyBytes) {
+				recorded = null;
+			}
+		}
+
+		private void complete() {
+			if (recorded != null) {
+				put(key, new CachedResponse(response.getStatusCode(), response.getHeaders(), recorded.toByteArray(), expiresAt));
+				recorded = null;
+			}
+		}
+	}
+
+	/**
+	 * A response kept in the cache, every hit gets a fresh stream over the same bytes
+	 */
+	private static class CachedResponse {
+		private final int statusCode;
+		private final Map<String, List<String>> headers;
+		private final byte[] body;
+		private final long expiresAt;
+
+		private CachedResponse(int statusCode, Map<String, List<String>> headers, byte[] body, long expiresAt) {
+			this.statusCode = statusCode;
+			this.headers = headers;
+			this.body = body;
+			this.expiresAt = expiresAt;
+		}
+
+		private FHIRResponse toResponse() {
+			return new FHIRResponse(statusCode, headers, new ByteArrayInputStream(body));
+		}
+	}
+}
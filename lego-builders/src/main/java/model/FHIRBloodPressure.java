@@ -1,11 +1,9 @@
 package model;
 
 import java.io.IOException;
-import java.net.URLEncoder;
 import java.util.ArrayList;
 import java.util.HashMap;
 
-import org.json.JSONArray;
 import org.json.JSONObject;
 
 /**
@@ -45,6 +43,17 @@ public class FHIRBloodPressure extends FHIRObservation {
 		super.setObservation(FHIRBloodPressure.SYSTOLIC_BLOOD_PRESSURE_POS, value, units, system, timeRecorded);
 	}
 	
+	/**
+	 * Set the Observation for Systolic Blood Pressure Observation with a value that is already a number
+	 * @param value The value of the Systolic Blood Pressure Observation
+	 * @param units The units used for the value
+	 * @param system The system of measurement used
+	 * @param timeRecorded The time the Observation was recorded
+	 */
+	public void setSystolicBPObservation(double value, String units, String system, String timeRecorded) {
+		super.setObservation(FHIRBloodPressure.SYSTOLIC_BLOOD_PRESSURE_POS, value, units, system, timeRecorded);
+	}
+	
 	/**
 	 * Get the Systolic Blood Presure Observation (copy) so that the original isn't changed
 	 * @return the Observation for Systolic Blood Pressure
@@ -61,6 +70,14 @@ public class FHIRBloodPressure extends FHIRObservation {
 		return this.getObservation(FHIRBloodPressure.SYSTOLIC_BLOOD_PRESSURE_POS).getValue();
 	}
 	
+	/**
+	 * Get the value of the Systolic Blood Pressure Observation as a number
+	 * @return the value of the Systolic Blood Pressure Observation, NaN if there is none
+	 */
+	public double getSystolicBPNumericValue() {
+		return this.getNumericValue(FHIRBloodPressure.SYSTOLIC_BLOOD_PRESSURE_POS);
+	}
+	
 	/**
 	 * Get the units used for the value of the Systolic Blood Pressure Observation
 	 * @return the units for the value of the Systolic Blood Pressure Observation
@@ -104,6 +121,17 @@ public class FHIRBloodPressure extends FHIRObservation {
 		super.setObservation(FHIRBloodPressure.DIASTOLIC_BLOOD_PRESSURE_POS, value, units, system, timeRecorded);
 	}
 	
+	/**
+	 * Set the Observation for Diastolic Blood Pressure Observation with a value that is already a number
+	 * @param value The value of the Diastolic Blood Pressure Observation
+	 * @param units The units used for the value
+	 * @param system The system of measurement used
+	 * @param timeRecorded The time the Observation was recorded
+	 */
+	public void setDiastolicBPObservation(double value, String units, String system, String timeRecorded) {
+		super.setObservation(FHIRBloodPressure.DIASTOLIC_BLOOD_PRESSURE_POS, value, units, system, timeRecorded);
+	}
+	
 	/**
 	 * Get the value of the Diastolic Blood Pressure Observation
 	 * @return the value of the Diastolic Blood Pressure Observation
@@ -112,6 +140,14 @@ public class FHIRBloodPressure extends FHIRObservation {
 		return this.getObservation(FHIRBloodPressure.DIASTOLIC_BLOOD_PRESSURE_POS).getValue();
 	}
 	
+	/**
+	 * Get the value of the Diastolic Blood Pressure Observation as a number
+	 * @return the value of the Diastolic Blood Pressure Observation, NaN if there is none
+	 */
+	public double getDiastolicBPNumericValue() {
+		return this.getNumericValue(FHIRBloodPressure.DIASTOLIC_BLOOD_PRESSURE_POS);
+	}
+	
 	/**
 	 * Get the units used for the value of the Diastolic Blood Pressure Observation
 	 * @return the units for the value of the Systolic Blood Pressure Observation
@@ -145,8 +181,12 @@ public class FHIRBloodPressure extends FHIRObservation {
 	 * @return a boolean indicating if the operation succeeded
 	 */
 	public boolean retrieveDataFromServerAndInitWithLatest(Tuple<String, String> identifierOfPatient) throws IOException {
-		JSONObject bloodPressurePageJSONObject = getRelatedJSONObject(identifierOfPatient, 1);
-		return retrieveDataFromServerAndInit(bloodPressurePageJSONObject, 0);
+		FHIRBundlePage bloodPressurePage = getRelatedBundlePage(identifierOfPatient, 1);
+		// if the patient doesn't have Blood Pressure value, return false.
+		if (bloodPressurePage.getEntries().isEmpty()) {
+			return false;
+		}
+		return retrieveDataFromBundleEntryAndInit(bloodPressurePage.getEntries().get(0));
 	}
 	
 	/**
@@ -160,101 +200,43 @@ public class FHIRBloodPressure extends FHIRObservation {
 	public JSONObject getRelatedJSONObject(Tuple<String, String> identifierOfPatient, int numberToReturn)
 			throws IOException {
 		// Build the URL String for retrieving the BloodPressure Observation(s) of the patient
-		String urlStrForBloodPressureOfPatient = FHIRClient.BASE_URL + FHIRObservation.URL_STRING_SECTION_FOR_OBSERVATION 
-				+ "?patient.identifier=" + URLEncoder.encode(identifierOfPatient.first + "|", "UTF-8") + identifierOfPatient.second + "&" + "code=" + URLEncoder.encode(FHIRBloodPressure.CODE, "UTF-8") 
-				+ "&" + FHIRClient.SORT_PARAMETER + FHIRClient.DESCENDING_DATE + "&" + FHIRClient.COUNT_PARAMETER + String.valueOf(numberToReturn) + "&" + FHIRClient.JSON_FORMAT;
+		String urlStrForBloodPressureOfPatient = FHIRObservation.buildUrlStringForObservationsOfPatient(FHIRBloodPressure.CODE, identifierOfPatient, numberToReturn);
 		
 		// return the JSONObject for the url above.
 		return FHIRClient.getJSONObjectUsingGETRequest(urlStrForBloodPressureOfPatient); 
 		
 	}
 	
+	/**
+	 * Retrieve the first page of the 'numberToReturn' most recent Blood Pressure data for a patient with the specified identifier
+	 * @param identifierOfPatient the identifier of a patient
+	 * @param numberToReturn the number of Observations to get, the count param of FHIR get request
+	 * @return the first page of the Bundle which contains the data for the numberToReturn most recent Observation(s)
+	 * @throws IOException if the request failed
+	 */
+	@Override
+	public FHIRBundlePage getRelatedBundlePage(Tuple<String, String> identifierOfPatient, int numberToReturn) throws IOException {
+		return FHIRClient.getBundlePageUsingGETRequest(FHIRObservation.buildUrlStringForObservationsOfPatient(FHIRBloodPressure.CODE, identifierOfPatient, numberToReturn));
+	}
 	
 	/**
-	 * Given a JSONObject for blood pressure, retrieve the data at ith pos related to it. 
-	 * The i == 0 is the most recent while i == 1 is the 2nd most recent.
-	 * @param bloodPressurePageJSONObject the JSONObject containing the Observation data that is queried
-	 * @param i the position of the Observation in the JSONObject
+	 * Given an entry of a Bundle page of blood pressure, retrieve the systolic and diastolic data related to it.
+	 * @param entry the entry containing the Blood Pressure Observation
 	 * @return a boolean indicating whether extraction of data succeeded or not.
 	 */
-	public boolean retrieveDataFromServerAndInit(JSONObject bloodPressurePageJSONObject, int i) {
-		if (bloodPressurePageJSONObject == null) {
-			return false;
-		}
-
-		// if the subject/patient of the specified identifier doesn't have Cholesterol value, return false.
-		if (bloodPressurePageJSONObject.getInt("total") == 0) { // cholesterol page has "total"
+	@Override
+	public boolean retrieveDataFromBundleEntryAndInit(FHIRBundleEntry entry) {
+		FHIRQuantity systolicQuantity = entry.getComponentValueQuantity(FHIRBloodPressure.SYSTOLIC_BP_CODE);
+		FHIRQuantity diastolicQuantity = entry.getComponentValueQuantity(FHIRBloodPressure.DIASTOLIC_BP_CODE);
+		if (systolicQuantity == null || diastolicQuantity == null || entry.getEffectiveDateTime() == null) { // not a Blood Pressure Observation that can be used
 			return false;
 		}
-		
-		// go to the JSONObject (page) containing the data that needs to be retrieved.
-		if (i >= bloodPressurePageJSONObject.getInt("total")) { // if the i to be retrieved is not on current page
-			// if there is next page, go to next page
-			if (bloodPressurePageJSONObject.getJSONArray("link").length() >= 2 && bloodPressurePageJSONObject.getJSONArray("link").getJSONObject(1).getString("relation").equalsIgnoreCase("next")) {
-				String urlString = bloodPressurePageJSONObject.getJSONArray("link").getJSONObject(1).getString("url");
-				i = i - bloodPressurePageJSONObject.getInt("total");
-				try {
-					return retrieveDataFromServerAndInit(FHIRClient.getJSONObjectUsingGETRequest(urlString), i); // recurse to the next page.
-				} catch (IOException e) {
-					// TODO Auto-generated catch block
-					e.printStackTrace();
-				}
-			}
-			else { // if data to be retrieved not on currentPage but there is no next page.
-				return false;
-			}
-		}
-		
-		// Get the relevant components and timeRecorded of the BloodPressure Observation
-		JSONObject bloodPressurePageResource = bloodPressurePageJSONObject.getJSONArray("entry").getJSONObject(i).getJSONObject("resource");
-		JSONArray component = bloodPressurePageResource.getJSONArray("component");
-		String timeRecorded = bloodPressurePageResource.getString("effectiveDateTime");
-		String diastolicBPValue = "";
-		String diastolicBPUnits = "";
-		String diastolicBPSystem = "";
-		
-		String systolicBPValue = "";
-		String systolicBPUnits = "";
-		String systolicBPSystem = "";
-		
-		// Get the first and second component (Systolic and Diastolic Blood Pressure)
-		JSONObject firstObject = component.getJSONObject(0);
-		JSONObject secondObject = component.getJSONObject(1);
-		
-		// Get the JSONObject related to the value of the Systolic and Diastolic Observation
-		JSONObject firstObjectValueQuantity = firstObject.getJSONObject("valueQuantity");
-		JSONObject secondObjectValueQuantity = secondObject.getJSONObject("valueQuantity");
-		
-		// if the firstObject is Diastolic, the 2nd would be Systolic
-		if (firstObject.getJSONObject("code").getJSONArray("coding").getJSONObject(0).getString("code").equals(FHIRBloodPressure.DIASTOLIC_BP_CODE)) {
-			// Get the diastolic Observation's value, unit and system using the firstObject
-			diastolicBPValue = (Double.toString(firstObjectValueQuantity.getDouble("value")));  // get the value for diastolic BP
-			diastolicBPUnits = (firstObjectValueQuantity.getString("unit")); // get the units associated with the value
-			diastolicBPSystem = (firstObjectValueQuantity.getString("system")); // get the system of measurement used and set them
-
-			// Get the systolic Observation's value, unit and system using the secondObject
-			systolicBPValue = (Double.toString(secondObjectValueQuantity.getDouble("value")));
-			systolicBPUnits = (secondObjectValueQuantity.getString("unit")); // get the units associated with the value and set them
-			systolicBPSystem = (secondObjectValueQuantity.getString("system")); // get the system of measurement used and set them
-
-		}
-		else { // if the firstObject is Systolic, the 2nd would be Diastolic.
-			// Get the systolic Observation's value, unit and system using the firstObject
-			systolicBPValue = (Double.toString(firstObjectValueQuantity.getDouble("value"))); // get the value for diastolic BP
-			systolicBPUnits = (firstObjectValueQuantity.getString("unit")); // get the units associated with the value and set them
-			systolicBPSystem = (firstObjectValueQuantity.getString("system")); // get the system of measurement used and set them
-
-			// Get the diastolic Observation's value, unit and system using the secondObject
-			diastolicBPValue = (Double.toString(secondObjectValueQuantity.getDouble("value")));  // get the value for diastolic BP
-			diastolicBPUnits = (secondObjectValueQuantity.getString("unit")); // get the units associated with the value and set them
-			diastolicBPSystem = (secondObjectValueQuantity.getString("system")); // get the system of measurement used and set them
-
-		}
-		this.setDiastolicBPObservation(diastolicBPValue, diastolicBPUnits, diastolicBPSystem, timeRecorded); // Set the Diastolic BP with the data retrieved above
-		this.setSystolicBPObservation(systolicBPValue, systolicBPUnits, systolicBPSystem, timeRecorded); // Set the Systolic BP with the data retrieved above
+		String timeRecorded = entry.getEffectiveDateTime();
+		this.setDiastolicBPObservation(diastolicQuantity.getValue(), diastolicQuantity.getUnit(), diastolicQuantity.getSystem(), timeRecorded); // Set the Diastolic BP with the data retrieved above
+		this.setSystolicBPObservation(systolicQuantity.getValue(), systolicQuantity.getUnit(), systolicQuantity.getSystem(), timeRecorded); // Set the Systolic BP with the data retrieved above
 		return true;
-
 	}
+	
 
 
 	/**
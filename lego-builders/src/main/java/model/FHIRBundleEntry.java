@@ -0,0 +1,283 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class which holds the fields of the resource of a Bundle entry that the app actually uses, as pulled out
+ * by the FHIRBundleReader. Every other field of the resource is skipped while reading so it never takes up memory.
+ * Fields that the resource doesn't have are left as null.
+ *
+ */
+public class FHIRBundleEntry {
+	private String resourceType;
+	private String resourceId;
+	private Tuple<String, String> identifier; // the first identifier of a Patient/Practitioner, (identifierSystem, identifierValue)
+	private String code; // the first coding of the code of an Observation
+	private String subjectReference; // e.g. Patient/123
+	private String effectiveDateTime;
+	private FHIRQuantity valueQuantity;
+	private List<Tuple<String, FHIRQuantity>> components = new ArrayList<Tuple<String, FHIRQuantity>>(); // (code, valueQuantity) of each component
+	private String familyName; // of the first name of a Patient/Practitioner
+	private String givenName; // the first given name of the first name of a Patient/Practitioner
+	private String gender;
+	private String birthDate;
+	private String city; // of the first address of a Patient
+	private String state;
+	private String country;
+	
+	/**
+	 * Get the type of the resource e.g. Observation
+	 * @return the type of the resource
+	 */
+	public String getResourceType() {
+		return resourceType;
+	}
+	
+	/**
+	 * Set the type of the resource
+	 * @param resourceType the type of the resource
+	 */
+	public void setResourceType(String resourceType) {
+		this.resourceType = resourceType;
+	}
+	
+	/**
+	 * Get the resource id of the resource
+	 * @return the resource id of the resource
+	 */
+	public String getResourceId() {
+		return resourceId;
+	}
+	
+	/**
+	 * Set the resource id of the resource
+	 * @param resourceId the resource id of the resource
+	 */
+	public void setResourceId(String resourceId) {
+		this.resourceId = resourceId;
+	}
+	
+	/**
+	 * Get the first identifier of the resource e.g. of an included Patient
+	 * @return the identifier tuple, (identifierSystem, identifierValue)
+	 */
+	public Tuple<String, String> getIdentifier() {
+		return identifier;
+	}
+	
+	/**
+	 * Set the first identifier of the resource
+	 * @param identifier the identifier tuple, (identifierSystem, identifierValue)
+	 */
+	public void setIdentifier(Tuple<String, String> identifier) {
+		this.identifier = identifier;
+	}
+	
+	/**
+	 * Get the code (first coding) of the resource e.g. the loinc code of an Observation
+	 * @return the code of the resource
+	 */
+	public String getCode() {
+		return code;
+	}
+	
+	/**
+	 * Set the code (first coding) of the resource
+	 * @param code the code of the resource
+	 */
+	public void setCode(String code) {
+		this.code = code;
+	}
+	
+	/**
+	 * Get the reference to the subject of the resource e.g. Patient/123
+	 * @return the reference to the subject of the resource
+	 */
+	public String getSubjectReference() {
+		return subjectReference;
+	}
+	
+	/**
+	 * Set the reference to the subject of the resource
+	 * @param subjectReference the reference to the subject of the resource
+	 */
+	public void setSubjectReference(String subjectReference) {
+		this.subjectReference = subjectReference;
+	}
+	
+	/**
+	 * Get the time the Observation was recorded
+	 * @return the effectiveDateTime of the Observation
+	 */
+	public String getEffectiveDateTime() {
+		return effectiveDateTime;
+	}
+	
+	/**
+	 * Set the time the Observation was recorded
+	 * @param effectiveDateTime the effectiveDateTime of the Observation
+	 */
+	public void setEffectiveDateTime(String effectiveDateTime) {
+		this.effectiveDateTime = effectiveDateTime;
+	}
+	
+	/**
+	 * Get the valueQuantity of the Observation
+	 * @return the valueQuantity of the Observation
+	 */
+	public FHIRQuantity getValueQuantity() {
+		return valueQuantity;
+	}
+	
+	/**
+	 * Set the valueQuantity of the Observation
+	 * @param valueQuantity the valueQuantity of the Observation
+	 */
+	public void setValueQuantity(FHIRQuantity valueQuantity) {
+		this.valueQuantity = valueQuantity;
+	}
+	
+	/**
+	 * Get the components of the Observation, each component is (code, valueQuantity)
+	 * @return the components of the Observation
+	 */
+	public List<Tuple<String, FHIRQuantity>> getComponents() {
+		return components;
+	}
+	
+	/**
+	 * Add a component to the Observation
+	 * @param code the code of the component
+	 * @param valueQuantity the valueQuantity of the component
+	 */
+	public void addComponent(String code, FHIRQuantity valueQuantity) {
+		this.components.add(new Tuple<String, FHIRQuantity>(code, valueQuantity));
+	}
+	
+	/**
+	 * Get the valueQuantity of the component with the specified code
+	 * @param componentCode the code of the component
+	 * @return the valueQuantity of the component or null if there is no such component
+	 */
+	public FHIRQuantity getComponentValueQuantity(String componentCode) {
+		for (Tuple<String, FHIRQuantity> component: components) {
+			if (componentCode.equals(component.first)) {
+				return component.second;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Get the family name of the first name of the resource e.g. of an included Patient
+	 * @return the family name of the resource
+	 */
+	public String getFamilyName() {
+		return familyName;
+	}
+	
+	/**
+	 * Set the family name of the first name of the resource
+	 * @param familyName the family name of the resource
+	 */
+	public void setFamilyName(String familyName) {
+		this.familyName = familyName;
+	}
+	
+	/**
+	 * Get the first given name of the first name of the resource
+	 * @return the given name of the resource
+	 */
+	public String getGivenName() {
+		return givenName;
+	}
+	
+	/**
+	 * Set the first given name of the first name of the resource
+	 * @param givenName the given name of the resource
+	 */
+	public void setGivenName(String givenName) {
+		this.givenName = givenName;
+	}
+	
+	/**
+	 * Get the gender of the Patient
+	 * @return the gender of the Patient
+	 */
+	public String getGender() {
+		return gender;
+	}
+	
+	/**
+	 * Set the gender of the Patient
+	 * @param gender the gender of the Patient
+	 */
+	public void setGender(String gender) {
+		this.gender = gender;
+	}
+	
+	/**
+	 * Get the birthDate of the Patient
+	 * @return the birthDate of the Patient
+	 */
+	public String getBirthDate() {
+		return birthDate;
+	}
+	
+	/**
+	 * Set the birthDate of the Patient
+	 * @param birthDate the birthDate of the Patient
+	 */
+	public void setBirthDate(String birthDate) {
+		this.birthDate = birthDate;
+	}
+	
+	/**
+	 * Get the city of the first address of the Patient
+	 * @return the city of the Patient
+	 */
+	public String getCity() {
+		return city;
+	}
+	
+	/**
+	 * Set the city of the first address of the Patient
+	 * @param city the city of the Patient
+	 */
+	public void setCity(String city) {
+		this.city = city;
+	}
+	
+	/**
+	 * Get the state of the first address of the Patient
+	 * @return the state of the Patient
+	 */
+	public String getState() {
+		return state;
+	}
+	
+	/**
+	 * Set the state of the first address of the Patient
+	 * @param state the state of the Patient
+	 */
+	public void setState(String state) {
+		this.state = state;
+	}
+	
+	/**
+	 * Get the country of the first address of the Patient
+	 * @return the country of the Patient
+	 */
+	public String getCountry() {
+		return country;
+	}
+	
+	/**
+	 * Set the country of the first address of the Patient
+	 * @param country the country of the Patient
+	 */
+	public void setCountry(String country) {
+		this.country = country;
+	}
+}
@@ -0,0 +1,90 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class which is one page of a FHIR Bundle as read by the FHIRBundleReader, i.e. the total, the url of the next page
+ * and the entries of the page.
+ *
+ */
+public class FHIRBundlePage {
+	private int total = -1; // -1 if the Bundle has no total
+	private String nextUrl; // null if there is no next page
+	private List<FHIRBundleEntry> entries = new ArrayList<FHIRBundleEntry>();
+	private boolean notModified = false; // true if the server answered a conditional request with 304 Not Modified
+	
+	/**
+	 * Create an empty page that stands for a 304 Not Modified response to a conditional request
+	 * @return a page without entries that is marked as not modified
+	 */
+	public static FHIRBundlePage notModified() {
+		FHIRBundlePage page = new FHIRBundlePage();
+		page.notModified = true;
+		return page;
+	}
+	
+	/**
+	 * Check if this page stands for a 304 Not Modified response, i.e. nothing changed since the last identical request
+	 * @return true if the page was not modified, otherwise false
+	 */
+	public boolean isNotModified() {
+		return notModified;
+	}
+	
+	/**
+	 * Get the total number of matches of the search, which is not necessarily the number of entries on this page
+	 * @return the total of the Bundle or -1 if the Bundle has no total
+	 */
+	public int getTotal() {
+		return total;
+	}
+	
+	/**
+	 * Set the total number of matches of the search
+	 * @param total the total of the Bundle
+	 */
+	public void setTotal(int total) {
+		this.total = total;
+	}
+	
+	/**
+	 * Get the url of the next page
+	 * @return the url of the next page or null if this is the last page
+	 */
+	public String getNextUrl() {
+		return nextUrl;
+	}
+	
+	/**
+	 * Set the url of the next page
+	 * @param nextUrl the url of the next page
+	 */
+	public void setNextUrl(String nextUrl) {
+		this.nextUrl = nextUrl;
+	}
+	
+	/**
+	 * Check if there is a page after this one
+	 * @return true if there is a next page, otherwise false
+	 */
+	public boolean hasNextPage() {
+		return this.nextUrl != null;
+	}
+	
+	/**
+	 * Get the entries of this page
+	 * @return the entries of this page
+	 */
+	public List<FHIRBundleEntry> getEntries() {
+		return entries;
+	}
+	
+	/**
+	 * Add an entry to this page
+	 * @param entry the entry to be added
+	 */
+	public void addEntry(FHIRBundleEntry entry) {
+		this.entries.add(entry);
+	}
+}
@@ -0,0 +1,361 @@
+package model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * Class which reads a page of a FHIR Bundle with a streaming pull parser. Only the fields in FHIRBundleEntry
+ * (e.g. entry[].resource.subject.reference, valueQuantity, component, effectiveDateTime, identifier[0], and name[0], gender, birthDate
+ * and address[0] of an included Patient) and the link[] and total
+ * of the Bundle are pulled out as the bytes arrive, every other field is skipped without building a JSON tree of it.
+ * ref: https://www.hl7.org/fhir/bundle.html
+ *
+ */
+public class FHIRBundleReader {
+
+	/**
+	 * Read a page of a Bundle from a stream
+	 * @param in the stream containing the JSON of the Bundle, it is not closed by this method
+	 * @return the page read from the stream
+	 * @throws IOException if the stream could not be read or is not a valid JSON Bundle
+	 */
+	public static FHIRBundlePage read(InputStream in) throws IOException {
+		JsonReader reader = new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+		FHIRBundlePage page = new FHIRBundlePage();
+		try {
+			reader.beginObject();
+			while (reader.hasNext()) {
+				String name = reader.nextName();
+				if (name.equals("total")) {
+					page.setTotal(reader.nextInt());
+				}
+				else if (name.equals("link")) {
+					readLinks(reader, page);
+				}
+				else if (name.equals("entry")) {
+					reader.beginArray();
+					while (reader.hasNext()) {
+						page.addEntry(readEntry(reader));
+					}
+					reader.endArray();
+				}
+				else { // not used by the app
+					reader.skipValue();
+				}
+			}
+			reader.endObject();
+		} catch (IllegalStateException | NumberFormatException e) { // JsonReader throws these if the JSON is not of the expected shape
+			throw new IOException("Not a valid FHIR Bundle: " + e.getMessage(), e);
+		}
+		return page;
+	}
+
+	/**
+	 * Read the link[] of a Bundle and set the url of the next page if there is one
+	 */
+	private static void readLinks(JsonReader reader, FHIRBundlePage page) throws IOException {
+		reader.beginArray();
+		while (reader.hasNext()) {
+			String relation = null;
+			String url = null;
+			reader.beginObject();
+			while (reader.hasNext()) {
+				String name = reader.nextName();
+				if (name.equals("relation")) {
+					relation = nextStringOrNull(reader);
+				}
+				else if (name.equals("url")) {
+					url = nextStringOrNull(reader);
+				}
+				else {
+					reader.skipValue();
+				}
+			}
+			reader.endObject();
+			if ("next".equalsIgnoreCase(relation)) {
+				page.setNextUrl(url);
+			}
+		}
+		reader.endArray();
+	}
+
+	/**
+	 * Read one entry[] of a Bundle
+	 */
+	private static FHIRBundleEntry readEntry(JsonReader reader) throws IOException {
+		FHIRBundleEntry entry = new FHIRBundleEntry();
+		reader.beginObject();
+		while (reader.hasNext()) {
+			if (reader.nextName().equals("resource")) {
+				readResource(reader, entry);
+			}
+			else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+		return entry;
+	}
+
+	/**
+	 * Read the resource of an entry of a Bundle into the entry
+	 */
+	private static void readResource(JsonReader reader, FHIRBundleEntry entry) throws IOException {
+		reader.beginObject();
+		while (reader.hasNext()) {
+			String name = reader.nextName();
+			if (name.equals("resourceType")) {
+				entry.setResourceType(nextStringOrNull(reader));
+			}
+			else if (name.equals("id")) {
+				entry.setResourceId(nextStringOrNull(reader));
+			}
+			else if (name.equals("identifier")) {
+				entry.setIdentifier(readFirstIdentifier(reader));
+			}
+			else if (name.equals("code")) {
+				entry.setCode(readCodeableConcept(reader));
+			}
+			else if (name.equals("subject")) {
+				entry.setSubjectReference(readReference(reader));
+			}
+			else if (name.equals("effectiveDateTime")) {
+				entry.setEffectiveDateTime(nextStringOrNull(reader));
+			}
+			else if (name.equals("valueQuantity")) {
+				entry.setValueQuantity(readQuantity(reader));
+			}
+			else if (name.equals("component")) {
+				readComponents(reader, entry);
+			}
+			else if (name.equals("name")) {
+				readFirstHumanName(reader, entry);
+			}
+			else if (name.equals("gender")) {
+				entry.setGender(nextStringOrNull(reader));
+			}
+			else if (name.equals("birthDate")) {
+				entry.setBirthDate(nextStringOrNull(reader));
+			}
+			else if (name.equals("address")) {
+				readFirstAddress(reader, entry);
+			}
+			else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+	}
+
+	/**
+	 * Read a name[] and set the family name and the first given name of its first HumanName into the entry
+	 */
+	private static void readFirstHumanName(JsonReader reader, FHIRBundleEntry entry) throws IOException {
+		boolean first = true;
+		reader.beginArray();
+		while (reader.hasNext()) {
+			reader.beginObject();
+			while (reader.hasNext()) {
+				String name = reader.nextName();
+				if (first && name.equals("family")) {
+					entry.setFamilyName(nextStringOrNull(reader));
+				}
+				else if (first && name.equals("given")) {
+					reader.beginArray();
+					if (reader.hasNext()) { // only the first given name is used
+						entry.setGivenName(nextStringOrNull(reader));
+					}
+					while (reader.hasNext()) {
+						reader.skipValue();
+					}
+					reader.endArray();
+				}
+				else {
+					reader.skipValue();
+				}
+			}
+			reader.endObject();
+			first = false; // only the first name is used
+		}
+		reader.endArray();
+	}
+
+	/**
+	 * Read an address[] and set the city, state and country of its first Address into the entry
+	 */
+	private static void readFirstAddress(JsonReader reader, FHIRBundleEntry entry) throws IOException {
+		boolean first = true;
+		reader.beginArray();
+		while (reader.hasNext()) {
+			reader.beginObject();
+			while (reader.hasNext()) {
+				String name = reader.nextName();
+				if (first && name.equals("city")) {
+					entry.setCity(nextStringOrNull(reader));
+				}
+				else if (first && name.equals("state")) {
+					entry.setState(nextStringOrNull(reader));
+				}
+				else if (first && name.equals("country")) {
+					entry.setCountry(nextStringOrNull(reader));
+				}
+				else {
+					reader.skipValue();
+				}
+			}
+			reader.endObject();
+			first = false; // only the first address is used
+		}
+		reader.endArray();
+	}
+
+	/**
+	 * Read the component[] of an Observation into the entry
+	 */
+	private static void readComponents(JsonReader reader, FHIRBundleEntry entry) throws IOException {
+		reader.beginArray();
+		while (reader.hasNext()) {
+			String code = null;
+			FHIRQuantity valueQuantity = null;
+			reader.beginObject();
+			while (reader.hasNext()) {
+				String name = reader.nextName();
+				if (name.equals("code")) {
+					code = readCodeableConcept(reader);
+				}
+				else if (name.equals("valueQuantity")) {
+					valueQuantity = readQuantity(reader);
+				}
+				else {
+					reader.skipValue();
+				}
+			}
+			reader.endObject();
+			entry.addComponent(code, valueQuantity);
+		}
+		reader.endArray();
+	}
+
+	/**
+	 * Read an identifier[] and return its first identifier as (identifierSystem, identifierValue)
+	 */
+	private static Tuple<String, String> readFirstIdentifier(JsonReader reader) throws IOException {
+		Tuple<String, String> identifier = null;
+		reader.beginArray();
+		while (reader.hasNext()) {
+			String system = null;
+			String value = null;
+			reader.beginObject();
+			while (reader.hasNext()) {
+				String name = reader.nextName();
+				if (name.equals("system")) {
+					system = nextStringOrNull(reader);
+				}
+				else if (name.equals("value")) {
+					value = nextStringOrNull(reader);
+				}
+				else {
+					reader.skipValue();
+				}
+			}
+			reader.endObject();
+			if (identifier == null) { // only the first identifier is used
+				identifier = new Tuple<String, String>(system, value);
+			}
+		}
+		reader.endArray();
+		return identifier;
+	}
+
+	/**
+	 * Read a CodeableConcept and return the code of its first coding
+	 */
+	private static String readCodeableConcept(JsonReader reader) throws IOException {
+		String code = null;
+		reader.beginObject();
+		while (reader.hasNext()) {
+			if (reader.nextName().equals("coding")) {
+				reader.beginArray();
+				while (reader.hasNext()) {
+					reader.beginObject();
+					while (reader.hasNext()) {
+						if (reader.nextName().equals("code") && code == null) { // only the first coding is used
+							code = nextStringOrNull(reader);
+						}
+						else {
+							reader.skipValue();
+						}
+					}
+					reader.endObject();
+				}
+				reader.endArray();
+			}
+			else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+		return code;
+	}
+
+	/**
+	 * Read a Reference and return its reference e.g. Patient/123
+	 */
+	private static String readReference(JsonReader reader) throws IOException {
+		String reference = null;
+		reader.beginObject();
+		while (reader.hasNext()) {
+			if (reader.nextName().equals("reference")) {
+				reference = nextStringOrNull(reader);
+			}
+			else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+		return reference;
+	}
+
+	/**
+	 * Read a Quantity
+	 */
+	private static FHIRQuantity readQuantity(JsonReader reader) throws IOException {
+		double value = Double.NaN;
+		String unit = null;
+		String system = null;
+		reader.beginObject();
+		while (reader.hasNext()) {
+			String name = reader.nextName();
+			if (name.equals("value")) {
+				value = reader.nextDouble();
+			}
+			else if (name.equals("unit")) {
+				unit = nextStringOrNull(reader);
+			}
+			else if (name.equals("system")) {
+				system = nextStringOrNull(reader);
+			}
+			else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+		return new FHIRQuantity(value, unit, system);
+	}
+
+	/**
+	 * Read a string value, or null if the value is JSON null
+	 */
+	private static String nextStringOrNull(JsonReader reader) throws IOException {
+		if (reader.peek() == JsonToken.NULL) {
+			reader.nextNull();
+			return null;
+		}
+		return reader.nextString();
+	}
+}
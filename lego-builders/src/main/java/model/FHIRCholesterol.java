@@ -2,11 +2,9 @@ package model;
 
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
-import java.net.URLEncoder;
 import java.util.ArrayList;
 import java.util.HashMap;
 
-import org.json.JSONArray;
 import org.json.JSONObject;
 
 /**
@@ -47,6 +45,17 @@ public class FHIRCholesterol extends FHIRObservation {
 		super.setObservation(FHIRCholesterol.CHOLESTEROL_POS, value, units, system, timeRecorded);
 	}
 	
+	/**
+	 * Set the Observation for TotalCholesterol Observation with a value that is already a number
+	 * @param value The value of the TotalCholesterol Observation
+	 * @param units The units use for the value
+	 * @param system The system of measurement used
+	 * @param timeRecorded The time the Observation was recorded
+	 */
+	public void setCholesterol(double value, String units, String system, String timeRecorded) {
+		super.setObservation(FHIRCholesterol.CHOLESTEROL_POS, value, units, system, timeRecorded);
+	}
+	
 	/**
 	 * Get the TotalCholesterol Observation (copy) so that the original isn't changed
 	 * @return the Observation for TotalCholesterol 
@@ -55,6 +64,14 @@ public class FHIRCholesterol extends FHIRObservation {
 		return this.getObservation(FHIRCholesterol.CHOLESTEROL_POS).getValue();
 	}
 	
+	/**
+	 * Get the value of the TotalCholesterol Observation as a number
+	 * @return the value of the TotalCholesterol Observation, NaN if there is none
+	 */
+	public double getCholesterolNumericValue() {
+		return this.getNumericValue(FHIRCholesterol.CHOLESTEROL_POS);
+	}
+	
 	/**
 	 * Get the units for the value of the TotalCholesterol Observation
 	 * @return the units for the value of the TotalCholesterol Observation
@@ -87,8 +104,12 @@ public class FHIRCholesterol extends FHIRObservation {
 	 * 
 	 */
 	public boolean retrieveDataFromServerAndInitWithLatest(Tuple<String, String> identifierOfPatient) throws IOException {
-		JSONObject totalCholesterolPageJSONObject = getRelatedJSONObject(identifierOfPatient, 1);
-		return retrieveDataFromServerAndInit(totalCholesterolPageJSONObject, 0);
+		FHIRBundlePage totalCholesterolPage = getRelatedBundlePage(identifierOfPatient, 1);
+		// if the patient doesn't have Cholesterol value, return false.
+		if (totalCholesterolPage.getEntries().isEmpty()) {
+			return false;
+		}
+		return retrieveDataFromBundleEntryAndInit(totalCholesterolPage.getEntries().get(0));
 	}
 	
 	/**
@@ -100,62 +121,38 @@ public class FHIRCholesterol extends FHIRObservation {
 	 */
 	@Override
 	public JSONObject getRelatedJSONObject(Tuple<String, String> identifierOfPatient, int numberToReturn) throws IOException {
-		// TODO Auto-generated method stub
-		String urlStrForLatestCholesterolOfPatient = FHIRClient.BASE_URL + FHIRObservation.URL_STRING_SECTION_FOR_OBSERVATION 
-				+ "?patient.identifier=" + URLEncoder.encode(identifierOfPatient.first + "|", "UTF-8") + identifierOfPatient.second + "&" + "code=" + URLEncoder.encode(FHIRCholesterol.CODE, "UTF-8") 
-				+ "&" + FHIRClient.SORT_PARAMETER + FHIRClient.DESCENDING_DATE + "&" + FHIRClient.COUNT_PARAMETER + String.valueOf(numberToReturn) + "&" + FHIRClient.JSON_FORMAT;
+		String urlStrForLatestCholesterolOfPatient = FHIRObservation.buildUrlStringForObservationsOfPatient(FHIRCholesterol.CODE, identifierOfPatient, numberToReturn);
 	
 		return FHIRClient.getJSONObjectUsingGETRequest(urlStrForLatestCholesterolOfPatient);
-//		return null;
 	}
 	
 	/**
-	 * Given a JSONObject for total cholesterol, retrieve the data at ith pos related to it. 
-	 * The i == 0 is the most recent while i == 1 is the 2nd most recent.
-	 * @param cholesterolPageJSONObject the JSONObject containing the Observation data that is queried
-	 * @param i the position of the Observation in the JSONObject
+	 * Retrieve the first page of the 'numberToReturn' most recent TotalCholesterol data for a patient with the specified identifier
+	 * @param identifierOfPatient the identifier of a patient
+	 * @param numberToReturn the number of Observations to get, the count param of FHIR get request
+	 * @return the first page of the Bundle which contains the data for the numberToReturn most recent Observation(s)
+	 * @throws IOException if the request failed
+	 */
+	@Override
+	public FHIRBundlePage getRelatedBundlePage(Tuple<String, String> identifierOfPatient, int numberToReturn) throws IOException {
+		return FHIRClient.getBundlePageUsingGETRequest(FHIRObservation.buildUrlStringForObservationsOfPatient(FHIRCholesterol.CODE, identifierOfPatient, numberToReturn));
+	}
+	
+	/**
+	 * Given an entry of a Bundle page of total cholesterol, retrieve the data related to it.
+	 * @param entry the entry containing the TotalCholesterol Observation
 	 * @return a boolean indicating whether extraction of data succeeded or not.
 	 */
-	public boolean retrieveDataFromServerAndInit(JSONObject cholesterolPageJSONObject, int i) { // i is pos, 0 is for most recent, 1 for 2nd most recent
-		// if it was null, return false cause data retrieval has failed
-		if (cholesterolPageJSONObject == null) {
-			return false;
-		}
-
-		// if the subject/patient of the specified identifier doesn't have Cholesterol value, return false.
-		if (cholesterolPageJSONObject.getInt("total") == 0) { // cholesterol page has "total"
+	@Override
+	public boolean retrieveDataFromBundleEntryAndInit(FHIRBundleEntry entry) {
+		FHIRQuantity valueQuantity = entry.getValueQuantity();
+		if (valueQuantity == null || entry.getEffectiveDateTime() == null) { // not a TotalCholesterol Observation that can be used
 			return false;
 		}
-		
-		// go to the JSONObject (page) containing the data that needs to be retrieved.
-		if (i >= cholesterolPageJSONObject.getInt("total")) {
-			// if there is next page, go to next page
-			if (cholesterolPageJSONObject.getJSONArray("link").length() >= 2 && cholesterolPageJSONObject.getJSONArray("link").getJSONObject(1).getString("relation").equalsIgnoreCase("next")) {
-				String urlString = cholesterolPageJSONObject.getJSONArray("link").getJSONObject(1).getString("url");
-				i = i - cholesterolPageJSONObject.getInt("total");
-				try {
-					return retrieveDataFromServerAndInit(FHIRClient.getJSONObjectUsingGETRequest(urlString), i);
-				} catch (IOException e) {
-					e.printStackTrace();
-				}
-			}
-			else { // if data to be retrieved not on currentPage but there is no next page.
-				return false;
-			}
-		}
-
-		
-		// Get the relevant components and timeRecorded of the TotalCholesterol Observation
-		JSONObject cholesterolPageResource = cholesterolPageJSONObject.getJSONArray("entry").getJSONObject(i).getJSONObject("resource");
-		JSONObject valueQuantity = cholesterolPageResource.getJSONObject("valueQuantity");
-		String value = (Double.toString(valueQuantity.getDouble("value"))); //get the value of the total cholesterol and set them
-		String units = (valueQuantity.getString("unit")); // get the units associated with the value and set them
-		String system = ("system"); // get the system of measurement used and set them
-		String timeRecorded = (cholesterolPageResource.getString("effectiveDateTime")); // get the effective date time of the total cholesterol observation was taken and set them
-		this.setCholesterol(value, units, system, timeRecorded);
+		this.setCholesterol(valueQuantity.getValue(), valueQuantity.getUnit(), valueQuantity.getSystem(), entry.getEffectiveDateTime());
 		return true;
-				
 	}
+	
 
 	/**
 	 * Get the Total Cholesterol Observation (copy) so that the original isn't changed
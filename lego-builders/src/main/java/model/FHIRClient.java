@@ -1,26 +1,119 @@
 package model;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.net.HttpURLConnection;
-import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.json.JSONObject;
+import org.json.JSONTokener;
 
 /**
  * 
  * @author Sriram, Zhi Tan
  * Class which has a static method for retrieving JSONObject from the FHIRServer
+ * The requests are sent through a pluggable FHIRTransport, by default a pooled keep-alive HttpClientTransport
+ * (or a HttpURLConnectionTransport on a runtime without java.net.http) behind a CachingFHIRTransport so that asking
+ * for the same URL again doesn't go to the server.
+ * The server and how it is searched are set by a FHIRClientConfig, see FHIRClientConfig.load.
  * ref: https://www.journaldev.com/7148/java-httpurlconnection-example-java-http-request-get-post
  */
 public abstract class FHIRClient {
-	public static final String BASE_URL = "https://fhir.monash.edu/hapi-fhir-jpaserver/fhir/";
 	public static final String JSON_FORMAT = "_format=json";
 	public static final String SORT_PARAMETER = "_sort=";
 	public static final String DESCENDING_DATE = "-date";
 	public static final String COUNT_PARAMETER = "_count=";
+	public static final String LAST_UPDATED_AFTER_PARAMETER = "_lastUpdated=gt";
+	public static final String DATE_AFTER_PARAMETER = "date=gt";
+	public static final String DATE_BEFORE_PARAMETER = "date=lt";
+	public static final String ELEMENTS_PARAMETER = "_elements="; // only these elements of the resources are returned, with their id and meta
+	private static final Map<String, String> NO_CACHE_HEADERS = Collections.singletonMap("Cache-Control", "no-cache"); // never answered by a CachingFHIRTransport
+	
+	// every URL the model classes build starts with its base URL, replaced as a whole by setConfig
+	private static volatile FHIRClientConfig config = FHIRClient.loadConfig();
+	// every model class goes through this transport, so it is shared to reuse connections
+	private static volatile FHIRTransport transport = FHIRClient.createTransport(config);
 
+	private static FHIRClientConfig loadConfig() {
+		try {
+			return FHIRClientConfig.load();
+		}
+		catch (IOException e) {
+			throw new IllegalStateException("Could not read the FHIR client configuration " + System.getProperty(FHIRClientConfig.CONFIG_FILE_PROPERTY), e);
+		}
+	}
+
+	/**
+	 * Create the transport for a configuration, a pooled keep-alive HttpClientTransport with the timeouts of the
+	 * configuration behind a CachingFHIRTransport of the cache size of the configuration
+	 * @param config the configuration of the connection to the FHIR server
+	 * @return the transport for the configuration
+	 */
+	public static FHIRTransport createTransport(FHIRClientConfig config) {
+		FHIRTransport httpTransport;
+		try {
+			httpTransport = new HttpClientTransport(config.getConnectTimeoutMillis(), config.getReadTimeoutMillis());
+		} catch (LinkageError e) { // a runtime image without the java.net.http module
+			httpTransport = new HttpURLConnectionTransport(config.getConnectTimeoutMillis(), config.getReadTimeoutMillis());
+		}
+		if (config.getCacheMaxBytes() == 0) {
+			return httpTransport;
+		}
+		return new CachingFHIRTransport(httpTransport, config.getCacheMaxBytes());
+	}
+
+	/**
+	 * Get a copy of the configuration used by the model classes, loaded by FHIRClientConfig.load unless another one was set
+	 * @return a copy of the configuration, changing it has no effect until it is set
+	 */
+	public static FHIRClientConfig getConfig() {
+		return new FHIRClientConfig(config);
+	}
+
+	/**
+	 * Set the configuration used by the model classes. The transport is replaced by one created for the configuration,
+	 * so a transport set before is dropped.
+	 * @param newConfig the configuration to be used from now on
+	 */
+	public static void setConfig(FHIRClientConfig newConfig) {
+		if (newConfig == null) {
+			throw new IllegalArgumentException("Config must not be null");
+		}
+		FHIRClientConfig copy = new FHIRClientConfig(newConfig);
+		transport = FHIRClient.createTransport(copy);
+		config = copy;
+	}
+
+	/**
+	 * Get the base URL of the FHIR server of the configuration
+	 * @return the base URL of the FHIR server, ending with a slash
+	 */
+	public static String getBaseUrl() {
+		return config.getBaseUrl();
+	}
+
+	/**
+	 * Get the transport used to send requests to the FHIR server
+	 * @return the transport used to send requests to the FHIR server
+	 */
+	public static FHIRTransport getTransport() {
+		return transport;
+	}
+
+	/**
+	 * Set the transport used to send requests to the FHIR server
+	 * @param newTransport the transport to be used for every request from now on
+	 */
+	public static void setTransport(FHIRTransport newTransport) {
+		if (newTransport == null) {
+			throw new IllegalArgumentException("Transport must not be null");
+		}
+		transport = newTransport;
+	}
 
 	/**
 	 * A method for getting JSONObject using GET requests to the specified URL
@@ -29,38 +122,106 @@ public abstract class FHIRClient {
 	 * @throws IOException
 	 */
 	public static JSONObject getJSONObjectUsingGETRequest(String urlString) throws IOException {
-		//URL urlLink = new URL("https://fhir.monash.edu/hapi-fhir-jpaserver/fhir/Patient/$everything?_format=json");
-		URL urlLink = new URL(urlString);
-		HttpURLConnection con = (HttpURLConnection) urlLink.openConnection();
-		
-		con.setRequestMethod("GET");
-
-		int responseCode = con.getResponseCode();
-		// If HTTP response is code 200, then proceed to extract data
-		if (responseCode == HttpURLConnection.HTTP_OK) { 
-			BufferedReader in = new BufferedReader(new InputStreamReader(
-					con.getInputStream()));
-			String inputLine;
-			StringBuffer response = new StringBuffer();
-
-			while ((inputLine = in.readLine()) != null) {
-				response.append(inputLine);
+		return FHIRClient.getJSONObjectUsingGETRequest(urlString, false);
+	}
+
+	/**
+	 * A method for getting JSONObject using GET requests to the specified URL, optionally asking the server for it
+	 * even if a CachingFHIRTransport has a response to the URL
+	 * @param urlString the URL to get the JSONObject from
+	 * @param bypassCache true if the JSONObject must be what the server has now, e.g. during a refresh
+	 * @return the JSONObject of the urlString's page
+	 * @throws IOException
+	 */
+	public static JSONObject getJSONObjectUsingGETRequest(String urlString, boolean bypassCache) throws IOException {
+		FHIRResponse response = transport.get(urlString, bypassCache ? FHIRClient.NO_CACHE_HEADERS : Collections.<String, String>emptyMap());
+		try {
+			// If HTTP response is code 200, then proceed to extract data
+			if (response.getStatusCode() == HttpURLConnection.HTTP_OK) { 
+				// parse the JSONObject straight from the body instead of buffering it into a String first
+				Reader in = new InputStreamReader(response.getBody(), StandardCharsets.UTF_8);
+				return new JSONObject(new JSONTokener(in));
+			} 
+			//else print Get request failed
+			else {
+				System.out.println("GET request failed");
+				return null;
 			}
-			in.close();
-			// converts the response string to JSONObject Type
-			JSONObject jsonObject = new JSONObject(response.toString());
-			// returns the JSONObject
-			return jsonObject;
-
-		} 
-		//else print Get request failed
-		else {
-			System.out.println("GET request failed");
-			return null;
 		}
+		finally {
+			response.close();
+		}
+	}
 
+	/**
+	 * A method for getting a page of a Bundle using GET requests to the specified URL.
+	 * Unlike getJSONObjectUsingGETRequest, the page is read with the streaming FHIRBundleReader
+	 * so only the fields the app uses are kept.
+	 * @param urlString the URL of the page of the Bundle
+	 * @return the page of the Bundle
+	 * @throws FHIRRequestException if the server didn't answer with 200 OK
+	 * @throws IOException if the request failed
+	 */
+	public static FHIRBundlePage getBundlePageUsingGETRequest(String urlString) throws IOException {
+		return FHIRClient.getBundlePageUsingGETRequest(urlString, false);
 	}
 
-}
+	/**
+	 * A method for getting a page of a Bundle using GET requests to the specified URL, optionally asking the server
+	 * for it even if a CachingFHIRTransport has a response to the URL
+	 * @param urlString the URL of the page of the Bundle
+	 * @param bypassCache true if the page must be what the server has now, e.g. the next pages of the searches of a refresh
+	 * @return the page of the Bundle
+	 * @throws FHIRRequestException if the server didn't answer with 200 OK
+	 * @throws IOException if the request failed
+	 */
+	public static FHIRBundlePage getBundlePageUsingGETRequest(String urlString, boolean bypassCache) throws IOException {
+		FHIRResponse response = transport.get(urlString, bypassCache ? FHIRClient.NO_CACHE_HEADERS : Collections.<String, String>emptyMap());
+		try {
+			if (response.getStatusCode() != HttpURLConnection.HTTP_OK) {
+				throw new FHIRRequestException(response.getStatusCode(), urlString);
+			}
+			return FHIRBundleReader.read(response.getBody());
+		}
+		finally {
+			response.close();
+		}
+	}
 
+	/**
+	 * A method for getting a page of a Bundle using a conditional GET request to the specified URL.
+	 * If the syncState has an ETag for the URL, it is sent as If-None-Match and a 304 Not Modified response
+	 * is returned as a page marked as not modified. The ETag and the Date of the response are remembered in the syncState.
+	 * The request is never answered by a CachingFHIRTransport.
+	 * @param urlString the URL of the page of the Bundle
+	 * @param syncState the SyncState of the refresh this request is part of
+	 * @return the page of the Bundle or a not modified page
+	 * @throws FHIRRequestException if the server didn't answer with 200 OK or 304 Not Modified
+	 * @throws IOException if the request failed
+	 */
+	public static FHIRBundlePage getBundlePageUsingGETRequest(String urlString, SyncState syncState) throws IOException {
+		Map<String, String> requestHeaders = new HashMap<String, String>();
+		requestHeaders.putAll(FHIRClient.NO_CACHE_HEADERS); // a refresh wants what the server has now, not a cached response
+		String eTag = syncState.getETag(urlString);
+		if (eTag != null) {
+			requestHeaders.put("If-None-Match", eTag);
+		}
+		FHIRResponse response = transport.get(urlString, requestHeaders);
+		try {
+			syncState.observeServerDate(response.getHeader("Date"));
+			if (response.getStatusCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+				return FHIRBundlePage.notModified();
+			}
+			if (response.getStatusCode() == HttpURLConnection.HTTP_OK) {
+				FHIRBundlePage page = FHIRBundleReader.read(response.getBody());
+				syncState.putETag(urlString, response.getHeader("ETag"));
+				return page;
+			}
+			throw new FHIRRequestException(response.getStatusCode(), urlString);
+		}
+		finally {
+			response.close();
+		}
+	}
 
+}
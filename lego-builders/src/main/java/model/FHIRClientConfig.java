@@ -0,0 +1,283 @@
+package model;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * Class which holds the settings of the connection of the app to the FHIR server: the base URL, the page size and the
+ * number of patients per search, the timeouts, the concurrency and the size of the response cache.
+ * One properties file per environment (e.g. a closer mirror in production, a MockFHIRServer when testing) is picked with
+ * -Dfhir.config={path of the file}, and any setting can still be overridden on its own with a system property, e.g.
+ * -Dfhir.baseUrl=http://localhost:8090/fhir/. The keys of the file are the same as the system properties.
+ * The configuration is installed with FHIRClient.setConfig, every model class reads it from there.
+ *
+ */
+public class FHIRClientConfig {
+	public static final String CONFIG_FILE_PROPERTY = "fhir.config";
+	public static final String BASE_URL_PROPERTY = "fhir.baseUrl";
+	public static final String PAGE_SIZE_PROPERTY = "fhir.pageSize";
+	public static final String PATIENTS_PER_SEARCH_PROPERTY = "fhir.patientsPerSearch";
+	public static final String CONNECT_TIMEOUT_PROPERTY = "fhir.connectTimeoutMillis";
+	public static final String READ_TIMEOUT_PROPERTY = "fhir.readTimeoutMillis";
+	public static final String CONCURRENCY_PROPERTY = "fhir.concurrency";
+	public static final String CACHE_MAX_BYTES_PROPERTY = "fhir.cacheMaxBytes";
+
+	public static final String DEFAULT_BASE_URL = "https://fhir.monash.edu/hapi-fhir-jpaserver/fhir/";
+	public static final int DEFAULT_PAGE_SIZE = 100; // the count param of every search
+	public static final int DEFAULT_PATIENTS_PER_SEARCH = 20; // keeps the URL of a search at a sensible length
+	public static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 10000;
+	public static final int DEFAULT_READ_TIMEOUT_MILLIS = 30000;
+	public static final int DEFAULT_CONCURRENCY = 8; // the number of requests that can be in flight at the same time
+	public static final long DEFAULT_CACHE_MAX_BYTES = CachingFHIRTransport.DEFAULT_MAX_BYTES;
+
+	private String baseUrl = FHIRClientConfig.DEFAULT_BASE_URL;
+	private int pageSize = FHIRClientConfig.DEFAULT_PAGE_SIZE;
+	private int patientsPerSearch = FHIRClientConfig.DEFAULT_PATIENTS_PER_SEARCH;
+	private int connectTimeoutMillis = FHIRClientConfig.DEFAULT_CONNECT_TIMEOUT_MILLIS;
+	private int readTimeoutMillis = FHIRClientConfig.DEFAULT_READ_TIMEOUT_MILLIS;
+	private int concurrency = FHIRClientConfig.DEFAULT_CONCURRENCY;
+	private long cacheMaxBytes = FHIRClientConfig.DEFAULT_CACHE_MAX_BYTES;
+
+	/**
+	 * Constructor of FHIRClientConfig with the default settings
+	 */
+	public FHIRClientConfig() {
+	}
+
+	/**
+	 * Copy constructor of FHIRClientConfig
+	 * @param other the configuration to be copied
+	 */
+	public FHIRClientConfig(FHIRClientConfig other) {
+		this.baseUrl = other.baseUrl;
+		this.pageSize = other.pageSize;
+		this.patientsPerSearch = other.patientsPerSearch;
+		this.connectTimeoutMillis = other.connectTimeoutMillis;
+		this.readTimeoutMillis = other.readTimeoutMillis;
+		this.concurrency = other.concurrency;
+		this.cacheMaxBytes = other.cacheMaxBytes;
+	}
+
+	/**
+	 * Load the configuration of the app: the defaults, overridden by the file named by the fhir.config system property
+	 * if it is set, overridden by the fhir.* system properties
+	 * @return the configuration of the app
+	 * @throws IOException if the file can't be read
+	 */
+	public static FHIRClientConfig load() throws IOException {
+		Properties properties = new Properties();
+		String configFile = System.getProperty(FHIRClientConfig.CONFIG_FILE_PROPERTY);
+		if (configFile != null) {
+			properties.putAll(FHIRClientConfig.readProperties(configFile));
+		}
+		for (String name: System.getProperties().stringPropertyNames()) {
+			if (name.startsWith("fhir.")) {
+				properties.setProperty(name, System.getProperty(name));
+			}
+		}
+		return FHIRClientConfig.fromProperties(properties);
+	}
+
+	/**
+	 * Load a configuration from a properties file, the settings missing from the file keep their default
+	 * @param path the path of the properties file
+	 * @return the configuration of the file
+	 * @throws IOException if the file can't be read
+	 */
+	public static FHIRClientConfig fromFile(String path) throws IOException {
+		return FHIRClientConfig.fromProperties(FHIRClientConfig.readProperties(path));
+	}
+
+	/**
+	 * Create a configuration from properties, the settings missing from the properties keep their default
+	 * @param properties the settings keyed by the fhir.* names e.g. fhir.pageSize
+	 * @return the configuration of the properties
+	 */
+	public static FHIRClientConfig fromProperties(Properties properties) {
+		FHIRClientConfig config = new FHIRClientConfig();
+		if (properties.getProperty(FHIRClientConfig.BASE_URL_PROPERTY) != null) {
+			config.setBaseUrl(properties.getProperty(FHIRClientConfig.BASE_URL_PROPERTY).trim());
+		}
+		if (properties.getProperty(FHIRClientConfig.PAGE_SIZE_PROPERTY) != null) {
+			config.setPageSize(FHIRClientConfig.parseInt(properties, FHIRClientConfig.PAGE_SIZE_PROPERTY));
+		}
+		if (properties.getProperty(FHIRClientConfig.PATIENTS_PER_SEARCH_PROPERTY) != null) {
+			config.setPatientsPerSearch(FHIRClientConfig.parseInt(properties, FHIRClientConfig.PATIENTS_PER_SEARCH_PROPERTY));
+		}
+		if (properties.getProperty(FHIRClientConfig.CONNECT_TIMEOUT_PROPERTY) != null) {
+			config.setConnectTimeoutMillis(FHIRClientConfig.parseInt(properties, FHIRClientConfig.CONNECT_TIMEOUT_PROPERTY));
+		}
+		if (properties.getProperty(FHIRClientConfig.READ_TIMEOUT_PROPERTY) != null) {
+			config.setReadTimeoutMillis(FHIRClientConfig.parseInt(properties, FHIRClientConfig.READ_TIMEOUT_PROPERTY));
+		}
+		if (properties.getProperty(FHIRClientConfig.CONCURRENCY_PROPERTY) != null) {
+			config.setConcurrency(FHIRClientConfig.parseInt(properties, FHIRClientConfig.CONCURRENCY_PROPERTY));
+		}
+		if (properties.getProperty(FHIRClientConfig.CACHE_MAX_BYTES_PROPERTY) != null) {
+			try {
+				config.setCacheMaxBytes(Long.parseLong(properties.getProperty(FHIRClientConfig.CACHE_MAX_BYTES_PROPERTY).trim()));
+			}
+			catch (NumberFormatException e) {
+				throw new IllegalArgumentException(FHIRClientConfig.CACHE_MAX_BYTES_PROPERTY + " must be a number of bytes", e);
+			}
+		}
+		return config;
+	}
+
+	private static Properties readProperties(String path) throws IOException {
+		Properties properties = new Properties();
+		InputStream in = new FileInputStream(path);
+		try {
+			properties.load(in);
+		}
+		finally {
+			in.close();
+		}
+		return properties;
+	}
+
+	private static int parseInt(Properties properties, String name) {
+		try {
+			return Integer.parseInt(properties.getProperty(name).trim());
+		}
+		catch (NumberFormatException e) {
+			throw new IllegalArgumentException(name + " must be an integer", e);
+		}
+	}
+
+	/**
+	 * Get the base URL of the FHIR server
+	 * @return the base URL of the FHIR server, ending with a slash
+	 */
+	public String getBaseUrl() {
+		return baseUrl;
+	}
+
+	/**
+	 * Set the base URL of the FHIR server
+	 * @param baseUrl the base URL of the FHIR server e.g. http://localhost:8090/fhir/, a missing trailing slash is added
+	 */
+	public void setBaseUrl(String baseUrl) {
+		if (baseUrl == null || baseUrl.isEmpty()) {
+			throw new IllegalArgumentException("Base URL must not be empty");
+		}
+		this.baseUrl = baseUrl.endsWith("/") ? baseUrl : baseUrl + "/";
+	}
+
+	/**
+	 * Get the number of resources asked for per page of a search
+	 * @return the count param of the searches
+	 */
+	public int getPageSize() {
+		return pageSize;
+	}
+
+	/**
+	 * Set the number of resources asked for per page of a search
+	 * @param pageSize the count param of the searches, at most ObservationHistoryCursor.MAX_PAGE_SIZE
+	 */
+	public void setPageSize(int pageSize) {
+		if (pageSize < 1 || pageSize > ObservationHistoryCursor.MAX_PAGE_SIZE) {
+			throw new IllegalArgumentException("Page size must be between 1 and " + ObservationHistoryCursor.MAX_PAGE_SIZE);
+		}
+		this.pageSize = pageSize;
+	}
+
+	/**
+	 * Get the maximum number of patients put into one search
+	 * @return the maximum number of patients put into one search
+	 */
+	public int getPatientsPerSearch() {
+		return patientsPerSearch;
+	}
+
+	/**
+	 * Set the maximum number of patients put into one search, the URL of a search grows with it
+	 * @param patientsPerSearch the maximum number of patients put into one search
+	 */
+	public void setPatientsPerSearch(int patientsPerSearch) {
+		if (patientsPerSearch < 1) {
+			throw new IllegalArgumentException("Patients per search must be a positive integer");
+		}
+		this.patientsPerSearch = patientsPerSearch;
+	}
+
+	/**
+	 * Get the timeout of connecting to the FHIR server
+	 * @return the connect timeout in milliseconds
+	 */
+	public int getConnectTimeoutMillis() {
+		return connectTimeoutMillis;
+	}
+
+	/**
+	 * Set the timeout of connecting to the FHIR server
+	 * @param connectTimeoutMillis the connect timeout in milliseconds
+	 */
+	public void setConnectTimeoutMillis(int connectTimeoutMillis) {
+		if (connectTimeoutMillis < 1) {
+			throw new IllegalArgumentException("Connect timeout must be a positive number of milliseconds");
+		}
+		this.connectTimeoutMillis = connectTimeoutMillis;
+	}
+
+	/**
+	 * Get the timeout of a response of the FHIR server
+	 * @return the read timeout in milliseconds
+	 */
+	public int getReadTimeoutMillis() {
+		return readTimeoutMillis;
+	}
+
+	/**
+	 * Set the timeout of a response of the FHIR server
+	 * @param readTimeoutMillis the read timeout in milliseconds
+	 */
+	public void setReadTimeoutMillis(int readTimeoutMillis) {
+		if (readTimeoutMillis < 1) {
+			throw new IllegalArgumentException("Read timeout must be a positive number of milliseconds");
+		}
+		this.readTimeoutMillis = readTimeoutMillis;
+	}
+
+	/**
+	 * Get the maximum number of requests that are sent to the FHIR server at the same time
+	 * @return the concurrency of the retrievals
+	 */
+	public int getConcurrency() {
+		return concurrency;
+	}
+
+	/**
+	 * Set the maximum number of requests that are sent to the FHIR server at the same time
+	 * @param concurrency the concurrency of the retrievals
+	 */
+	public void setConcurrency(int concurrency) {
+		if (concurrency < 1) {
+			throw new IllegalArgumentException("Concurrency must be a positive integer");
+		}
+		this.concurrency = concurrency;
+	}
+
+	/**
+	 * Get the maximum total size of the responses kept by the CachingFHIRTransport
+	 * @return the size of the cache in bytes, 0 if responses are not cached
+	 */
+	public long getCacheMaxBytes() {
+		return cacheMaxBytes;
+	}
+
+	/**
+	 * Set the maximum total size of the responses kept by the CachingFHIRTransport
+	 * @param cacheMaxBytes the size of the cache in bytes, 0 to not cache responses
+	 */
+	public void setCacheMaxBytes(long cacheMaxBytes) {
+		if (cacheMaxBytes < 0) {
+			throw new IllegalArgumentException("Cache size must not be negative");
+		}
+		this.cacheMaxBytes = cacheMaxBytes;
+	}
+
+}
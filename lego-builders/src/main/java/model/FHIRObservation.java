@@ -2,6 +2,7 @@ package model;
 
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
 import java.util.ArrayList;
 
 import org.json.JSONObject;
@@ -19,6 +20,7 @@ import org.json.JSONObject;
 public abstract class FHIRObservation implements FHIRBundle {
     //fhir.monash.edu/hapi-fhir-jpaserver/fhir/Observation?patient.identifier=https%3A%2F%2Fgithub.com%2Fsynthetichealth%2Fsynthea%7Ca1efa37b-39ed-4b6d-ac48-d171cc7d1d41&code=http%3A%2F%2Floinc.org%7C2093-3&_sort=-date&_count=1&_format=json
 	public static final String URL_STRING_SECTION_FOR_OBSERVATION = "Observation/";
+	public static final String ELEMENTS_OF_OBSERVATION = "code,subject,effectiveDateTime,valueQuantity,component"; // the elements the app reads from an Observation
 	protected ArrayList<Observation> observations; // A FHIRObservation can have multiple Observation for e.g. FHIRBloodPressure can have Systolic and Diastolic Blood Pressure
 	
 	/**
@@ -46,10 +48,19 @@ public abstract class FHIRObservation implements FHIRBundle {
 	 * @param timeRecorded the time the Observation was recorded
 	 */
 	protected void setObservation(int index, String value, String units, String system, String timeRecorded) {
-		this.observations.get(index).setValue(value);
-		this.observations.get(index).setUnits(units);
-		this.observations.get(index).setSystem(system);
-		this.observations.get(index).setTimeRecorded(timeRecorded);
+		this.observations.get(index).setObservation(value, units, system, timeRecorded);
+	}
+	
+	/**
+	 * Set the Observation at certain index with a value that is already a number, e.g. straight from a FHIRQuantity
+	 * @param index the location of the Observation to be set. e.g. Systolic at 0, Diastolic at 1
+	 * @param value the value of the Observation
+	 * @param units the units for the value
+	 * @param system the system of measurement used
+	 * @param timeRecorded the time the Observation was recorded
+	 */
+	protected void setObservation(int index, double value, String units, String system, String timeRecorded) {
+		this.observations.get(index).setObservation(value, units, system, timeRecorded);
 	}
 	
 	/**
@@ -58,10 +69,16 @@ public abstract class FHIRObservation implements FHIRBundle {
 	 * @return the copy of the Observation found
 	 */
 	protected Observation getObservation(int index){
-		Observation obs = this.observations.get(index);
-		Observation retObs = new Observation(); // create a copy
-		retObs.setObservation(obs.getValue(), obs.getUnits(), obs.getSystem(), obs.getTimeRecorded()); 
-		return retObs;  		
+		return new Observation(this.observations.get(index)); // create a copy
+	}
+	
+	/**
+	 * Get the value of the Observation at a certain index as a number, without copying the Observation
+	 * @param index the index the Observation is located
+	 * @return the value of the Observation, NaN if it is empty
+	 */
+	protected double getNumericValue(int index) {
+		return this.observations.get(index).getNumericValue();
 	}
 
 
@@ -88,6 +105,21 @@ public abstract class FHIRObservation implements FHIRBundle {
 		return true; // return true if all tests passed
 	}
 	
+	/**
+	 * Build the URL String for searching the 'numberToReturn' most recent Observation(s) with the specified loinc code of a patient
+	 * @param code the loinc code of the Observation e.g. http://loinc.org|2093-3
+	 * @param identifierOfPatient the patient's identifier, identifier system and identifier value
+	 * @param numberToReturn the number of Observations to return (count param of FHIR get requests)
+	 * @return the URL String of the search
+	 * @throws UnsupportedEncodingException
+	 */
+	protected static String buildUrlStringForObservationsOfPatient(String code, Tuple<String, String> identifierOfPatient, int numberToReturn) throws UnsupportedEncodingException {
+		return FHIRClient.getBaseUrl() + FHIRObservation.URL_STRING_SECTION_FOR_OBSERVATION 
+				+ "?patient.identifier=" + URLEncoder.encode(identifierOfPatient.first + "|", "UTF-8") + identifierOfPatient.second + "&" + "code=" + URLEncoder.encode(code, "UTF-8") 
+				+ "&" + FHIRClient.SORT_PARAMETER + FHIRClient.DESCENDING_DATE + "&" + FHIRClient.COUNT_PARAMETER + String.valueOf(numberToReturn)
+				+ "&" + FHIRClient.ELEMENTS_PARAMETER + FHIRObservation.ELEMENTS_OF_OBSERVATION + "&" + FHIRClient.JSON_FORMAT;
+	}
+
 	/**
 	 * An abstract method so that all the subclasses will implement their method to getRelatedJSONObject.
 	 * @param identifierOfPatient the patient's identifier, identifier system and identifier value
@@ -98,11 +130,19 @@ public abstract class FHIRObservation implements FHIRBundle {
 	public abstract JSONObject getRelatedJSONObject(Tuple<String, String> identifierOfPatient, int numberToReturn) throws IOException;
 
 	/**
-	 * An abstract method so that all subclasses will implement their method of 
-	 * @param jsonObj the JSONObject obtained from getRelatedJSONObject
-	 * @param i the position of the Observation to be returned. For e.g. i == 0 means the most recent Observation while i == 1 means the 2nd most recent and so on
-	 * @return boolean indicating whether the retrieval failed or succeeded.
-	 * @throws IOException
+	 * An abstract method so that all the subclasses will implement their method to get the first page of the related Bundle,
+	 * read with the streaming FHIRBundleReader.
+	 * @param identifierOfPatient the patient's identifier, identifier system and identifier value
+	 * @param numberToReturn the number of Observations to return (count param of FHIR get requests)
+	 * @return the first page of the Bundle containing the Observations queried
+	 * @throws IOException if the request failed
+	 */
+	public abstract FHIRBundlePage getRelatedBundlePage(Tuple<String, String> identifierOfPatient, int numberToReturn) throws IOException;
+
+	/**
+	 * An abstract method so that all subclasses will implement their method of initializing from an entry of a Bundle page
+	 * @param entry the entry read by the FHIRBundleReader
+	 * @return boolean indicating whether the extraction of data succeeded or failed.
 	 */
-	public abstract boolean retrieveDataFromServerAndInit(JSONObject jsonObj, int i) throws IOException;
+	public abstract boolean retrieveDataFromBundleEntryAndInit(FHIRBundleEntry entry);
 }
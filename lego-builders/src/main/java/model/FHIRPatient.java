@@ -2,6 +2,9 @@ package model;
 
 import java.io.IOException;
 import java.net.URLEncoder;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
@@ -17,11 +20,13 @@ import org.json.JSONObject;
  */
 public class FHIRPatient extends FHIRPerson{
 	public static final String URL_STRING_SECTION_FOR_PATIENT = "Patient/";
+	public static final String ELEMENTS_OF_PATIENT = "identifier,name,gender,birthDate,address"; // the elements the app reads from a Patient
 	private String country;
 	private String state;
 	private String city;
 	private String birthday; 	
 	private String gender;
+	private String resourceId; // the resource id on the server, e.g. 123 in Patient/123, null if not known
 	private FHIRCholesterol cholesterol = null;
 	private FHIRBloodPressure bloodPressure = null;
 	
@@ -69,9 +74,43 @@ public class FHIRPatient extends FHIRPerson{
 	 * @return boolean indicating whether the operation succeeded
 	 */
 	public boolean retrieveDataFromServerAndInitWithLatest(Tuple<String, String> identifierOfPatient) throws IOException {
+			if (!this.retrieveDemographicsFromServerAndInit(identifierOfPatient)) {
+				return false;
+			}
+			FHIRCholesterol latestCholesterolOfPatient = new FHIRCholesterol(); // create a new FHIRCholesterol object
+			FHIRBloodPressure latestBloodPressureOfPatient = new FHIRBloodPressure();
+			if (latestCholesterolOfPatient.retrieveDataFromServerAndInitWithLatest(identifierOfPatient)) { // retrieve the latest FHIRCholesterol data and populate the new FHIRCholesterol object
+				this.setCholesterol(latestCholesterolOfPatient); // set the FHIRCholesterol of the patient
+			}
+			if (latestBloodPressureOfPatient.retrieveDataFromServerAndInitWithLatest(identifierOfPatient)) { // retrieve the latest FHIRBloodPressure data and populate the new FHIRBloodPressure object
+				this.setBloodPressure(latestBloodPressureOfPatient); // set the FHIRBloodPressure of the patient
+			}
+		return true;
+	}
+	
+	/**
+	 * Retrieve only the demographics (name, gender, birthday and address) for a patient with the specified identifier
+	 * and populate the FHIRPatient object with the data retrieved. The Observations of the patient are left untouched
+	 * so that they can be retrieved for many patients at once, see ObservationBatchRetriever.
+	 * Return true if operation succeeded, otherwise return false;
+	 * @param identifierOfPatient the identifier of a patient
+	 * @return boolean indicating whether the operation succeeded
+	 */
+	public boolean retrieveDemographicsFromServerAndInit(Tuple<String, String> identifierOfPatient) throws IOException {
+		return this.retrieveDemographicsFromServerAndInit(identifierOfPatient, false);
+	}
+
+	/**
+	 * Retrieve only the demographics for a patient with the specified identifier, see retrieveDemographicsFromServerAndInit.
+	 * @param identifierOfPatient the identifier of a patient
+	 * @param bypassCache true if the demographics must be what the server has now, e.g. during a refresh
+	 * @return boolean indicating whether the operation succeeded
+	 */
+	public boolean retrieveDemographicsFromServerAndInit(Tuple<String, String> identifierOfPatient, boolean bypassCache) throws IOException {
 		// build the URL String for the page of getting the latest data of a certain Patient and get the JSONObject for the url
-		JSONObject patientPageJSONObject = FHIRClient.getJSONObjectUsingGETRequest(FHIRClient.BASE_URL + FHIRPatient.URL_STRING_SECTION_FOR_PATIENT 
-							+ "?identifier=" + URLEncoder.encode(identifierOfPatient.first + "|", "UTF-8") + identifierOfPatient.second + "&" + FHIRClient.JSON_FORMAT); //FHIR CLIENT NOT USED HERE, USED BY SUPERCLASS
+		JSONObject patientPageJSONObject = FHIRClient.getJSONObjectUsingGETRequest(FHIRClient.getBaseUrl() + FHIRPatient.URL_STRING_SECTION_FOR_PATIENT 
+							+ "?identifier=" + URLEncoder.encode(identifierOfPatient.first + "|", "UTF-8") + identifierOfPatient.second
+							+ "&" + FHIRClient.ELEMENTS_PARAMETER + FHIRPatient.ELEMENTS_OF_PATIENT + "&" + FHIRClient.JSON_FORMAT, bypassCache); //FHIR CLIENT NOT USED HERE, USED BY SUPERCLASS
 			
 			
 			// if it was null, return false cause data retrieval has failed
@@ -92,14 +131,29 @@ public class FHIRPatient extends FHIRPerson{
 			this.city = address.getJSONObject(0).getString("city"); // get the city of the patient and set it
 			this.country = address.getJSONObject(0).getString("country"); // get the country of the patient and set it
 			this.state = address.getJSONObject(0).getString("state"); // get the state of the patient and set it
-			FHIRCholesterol latestCholesterolOfPatient = new FHIRCholesterol(); // create a new FHIRCholesterol object
-			FHIRBloodPressure latestBloodPressureOfPatient = new FHIRBloodPressure();
-			if (latestCholesterolOfPatient.retrieveDataFromServerAndInitWithLatest(identifierOfPatient)) { // retrieve the latest FHIRCholesterol data and populate the new FHIRCholesterol object
-				this.setCholesterol(latestCholesterolOfPatient); // set the FHIRCholesterol of the patient
-			}
-			if (latestBloodPressureOfPatient.retrieveDataFromServerAndInitWithLatest(identifierOfPatient)) { // retrieve the latest FHIRBloodPressure data and populate the new FHIRBloodPressure object
-				this.setBloodPressure(latestBloodPressureOfPatient); // set the FHIRBloodPressure of the patient
-			}
+		return true;
+	}
+
+	/**
+	 * Populate the identifier, resource id and demographics of the FHIRPatient object from a Patient entry of a Bundle
+	 * e.g. a Patient included in a search with _include=Encounter:subject, without going to the server.
+	 * Return true if operation succeeded, otherwise return false;
+	 * @param entry the Patient entry of a Bundle
+	 * @return boolean indicating whether the operation succeeded
+	 */
+	public boolean retrieveDemographicsFromBundleEntryAndInit(FHIRBundleEntry entry) {
+		if (!"Patient".equals(entry.getResourceType()) || entry.getIdentifier() == null || entry.getFamilyName() == null || entry.getGivenName() == null) {
+			return false;
+		}
+		this.setIdentifier(entry.getIdentifier());
+		this.resourceId = entry.getResourceId();
+		this.setFamilyName(entry.getFamilyName());
+		this.setGivenName(entry.getGivenName());
+		this.gender = entry.getGender();
+		this.birthday = entry.getBirthDate();
+		this.city = entry.getCity();
+		this.country = entry.getCountry();
+		this.state = entry.getState();
 		return true;
 	}
 	
@@ -231,17 +285,69 @@ public class FHIRPatient extends FHIRPerson{
 	 * @return the identifier of the patient in Tuple<String, String> format
 	 */
 	public Tuple<String, String> retrieveIdentifierFromServer(String anyResourceId){
-		JSONObject jsonObject = super.getJSONObjectRelatedToResourceAndSetIdentifier(FHIRClient.BASE_URL + FHIRPatient.URL_STRING_SECTION_FOR_PATIENT + anyResourceId + "?" + FHIRClient.JSON_FORMAT); //FHIR CLIENT NOT USED HERE, USED BY SUPERCLASS
+		JSONObject jsonObject = super.getJSONObjectRelatedToResourceAndSetIdentifier(FHIRClient.getBaseUrl() + FHIRPatient.URL_STRING_SECTION_FOR_PATIENT + anyResourceId
+				+ "?" + FHIRClient.ELEMENTS_PARAMETER + "identifier" + "&" + FHIRClient.JSON_FORMAT); //FHIR CLIENT NOT USED HERE, USED BY SUPERCLASS
 
 		if (jsonObject == null) {
 			return null;
 		}
 		else {
+			this.resourceId = anyResourceId;
 			return this.getIdentifier();
 		}
 		
 	}
 	
+	/**
+	 * Get the resource id of the patient on the server
+	 * @return the resource id of the patient, e.g. 123 in Patient/123, or null if not known
+	 */
+	public String getResourceId() {
+		return resourceId;
+	}
+
+	/**
+	 * Set the resource id of the patient on the server
+	 * @param resourceId the resource id of the patient, e.g. 123 in Patient/123
+	 */
+	public void setResourceId(String resourceId) {
+		this.resourceId = resourceId;
+	}
+	
+	/**
+	 * Out of the specified patients, find the ones whose Patient resource was updated on the server after lastUpdatedSince.
+	 * The patients are searched in groups, and the first page of every search is a conditional request of the syncState,
+	 * none of the pages is answered from a cache.
+	 * @param identifiersOfPatients the identifiers of the patients
+	 * @param lastUpdatedSince ISO-8601 instant
+	 * @param syncState the SyncState of the refresh the searches are part of
+	 * @return the identifiers of the patients that were updated
+	 * @throws IOException if any of the searches failed
+	 */
+	public static HashSet<Tuple<String, String>> retrieveIdentifiersOfPatientsUpdatedSince(Collection<Tuple<String, String>> identifiersOfPatients,
+			String lastUpdatedSince, SyncState syncState) throws IOException {
+		HashSet<Tuple<String, String>> updatedPatients = new HashSet<Tuple<String, String>>();
+		FHIRClientConfig config = FHIRClient.getConfig();
+		for (List<Tuple<String, String>> group: ObservationBatchRetriever.partition(identifiersOfPatients, config.getPatientsPerSearch())) {
+			String urlString = config.getBaseUrl() + FHIRPatient.URL_STRING_SECTION_FOR_PATIENT + "?identifier=" + ObservationBatchRetriever.joinIdentifiers(group)
+					+ "&" + FHIRClient.LAST_UPDATED_AFTER_PARAMETER + lastUpdatedSince + "&" + FHIRClient.COUNT_PARAMETER + config.getPageSize()
+					+ "&" + FHIRClient.ELEMENTS_PARAMETER + "identifier" + "&" + FHIRClient.JSON_FORMAT; // only which patients changed is needed
+			FHIRBundlePage page = FHIRClient.getBundlePageUsingGETRequest(urlString, syncState);
+			while (true) {
+				for (FHIRBundleEntry entry: page.getEntries()) {
+					if (entry.getIdentifier() != null) {
+						updatedPatients.add(entry.getIdentifier());
+					}
+				}
+				if (!page.hasNextPage()) {
+					break;
+				}
+				page = FHIRClient.getBundlePageUsingGETRequest(page.getNextUrl(), true);
+			}
+		}
+		return updatedPatients;
+	}
+	
 	/**
 	 * Retrieve the data for a patient given a patient's resource id.
 	 * and populate the FHIRPatient object with the data retrieved.
@@ -309,6 +415,13 @@ public class FHIRPatient extends FHIRPerson{
 		} else if (!birthday.equals(other.birthday)) { // if this.birthday not same as other.birthday
 			return false;
 		}
+		if (bloodPressure == null) { // if this.bloodPressure is null but other.bloodPressure is not null
+			if (other.bloodPressure != null) {
+				return false;
+			}
+		} else if (!bloodPressure.equals(other.bloodPressure)) { // if this.bloodPressure not same as other.bloodPressure
+			return false;
+		}
 		if (cholesterol == null) { // if this.cholesterol is null but other.cholesterol is not null
 			if (other.cholesterol != null) {
 				return false;
@@ -177,6 +177,9 @@ public abstract class FHIRPerson implements FHIRBundle {
 		} catch (IOException e) {
 			return null;
 		} 
+		if (jsonObject == null) { // if the GET request failed
+			return null;
+		}
 
 		// set the identifier of the FHIRPerson.
 		JSONArray identifierID=jsonObject.getJSONArray("identifier");
@@ -3,11 +3,17 @@ package model;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
 
+import observerpattern.MapObserver;
 import observerpattern.ObservableHashMap;
 import observerpattern.Observer;
 
@@ -22,6 +28,13 @@ import observerpattern.Observer;
 public class FHIRPractitioner extends FHIRPerson {
 	public static final String URL_STRING_SECTION_FOR_PRACTITIONER = "Practitioner/";	
 	private ObservableHashMap<Tuple<String, String>, FHIRPatient> patients = new ObservableHashMap<Tuple<String, String>, FHIRPatient>();
+	private int hydrationConcurrency = FHIRClient.getConfig().getConcurrency(); // the number of patients retrieved from the server at the same time
+	private final SyncState syncState = new SyncState(); // what has already been retrieved, so a refresh only asks for what changed
+	private Tuple<String, String> syncedIdentifier = null; // the practitioner whose patients the syncState belongs to
+	private boolean incrementalRefresh = true; // whether a refresh only retrieves what changed since the last refresh
+	private PatientStore patientStore = null; // where the patients are kept between launches, null to not keep them
+	private volatile PatientRegistry patientRegistry = PatientRegistry.getShared(); // shares the retrieved patients with the other practitioners, null to not share them
+	private final HashSet<Tuple<String, String>> subscribedPatients = new HashSet<Tuple<String, String>>(); // the patients subscribed to in the registry
 	
 	
 	/**
@@ -37,6 +50,13 @@ public class FHIRPractitioner extends FHIRPerson {
 	public boolean retrieveDataFromServerAndInitWithLatest(String practitionerResourceID) {
 
 		Boolean booleanFlag1 = this.retrievePractitionerDataFromServerAndInitWithLatest(practitionerResourceID); // get practitioner's basic details (RENAME)
+		if (booleanFlag1 && patientStore != null) {
+			try {
+				patientStore.savePractitioner(this);
+			} catch (IOException e) {
+				e.printStackTrace(); // the store is only a head start for the next launch, the app carries on without it
+			}
+		}
 		Boolean booleanFlag2 = false;
 		try {
 			booleanFlag2 = this.retrievePatientsOfPractitionerDataFromServerAndInitWithLatest(this.getIdentifier()); // get all the patients of the practitioner
@@ -51,7 +71,8 @@ public class FHIRPractitioner extends FHIRPerson {
 	// get Practitioner's data like practitioner's name and etc. and init the practitioner object with these data
 	private boolean retrievePractitionerDataFromServerAndInitWithLatest(String anyResourceId) {
 		// set identifier of FHIRPractitioner and get the jsonObject related to the resource id.
-		JSONObject jsonObject = super.getJSONObjectRelatedToResourceAndSetIdentifier(FHIRClient.BASE_URL + FHIRPractitioner.URL_STRING_SECTION_FOR_PRACTITIONER + anyResourceId + "?" + FHIRClient.JSON_FORMAT); 
+		JSONObject jsonObject = super.getJSONObjectRelatedToResourceAndSetIdentifier(FHIRClient.getBaseUrl() + FHIRPractitioner.URL_STRING_SECTION_FOR_PRACTITIONER + anyResourceId
+				+ "?" + FHIRClient.ELEMENTS_PARAMETER + "identifier,name" + "&" + FHIRClient.JSON_FORMAT);
 		
 		if (jsonObject == null) { // if it the jsonObject was null (failed to get)
 			return false;
@@ -97,6 +118,14 @@ public class FHIRPractitioner extends FHIRPerson {
 		patients.attach(observer);
 	}
 	
+	/**
+	 * Add MapObservers for the ObservableHashMap of the practitioner, they are told which patients were added, removed or changed.
+	 * @param mapObserver Any MapObservers
+	 */
+	public void addMapObserversForTheObservableHashMapOfPractitioner(MapObserver<Tuple<String, String>, FHIRPatient> mapObserver) {
+		patients.attachMapObserver(mapObserver);
+	}
+	
 	/**
 	 * Given a practitioner identifier, retrieve the data for the patients of practitioner
 	 * @param pracIdentifier the identifier of the practitioner
@@ -104,82 +133,358 @@ public class FHIRPractitioner extends FHIRPerson {
 	 * @throws IOException
 	 */
 	// patients are part of a practitioner's data. But getting patients is a big thing, it is not piled together with obtaining practitioner's data through retrievePractitionerDataFromServerAndInit
-	private boolean retrievePatientsOfPractitionerDataFromServerAndInitWithLatest(Tuple<String, String> pracIdentifier) throws IOException {
+	// synchronized because the refresh timer and the reconciliation after a warm start may both refresh the practitioner
+	private synchronized boolean retrievePatientsOfPractitionerDataFromServerAndInitWithLatest(Tuple<String, String> pracIdentifier) throws IOException {
+		// the identifier may already have been changed by the retrieval of the practitioner, so compare with the one that was synced
+		boolean samePractitioner = pracIdentifier.equals(syncedIdentifier);
 		this.setIdentifier(pracIdentifier); // set the identifier of the FHIRPractitioner
 		
-		// Construct the urlString for page of getting the patient data of the practitioner
-		String urlString=FHIRClient.BASE_URL + "Encounter?practitioner.identifier=" +
+		// Construct the urlString for page of getting the patient data of the practitioner, the Patients are included in the same pages
+		String urlString=FHIRClient.getBaseUrl() + "Encounter?practitioner.identifier=" +
 						URLEncoder.encode((this.getIdentifierSystem() + "|"), "UTF-8") + 
-						this.getIdentifierValue() + "&" + FHIRClient.JSON_FORMAT;
+						this.getIdentifierValue() + "&_include=Encounter:subject" + 
+						"&" + FHIRClient.ELEMENTS_PARAMETER + "subject," + FHIRPatient.ELEMENTS_OF_PATIENT + "&" + FHIRClient.JSON_FORMAT; // _elements applies to the included Patients too
+		
+		// after the first full retrieval, only ask the server for what changed since then
+		if (incrementalRefresh && samePractitioner && syncState.hasHighWaterMark() && !patients.isEmpty()) {
+			return this.refreshPatientsOfPractitionerChangedSinceHighWaterMark(urlString);
+		}
 		
-		JSONObject jsonObject = FHIRClient.getJSONObjectUsingGETRequest(urlString); // get the JSONObject for the url above
-		if (jsonObject == null) { // if it was null, return false cause data retrieval has failed
+		syncState.reset();
+		syncedIdentifier = pracIdentifier;
+		syncState.beginRound();
+		FHIRBundlePage page = FHIRClient.getBundlePageUsingGETRequest(urlString, syncState); // get the first page of Encounters for the url above
+		//  create a patientsHashMap the resource ids of the patients, alot of duplicates, use HashMap to reduce access to the server unnecessarily
+		ArrayList<FHIRBundleEntry> includedPatients = new ArrayList<FHIRBundleEntry>();
+		HashMap<String, String> patientsHashMap = FHIRPractitioner.collectSubjectsOfEncounters(page, includedPatients);
+		// retrieve the data of each of the unique patients from the server, many patients at a time, and then put them into the patients under the Practitioner.
+		// the patients retrieved recently for another practitioner are not retrieved again, the included ones only need their Observations
+		PatientHydrator hydrator = new PatientHydrator(this.hydrationConcurrency, includedPatients);
+		hydrator.setBypassCache(true); // the round commits the start of the retrieval, so nothing older may come from a cache
+		PatientRegistry registry = patientRegistry;
+		HashMap<Tuple<String, String>, FHIRPatient> backEndHashMap = (registry == null) ? hydrator.hydrate(patientsHashMap.values()) : registry.hydrate(patientsHashMap.values(), hydrator);
+		if (backEndHashMap == null) {
 			return false;
 		}
+		Set<Tuple<String, String>> departedPatients = this.departedPatients(patientsHashMap.keySet(), backEndHashMap);
+		patients.putAllThenNotify(backEndHashMap, departedPatients); // only notify once after removing and putting every thing.
+		this.retainInPatientStore();
+		this.updateSubscriptions();
+		this.saveToPatientStore(backEndHashMap);
+		syncState.commitRound(); // everything up to the start of this retrieval is now known
+		
+		return true;
 
-		int loopCounter=0; 
-		boolean loopFlag=true;
-		//  create a patientsHashMap the resource ids of the patients, alot of duplicates, use HashMap to reduce access to the server unnecessarily
+		
+	}
+	
+	/**
+	 * Refresh the patients of the practitioner by only retrieving what changed on the server since the high-water mark:
+	 * new Encounters (which may bring new patients), updated Patients and new Observations of the known patients.
+	 * Only the patients that are new or changed are retrieved again, every other patient is left as is.
+	 * @param encounterUrlString the url of the search for the Encounters of the practitioner
+	 * @return boolean indicating whether the operation succeeded.
+	 * @throws IOException
+	 */
+	private boolean refreshPatientsOfPractitionerChangedSinceHighWaterMark(String encounterUrlString) throws IOException {
+		String lastUpdatedSince = syncState.getHighWaterMark();
+		syncState.beginRound();
+		long roundStartedAt = System.currentTimeMillis(); // a patient retrieved since then has every change found by this round
+		
+		// new Encounters, the resource ids of their patients which aren't known yet
+		FHIRBundlePage page = FHIRClient.getBundlePageUsingGETRequest(encounterUrlString + "&" + FHIRClient.LAST_UPDATED_AFTER_PARAMETER + lastUpdatedSince, syncState);
+		ArrayList<FHIRBundleEntry> includedPatients = new ArrayList<FHIRBundleEntry>();
+		HashMap<String, String> subjectsOfNewEncounters = FHIRPractitioner.collectSubjectsOfEncounters(page, includedPatients);
+		boolean hasChanges = !subjectsOfNewEncounters.isEmpty();
+		HashSet<String> knownResourceIds = new HashSet<String>();
+		for (FHIRPatient patient: patients.values()) {
+			knownResourceIds.add(patient.getResourceId());
+		}
+		subjectsOfNewEncounters.keySet().removeAll(knownResourceIds);
+		
+		// known patients whose Patient resource was updated or who have new Observations
+		HashSet<Tuple<String, String>> knownIdentifiers = new HashSet<Tuple<String, String>>(patients.keySet());
+		HashSet<Tuple<String, String>> changedIdentifiers = FHIRPatient.retrieveIdentifiersOfPatientsUpdatedSince(knownIdentifiers, lastUpdatedSince, syncState);
+		ObservationBatchRetriever batchRetriever = new ObservationBatchRetriever(FHIRClient.getConfig().getPatientsPerSearch(), hydrationConcurrency);
+		changedIdentifiers.addAll(batchRetriever.retrieveLatestEntries(knownIdentifiers, FHIRCholesterol.CODE, lastUpdatedSince, syncState).keySet());
+		changedIdentifiers.addAll(batchRetriever.retrieveLatestEntries(knownIdentifiers, FHIRBloodPressure.CODE, lastUpdatedSince, syncState).keySet());
+		hasChanges = hasChanges || !changedIdentifiers.isEmpty();
+		
+		if (!hasChanges) { // nothing changed, keep the high-water mark so the same requests can be answered with 304 next time
+			return true;
+		}
+		
+		PatientHydrator hydrator = new PatientHydrator(this.hydrationConcurrency, includedPatients);
+		hydrator.setBypassCache(true); // a cached response could be older than the changes found above
+		PatientRegistry registry = patientRegistry;
+		HashMap<Tuple<String, String>, FHIRPatient> backEndHashMap = (registry == null) ? hydrator.hydrate(subjectsOfNewEncounters.values()) : registry.hydrate(subjectsOfNewEncounters.values(), hydrator);
+		if (backEndHashMap == null) {
+			return false;
+		}
+		// retrieve the changed patients again into new objects, the old objects might still be displayed
+		HashMap<Tuple<String, String>, FHIRPatient> changedPatients = new HashMap<Tuple<String, String>, FHIRPatient>();
+		for (Tuple<String, String> identifier: changedIdentifiers) {
+			if (!backEndHashMap.containsKey(identifier)) {
+				FHIRPatient changedPatient = new FHIRPatient();
+				changedPatient.setIdentifier(identifier);
+				changedPatient.setResourceId(patients.get(identifier).getResourceId());
+				changedPatients.put(identifier, changedPatient);
+			}
+		}
+		if (registry == null) {
+			changedPatients = hydrator.hydrateIdentifiedPatients(changedPatients);
+		}
+		else { // another practitioner may have retrieved them again since this round started
+			changedPatients = registry.hydrateIdentifiedPatients(changedPatients, hydrator, roundStartedAt);
+		}
+		if (changedPatients == null) {
+			return false;
+		}
+		backEndHashMap.putAll(changedPatients);
+		patients.putAllThenNotify(backEndHashMap); // only notify once after putting every thing.
+		this.updateSubscriptions();
+		this.saveToPatientStore(backEndHashMap);
+		syncState.commitRound();
+		
+		return true;
+	}
+	
+	/**
+	 * Restore the practitioner and its patients from the PatientStore, without going to the server,
+	 * so they can be shown straight away while the latest data is retrieved in the background.
+	 * @return true if the store had the practitioner, otherwise false
+	 */
+	public boolean restoreFromPatientStore() {
+		if (patientStore == null) {
+			return false;
+		}
+		FHIRPractitioner storedPractitioner = patientStore.loadPractitioner();
+		if (storedPractitioner == null) {
+			return false;
+		}
+		this.setGivenName(storedPractitioner.getGivenName());
+		this.setFamilyName(storedPractitioner.getFamilyName());
+		this.setIdentifier(storedPractitioner.getIdentifier());
+		patients.putAllThenNotify(patientStore.loadPatients());
+		this.updateSubscriptions();
+		return true;
+	}
+	
+	/**
+	 * Subscribe to the patients of the practitioner in the registry that are not subscribed to yet, and unsubscribe from
+	 * the patients that are no longer patients of the practitioner
+	 */
+	private void updateSubscriptions() {
+		synchronized (subscribedPatients) {
+			if (patientRegistry == null) {
+				return;
+			}
+			Set<Tuple<String, String>> currentPatients = patients.keySet();
+			for (Iterator<Tuple<String, String>> subscribed = subscribedPatients.iterator(); subscribed.hasNext();) {
+				Tuple<String, String> identifierOfPatient = subscribed.next();
+				if (!currentPatients.contains(identifierOfPatient)) {
+					subscribed.remove();
+					patientRegistry.unsubscribe(identifierOfPatient);
+				}
+			}
+			for (Tuple<String, String> identifierOfPatient: currentPatients) {
+				if (subscribedPatients.add(identifierOfPatient)) {
+					patientRegistry.subscribe(identifierOfPatient);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Find the patients that left the practitioner, i.e. the known patients that are no longer the subject of any of
+	 * the practitioner's Encounters. A patient that is still a subject but could not be retrieved this time is kept.
+	 * @param subjectResourceIds the resource ids of the subjects of all the Encounters of the practitioner
+	 * @param retrievedPatients the patients that were retrieved
+	 * @return the identifiers of the patients that left
+	 */
+	private Set<Tuple<String, String>> departedPatients(Set<String> subjectResourceIds, HashMap<Tuple<String, String>, FHIRPatient> retrievedPatients) {
+		HashSet<Tuple<String, String>> departedPatients = new HashSet<Tuple<String, String>>();
+		for (Map.Entry<Tuple<String, String>, FHIRPatient> patient: patients.unmodifiableView().entrySet()) {
+			if (!retrievedPatients.containsKey(patient.getKey()) && !subjectResourceIds.contains(patient.getValue().getResourceId())) {
+				departedPatients.add(patient.getKey());
+			}
+		}
+		return departedPatients;
+	}
+
+	/**
+	 * Drop the patients that are no longer patients of the practitioner from the PatientStore, if there is one
+	 */
+	private void retainInPatientStore() {
+		if (patientStore == null) {
+			return;
+		}
+		try {
+			patientStore.retainPatients(patients.keySet());
+		} catch (IOException e) {
+			e.printStackTrace(); // the store is only a head start for the next launch, the app carries on without it
+		}
+	}
+
+	/**
+	 * Save the patients that were retrieved into the PatientStore, if there is one
+	 */
+	private void saveToPatientStore(HashMap<Tuple<String, String>, FHIRPatient> retrievedPatients) {
+		if (patientStore == null) {
+			return;
+		}
+		try {
+			patientStore.savePatients(retrievedPatients);
+		} catch (IOException e) {
+			e.printStackTrace(); // the store is only a head start for the next launch, the app carries on without it
+		}
+	}
+	
+	/**
+	 * Get the store where the patients are kept between launches
+	 * @return the PatientStore of the practitioner, or null if the patients are not kept
+	 */
+	public PatientStore getPatientStore() {
+		return patientStore;
+	}
+
+	/**
+	 * Set the store where the patients are kept between launches
+	 * @param patientStore the PatientStore of the practitioner, or null to not keep the patients
+	 */
+	public void setPatientStore(PatientStore patientStore) {
+		this.patientStore = patientStore;
+	}
+	
+	/**
+	 * Walk the pages of an Encounter search and collect the resource ids of the subjects of the Encounters
+	 * @param page the first page of the search
+	 * @param includedPatients the Patients included in the pages of the search are added to it
+	 * @return the resource ids of the patients (keyed by themselves to remove duplicates)
+	 * @throws IOException if any page could not be retrieved
+	 */
+	private static HashMap<String, String> collectSubjectsOfEncounters(FHIRBundlePage page, ArrayList<FHIRBundleEntry> includedPatients) throws IOException {
 		HashMap<String, String> patientsHashMap = new HashMap<String, String>();
-		while (loopFlag) { // while last page not reached
-			JSONArray entryID = jsonObject.getJSONArray("entry");
-			int entryIDLength = entryID.length();
-			
-			
-			while (loopCounter < entryIDLength) { // for each entry on the page, put it in the HashMap to remove duplicates
-				JSONObject subject = entryID.getJSONObject(loopCounter).getJSONObject("resource").getJSONObject("subject");
-				String subjectReference = subject.getString("reference");
+		while (page != null) { // while last page not reached
+			for (FHIRBundleEntry entry: page.getEntries()) { // for each entry on the page, put it in the HashMap to remove duplicates
+				if ("Patient".equals(entry.getResourceType())) { // included by _include=Encounter:subject
+					includedPatients.add(entry);
+					continue;
+				}
+				String subjectReference = entry.getSubjectReference();
+				if (subjectReference == null) { // Encounter without a subject
+					continue;
+				}
 				String subjectID = subjectReference.substring(8); // 8 character offset for Patient/
 				patientsHashMap.put(subjectID, subjectID);
-				loopCounter++;
-				
 			}
-			loopCounter=0;
-			JSONArray linkID= jsonObject.getJSONArray("link");
-			if(linkID.getJSONObject(1).getString("relation").equalsIgnoreCase("next")) // if has next Page
-			{
-				urlString=linkID.getJSONObject(1).getString("url");
-				try {
-					jsonObject = FHIRClient.getJSONObjectUsingGETRequest(urlString);
-				} catch (IOException e) {
-					e.printStackTrace();
-					return false;
-				}
+			if (page.hasNextPage()) { // if has next Page
+				page = FHIRClient.getBundlePageUsingGETRequest(page.getNextUrl(), true); // part of a refresh like the first page
 			}
 			else { // no more next page
-				loopFlag=false;
+				page = null;
 			}
 		}
-		// create another HashMap: backEndHashMap to retrieve only patients that are unique (different identifiers)
-		HashMap<Tuple<String, String>, FHIRPatient> backEndHashMap = new HashMap<Tuple<String, String>, FHIRPatient>();
-		for(String uniquePatientID: patientsHashMap.values()){
-			FHIRPatient p = new FHIRPatient();
-			Tuple<String, String> identifierOfP = p.retrieveIdentifierFromServer(uniquePatientID); // NOT FULL YET
-			
-			backEndHashMap.put(identifierOfP, p);
+		return patientsHashMap;
+	}
+
+	/**
+	 * Get the registry that shares the retrieved patients with the other practitioners
+	 * @return the PatientRegistry of the practitioner, or null if the patients are not shared
+	 */
+	public PatientRegistry getPatientRegistry() {
+		return patientRegistry;
+	}
+
+	/**
+	 * Set the registry that shares the retrieved patients with the other practitioners, the patients of the practitioner
+	 * are unsubscribed from the previous registry and subscribed to the new one
+	 * @param patientRegistry the PatientRegistry of the practitioner, or null to not share the patients
+	 */
+	public void setPatientRegistry(PatientRegistry patientRegistry) {
+		synchronized (subscribedPatients) {
+			if (this.patientRegistry != null) {
+				for (Tuple<String, String> identifierOfPatient: subscribedPatients) {
+					this.patientRegistry.unsubscribe(identifierOfPatient);
+				}
+			}
+			subscribedPatients.clear();
+			this.patientRegistry = patientRegistry;
 		}
-		// for each of the unique patients, retrieve the data of the patient from the server and then put it into the patients under the Practitioner
-		for(HashMap.Entry<Tuple<String, String>, FHIRPatient> entry : backEndHashMap.entrySet()) {
-		    Tuple<String, String> key = entry.getKey();
-		    FHIRPatient patient = entry.getValue();
-		    
-		    if (!patient.retrieveDataFromServerAndInitWithLatest(key)) {
-		    	return false;
-		    }
+		this.updateSubscriptions();
+	}
+
+	/**
+	 * Check whether a refresh only retrieves what changed on the server since the last refresh
+	 * @return true if refreshes are incremental, otherwise false
+	 */
+	public boolean isIncrementalRefresh() {
+		return incrementalRefresh;
+	}
+
+	/**
+	 * Set whether a refresh only retrieves what changed on the server since the last refresh.
+	 * If false, every refresh retrieves all the patients of the practitioner again.
+	 * @param incrementalRefresh true for incremental refreshes, otherwise false
+	 */
+	public void setIncrementalRefresh(boolean incrementalRefresh) {
+		this.incrementalRefresh = incrementalRefresh;
+	}
+
+	/**
+	 * Get the maximum number of patients that are retrieved from the server at the same time
+	 * @return the concurrency limit used when retrieving the patients of the practitioner
+	 */
+	public int getHydrationConcurrency() {
+		return hydrationConcurrency;
+	}
+
+	/**
+	 * Set the maximum number of patients that are retrieved from the server at the same time
+	 * @param hydrationConcurrency the concurrency limit used when retrieving the patients of the practitioner
+	 */
+	public void setHydrationConcurrency(int hydrationConcurrency) {
+		if (hydrationConcurrency < 1) {
+			throw new IllegalArgumentException("Concurrency must be a positive integer");
 		}
-		patients.putAllThenNotify(backEndHashMap); // only notify once after putting every thing.
-		
-		return true;
+		this.hydrationConcurrency = hydrationConcurrency;
+	}
 
-		
+	/**
+	 * Get the patients of the practitioner, a read-only view is returned cause we don't want to permit mutations.
+	 * The view is not a copy, it follows the refreshes of the practitioner; observers should rather patch what a
+	 * MapChangeEvent tells them changed.
+	 * @return an unmodifiable view of the patients of the practitioner
+	 */
+	public Map<Tuple<String, String>, FHIRPatient> getPatients() {
+		return this.patients.unmodifiableView();
+	}
+
+	/**
+	 * Get a patient of the practitioner, without copying the patients
+	 * @param identifierOfPatient the patient's identifier
+	 * @return the patient, or null if it is not a patient of the practitioner
+	 */
+	public FHIRPatient getPatient(Tuple<String, String> identifierOfPatient) {
+		return this.patients.get(identifierOfPatient);
+	}
+
+	/**
+	 * Check whether a patient is a patient of the practitioner, without copying the patients
+	 * @param identifierOfPatient the patient's identifier
+	 * @return true if it is a patient of the practitioner, otherwise false
+	 */
+	public boolean containsPatient(Tuple<String, String> identifierOfPatient) {
+		return this.patients.containsKey(identifierOfPatient);
 	}
 
 	/**
-	 * Get the patients of the practitioner, a copy is returned cause we don't want to permit mutations
-	 * @return
+	 * Get a copy of the patients of the practitioner that no refresh changes, for when every patient has to be
+	 * looked at in the same state e.g. to start an AlertEngine
+	 * @return a copy of the patients of the practitioner, consistent with every refresh
 	 */
-	public ObservableHashMap<Tuple<String, String>, FHIRPatient> getPatients() {
-		return new ObservableHashMap<Tuple<String, String>, FHIRPatient>(this.patients);
+	public HashMap<Tuple<String, String>, FHIRPatient> getPatientsSnapshot() {
+		return this.patients.snapshot();
 	}
 
 	/**
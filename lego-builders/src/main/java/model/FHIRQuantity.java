@@ -0,0 +1,52 @@
+package model;
+
+/**
+ * Class which is a FHIR Quantity i.e. the valueQuantity of an Observation (or of a component of an Observation).
+ * It has the value, the units of the value and the system of measurement used.
+ *
+ */
+public class FHIRQuantity {
+	private final double value;
+	private final String unit;
+	private final String system;
+	
+	/**
+	 * Constructor of FHIRQuantity
+	 * @param value the value of the quantity
+	 * @param unit the units of the value
+	 * @param system the system of measurement used
+	 */
+	public FHIRQuantity(double value, String unit, String system) {
+		this.value = value;
+		this.unit = unit;
+		this.system = system;
+	}
+
+	/**
+	 * Get the value of the quantity
+	 * @return the value of the quantity
+	 */
+	public double getValue() {
+		return value;
+	}
+
+	/**
+	 * Get the units of the value
+	 * @return the units of the value
+	 */
+	public String getUnit() {
+		return unit;
+	}
+
+	/**
+	 * Get the system of measurement used
+	 * @return the system of measurement used
+	 */
+	public String getSystem() {
+		return system;
+	}
+	
+	public String toString() {
+		return "[" + "value = " + this.value + ", unit = " + this.unit + ", system = " + this.system + "]";
+	}
+}
@@ -0,0 +1,41 @@
+package model;
+
+import java.io.IOException;
+
+/**
+ * Class which is the IOException thrown when the FHIR server answers a request with a status the app can't use,
+ * e.g. a 404 for an unknown resource or a 500, so the caller can tell what the server said.
+ *
+ */
+public class FHIRRequestException extends IOException {
+	private static final long serialVersionUID = 1L;
+	private final int statusCode;
+	private final String urlString;
+
+	/**
+	 * Constructor of FHIRRequestException
+	 * @param statusCode the HTTP status code of the response
+	 * @param urlString the URL of the request
+	 */
+	public FHIRRequestException(int statusCode, String urlString) {
+		super("GET " + urlString + " failed with HTTP status " + statusCode);
+		this.statusCode = statusCode;
+		this.urlString = urlString;
+	}
+
+	/**
+	 * Get the HTTP status code the server answered with
+	 * @return the HTTP status code of the response
+	 */
+	public int getStatusCode() {
+		return statusCode;
+	}
+
+	/**
+	 * Get the URL of the request that failed
+	 * @return the URL of the request
+	 */
+	public String getUrlString() {
+		return urlString;
+	}
+}
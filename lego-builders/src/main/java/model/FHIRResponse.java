@@ -0,0 +1,83 @@
+package model;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Class which is the response of a FHIRTransport to a GET request. It has the status code, the headers and the
+ * (already decompressed) body of the response. The body is a stream so it can be read as the bytes arrive, hence
+ * the response must be closed once it has been read so that the connection can be reused.
+ *
+ */
+public class FHIRResponse implements Closeable {
+	private final int statusCode;
+	private final Map<String, List<String>> headers; // header names are case insensitive
+	private final InputStream body;
+	
+	/**
+	 * Constructor of FHIRResponse
+	 * @param statusCode the HTTP status code of the response
+	 * @param headers the headers of the response
+	 * @param body the decompressed body of the response
+	 */
+	public FHIRResponse(int statusCode, Map<String, List<String>> headers, InputStream body) {
+		this.statusCode = statusCode;
+		this.headers = new TreeMap<String, List<String>>(String.CASE_INSENSITIVE_ORDER);
+		for (Map.Entry<String, List<String>> header: headers.entrySet()) {
+			if (header.getKey() != null) { // HttpURLConnection puts the status line under the null key
+				this.headers.put(header.getKey(), header.getValue());
+			}
+		}
+		this.body = (body == null) ? new ByteArrayInputStream(new byte[0]) : body;
+	}
+	
+	/**
+	 * Get the HTTP status code of the response
+	 * @return the HTTP status code of the response
+	 */
+	public int getStatusCode() {
+		return statusCode;
+	}
+	
+	/**
+	 * Get the first value of a header of the response
+	 * @param name the name of the header, case insensitive
+	 * @return the first value of the header or null if the response doesn't have the header
+	 */
+	public String getHeader(String name) {
+		List<String> values = headers.get(name);
+		if (values == null || values.isEmpty()) {
+			return null;
+		}
+		return values.get(0);
+	}
+	
+	/**
+	 * Get all the headers of the response
+	 * @return an unmodifiable view of the headers of the response
+	 */
+	public Map<String, List<String>> getHeaders() {
+		return Collections.unmodifiableMap(headers);
+	}
+	
+	/**
+	 * Get the body of the response
+	 * @return the decompressed body of the response
+	 */
+	public InputStream getBody() {
+		return body;
+	}
+
+	/**
+	 * Close the body of the response so the underlying connection can be reused
+	 */
+	public void close() throws IOException {
+		body.close();
+	}
+}
@@ -0,0 +1,21 @@
+package model;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Interface for the way FHIRClient talks to the FHIR server. Every GET request of the model goes through
+ * one implementation of this interface, so the transport (connection pooling, timeouts, compression etc.)
+ * can be swapped out without touching any of the model classes.
+ *
+ */
+public interface FHIRTransport {
+	/**
+	 * Send a GET request to the specified URL
+	 * @param urlString the URL to send the GET request to
+	 * @param requestHeaders additional headers to send with the request, can be empty
+	 * @return the response of the server, which must be closed after its body has been read
+	 * @throws IOException if the request could not be sent or the response could not be received
+	 */
+	public FHIRResponse get(String urlString, Map<String, String> requestHeaders) throws IOException;
+}
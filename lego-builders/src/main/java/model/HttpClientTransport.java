@@ -0,0 +1,75 @@
+package model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * FHIRTransport which uses a single java.net.http.HttpClient for every request. The HttpClient keeps a pool of
+ * keep-alive connections (and prefers HTTP/2 which multiplexes requests over one connection), so the TLS handshake
+ * and TCP slow start are paid once instead of on every request. Responses are requested gzip compressed.
+ *
+ */
+public class HttpClientTransport implements FHIRTransport {
+	private final HttpClient httpClient;
+	private final Duration readTimeout;
+	
+	/**
+	 * Constructor of HttpClientTransport
+	 * @param connectTimeoutMillis the maximum time in milliseconds to wait for a connection to be established
+	 * @param readTimeoutMillis the maximum time in milliseconds to wait for the response of a request
+	 */
+	public HttpClientTransport(int connectTimeoutMillis, int readTimeoutMillis) {
+		this.httpClient = HttpClient.newBuilder()
+				.version(HttpClient.Version.HTTP_2) // falls back to HTTP/1.1 if the server doesn't support HTTP/2
+				.connectTimeout(Duration.ofMillis(connectTimeoutMillis))
+				.followRedirects(HttpClient.Redirect.NORMAL)
+				.build();
+		this.readTimeout = Duration.ofMillis(readTimeoutMillis);
+	}
+
+	/**
+	 * Send a GET request to the specified URL using the pooled HttpClient
+	 * @param urlString the URL to send the GET request to
+	 * @param requestHeaders additional headers to send with the request, can be empty
+	 * @return the response of the server with the body decompressed
+	 * @throws IOException if the request failed or timed out
+	 */
+	public FHIRResponse get(String urlString, Map<String, String> requestHeaders) throws IOException {
+		HttpRequest.Builder requestBuilder;
+		try {
+			requestBuilder = HttpRequest.newBuilder(URI.create(urlString));
+		} catch (IllegalArgumentException e) {
+			throw new MalformedURLException(e.getMessage());
+		}
+		requestBuilder.timeout(readTimeout)
+				.header("Accept", "application/fhir+json")
+				.header("Accept-Encoding", "gzip");
+		for (Map.Entry<String, String> header: requestHeaders.entrySet()) {
+			requestBuilder.header(header.getKey(), header.getValue());
+		}
+		
+		HttpResponse<InputStream> response;
+		try {
+			response = httpClient.send(requestBuilder.GET().build(), HttpResponse.BodyHandlers.ofInputStream());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for " + urlString);
+		}
+		
+		InputStream body = response.body();
+		// decompress the body if the server did compress it (a 304 response has no body to decompress)
+		if (response.statusCode() != 304 && "gzip".equalsIgnoreCase(response.headers().firstValue("Content-Encoding").orElse(""))) {
+			body = new GZIPInputStream(body);
+		}
+		return new FHIRResponse(response.statusCode(), response.headers().map(), body);
+	}
+}
@@ -0,0 +1,57 @@
+package model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * FHIRTransport which uses HttpURLConnection, for JVMs or environments where java.net.http can't be used.
+ * FHIRClient.createTransport falls back to it when the java.net.http module is missing from the runtime.
+ * Connections are kept alive and reused by the JVM as long as every response body is read and closed.
+ * ref: https://www.journaldev.com/7148/java-httpurlconnection-example-java-http-request-get-post
+ *
+ */
+public class HttpURLConnectionTransport implements FHIRTransport {
+	private final int connectTimeoutMillis;
+	private final int readTimeoutMillis;
+	
+	/**
+	 * Constructor of HttpURLConnectionTransport
+	 * @param connectTimeoutMillis the maximum time in milliseconds to wait for a connection to be established
+	 * @param readTimeoutMillis the maximum time in milliseconds to wait for data to be read
+	 */
+	public HttpURLConnectionTransport(int connectTimeoutMillis, int readTimeoutMillis) {
+		this.connectTimeoutMillis = connectTimeoutMillis;
+		this.readTimeoutMillis = readTimeoutMillis;
+	}
+
+	/**
+	 * Send a GET request to the specified URL using a HttpURLConnection
+	 * @param urlString the URL to send the GET request to
+	 * @param requestHeaders additional headers to send with the request, can be empty
+	 * @return the response of the server with the body decompressed
+	 * @throws IOException if the request failed or timed out
+	 */
+	public FHIRResponse get(String urlString, Map<String, String> requestHeaders) throws IOException {
+		HttpURLConnection con = (HttpURLConnection) new URL(urlString).openConnection();
+		con.setRequestMethod("GET");
+		con.setConnectTimeout(connectTimeoutMillis);
+		con.setReadTimeout(readTimeoutMillis);
+		con.setRequestProperty("Accept", "application/fhir+json");
+		con.setRequestProperty("Accept-Encoding", "gzip");
+		for (Map.Entry<String, String> header: requestHeaders.entrySet()) {
+			con.setRequestProperty(header.getKey(), header.getValue());
+		}
+		
+		int responseCode = con.getResponseCode();
+		// error responses have their body in the error stream
+		InputStream body = (responseCode >= HttpURLConnection.HTTP_BAD_REQUEST) ? con.getErrorStream() : con.getInputStream();
+		if (body != null && responseCode != HttpURLConnection.HTTP_NOT_MODIFIED && "gzip".equalsIgnoreCase(con.getContentEncoding())) {
+			body = new GZIPInputStream(body);
+		}
+		return new FHIRResponse(responseCode, con.getHeaderFields(), body);
+	}
+}
@@ -1,30 +1,44 @@
 package model;
 
-import java.util.ArrayList;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Objects;
 
 /**
- * 
+ *
  * @author Sriram, Zhi Tan
  * Class which serves as the actual Observation. An Observation has a value, its units, the system of measurement and the time recorded.
  * FHIRObservation uses this class because a FHIRObservation can have multiple Observations
  * For e.g. FHIRBloodPressure has 2 Observation(s). 1 for systolic and 1 for diastolic
+ * The value is kept as a double, a whole number reads back without a fraction (e.g. "120", not "120.0") as it is usually given.
+ * The time recorded is kept as the FHIR date or dateTime it was given as, because that is what is shown: it keeps the offset
+ * of the recording and can be a partial date, which epoch milliseconds can't. It is also parsed into epoch milliseconds once,
+ * when the Observation is set, so that the history can order and compare readings without parsing the string again.
+ * The units and system are interned since every Observation of a kind shares the same few codes.
  *
  */
 public class Observation { // ArrayList..to take into account x to y values, but YAGNI, dont take tat into account yet
-	private String value;
+	public static final long NO_TIME_RECORDED = Long.MIN_VALUE;
+
+	private double value;
 	private String units;
 	private String system;
 	private String timeRecorded;
-	
+	private long timeRecordedMillis;
+
 	/**
 	 * A constructor that initializes Observation and all its instance variables i.e. value, units, system and timeRecorded
 	 * to default values
-	 */	
+	 */
 	public Observation() {
-		this.value = "";
+		this.value = Double.NaN;
 		this.units = "";
 		this.system = "";
 		this.timeRecorded = "";
+		this.timeRecordedMillis = Observation.NO_TIME_RECORDED;
 	}
 
 	/**
@@ -32,9 +46,9 @@ public class Observation { // ArrayList..to take into account x to y values, but
 	 * @return true if Observation is empty, otherwise false.
 	 */
 	public boolean isEmpty() {
-		return this.value.equals("");
+		return Double.isNaN(this.value);
 	}
-	
+
 	/**
 	 * Constructor to create a copy of other Observation
 	 * @param other the other Observation to be copied
@@ -44,8 +58,9 @@ public class Observation { // ArrayList..to take into account x to y values, but
 		this.units = other.units;
 		this.system = other.system;
 		this.timeRecorded = other.timeRecorded;
+		this.timeRecordedMillis = other.timeRecordedMillis;
 	}
-	
+
 	/**
 	 * Set the Observation
 	 * @param value
@@ -54,17 +69,54 @@ public class Observation { // ArrayList..to take into account x to y values, but
 	 * @param timeRecorded
 	 */
 	public void setObservation(String value, String units, String system, String timeRecorded) {
-		this.value = value;
-		this.units = units;
-		this.system = system;
-		this.timeRecorded = timeRecorded;
+		this.setValue(value);
+		this.setUnits(units);
+		this.setSystem(system);
+		this.setTimeRecorded(timeRecorded);
+	}
+
+	/**
+	 * Set the Observation with a value that is already a number, e.g. straight from a FHIRQuantity
+	 * @param value
+	 * @param units
+	 * @param system
+	 * @param timeRecorded
+	 */
+	public void setObservation(double value, String units, String system, String timeRecorded) {
+		this.setValue(value);
+		this.setUnits(units);
+		this.setSystem(system);
+		this.setTimeRecorded(timeRecorded);
 	}
 
 	/**
 	 * Get the value of the Observation
-	 * @return the value of the Observation
+	 * @return the value of the Observation without a trailing ".0" e.g. "120" or "5.2", "" if it is empty
 	 */
 	public String getValue() {
+		return Observation.formatValue(value);
+	}
+
+	/**
+	 * Format the value of an Observation the way getValue does
+	 * @param value the value
+	 * @return the value without a trailing ".0" e.g. "120" or "5.2", "" if it is NaN
+	 */
+	public static String formatValue(double value) {
+		if (Double.isNaN(value)) {
+			return "";
+		}
+		if (value == Math.rint(value) && Math.abs(value) < 1e15) { // a whole number that a long holds exactly
+			return Long.toString((long) value);
+		}
+		return Double.toString(value);
+	}
+
+	/**
+	 * Get the value of the Observation as a number
+	 * @return the value of the Observation, NaN if it is empty or not a number
+	 */
+	public double getNumericValue() {
 		return value;
 	}
 
@@ -83,34 +135,38 @@ public class Observation { // ArrayList..to take into account x to y values, but
 		if (getClass() != obj.getClass()) // if this's class is not obj's class, return alse
 			return false;
 		Observation other = (Observation) obj;
-		if (system == null) { // if this.system is null
-			if (other.system != null) // if other.system is not null then return false
-				return false;
-		} else if (!system.equals(other.system)) // if this.system not equals other.system, return false
+		if (!Objects.equals(system, other.system)) // if this.system not equals other.system, return false
 			return false;
-		if (timeRecorded == null) { // if this.timeRecorded is null
-			if (other.timeRecorded != null) // if other.timeRecorded is not null then return false
-				return false;
-		} else if (!timeRecorded.equals(other.timeRecorded)) // if this.timeRecorded not equals other.timeRecorded, return false
+		if (!Objects.equals(timeRecorded, other.timeRecorded)) // if this.timeRecorded not equals other.timeRecorded, return false
 			return false;
-		if (units == null) { // if this.units is null
-			if (other.units != null) // if other.units is not null then return false
-				return false;
-		} else if (!units.equals(other.units)) // if this.units not equals other.units, then return false
+		if (!Objects.equals(units, other.units)) // if this.units not equals other.units, then return false
 			return false;
-		if (value == null) { // if this.value is null
-			if (other.value != null) // if other.value is not null then return false
-				return false;
-		} else if (!value.equals(other.value)) // if this.value not equals other.value then return false
+		if (Double.compare(value, other.value) != 0) // if this.value not equals other.value then return false
 			return false;
 		return true;
 	}
 
 	/**
 	 * Setter for value of this observation
-	 * @param value of this observation
+	 * @param value of this observation, the Observation is empty if it is not a number
 	 */
 	public void setValue(String value) {
+		this.value = Double.NaN;
+		if (value == null || value.isEmpty()) {
+			return;
+		}
+		try {
+			this.value = Double.parseDouble(value);
+		} catch (NumberFormatException e) {
+			// not a number, leave the Observation empty
+		}
+	}
+
+	/**
+	 * Setter for value of this observation
+	 * @param value of this observation
+	 */
+	public void setValue(double value) {
 		this.value = value;
 	}
 
@@ -127,7 +183,7 @@ public class Observation { // ArrayList..to take into account x to y values, but
 	 * @param units the units for the value of this observation that was used
 	 */
 	public void setUnits(String units) {
-		this.units = units;
+		this.units = (units == null) ? null : units.intern();
 	}
 
 	/**
@@ -143,30 +199,52 @@ public class Observation { // ArrayList..to take into account x to y values, but
 	 * @param system the system of measurement
 	 */
 	public void setSystem(String system) {
-		this.system = system;
+		this.system = (system == null) ? null : system.intern();
 	}
 
 	/**
 	 * Getter for timeRecorded of this observation
-	 * @return the timeRecorded for this observation
+	 * @return the timeRecorded for this observation, "" if it is not known
 	 */
 	public String getTimeRecorded() {
 		return timeRecorded;
 	}
 
+	/**
+	 * Getter for timeRecorded of this observation as epoch milliseconds, a date without a time of day is taken as midnight UTC
+	 * @return the timeRecorded for this observation, NO_TIME_RECORDED if it is not known or not a FHIR date or dateTime
+	 */
+	public long getTimeRecordedMillis() {
+		return timeRecordedMillis;
+	}
+
 	/**
 	 * Setter for timeRecorded
-	 * @param timeRecorded the timeRecorded for this observation
+	 * @param timeRecorded the timeRecorded for this observation, a FHIR date or dateTime
 	 */
 	public void setTimeRecorded(String timeRecorded) {
-		this.timeRecorded = timeRecorded;
+		this.timeRecorded = (timeRecorded == null) ? "" : timeRecorded;
+		this.timeRecordedMillis = Observation.NO_TIME_RECORDED;
+		if (this.timeRecorded.isEmpty()) {
+			return;
+		}
+		try {
+			if (timeRecorded.indexOf('T') >= 0) {
+				this.timeRecordedMillis = OffsetDateTime.parse(timeRecorded, DateTimeFormatter.ISO_OFFSET_DATE_TIME).toInstant().toEpochMilli();
+			}
+			else {
+				this.timeRecordedMillis = LocalDate.parse(timeRecorded).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+			}
+		} catch (DateTimeParseException e) {
+			// e.g. a partial date such as 2020-02, it is only kept as it is
+		}
 	}
-	
+
 	public String toString() {
 		return "[" + "value = " + this.getValue() + ", units = " + this.getUnits() + ", system = " + this.getSystem()
 				+ ", timeRecorded = " + this.getTimeRecorded() + "]";
 
 	}
-	
-	
+
+
 }
@@ -0,0 +1,282 @@
+package model;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Class which retrieves the latest Observation of a certain loinc code for many patients in a few searches instead of
+ * one search per patient. The patient identifiers are put into the same search as comma separated patient.identifier
+ * values (OR), and the Patient of every Observation is included in the Bundle so the results can be split back out
+ * per patient identifier. Because the results are sorted by most recent date, the first Observation found of a patient
+ * is the latest one, and paging stops as soon as every patient of the search has been found. A patient without such an
+ * Observation would make the search walk the whole history of its group, so after MAX_PAGES_PER_SEARCH pages the latest
+ * Observation of every patient still missing is searched on its own instead.
+ * The searches of a refresh (with a SyncState, or after setBypassCache(true)) are never answered by a CachingFHIRTransport,
+ * including their next pages.
+ *
+ */
+public class ObservationBatchRetriever {
+	public static final int MAX_PAGES_PER_SEARCH = 3; // pages of a search walked before falling back to one search per missing patient
+	private final int patientsPerSearch;
+	private final int concurrency;
+	private final int pageSize;
+	private boolean bypassCache = false; // whether every page must be what the server has now
+
+	/**
+	 * Constructor of ObservationBatchRetriever that uses the patients per search and the concurrency of FHIRClient.getConfig()
+	 */
+	public ObservationBatchRetriever() {
+		this(FHIRClient.getConfig().getPatientsPerSearch(), FHIRClient.getConfig().getConcurrency());
+	}
+
+	/**
+	 * Constructor of ObservationBatchRetriever that uses the page size of FHIRClient.getConfig()
+	 * @param patientsPerSearch the maximum number of patients put into one search
+	 * @param concurrency the maximum number of searches that are sent to the server at the same time
+	 */
+	public ObservationBatchRetriever(int patientsPerSearch, int concurrency) {
+		this(patientsPerSearch, concurrency, FHIRClient.getConfig().getPageSize());
+	}
+
+	/**
+	 * Constructor of ObservationBatchRetriever
+	 * @param patientsPerSearch the maximum number of patients put into one search
+	 * @param concurrency the maximum number of searches that are sent to the server at the same time
+	 * @param pageSize the count param of every search
+	 */
+	public ObservationBatchRetriever(int patientsPerSearch, int concurrency, int pageSize) {
+		if (patientsPerSearch < 1 || concurrency < 1 || pageSize < 1) {
+			throw new IllegalArgumentException("Patients per search, concurrency and page size must be positive integers");
+		}
+		this.patientsPerSearch = patientsPerSearch;
+		this.concurrency = concurrency;
+		this.pageSize = pageSize;
+	}
+
+	/**
+	 * Check whether every page of the searches is asked from the server, never from a cache
+	 * @return true if the cache is bypassed, otherwise false
+	 */
+	public boolean isBypassCache() {
+		return bypassCache;
+	}
+
+	/**
+	 * Set whether every page of the searches is asked from the server, never from a cache.
+	 * The searches with a SyncState always bypass the cache.
+	 * @param bypassCache true to bypass the cache, e.g. for the searches of a refresh
+	 */
+	public void setBypassCache(boolean bypassCache) {
+		this.bypassCache = bypassCache;
+	}
+
+	/**
+	 * Retrieve the latest Observation with the specified loinc code of each of the patients.
+	 * @param identifiersOfPatients the identifiers of the patients
+	 * @param code the loinc code of the Observation e.g. FHIRCholesterol.CODE
+	 * @return the entry of the latest Observation keyed by the patient's identifier. Patients without such an Observation are left out.
+	 * @throws IOException if any of the searches failed
+	 */
+	public HashMap<Tuple<String, String>, FHIRBundleEntry> retrieveLatestEntries(Collection<Tuple<String, String>> identifiersOfPatients, String code) throws IOException {
+		return this.retrieveLatestEntries(identifiersOfPatients, code, null, null);
+	}
+
+	/**
+	 * Retrieve the latest Observation with the specified loinc code of each of the patients, out of only the Observations
+	 * updated on the server after lastUpdatedSince. The first page of every search is a conditional request of the syncState.
+	 * @param identifiersOfPatients the identifiers of the patients
+	 * @param code the loinc code of the Observation e.g. FHIRCholesterol.CODE
+	 * @param lastUpdatedSince ISO-8601 instant, only Observations updated after it are searched, or null to search all
+	 * @param syncState the SyncState of the refresh the searches are part of, or null for unconditional searches
+	 * @return the entry of the latest Observation keyed by the patient's identifier. Patients without such an Observation are left out.
+	 * @throws IOException if any of the searches failed
+	 */
+	public HashMap<Tuple<String, String>, FHIRBundleEntry> retrieveLatestEntries(Collection<Tuple<String, String>> identifiersOfPatients, String code,
+			String lastUpdatedSince, SyncState syncState) throws IOException {
+		// split the patients into groups, one search for each group
+		List<Callable<HashMap<Tuple<String, String>, FHIRBundleEntry>>> searchTasks = new ArrayList<Callable<HashMap<Tuple<String, String>, FHIRBundleEntry>>>();
+		for (List<Tuple<String, String>> group: ObservationBatchRetriever.partition(identifiersOfPatients, patientsPerSearch)) {
+			searchTasks.add(createSearchTask(group, code, lastUpdatedSince, syncState));
+		}
+
+		HashMap<Tuple<String, String>, FHIRBundleEntry> latestEntries = new HashMap<Tuple<String, String>, FHIRBundleEntry>();
+		if (searchTasks.isEmpty()) {
+			return latestEntries;
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(concurrency, searchTasks.size()), new PatientHydrator.HydratorThreadFactory());
+		try {
+			for (HashMap<Tuple<String, String>, FHIRBundleEntry> entriesOfGroup: PatientHydrator.invokeAll(executor, searchTasks)) {
+				latestEntries.putAll(entriesOfGroup);
+			}
+		}
+		finally {
+			executor.shutdownNow();
+		}
+		return latestEntries;
+	}
+
+	/**
+	 * Create the task that searches the latest Observation for one group of patients
+	 */
+	private Callable<HashMap<Tuple<String, String>, FHIRBundleEntry>> createSearchTask(final List<Tuple<String, String>> group, final String code,
+			final String lastUpdatedSince, final SyncState syncState) {
+		return new Callable<HashMap<Tuple<String, String>, FHIRBundleEntry>>() {
+			public HashMap<Tuple<String, String>, FHIRBundleEntry> call() throws IOException {
+				return retrieveLatestEntriesOfGroup(group, code, lastUpdatedSince, syncState);
+			}
+		};
+	}
+
+	/**
+	 * Search the latest Observation with the specified loinc code for one group of patients, walking the pages of the
+	 * search until every patient of the group has been found or there are no more pages. If MAX_PAGES_PER_SEARCH pages
+	 * were walked, the patients still missing are searched one by one.
+	 */
+	private HashMap<Tuple<String, String>, FHIRBundleEntry> retrieveLatestEntriesOfGroup(List<Tuple<String, String>> group, String code,
+			String lastUpdatedSince, SyncState syncState) throws IOException {
+		HashMap<Tuple<String, String>, FHIRBundleEntry> latestEntries = new HashMap<Tuple<String, String>, FHIRBundleEntry>();
+		Set<Tuple<String, String>> patientsOfGroup = new HashSet<Tuple<String, String>>(group);
+
+		String urlString = ObservationBatchRetriever.buildUrlString(group, code, lastUpdatedSince, pageSize);
+		FHIRBundlePage page = this.retrieveFirstPage(urlString, syncState);
+		int pagesWalked = 1;
+		while (true) {
+			// the included Patients tell which identifier the subject of an Observation has
+			Map<String, Tuple<String, String>> identifierOfReference = new HashMap<String, Tuple<String, String>>();
+			for (FHIRBundleEntry entry: page.getEntries()) {
+				if ("Patient".equals(entry.getResourceType()) && entry.getIdentifier() != null) {
+					identifierOfReference.put(FHIRPatient.URL_STRING_SECTION_FOR_PATIENT + entry.getResourceId(), entry.getIdentifier());
+				}
+			}
+			for (FHIRBundleEntry entry: page.getEntries()) {
+				if (!"Observation".equals(entry.getResourceType()) || entry.getSubjectReference() == null) {
+					continue;
+				}
+				Tuple<String, String> identifier = identifierOfReference.get(ObservationBatchRetriever.relativeReference(entry.getSubjectReference()));
+				// sorted by most recent date, so only the first Observation found of a patient is kept
+				if (identifier != null && patientsOfGroup.contains(identifier) && !latestEntries.containsKey(identifier)) {
+					latestEntries.put(identifier, entry);
+				}
+			}
+			if (latestEntries.size() == patientsOfGroup.size() || !page.hasNextPage()) { // every patient found or no more pages
+				return latestEntries;
+			}
+			if (pagesWalked == ObservationBatchRetriever.MAX_PAGES_PER_SEARCH) {
+				break;
+			}
+			page = FHIRClient.getBundlePageUsingGETRequest(page.getNextUrl(), bypassCache || syncState != null);
+			pagesWalked++;
+		}
+
+		// the patients still missing have no such Observation or only old ones, one count=1 search each is cheaper than the rest of the pages
+		for (Tuple<String, String> identifier: group) {
+			if (!latestEntries.containsKey(identifier)) {
+				FHIRBundleEntry latestEntry = this.retrieveLatestEntryOfPatient(identifier, code, lastUpdatedSince, syncState);
+				if (latestEntry != null) {
+					latestEntries.put(identifier, latestEntry);
+				}
+			}
+		}
+		return latestEntries;
+	}
+
+	/**
+	 * Search the latest Observation with the specified loinc code of one patient
+	 * @return the entry of the latest Observation, or null if the patient has no such Observation
+	 */
+	private FHIRBundleEntry retrieveLatestEntryOfPatient(Tuple<String, String> identifier, String code, String lastUpdatedSince, SyncState syncState) throws IOException {
+		String urlString = FHIRObservation.buildUrlStringForObservationsOfPatient(code, identifier, 1)
+				+ ((lastUpdatedSince == null) ? "" : "&" + FHIRClient.LAST_UPDATED_AFTER_PARAMETER + lastUpdatedSince);
+		for (FHIRBundleEntry entry: this.retrieveFirstPage(urlString, syncState).getEntries()) {
+			if ("Observation".equals(entry.getResourceType())) {
+				return entry;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Get the first page of a search, a conditional request if there is a syncState
+	 */
+	private FHIRBundlePage retrieveFirstPage(String urlString, SyncState syncState) throws IOException {
+		if (syncState != null) {
+			return FHIRClient.getBundlePageUsingGETRequest(urlString, syncState);
+		}
+		return FHIRClient.getBundlePageUsingGETRequest(urlString, bypassCache);
+	}
+
+	/**
+	 * Build the URL String for searching the Observations with the specified loinc code of a group of patients
+	 * @param group the identifiers of the patients of the group
+	 * @param code the loinc code of the Observation
+	 * @param lastUpdatedSince ISO-8601 instant, only Observations updated after it are searched, or null to search all
+	 * @param pageSize the count param of the search
+	 * @return the URL String of the search
+	 * @throws UnsupportedEncodingException
+	 */
+	static String buildUrlString(List<Tuple<String, String>> group, String code, String lastUpdatedSince, int pageSize) throws UnsupportedEncodingException {
+		return FHIRClient.getBaseUrl() + FHIRObservation.URL_STRING_SECTION_FOR_OBSERVATION
+				+ "?patient.identifier=" + ObservationBatchRetriever.joinIdentifiers(group) + "&" + "code=" + URLEncoder.encode(code, "UTF-8")
+				+ "&_include=Observation:subject" + "&" + FHIRClient.ELEMENTS_PARAMETER + FHIRObservation.ELEMENTS_OF_OBSERVATION + ",identifier" // _elements applies to the included Patients too
+				+ ((lastUpdatedSince == null) ? "" : "&" + FHIRClient.LAST_UPDATED_AFTER_PARAMETER + lastUpdatedSince)
+				+ "&" + FHIRClient.SORT_PARAMETER + FHIRClient.DESCENDING_DATE + "&" + FHIRClient.COUNT_PARAMETER + pageSize + "&" + FHIRClient.JSON_FORMAT;
+	}
+
+	/**
+	 * Join identifiers into the value of a search parameter, comma separated values are OR-ed by the server
+	 * @param identifiers the identifiers to be joined
+	 * @return the URL encoded identifiers separated by commas, e.g. system%7Cvalue1,system%7Cvalue2
+	 * @throws UnsupportedEncodingException
+	 */
+	static String joinIdentifiers(Collection<Tuple<String, String>> identifiers) throws UnsupportedEncodingException {
+		StringBuilder joined = new StringBuilder();
+		for (Tuple<String, String> identifier: identifiers) {
+			if (joined.length() > 0) {
+				joined.append(",");
+			}
+			joined.append(URLEncoder.encode(identifier.first + "|" + identifier.second, "UTF-8"));
+		}
+		return joined.toString();
+	}
+
+	/**
+	 * Split identifiers into groups of at most groupSize identifiers
+	 * @param identifiers the identifiers to be split
+	 * @param groupSize the maximum size of a group
+	 * @return the groups, in the iteration order of the identifiers
+	 */
+	static List<List<Tuple<String, String>>> partition(Collection<Tuple<String, String>> identifiers, int groupSize) {
+		List<List<Tuple<String, String>>> groups = new ArrayList<List<Tuple<String, String>>>();
+		List<Tuple<String, String>> group = new ArrayList<Tuple<String, String>>();
+		for (Tuple<String, String> identifier: identifiers) {
+			group.add(identifier);
+			if (group.size() == groupSize) {
+				groups.add(group);
+				group = new ArrayList<Tuple<String, String>>();
+			}
+		}
+		if (!group.isEmpty()) {
+			groups.add(group);
+		}
+		return groups;
+	}
+
+	/**
+	 * Turn a possibly absolute reference (e.g. http://server/fhir/Patient/123) into a relative one (Patient/123)
+	 */
+	private static String relativeReference(String reference) {
+		int index = reference.lastIndexOf(FHIRPatient.URL_STRING_SECTION_FOR_PATIENT);
+		return (index > 0) ? reference.substring(index) : reference;
+	}
+}
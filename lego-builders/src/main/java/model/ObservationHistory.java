@@ -0,0 +1,174 @@
+package model;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Class which keeps the history of the Observations of many patients as one ObservationSeries per patient and per loinc code,
+ * e.g. the systolic and the diastolic blood pressure of a patient are two series. A series is filled incrementally:
+ * the first fill asks the server for the latest Observations, later fills for the ones recorded after the latest one kept
+ * and, if the series still holds fewer than asked for, the ones recorded before the oldest one kept.
+ * Charts and monitors read the series directly, so showing a history again neither allocates nor goes to the server.
+ *
+ */
+public class ObservationHistory {
+	public static final int DEFAULT_CAPACITY = 200; // values kept per patient and loinc code, enough for a trend chart
+
+	private final int capacity;
+	private volatile int pageSize = FHIRClient.getConfig().getPageSize();
+	private final ConcurrentHashMap<Tuple<String, String>, ConcurrentHashMap<String, ObservationSeries>> seriesOfPatients = new ConcurrentHashMap<Tuple<String, String>, ConcurrentHashMap<String, ObservationSeries>>();
+
+	/**
+	 * Constructor of ObservationHistory that keeps DEFAULT_CAPACITY values per series
+	 */
+	public ObservationHistory() {
+		this(ObservationHistory.DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructor of ObservationHistory
+	 * @param capacity the maximum number of values kept per patient and loinc code
+	 */
+	public ObservationHistory(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("capacity must be positive");
+		}
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Get the maximum number of values kept per patient and loinc code
+	 * @return the capacity of every series
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Get the number of Observations asked for per page when filling the history
+	 * @return the count param of the searches
+	 */
+	public int getPageSize() {
+		return pageSize;
+	}
+
+	/**
+	 * Set the number of Observations asked for per page when filling the history
+	 * @param pageSize the count param of the searches, at most ObservationHistoryCursor.MAX_PAGE_SIZE
+	 */
+	public void setPageSize(int pageSize) {
+		if (pageSize < 1 || pageSize > ObservationHistoryCursor.MAX_PAGE_SIZE) {
+			throw new IllegalArgumentException("Page size must be between 1 and " + ObservationHistoryCursor.MAX_PAGE_SIZE);
+		}
+		this.pageSize = pageSize;
+	}
+
+	/**
+	 * Get the series of a patient and loinc code, it is created empty if there is none yet
+	 * @param identifierOfPatient the patient's identifier
+	 * @param code the loinc code e.g. FHIRCholesterol.CODE or FHIRBloodPressure.SYSTOLIC_BP_CODE
+	 * @return the series
+	 */
+	public ObservationSeries getSeries(Tuple<String, String> identifierOfPatient, String code) {
+		ConcurrentHashMap<String, ObservationSeries> seriesOfPatient = seriesOfPatients.computeIfAbsent(identifierOfPatient, new Function<Tuple<String, String>, ConcurrentHashMap<String, ObservationSeries>>() {
+			public ConcurrentHashMap<String, ObservationSeries> apply(Tuple<String, String> identifier) {
+				return new ConcurrentHashMap<String, ObservationSeries>();
+			}
+		});
+		return seriesOfPatient.computeIfAbsent(code, new Function<String, ObservationSeries>() {
+			public ObservationSeries apply(String newCode) {
+				return new ObservationSeries(capacity);
+			}
+		});
+	}
+
+	/**
+	 * Record an Observation into the series of a patient and loinc code
+	 * @param identifierOfPatient the patient's identifier
+	 * @param code the loinc code
+	 * @param observation the Observation, ignored if it is empty or has no time recorded
+	 * @return true if the series changed, otherwise false
+	 */
+	public boolean record(Tuple<String, String> identifierOfPatient, String code, Observation observation) {
+		return this.getSeries(identifierOfPatient, code).record(observation.getTimeRecordedMillis(), observation.getTimeRecorded(), observation.getNumericValue());
+	}
+
+	/**
+	 * Forget the history of a patient
+	 * @param identifierOfPatient the patient's identifier
+	 */
+	public void remove(Tuple<String, String> identifierOfPatient) {
+		seriesOfPatients.remove(identifierOfPatient);
+	}
+
+	/**
+	 * Fill the history of an Observation of a patient from the server, walking the pages of each search once.
+	 * If the history already has values, the Observations recorded after the latest one are asked for first, then,
+	 * while the history has fewer than numberOfMostRecentObservations values, the ones recorded before the oldest one.
+	 * At most as many values as the capacity of a series are asked for, the older ones would be dropped straight away.
+	 * @param identifierOfPatient the patient's identifier
+	 * @param observationName the name of the Observation e.g. ObservationTypes.BLOOD_PRESSURE.toString()
+	 * @param numberOfMostRecentObservations the number of most recent Observations wanted in the history
+	 * @return the number of Observations the history has for the patient afterwards, at most numberOfMostRecentObservations
+	 * @throws IOException if a request failed
+	 */
+	public int fill(Tuple<String, String> identifierOfPatient, String observationName, int numberOfMostRecentObservations) throws IOException {
+		String code;
+		String latestCode; // the series that tells how far the history goes
+		if (observationName.equals(ObservationTypes.BLOOD_PRESSURE.toString())) {
+			code = FHIRBloodPressure.CODE;
+			latestCode = FHIRBloodPressure.SYSTOLIC_BP_CODE;
+		}
+		else if (observationName.equals(ObservationTypes.CHOLESTEROL.toString())) {
+			code = FHIRCholesterol.CODE;
+			latestCode = FHIRCholesterol.CODE;
+		}
+		else {
+			return 0;
+		}
+		ObservationSeries series = this.getSeries(identifierOfPatient, latestCode);
+		int wanted = Math.min(numberOfMostRecentObservations, capacity);
+		if (wanted <= 0) {
+			return 0;
+		}
+
+		// the Observations recorded since the latest one kept, most recent first
+		long latestTimeRecorded = series.getLatestTimeRecorded();
+		if (latestTimeRecorded != Observation.NO_TIME_RECORDED) {
+			ObservationHistoryCursor newer = new ObservationHistoryCursor(code, identifierOfPatient, Math.min(wanted, pageSize), latestTimeRecorded);
+			for (int read = 0; read < wanted && newer.hasNext(); read++) {
+				this.record(identifierOfPatient, code, newer.next());
+			}
+		}
+
+		// the Observations recorded before the oldest one kept, until there are enough of them
+		if (series.size() < wanted) {
+			ObservationHistoryCursor older = new ObservationHistoryCursor(code, identifierOfPatient, Math.min(wanted - series.size(), pageSize),
+					Observation.NO_TIME_RECORDED, series.getOldestTimeRecorded());
+			while (series.size() < wanted && older.hasNext()) {
+				this.record(identifierOfPatient, code, older.next());
+			}
+		}
+		return Math.min(series.size(), wanted);
+	}
+
+	/**
+	 * Record the Observation(s) of a Bundle entry into the series of a patient
+	 */
+	private void record(Tuple<String, String> identifierOfPatient, String code, FHIRBundleEntry entry) {
+		if (code.equals(FHIRBloodPressure.CODE)) {
+			FHIRBloodPressure bloodPressure = new FHIRBloodPressure();
+			if (bloodPressure.retrieveDataFromBundleEntryAndInit(entry)) {
+				this.record(identifierOfPatient, FHIRBloodPressure.DIASTOLIC_BP_CODE, bloodPressure.getDiastolicBPObservation());
+				this.record(identifierOfPatient, FHIRBloodPressure.SYSTOLIC_BP_CODE, bloodPressure.getSystolicBPObservation());
+			}
+		}
+		else {
+			FHIRCholesterol cholesterol = new FHIRCholesterol();
+			if (cholesterol.retrieveDataFromBundleEntryAndInit(entry)) {
+				this.record(identifierOfPatient, FHIRCholesterol.CODE, cholesterol.getCholesterolObservation());
+			}
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package model;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Class which walks the history of an Observation of a patient, most recent first, one Bundle page at a time.
+ * Every page is requested exactly once: the cursor keeps the page it is on and follows its "next" link only when
+ * all of its entries have been read, so reading the N latest Observations costs N / pageSize requests.
+ * The cursor stops at the first request that fails.
+ *
+ */
+public class ObservationHistoryCursor {
+	public static final int MAX_PAGE_SIZE = 200; // the count param is capped by the server anyway
+
+	private String nextUrl;
+	private List<FHIRBundleEntry> entries = null;
+	private int position = 0;
+	private int pagesFetched = 0;
+
+	/**
+	 * Constructor of ObservationHistoryCursor
+	 * @param code the loinc code of the Observation e.g. FHIRCholesterol.CODE
+	 * @param identifierOfPatient the patient's identifier
+	 * @param pageSize the number of Observations asked for per page (count param of the search), at most MAX_PAGE_SIZE
+	 * @param recordedAfter only the Observations recorded after this time in epoch milliseconds, Observation.NO_TIME_RECORDED for all of them
+	 * @throws IOException if the URL of the search could not be built
+	 */
+	public ObservationHistoryCursor(String code, Tuple<String, String> identifierOfPatient, int pageSize, long recordedAfter) throws IOException {
+		this(code, identifierOfPatient, pageSize, recordedAfter, Observation.NO_TIME_RECORDED);
+	}
+
+	/**
+	 * Constructor of ObservationHistoryCursor that only walks the Observations recorded in a range of time
+	 * @param code the loinc code of the Observation e.g. FHIRCholesterol.CODE
+	 * @param identifierOfPatient the patient's identifier
+	 * @param pageSize the number of Observations asked for per page (count param of the search), at most MAX_PAGE_SIZE
+	 * @param recordedAfter only the Observations recorded after this time in epoch milliseconds, Observation.NO_TIME_RECORDED for no lower bound
+	 * @param recordedBefore only the Observations recorded before this time in epoch milliseconds, Observation.NO_TIME_RECORDED for no upper bound
+	 * @throws IOException if the URL of the search could not be built
+	 */
+	public ObservationHistoryCursor(String code, Tuple<String, String> identifierOfPatient, int pageSize, long recordedAfter, long recordedBefore) throws IOException {
+		if (pageSize < 1) {
+			throw new IllegalArgumentException("Page size must be a positive integer");
+		}
+		String urlString = FHIRObservation.buildUrlStringForObservationsOfPatient(code, identifierOfPatient, Math.min(pageSize, ObservationHistoryCursor.MAX_PAGE_SIZE));
+		if (recordedAfter != Observation.NO_TIME_RECORDED) {
+			urlString += "&" + FHIRClient.DATE_AFTER_PARAMETER + Instant.ofEpochMilli(recordedAfter).toString();
+		}
+		if (recordedBefore != Observation.NO_TIME_RECORDED) {
+			urlString += "&" + FHIRClient.DATE_BEFORE_PARAMETER + Instant.ofEpochMilli(recordedBefore).toString();
+		}
+		this.nextUrl = urlString;
+	}
+
+	/**
+	 * Check if there is another Observation, fetches the next page if all the entries of the current one have been read
+	 * @return true if there is another Observation, otherwise false
+	 * @throws IOException if the request for the next page failed
+	 */
+	public boolean hasNext() throws IOException {
+		while (entries == null || position >= entries.size()) {
+			if (nextUrl == null) {
+				return false;
+			}
+			String urlString = nextUrl;
+			nextUrl = null; // if the request fails, don't go any further
+			FHIRBundlePage page = FHIRClient.getBundlePageUsingGETRequest(urlString);
+			pagesFetched++;
+			entries = page.getEntries();
+			position = 0;
+			nextUrl = page.getNextUrl();
+		}
+		return true;
+	}
+
+	/**
+	 * Get the next Observation, the one recorded just before the previous one
+	 * @return the entry of the next Observation
+	 * @throws IOException if the request for the next page failed
+	 */
+	public FHIRBundleEntry next() throws IOException {
+		if (!this.hasNext()) {
+			throw new IllegalStateException("No more Observations");
+		}
+		return entries.get(position++);
+	}
+
+	/**
+	 * Get the number of pages requested so far
+	 * @return the number of pages requested so far
+	 */
+	public int getPagesFetched() {
+		return pagesFetched;
+	}
+}
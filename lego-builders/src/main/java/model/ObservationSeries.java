@@ -0,0 +1,262 @@
+package model;
+
+import java.time.Instant;
+import java.util.Arrays;
+
+/**
+ * Class which holds the latest values of one kind of Observation (one loinc code) of one patient, oldest first.
+ * The values are kept in parallel arrays (time recorded as epoch milliseconds, value, and the time recorded as it was given)
+ * used as a ring buffer, so once the series is full, recording a new value overwrites the oldest one instead of allocating.
+ * The time recorded as given is the string the Observation already holds, kept for display since it has the offset of the
+ * recording that the epoch milliseconds lose.
+ * Values can be read by position or by a range of time without allocating, the series is safe to be filled from a
+ * background thread while it is read on the event dispatch thread.
+ *
+ */
+public class ObservationSeries {
+
+	/**
+	 * Visitor of the values of a series, see forEach and forEachInRange
+	 */
+	public interface Visitor {
+		/**
+		 * @param timeRecorded the time the value was recorded in epoch milliseconds
+		 * @param timeRecordedAsGiven the time the value was recorded as the FHIR dateTime it was given as
+		 * @param value the value
+		 */
+		public void visit(long timeRecorded, String timeRecordedAsGiven, double value);
+	}
+
+	private final long[] timesRecorded;
+	private final double[] values;
+	private final String[] timesRecordedAsGiven;
+	private int head = 0; // position of the oldest value
+	private int size = 0;
+
+	/**
+	 * Constructor of ObservationSeries
+	 * @param capacity the maximum number of values kept, the oldest are dropped first
+	 */
+	public ObservationSeries(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("capacity must be positive");
+		}
+		this.timesRecorded = new long[capacity];
+		this.values = new double[capacity];
+		this.timesRecordedAsGiven = new String[capacity];
+	}
+
+	/**
+	 * Record a value whose time recorded is shown as the UTC instant
+	 * @param timeRecorded the time the value was recorded in epoch milliseconds
+	 * @param value the value
+	 * @return true if the series changed, otherwise false
+	 */
+	public boolean record(long timeRecorded, double value) {
+		return this.record(timeRecorded, Instant.ofEpochMilli(timeRecorded).toString(), value);
+	}
+
+	/**
+	 * Record a value. The series stays ordered by time recorded: a value recorded at the same time as one already kept
+	 * replaces it, and a value older than all the values of a full series is dropped.
+	 * @param timeRecorded the time the value was recorded in epoch milliseconds
+	 * @param timeRecordedAsGiven the time the value was recorded as the FHIR dateTime it was given as, shown instead of timeRecorded
+	 * @param value the value
+	 * @return true if the series changed, otherwise false
+	 */
+	public synchronized boolean record(long timeRecorded, String timeRecordedAsGiven, double value) {
+		if (timeRecorded == Observation.NO_TIME_RECORDED || Double.isNaN(value)) {
+			return false;
+		}
+		if (size == 0 || timeRecorded > this.timeRecordedAt(size - 1)) { // the usual case, a newer value
+			this.append(timeRecorded, timeRecordedAsGiven, value);
+			return true;
+		}
+		int index = this.indexOfFirstAtOrAfter(timeRecorded);
+		if (index < size && this.timeRecordedAt(index) == timeRecorded) {
+			if (Double.compare(this.valueAt(index), value) == 0) {
+				return false;
+			}
+			values[this.physical(index)] = value;
+			timesRecordedAsGiven[this.physical(index)] = timeRecordedAsGiven;
+			return true;
+		}
+		if (size == timesRecorded.length) {
+			if (index == 0) { // older than everything kept
+				return false;
+			}
+			// drop the oldest to make room, the insertion point moves down with it
+			head = this.physical(1);
+			size--;
+			index--;
+		}
+		for (int i = size; i > index; i--) {
+			timesRecorded[this.physical(i)] = timesRecorded[this.physical(i - 1)];
+			values[this.physical(i)] = values[this.physical(i - 1)];
+			timesRecordedAsGiven[this.physical(i)] = timesRecordedAsGiven[this.physical(i - 1)];
+		}
+		timesRecorded[this.physical(index)] = timeRecorded;
+		values[this.physical(index)] = value;
+		timesRecordedAsGiven[this.physical(index)] = timeRecordedAsGiven;
+		size++;
+		return true;
+	}
+
+	/**
+	 * Get the number of values kept
+	 * @return the number of values kept
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * Get the maximum number of values kept
+	 * @return the maximum number of values kept
+	 */
+	public int getCapacity() {
+		return timesRecorded.length;
+	}
+
+	/**
+	 * Get the time a value was recorded
+	 * @param index the position of the value, 0 is the oldest
+	 * @return the time the value was recorded in epoch milliseconds
+	 */
+	public synchronized long getTimeRecorded(int index) {
+		this.checkIndex(index);
+		return this.timeRecordedAt(index);
+	}
+
+	/**
+	 * Get a value
+	 * @param index the position of the value, 0 is the oldest
+	 * @return the value
+	 */
+	public synchronized double getValue(int index) {
+		this.checkIndex(index);
+		return this.valueAt(index);
+	}
+
+	/**
+	 * Get the time the oldest value was recorded
+	 * @return the time the oldest value was recorded in epoch milliseconds, Observation.NO_TIME_RECORDED if the series is empty
+	 */
+	public synchronized long getOldestTimeRecorded() {
+		return (size == 0) ? Observation.NO_TIME_RECORDED : this.timeRecordedAt(0);
+	}
+
+	/**
+	 * Get the time the latest value was recorded
+	 * @return the time the latest value was recorded in epoch milliseconds, Observation.NO_TIME_RECORDED if the series is empty
+	 */
+	public synchronized long getLatestTimeRecorded() {
+		return (size == 0) ? Observation.NO_TIME_RECORDED : this.timeRecordedAt(size - 1);
+	}
+
+	/**
+	 * Visit the values recorded in a range of time, oldest first
+	 * @param from the start of the range in epoch milliseconds, inclusive
+	 * @param to the end of the range in epoch milliseconds, exclusive
+	 * @param visitor the visitor of the values
+	 * @return the number of values visited
+	 */
+	public synchronized int forEachInRange(long from, long to, Visitor visitor) {
+		int visited = 0;
+		for (int i = this.indexOfFirstAtOrAfter(from); i < size && this.timeRecordedAt(i) < to; i++) {
+			visitor.visit(this.timeRecordedAt(i), timesRecordedAsGiven[this.physical(i)], this.valueAt(i));
+			visited++;
+		}
+		return visited;
+	}
+
+	/**
+	 * Visit the latest values, oldest first
+	 * @param count the maximum number of values visited
+	 * @param visitor the visitor of the values
+	 * @return the number of values visited
+	 */
+	public synchronized int forEachLatest(int count, Visitor visitor) {
+		int start = Math.max(0, size - count);
+		for (int i = start; i < size; i++) {
+			visitor.visit(this.timeRecordedAt(i), timesRecordedAsGiven[this.physical(i)], this.valueAt(i));
+		}
+		return size - start;
+	}
+
+	/**
+	 * Remove all the values
+	 */
+	public synchronized void clear() {
+		Arrays.fill(timesRecordedAsGiven, null); // the strings are not kept alive
+		head = 0;
+		size = 0;
+	}
+
+	/**
+	 * The String representation of an ObservationSeries
+	 */
+	public synchronized String toString() {
+		long[] orderedTimes = new long[size];
+		double[] orderedValues = new double[size];
+		for (int i = 0; i < size; i++) {
+			orderedTimes[i] = this.timeRecordedAt(i);
+			orderedValues[i] = this.valueAt(i);
+		}
+		return "[timesRecorded = " + Arrays.toString(orderedTimes) + ", values = " + Arrays.toString(orderedValues) + "]";
+	}
+
+	/**
+	 * Position of the first value recorded at or after timeRecorded, size if there is none. Binary search since the series is ordered.
+	 */
+	private int indexOfFirstAtOrAfter(long timeRecorded) {
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (this.timeRecordedAt(middle) < timeRecorded) {
+				low = middle + 1;
+			}
+			else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Add a value after the latest one, overwriting the oldest if the series is full
+	 */
+	private void append(long timeRecorded, String timeRecordedAsGiven, double value) {
+		if (size == timesRecorded.length) {
+			timesRecorded[head] = timeRecorded;
+			values[head] = value;
+			timesRecordedAsGiven[head] = timeRecordedAsGiven;
+			head = this.physical(1);
+		}
+		else {
+			timesRecorded[this.physical(size)] = timeRecorded;
+			values[this.physical(size)] = value;
+			timesRecordedAsGiven[this.physical(size)] = timeRecordedAsGiven;
+			size++;
+		}
+	}
+
+	private long timeRecordedAt(int index) {
+		return timesRecorded[this.physical(index)];
+	}
+
+	private double valueAt(int index) {
+		return values[this.physical(index)];
+	}
+
+	private int physical(int index) {
+		return (head + index) % timesRecorded.length;
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+	}
+}
@@ -0,0 +1,195 @@
+package model;
+
+import java.util.TreeMap;
+
+/**
+ * Class which keeps running statistics of the values of one kind of Observation over a set of patients: count, sum, mean,
+ * variance (Welford's method, which can also take a value back out), min, max and approximate percentiles.
+ * Adding, removing or replacing a value updates everything in O(1), except min and max which are kept exact in a sorted
+ * map in O(log n). The percentiles come from a histogram of fixed width bins between a lower and an upper bound, so
+ * they are exact to within a bin width; values outside of the bounds are counted in the first or the last bin.
+ *
+ */
+public class ObservationStatistics {
+	private final double lower;
+	private final double binWidth;
+	private final long[] bins;
+	private final TreeMap<Double, Integer> valueCounts = new TreeMap<Double, Integer>(); // for the exact min and max
+
+	private long count = 0;
+	private double sum = 0;
+	private double mean = 0;
+	private double sumOfSquaredDifferences = 0; // Welford's M2
+
+	/**
+	 * Constructor of ObservationStatistics
+	 * @param lower the lower bound of the histogram for the percentiles
+	 * @param upper the upper bound of the histogram for the percentiles
+	 * @param numberOfBins the number of bins of the histogram, its resolution is (upper - lower) / numberOfBins
+	 */
+	public ObservationStatistics(double lower, double upper, int numberOfBins) {
+		if (!(upper > lower) || numberOfBins < 1) {
+			throw new IllegalArgumentException("upper must be above lower and numberOfBins must be a positive integer");
+		}
+		this.lower = lower;
+		this.binWidth = (upper - lower) / numberOfBins;
+		this.bins = new long[numberOfBins];
+	}
+
+	/**
+	 * Add a value
+	 * @param value the value, NaN is ignored
+	 */
+	public synchronized void add(double value) {
+		if (Double.isNaN(value)) {
+			return;
+		}
+		count++;
+		sum += value;
+		double difference = value - mean;
+		mean += difference / count;
+		sumOfSquaredDifferences += difference * (value - mean);
+		bins[this.binOf(value)]++;
+		Integer valueCount = valueCounts.get(value);
+		valueCounts.put(value, (valueCount == null) ? 1 : valueCount + 1);
+	}
+
+	/**
+	 * Take a value that was added back out
+	 * @param value the value, NaN is ignored
+	 */
+	public synchronized void remove(double value) {
+		if (Double.isNaN(value)) {
+			return;
+		}
+		Integer valueCount = valueCounts.get(value);
+		if (valueCount == null) {
+			throw new IllegalArgumentException(value + " was never added");
+		}
+		if (valueCount == 1) {
+			valueCounts.remove(value);
+		}
+		else {
+			valueCounts.put(value, valueCount - 1);
+		}
+		bins[this.binOf(value)]--;
+		count--;
+		sum -= value;
+		if (count == 0) { // start again from nothing so rounding errors don't pile up
+			mean = 0;
+			sumOfSquaredDifferences = 0;
+			sum = 0;
+			return;
+		}
+		double previousMean = mean;
+		mean = (mean * (count + 1) - value) / count;
+		sumOfSquaredDifferences = Math.max(0, sumOfSquaredDifferences - (value - previousMean) * (value - mean));
+	}
+
+	/**
+	 * Replace a value that was added by another one
+	 * @param oldValue the value that was added, NaN if there was none
+	 * @param newValue the value replacing it, NaN if there is none anymore
+	 */
+	public synchronized void replace(double oldValue, double newValue) {
+		if (Double.compare(oldValue, newValue) == 0) {
+			return;
+		}
+		this.remove(oldValue);
+		this.add(newValue);
+	}
+
+	/**
+	 * Get the number of values
+	 * @return the number of values
+	 */
+	public synchronized long getCount() {
+		return count;
+	}
+
+	/**
+	 * Get the sum of the values
+	 * @return the sum of the values
+	 */
+	public synchronized double getSum() {
+		return sum;
+	}
+
+	/**
+	 * Get the mean of the values
+	 * @return the mean of the values, NaN if there are none
+	 */
+	public synchronized double getMean() {
+		return (count == 0) ? Double.NaN : mean;
+	}
+
+	/**
+	 * Get the variance of the values (population variance)
+	 * @return the variance of the values, NaN if there are none
+	 */
+	public synchronized double getVariance() {
+		return (count == 0) ? Double.NaN : sumOfSquaredDifferences / count;
+	}
+
+	/**
+	 * Get the standard deviation of the values (population standard deviation)
+	 * @return the standard deviation of the values, NaN if there are none
+	 */
+	public synchronized double getStandardDeviation() {
+		return Math.sqrt(this.getVariance());
+	}
+
+	/**
+	 * Get the smallest value
+	 * @return the smallest value, NaN if there are none
+	 */
+	public synchronized double getMin() {
+		return valueCounts.isEmpty() ? Double.NaN : valueCounts.firstKey();
+	}
+
+	/**
+	 * Get the largest value
+	 * @return the largest value, NaN if there are none
+	 */
+	public synchronized double getMax() {
+		return valueCounts.isEmpty() ? Double.NaN : valueCounts.lastKey();
+	}
+
+	/**
+	 * Get an approximate percentile of the values, interpolated within the bin of the histogram it falls into
+	 * and kept between the min and the max
+	 * @param percentile the percentile between 0 and 100, e.g. 50 for the median
+	 * @return the percentile, NaN if there are no values
+	 */
+	public synchronized double getPercentile(double percentile) {
+		if (percentile < 0 || percentile > 100) {
+			throw new IllegalArgumentException("percentile must be between 0 and 100");
+		}
+		if (count == 0) {
+			return Double.NaN;
+		}
+		double rank = percentile / 100 * count;
+		long seen = 0;
+		for (int i = 0; i < bins.length; i++) {
+			if (bins[i] > 0 && seen + bins[i] >= rank) {
+				double estimate = lower + (i + (rank - seen) / bins[i]) * binWidth;
+				return Math.min(Math.max(estimate, this.getMin()), this.getMax());
+			}
+			seen += bins[i];
+		}
+		return this.getMax();
+	}
+
+	/**
+	 * The String representation of ObservationStatistics
+	 */
+	public synchronized String toString() {
+		return "[count = " + count + ", mean = " + this.getMean() + ", standardDeviation = " + this.getStandardDeviation()
+				+ ", min = " + this.getMin() + ", max = " + this.getMax() + "]";
+	}
+
+	private int binOf(double value) {
+		int bin = (int) Math.floor((value - lower) / binWidth);
+		return Math.min(Math.max(bin, 0), bins.length - 1);
+	}
+}
@@ -0,0 +1,257 @@
+package model;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Class which hydrates many patients at once, i.e. for every patient resource id, retrieve the identifier of the patient
+ * and then the latest data of the patient. The requests to the server are fanned out over a bounded number of threads
+ * so that a practitioner with a lot of patients doesn't have to wait for every round trip one after another, and the
+ * latest Observations are retrieved for many patients per search by the ObservationBatchRetriever.
+ * Patients that were included in a search the hydrator was given (e.g. Encounter?_include=Encounter:subject) are
+ * identified and get their demographics from the included entry, so only their latest Observations are retrieved.
+ * A hydrator that bypasses the cache asks the server for the demographics and Observations even if a CachingFHIRTransport
+ * has them, which a refresh needs; the identifiers of the resource ids never change, so they may still come from the cache.
+ *
+ */
+public class PatientHydrator {
+	private final int concurrency;
+	private boolean bypassCache = false; // whether the demographics and Observations must be what the server has now
+	private final HashMap<String, FHIRBundleEntry> includedPatientsOfResourceIds = new HashMap<String, FHIRBundleEntry>();
+	private final HashMap<Tuple<String, String>, FHIRBundleEntry> includedPatientsOfIdentifiers = new HashMap<Tuple<String, String>, FHIRBundleEntry>();
+
+	/**
+	 * Constructor of PatientHydrator that uses the concurrency of FHIRClient.getConfig()
+	 */
+	public PatientHydrator() {
+		this(FHIRClient.getConfig().getConcurrency());
+	}
+
+	/**
+	 * Constructor of PatientHydrator
+	 * @param concurrency the maximum number of patients that are retrieved from the server at the same time
+	 */
+	public PatientHydrator(int concurrency) {
+		this(concurrency, Collections.<FHIRBundleEntry>emptyList());
+	}
+
+	/**
+	 * Constructor of PatientHydrator for patients some of which were included in a search
+	 * @param concurrency the maximum number of patients that are retrieved from the server at the same time
+	 * @param includedPatients the Patient entries included in a search, the patients of these entries are not asked for again
+	 */
+	public PatientHydrator(int concurrency, Collection<FHIRBundleEntry> includedPatients) {
+		if (concurrency < 1) {
+			throw new IllegalArgumentException("Concurrency must be a positive integer");
+		}
+		this.concurrency = concurrency;
+		for (FHIRBundleEntry includedPatient: includedPatients) {
+			if (includedPatient.getResourceId() != null && includedPatient.getIdentifier() != null) {
+				includedPatientsOfResourceIds.put(includedPatient.getResourceId(), includedPatient);
+				includedPatientsOfIdentifiers.put(includedPatient.getIdentifier(), includedPatient);
+			}
+		}
+	}
+
+	/**
+	 * Get the maximum number of patients that are retrieved from the server at the same time
+	 * @return the concurrency limit of this hydrator
+	 */
+	public int getConcurrency() {
+		return concurrency;
+	}
+
+	/**
+	 * Check whether the demographics and Observations are always asked from the server, never from a cache
+	 * @return true if the cache is bypassed, otherwise false
+	 */
+	public boolean isBypassCache() {
+		return bypassCache;
+	}
+
+	/**
+	 * Set whether the demographics and Observations are always asked from the server, never from a cache
+	 * @param bypassCache true to bypass the cache, e.g. for the requests of a refresh
+	 */
+	public void setBypassCache(boolean bypassCache) {
+		this.bypassCache = bypassCache;
+	}
+
+	/**
+	 * Given the resource ids of patients, retrieve the identifier and then the latest data of every unique patient.
+	 * Patients whose identifier can't be retrieved are left out.
+	 * @param patientResourceIds the resource ids of the patients, should not contain duplicates
+	 * @return the patients keyed by their identifier, or null if the data of any patient could not be retrieved
+	 * @throws IOException
+	 */
+	public HashMap<Tuple<String, String>, FHIRPatient> hydrate(Collection<String> patientResourceIds) throws IOException {
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(concurrency, patientResourceIds.size())), new HydratorThreadFactory());
+		try {
+			return this.hydrateIdentifiedPatients(this.identify(patientResourceIds, executor), executor);
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Given the resource ids of patients, retrieve only the identifier of every unique patient.
+	 * Patients whose identifier can't be retrieved are left out.
+	 * @param patientResourceIds the resource ids of the patients, should not contain duplicates
+	 * @return the patients keyed by their identifier, only their identifier and resource id are set
+	 * @throws IOException
+	 */
+	public HashMap<Tuple<String, String>, FHIRPatient> identify(Collection<String> patientResourceIds) throws IOException {
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(concurrency, patientResourceIds.size())), new HydratorThreadFactory());
+		try {
+			return this.identify(patientResourceIds, executor);
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Retrieve the identifier of every patient on the executor
+	 */
+	private HashMap<Tuple<String, String>, FHIRPatient> identify(Collection<String> patientResourceIds, ExecutorService executor) throws IOException {
+		// different resource ids can belong to the same identifier, keep only one patient for each identifier
+		HashMap<Tuple<String, String>, FHIRPatient> patients = new HashMap<Tuple<String, String>, FHIRPatient>();
+
+		// first fan out: retrieve the identifier of every patient that wasn't included in the search
+		List<Callable<FHIRPatient>> identifierTasks = new ArrayList<Callable<FHIRPatient>>();
+		for (final String patientResourceId: patientResourceIds) {
+			FHIRBundleEntry includedPatient = includedPatientsOfResourceIds.get(patientResourceId);
+			FHIRPatient identifiedPatient = new FHIRPatient();
+			if (includedPatient != null && identifiedPatient.retrieveDemographicsFromBundleEntryAndInit(includedPatient)) {
+				patients.put(identifiedPatient.getIdentifier(), identifiedPatient);
+				continue;
+			}
+			identifierTasks.add(new Callable<FHIRPatient>() {
+				public FHIRPatient call() {
+					FHIRPatient patient = new FHIRPatient();
+					if (patient.retrieveIdentifierFromServer(patientResourceId) == null) {
+						return null;
+					}
+					return patient;
+				}
+			});
+		}
+		for (FHIRPatient patient: invokeAll(executor, identifierTasks)) {
+			if (patient != null) {
+				patients.put(patient.getIdentifier(), patient);
+			}
+		}
+		return patients;
+	}
+
+	/**
+	 * Given patients whose identifier is already known, retrieve the latest data of every patient.
+	 * @param patients the patients keyed by their identifier, they are populated in place
+	 * @return the patients, or null if the data of any patient could not be retrieved
+	 * @throws IOException
+	 */
+	public HashMap<Tuple<String, String>, FHIRPatient> hydrateIdentifiedPatients(HashMap<Tuple<String, String>, FHIRPatient> patients) throws IOException {
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(concurrency, patients.size())), new HydratorThreadFactory());
+		try {
+			return this.hydrateIdentifiedPatients(patients, executor);
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Retrieve the demographics of every patient on the executor and then their latest Observations in batches
+	 */
+	private HashMap<Tuple<String, String>, FHIRPatient> hydrateIdentifiedPatients(HashMap<Tuple<String, String>, FHIRPatient> patients, ExecutorService executor) throws IOException {
+		// second fan out: retrieve the demographics of every unique patient that wasn't included in the search
+		List<Callable<Boolean>> demographicsTasks = new ArrayList<Callable<Boolean>>();
+		for (final Map.Entry<Tuple<String, String>, FHIRPatient> entry: patients.entrySet()) {
+			FHIRBundleEntry includedPatient = includedPatientsOfIdentifiers.get(entry.getKey());
+			if (includedPatient != null && entry.getValue().retrieveDemographicsFromBundleEntryAndInit(includedPatient)) {
+				continue;
+			}
+			demographicsTasks.add(new Callable<Boolean>() {
+				public Boolean call() throws IOException {
+					return entry.getValue().retrieveDemographicsFromServerAndInit(entry.getKey(), bypassCache);
+				}
+			});
+		}
+		for (Boolean succeeded: invokeAll(executor, demographicsTasks)) {
+			if (!succeeded) {
+				return null;
+			}
+		}
+
+		// finally retrieve the latest Observations of all the patients in a few multi-patient searches
+		ObservationBatchRetriever batchRetriever = new ObservationBatchRetriever(FHIRClient.getConfig().getPatientsPerSearch(), concurrency);
+		batchRetriever.setBypassCache(bypassCache);
+		HashMap<Tuple<String, String>, FHIRBundleEntry> latestCholesterolEntries = batchRetriever.retrieveLatestEntries(patients.keySet(), FHIRCholesterol.CODE);
+		HashMap<Tuple<String, String>, FHIRBundleEntry> latestBloodPressureEntries = batchRetriever.retrieveLatestEntries(patients.keySet(), FHIRBloodPressure.CODE);
+		for (Map.Entry<Tuple<String, String>, FHIRPatient> entry: patients.entrySet()) {
+			FHIRBundleEntry cholesterolEntry = latestCholesterolEntries.get(entry.getKey());
+			FHIRCholesterol latestCholesterol = new FHIRCholesterol();
+			if (cholesterolEntry != null && latestCholesterol.retrieveDataFromBundleEntryAndInit(cholesterolEntry)) {
+				entry.getValue().setCholesterol(latestCholesterol);
+			}
+			FHIRBundleEntry bloodPressureEntry = latestBloodPressureEntries.get(entry.getKey());
+			FHIRBloodPressure latestBloodPressure = new FHIRBloodPressure();
+			if (bloodPressureEntry != null && latestBloodPressure.retrieveDataFromBundleEntryAndInit(bloodPressureEntry)) {
+				entry.getValue().setBloodPressure(latestBloodPressure);
+			}
+		}
+		return patients;
+	}
+
+	/**
+	 * Run every task on the executor and wait for all of them to finish
+	 * @param executor the executor to run the tasks on
+	 * @param tasks the tasks to be run
+	 * @return the results of the tasks, in the same order as the tasks
+	 * @throws IOException if any of the tasks threw an IOException or the waiting thread was interrupted
+	 */
+	static <T> List<T> invokeAll(ExecutorService executor, List<Callable<T>> tasks) throws IOException {
+		List<T> results = new ArrayList<T>();
+		try {
+			for (Future<T> future: executor.invokeAll(tasks)) {
+				results.add(future.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while retrieving patients");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		}
+		return results;
+	}
+
+	/**
+	 * ThreadFactory which creates daemon threads so that the hydrator never keeps the application alive
+	 */
+	static class HydratorThreadFactory implements ThreadFactory {
+		private final AtomicInteger count = new AtomicInteger();
+
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "patient-hydrator-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,309 @@
+package model;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class which shares the patients retrieved from the server between all the practitioners of the process, keyed by
+ * the identifier of the patient. A patient that was retrieved less than maxAgeMillis ago is given back as is, and a
+ * patient that is being retrieved for another practitioner is waited for instead of being asked for again, so a
+ * patient shared by many practitioners is retrieved at most once per interval however many of them refresh it.
+ * The practitioners subscribe to their patients; a patient is forgotten once no practitioner is subscribed to it anymore.
+ * A patient retrieved for a practitioner that never subscribes to it is forgotten, with its resource id, once it is older
+ * than maxAgeMillis since it would be retrieved again anyway.
+ * The retrieved patients are never changed afterwards, a newer version of a patient is always a new FHIRPatient.
+ *
+ */
+public class PatientRegistry {
+	public static final long DEFAULT_MAX_AGE_MILLIS = 10000; // shorter than any refresh frequency a practitioner would pick
+	private static final PatientRegistry SHARED = new PatientRegistry(PatientRegistry.DEFAULT_MAX_AGE_MILLIS);
+
+	/**
+	 * A patient of the registry and the practitioners subscribed to it
+	 */
+	private static class Entry {
+		private FHIRPatient patient = null; // null until it has been retrieved
+		private long retrievedAt = 0; // epoch milliseconds
+		private int subscribers = 0;
+	}
+
+	/**
+	 * A retrieval of a patient in progress, the practitioners asking for the same patient wait for it
+	 */
+	private static class Retrieval {
+		private final CompletableFuture<FHIRPatient> future = new CompletableFuture<FHIRPatient>(); // completed with null if it failed
+		private final long startedAt;
+
+		private Retrieval(long startedAt) {
+			this.startedAt = startedAt;
+		}
+	}
+
+	private final HashMap<Tuple<String, String>, Entry> entries = new HashMap<Tuple<String, String>, Entry>();
+	private final HashMap<String, Tuple<String, String>> identifiersOfResourceIds = new HashMap<String, Tuple<String, String>>(); // the identifier of a resource never changes
+	private final HashMap<Tuple<String, String>, Retrieval> retrievals = new HashMap<Tuple<String, String>, Retrieval>();
+	private final AtomicLong retrievedPatients = new AtomicLong();
+	private volatile long maxAgeMillis;
+
+	/**
+	 * Constructor of PatientRegistry
+	 * @param maxAgeMillis how long a retrieved patient is given back as is, in milliseconds
+	 */
+	public PatientRegistry(long maxAgeMillis) {
+		this.setMaxAgeMillis(maxAgeMillis);
+	}
+
+	/**
+	 * Get the registry shared by all the practitioners of the process
+	 * @return the shared registry
+	 */
+	public static PatientRegistry getShared() {
+		return PatientRegistry.SHARED;
+	}
+
+	/**
+	 * Get how long a retrieved patient is given back as is
+	 * @return the maximum age of a patient in milliseconds
+	 */
+	public long getMaxAgeMillis() {
+		return maxAgeMillis;
+	}
+
+	/**
+	 * Set how long a retrieved patient is given back as is
+	 * @param maxAgeMillis the maximum age of a patient in milliseconds, 0 to always retrieve the patients again
+	 */
+	public void setMaxAgeMillis(long maxAgeMillis) {
+		if (maxAgeMillis < 0) {
+			throw new IllegalArgumentException("maxAgeMillis must not be negative");
+		}
+		this.maxAgeMillis = maxAgeMillis;
+	}
+
+	/**
+	 * Subscribe a practitioner to a patient, the patient is kept until every subscriber has unsubscribed
+	 * @param identifierOfPatient the patient's identifier
+	 */
+	public synchronized void subscribe(Tuple<String, String> identifierOfPatient) {
+		Entry entry = entries.get(identifierOfPatient);
+		if (entry == null) {
+			entry = new Entry();
+			entries.put(identifierOfPatient, entry);
+		}
+		entry.subscribers++;
+	}
+
+	/**
+	 * Unsubscribe a practitioner from a patient, the patient is forgotten if it was the last subscriber
+	 * @param identifierOfPatient the patient's identifier
+	 */
+	public synchronized void unsubscribe(Tuple<String, String> identifierOfPatient) {
+		Entry entry = entries.get(identifierOfPatient);
+		if (entry == null) {
+			return;
+		}
+		entry.subscribers--;
+		if (entry.subscribers <= 0) {
+			entries.remove(identifierOfPatient);
+			if (entry.patient != null && entry.patient.getResourceId() != null) {
+				identifiersOfResourceIds.remove(entry.patient.getResourceId());
+			}
+		}
+	}
+
+	/**
+	 * Get the number of practitioners subscribed to a patient
+	 * @param identifierOfPatient the patient's identifier
+	 * @return the number of subscribers
+	 */
+	public synchronized int getSubscribers(Tuple<String, String> identifierOfPatient) {
+		Entry entry = entries.get(identifierOfPatient);
+		return (entry == null) ? 0 : entry.subscribers;
+	}
+
+	/**
+	 * Get the number of patients kept by the registry
+	 * @return the number of patients kept, including the ones not retrieved yet
+	 */
+	public synchronized int getPatientCount() {
+		return entries.size();
+	}
+
+	/**
+	 * Get the number of patients retrieved from the server through the registry so far
+	 * @return the number of patients retrieved
+	 */
+	public long getRetrievedPatients() {
+		return retrievedPatients.get();
+	}
+
+	/**
+	 * Given the resource ids of patients, give back the patients with their latest data, only retrieving from the server
+	 * the identifiers that are not known yet and the patients that are not recent enough. See PatientHydrator.hydrate.
+	 * @param patientResourceIds the resource ids of the patients, should not contain duplicates
+	 * @param hydrator the hydrator retrieving the patients from the server
+	 * @return the patients keyed by their identifier, or null if the data of any patient could not be retrieved
+	 * @throws IOException
+	 */
+	public HashMap<Tuple<String, String>, FHIRPatient> hydrate(Collection<String> patientResourceIds, PatientHydrator hydrator) throws IOException {
+		HashMap<Tuple<String, String>, FHIRPatient> patients = new HashMap<Tuple<String, String>, FHIRPatient>();
+		ArrayList<String> unknownResourceIds = new ArrayList<String>();
+		synchronized (this) {
+			for (String patientResourceId: patientResourceIds) {
+				Tuple<String, String> identifier = identifiersOfResourceIds.get(patientResourceId);
+				if (identifier == null) {
+					unknownResourceIds.add(patientResourceId);
+				}
+				else {
+					patients.put(identifier, PatientRegistry.identifiedPatient(identifier, patientResourceId));
+				}
+			}
+		}
+		if (!unknownResourceIds.isEmpty()) {
+			HashMap<Tuple<String, String>, FHIRPatient> identifiedPatients = hydrator.identify(unknownResourceIds);
+			synchronized (this) {
+				for (Map.Entry<Tuple<String, String>, FHIRPatient> identifiedPatient: identifiedPatients.entrySet()) {
+					identifiersOfResourceIds.put(identifiedPatient.getValue().getResourceId(), identifiedPatient.getKey());
+				}
+			}
+			patients.putAll(identifiedPatients);
+		}
+		return this.hydrateIdentifiedPatients(patients, hydrator, System.currentTimeMillis() - maxAgeMillis);
+	}
+
+	/**
+	 * Given patients whose identifier is already known, give back the patients with their latest data, only retrieving
+	 * from the server the patients that were not retrieved since retrievedSince. See PatientHydrator.hydrateIdentifiedPatients.
+	 * @param patients the patients keyed by their identifier, with their resource id
+	 * @param hydrator the hydrator retrieving the patients from the server
+	 * @param retrievedSince the patients retrieved at or after this time in epoch milliseconds are given back as is,
+	 * e.g. the start of a refresh that found the patients changed on the server
+	 * @return the patients keyed by their identifier, the ones that were retrieved again are new objects, or null if the data of any patient could not be retrieved
+	 * @throws IOException
+	 */
+	public HashMap<Tuple<String, String>, FHIRPatient> hydrateIdentifiedPatients(HashMap<Tuple<String, String>, FHIRPatient> patients, PatientHydrator hydrator, long retrievedSince) throws IOException {
+		HashMap<Tuple<String, String>, FHIRPatient> hydratedPatients = new HashMap<Tuple<String, String>, FHIRPatient>();
+		HashMap<Tuple<String, String>, FHIRPatient> patientsToRetrieve = new HashMap<Tuple<String, String>, FHIRPatient>();
+		HashMap<Tuple<String, String>, Retrieval> ownRetrievals = new HashMap<Tuple<String, String>, Retrieval>();
+		HashMap<Tuple<String, String>, Retrieval> otherRetrievals = new HashMap<Tuple<String, String>, Retrieval>();
+		synchronized (this) {
+			long now = System.currentTimeMillis();
+			for (Map.Entry<Tuple<String, String>, FHIRPatient> patient: patients.entrySet()) {
+				Entry entry = entries.get(patient.getKey());
+				Retrieval retrieval = retrievals.get(patient.getKey());
+				if (entry != null && entry.patient != null && entry.retrievedAt >= retrievedSince) {
+					hydratedPatients.put(patient.getKey(), entry.patient);
+				}
+				else if (retrieval != null && retrieval.startedAt >= retrievedSince) {
+					otherRetrievals.put(patient.getKey(), retrieval);
+				}
+				else {
+					// a retrieval that started too long ago is left alone, the patient is retrieved again alongside it
+					patientsToRetrieve.put(patient.getKey(), PatientRegistry.identifiedPatient(patient.getKey(), patient.getValue().getResourceId()));
+					if (retrieval == null) {
+						retrieval = new Retrieval(now);
+						retrievals.put(patient.getKey(), retrieval);
+						ownRetrievals.put(patient.getKey(), retrieval);
+					}
+				}
+			}
+		}
+
+		if (!patientsToRetrieve.isEmpty()) {
+			HashMap<Tuple<String, String>, FHIRPatient> retrievedPatients = null;
+			try {
+				retrievedPatients = hydrator.hydrateIdentifiedPatients(patientsToRetrieve);
+			}
+			finally {
+				this.completeRetrievals(ownRetrievals, retrievedPatients);
+			}
+			if (retrievedPatients == null) {
+				return null;
+			}
+			this.retrievedPatients.addAndGet(retrievedPatients.size());
+			hydratedPatients.putAll(retrievedPatients);
+		}
+
+		// the patients being retrieved for other practitioners, they finish their own retrievals before waiting for any other
+		for (Map.Entry<Tuple<String, String>, Retrieval> retrieval: otherRetrievals.entrySet()) {
+			FHIRPatient patient;
+			try {
+				patient = retrieval.getValue().future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for a patient");
+			} catch (ExecutionException e) {
+				throw new IOException(e.getCause());
+			}
+			if (patient == null) {
+				return null;
+			}
+			hydratedPatients.put(retrieval.getKey(), patient);
+		}
+		return hydratedPatients;
+	}
+
+	/**
+	 * Keep the retrieved patients and tell the practitioners waiting for them
+	 * @param ownRetrievals the retrievals started by this call
+	 * @param retrievedPatients the patients retrieved, null if the retrieval failed
+	 */
+	private void completeRetrievals(HashMap<Tuple<String, String>, Retrieval> ownRetrievals, HashMap<Tuple<String, String>, FHIRPatient> retrievedPatients) {
+		synchronized (this) {
+			if (retrievedPatients != null) {
+				long now = System.currentTimeMillis();
+				for (Map.Entry<Tuple<String, String>, FHIRPatient> retrievedPatient: retrievedPatients.entrySet()) {
+					Entry entry = entries.get(retrievedPatient.getKey());
+					if (entry == null) { // the practitioner subscribes once it has the patient
+						entry = new Entry();
+						entries.put(retrievedPatient.getKey(), entry);
+					}
+					entry.patient = retrievedPatient.getValue();
+					entry.retrievedAt = now;
+				}
+			}
+			for (Map.Entry<Tuple<String, String>, Retrieval> retrieval: ownRetrievals.entrySet()) {
+				retrievals.remove(retrieval.getKey());
+			}
+			this.forgetUnsubscribedPatients();
+		}
+		for (Map.Entry<Tuple<String, String>, Retrieval> retrieval: ownRetrievals.entrySet()) {
+			retrieval.getValue().future.complete((retrievedPatients == null) ? null : retrievedPatients.get(retrieval.getKey()));
+		}
+	}
+
+	/**
+	 * Forget the patients no practitioner is subscribed to that are too old to be given back, and the resource ids of
+	 * the patients that are neither kept nor being retrieved. Called with the lock held.
+	 */
+	private void forgetUnsubscribedPatients() {
+		long now = System.currentTimeMillis();
+		for (Iterator<Entry> kept = entries.values().iterator(); kept.hasNext();) {
+			Entry entry = kept.next();
+			if (entry.subscribers <= 0 && entry.patient != null && now - entry.retrievedAt >= maxAgeMillis) {
+				kept.remove();
+			}
+		}
+		for (Iterator<Tuple<String, String>> identifiers = identifiersOfResourceIds.values().iterator(); identifiers.hasNext();) {
+			Tuple<String, String> identifier = identifiers.next();
+			if (!entries.containsKey(identifier) && !retrievals.containsKey(identifier)) {
+				identifiers.remove();
+			}
+		}
+	}
+
+	private static FHIRPatient identifiedPatient(Tuple<String, String> identifier, String resourceId) {
+		FHIRPatient patient = new FHIRPatient();
+		patient.setIdentifier(identifier);
+		patient.setResourceId(resourceId);
+		return patient;
+	}
+}
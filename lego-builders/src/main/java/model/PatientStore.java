@@ -0,0 +1,371 @@
+package model;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Class which keeps the patients of a practitioner on disk so that the app can show them straight away at startup
+ * and reconcile with the server in the background, instead of starting from nothing on every launch.
+ * The store is an append-only log with one JSON record per line (the practitioner or a patient keyed by its identifier),
+ * the last record of an identifier wins. Only patients that changed are appended, and the log is compacted to one
+ * record per identifier once it has grown to several times that. A torn last line (e.g. the app was killed while
+ * writing) is ignored when the log is read.
+ * The records are patient data in plain text, so where the file system supports POSIX permissions the directory is
+ * created readable by its owner only (rwx------) and so are the log and its compaction file (rw-------). The patients
+ * that left the practitioner are dropped with retainPatients, which rewrites the log without their records.
+ *
+ */
+public class PatientStore {
+	public static final Path DEFAULT_DIRECTORY = Paths.get(System.getProperty("user.home"), ".legobuilders");
+	private static final int COMPACTION_SLACK = 64; // lines allowed on top of twice the number of records before compacting
+	private static final Set<PosixFilePermission> DIRECTORY_PERMISSIONS = PosixFilePermissions.fromString("rwx------");
+	private static final Set<PosixFilePermission> FILE_PERMISSIONS = PosixFilePermissions.fromString("rw-------");
+
+	private final Path file;
+	private String practitionerRecord = null;
+	private final LinkedHashMap<Tuple<String, String>, String> patientRecords = new LinkedHashMap<Tuple<String, String>, String>(); // identifier -> last record
+	private int lineCount = 0;
+	private boolean permissionsRestricted = false; // whether a log written by an older version has been made owner only
+
+	/**
+	 * Constructor of PatientStore, reads the log if it exists
+	 * @param file the file of the log, its directory is created if needed
+	 * @throws IOException if the log could not be read
+	 */
+	public PatientStore(Path file) throws IOException {
+		this.file = file;
+		if (Files.exists(file)) {
+			this.readLog();
+		}
+	}
+
+	/**
+	 * Get the store of a practitioner in the DEFAULT_DIRECTORY
+	 * @param practitionerResourceId the resource id of the practitioner, as entered at login
+	 * @return the store of the practitioner
+	 * @throws IOException if the log could not be read
+	 */
+	public static PatientStore forPractitioner(String practitionerResourceId) throws IOException {
+		return PatientStore.forPractitioner(PatientStore.DEFAULT_DIRECTORY, practitionerResourceId);
+	}
+
+	/**
+	 * Get the store of a practitioner in a directory
+	 * @param directory the directory of the stores
+	 * @param practitionerResourceId the resource id of the practitioner, as entered at login
+	 * @return the store of the practitioner
+	 * @throws IOException if the log could not be read
+	 */
+	public static PatientStore forPractitioner(Path directory, String practitionerResourceId) throws IOException {
+		String fileName = "practitioner-" + practitionerResourceId.replaceAll("[^A-Za-z0-9._-]", "_") + ".jsonl";
+		return new PatientStore(directory.resolve(fileName));
+	}
+
+	/**
+	 * Get the file of the log
+	 * @return the file of the log
+	 */
+	public Path getFile() {
+		return file;
+	}
+
+	/**
+	 * Load the practitioner from the store, without the patients
+	 * @return the practitioner or null if the store has none
+	 */
+	public synchronized FHIRPractitioner loadPractitioner() {
+		if (practitionerRecord == null) {
+			return null;
+		}
+		JSONObject record = new JSONObject(practitionerRecord);
+		JSONObject identifier = record.getJSONObject("identifier");
+		return new FHIRPractitioner(record.optString("givenName"), record.optString("familyName"), identifier.optString("system"), identifier.optString("value"));
+	}
+
+	/**
+	 * Load the patients from the store
+	 * @return the patients keyed by their identifier, empty if the store has none
+	 */
+	public synchronized HashMap<Tuple<String, String>, FHIRPatient> loadPatients() {
+		HashMap<Tuple<String, String>, FHIRPatient> patients = new HashMap<Tuple<String, String>, FHIRPatient>();
+		for (Map.Entry<Tuple<String, String>, String> record: patientRecords.entrySet()) {
+			patients.put(record.getKey(), PatientStore.patientFromJSON(new JSONObject(record.getValue())));
+		}
+		return patients;
+	}
+
+	/**
+	 * Save the practitioner (name and identifier) into the store if it changed
+	 * @param practitioner the practitioner
+	 * @throws IOException if the log could not be written
+	 */
+	public synchronized void savePractitioner(FHIRPractitioner practitioner) throws IOException {
+		JSONObject record = new JSONObject();
+		record.put("resourceType", "Practitioner");
+		record.put("givenName", practitioner.getGivenName());
+		record.put("familyName", practitioner.getFamilyName());
+		record.put("identifier", PatientStore.identifierToJSON(practitioner.getIdentifier()));
+		String line = record.toString();
+		if (!line.equals(practitionerRecord)) {
+			this.append(line);
+			practitionerRecord = line;
+		}
+	}
+
+	/**
+	 * Save the patients into the store, only the ones that differ from their last record are appended
+	 * @param patients the patients keyed by their identifier
+	 * @return the number of patients appended
+	 * @throws IOException if the log could not be written
+	 */
+	public synchronized int savePatients(Map<Tuple<String, String>, FHIRPatient> patients) throws IOException {
+		StringBuilder lines = new StringBuilder();
+		int appended = 0;
+		for (Map.Entry<Tuple<String, String>, FHIRPatient> patient: patients.entrySet()) {
+			String line = PatientStore.patientToJSON(patient.getValue()).toString();
+			if (!line.equals(patientRecords.get(patient.getKey()))) {
+				lines.append(line).append('\n');
+				patientRecords.put(patient.getKey(), line);
+				appended++;
+			}
+		}
+		if (appended == 0) {
+			return 0;
+		}
+		this.createPrivateFile(file);
+		try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.APPEND)) {
+			writer.write(lines.toString()); // one write so a batch is never interleaved with another
+		}
+		lineCount += appended;
+		if (lineCount > 2 * this.recordCount() + PatientStore.COMPACTION_SLACK) {
+			this.compact();
+		}
+		return appended;
+	}
+
+	/**
+	 * Drop the patients that are not in the current set, e.g. the patients that left the practitioner. If any is dropped,
+	 * the log is rewritten so their records are no longer on disk.
+	 * @param currentIdentifiers the identifiers of the current patients of the practitioner
+	 * @return the number of patients dropped
+	 * @throws IOException if the log could not be written
+	 */
+	public synchronized int retainPatients(Collection<Tuple<String, String>> currentIdentifiers) throws IOException {
+		int dropped = 0;
+		for (Iterator<Tuple<String, String>> identifiers = patientRecords.keySet().iterator(); identifiers.hasNext();) {
+			if (!currentIdentifiers.contains(identifiers.next())) {
+				identifiers.remove();
+				dropped++;
+			}
+		}
+		if (dropped > 0) {
+			this.compact();
+		}
+		return dropped;
+	}
+
+	/**
+	 * Rewrite the log with only the last record of every identifier. The new log is written next to the old one
+	 * and then moved over it, so a crash during compaction leaves the old log intact.
+	 * @throws IOException if the log could not be written
+	 */
+	public synchronized void compact() throws IOException {
+		Path compacted = file.resolveSibling(file.getFileName() + ".tmp");
+		Files.deleteIfExists(compacted); // left by a crash, it may not be owner only
+		this.createPrivateFile(compacted);
+		try (BufferedWriter writer = Files.newBufferedWriter(compacted, StandardCharsets.UTF_8, StandardOpenOption.TRUNCATE_EXISTING)) {
+			if (practitionerRecord != null) {
+				writer.write(practitionerRecord);
+				writer.write('\n');
+			}
+			for (String record: patientRecords.values()) {
+				writer.write(record);
+				writer.write('\n');
+			}
+		}
+		Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		lineCount = this.recordCount();
+	}
+
+	/**
+	 * Get the number of lines of the log
+	 * @return the number of lines of the log, including records replaced by later ones
+	 */
+	public synchronized int getLineCount() {
+		return lineCount;
+	}
+
+	/**
+	 * The number of records that are still current
+	 */
+	private int recordCount() {
+		return patientRecords.size() + ((practitionerRecord == null) ? 0 : 1);
+	}
+
+	/**
+	 * Create a file readable by its owner only where POSIX permissions are supported, and its directory if needed.
+	 * A log that already exists is made owner only too, once.
+	 */
+	private void createPrivateFile(Path path) throws IOException {
+		boolean posix = path.getFileSystem().supportedFileAttributeViews().contains("posix");
+		Path directory = path.toAbsolutePath().getParent();
+		if (!Files.isDirectory(directory)) {
+			if (posix) {
+				Files.createDirectories(directory, PosixFilePermissions.asFileAttribute(PatientStore.DIRECTORY_PERMISSIONS));
+			}
+			else {
+				Files.createDirectories(directory);
+			}
+		}
+		try {
+			if (posix) {
+				Files.createFile(path, PosixFilePermissions.asFileAttribute(PatientStore.FILE_PERMISSIONS));
+			}
+			else {
+				Files.createFile(path);
+			}
+		} catch (FileAlreadyExistsException e) {
+			if (posix && path.equals(file) && !permissionsRestricted) {
+				Files.setPosixFilePermissions(path, PatientStore.FILE_PERMISSIONS);
+			}
+		}
+		permissionsRestricted = permissionsRestricted || path.equals(file);
+	}
+
+	/**
+	 * Append a single record to the log
+	 */
+	private void append(String line) throws IOException {
+		this.createPrivateFile(file);
+		try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.APPEND)) {
+			writer.write(line);
+			writer.write('\n');
+		}
+		lineCount++;
+	}
+
+	/**
+	 * Read the log, the last record of every identifier wins
+	 */
+	private void readLog() throws IOException {
+		try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.isEmpty()) {
+					continue;
+				}
+				lineCount++;
+				JSONObject record;
+				try {
+					record = new JSONObject(line);
+				} catch (JSONException e) { // torn write, skip it
+					continue;
+				}
+				if ("Practitioner".equals(record.optString("resourceType"))) {
+					practitionerRecord = line;
+				}
+				else if ("Patient".equals(record.optString("resourceType")) && record.has("identifier")) {
+					Tuple<String, String> identifier = PatientStore.identifierFromJSON(record.getJSONObject("identifier"));
+					patientRecords.remove(identifier); // keep the order of the last write
+					patientRecords.put(identifier, line);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Turn a patient into a record of the log
+	 * @param patient the patient
+	 * @return the record of the patient
+	 */
+	static JSONObject patientToJSON(FHIRPatient patient) {
+		JSONObject record = new JSONObject();
+		record.put("resourceType", "Patient");
+		record.put("identifier", PatientStore.identifierToJSON(patient.getIdentifier()));
+		record.put("resourceId", patient.getResourceId());
+		record.put("givenName", patient.getGivenName());
+		record.put("familyName", patient.getFamilyName());
+		record.put("country", patient.getCountry());
+		record.put("state", patient.getState());
+		record.put("city", patient.getCity());
+		record.put("birthday", patient.getBirthday());
+		record.put("gender", patient.getGender());
+		FHIRCholesterol cholesterol = patient.getCholesterol();
+		if (cholesterol != null) {
+			record.put("cholesterol", PatientStore.observationToJSON(cholesterol.getCholesterolObservation()));
+		}
+		FHIRBloodPressure bloodPressure = patient.getBloodPressure();
+		if (bloodPressure != null) {
+			record.put("systolic", PatientStore.observationToJSON(bloodPressure.getSystolicBPObservation()));
+			record.put("diastolic", PatientStore.observationToJSON(bloodPressure.getDiastolicBPObservation()));
+		}
+		return record;
+	}
+
+	/**
+	 * Turn a record of the log back into a patient
+	 * @param record the record of a patient
+	 * @return the patient
+	 */
+	static FHIRPatient patientFromJSON(JSONObject record) {
+		Tuple<String, String> identifier = PatientStore.identifierFromJSON(record.getJSONObject("identifier"));
+		FHIRCholesterol cholesterol = null;
+		if (record.has("cholesterol")) {
+			JSONObject observation = record.getJSONObject("cholesterol");
+			cholesterol = new FHIRCholesterol();
+			cholesterol.setCholesterol(observation.optString("value", null), observation.optString("units", null), observation.optString("system", null), observation.optString("timeRecorded", null));
+		}
+		FHIRBloodPressure bloodPressure = null;
+		if (record.has("systolic") && record.has("diastolic")) {
+			JSONObject systolic = record.getJSONObject("systolic");
+			JSONObject diastolic = record.getJSONObject("diastolic");
+			bloodPressure = new FHIRBloodPressure();
+			bloodPressure.setSystolicBPObservation(systolic.optString("value", null), systolic.optString("units", null), systolic.optString("system", null), systolic.optString("timeRecorded", null));
+			bloodPressure.setDiastolicBPObservation(diastolic.optString("value", null), diastolic.optString("units", null), diastolic.optString("system", null), diastolic.optString("timeRecorded", null));
+		}
+		FHIRPatient patient = new FHIRPatient(record.optString("givenName"), record.optString("familyName"), identifier.first, identifier.second,
+				record.optString("country", null), record.optString("state", null), record.optString("city", null),
+				record.optString("birthday", null), record.optString("gender", null), cholesterol, bloodPressure);
+		patient.setResourceId(record.optString("resourceId", null));
+		return patient;
+	}
+
+	private static JSONObject observationToJSON(Observation observation) {
+		JSONObject json = new JSONObject();
+		json.put("value", observation.getValue());
+		json.put("units", observation.getUnits());
+		json.put("system", observation.getSystem());
+		json.put("timeRecorded", observation.getTimeRecorded());
+		return json;
+	}
+
+	private static JSONObject identifierToJSON(Tuple<String, String> identifier) {
+		JSONObject json = new JSONObject();
+		json.put("system", identifier.first);
+		json.put("value", identifier.second);
+		return json;
+	}
+
+	private static Tuple<String, String> identifierFromJSON(JSONObject json) {
+		return new Tuple<String, String>(json.optString("system", null), json.optString("value", null));
+	}
+}
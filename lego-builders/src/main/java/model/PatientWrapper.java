@@ -2,9 +2,6 @@ package model;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
-
-import org.json.JSONObject;
 
 /**
  * A Wrapper for FHIRPatient. Hides complexity of FHIRPatient and provides an easier access and obtaining of data from GUI side.
@@ -27,77 +24,99 @@ public class PatientWrapper {
 	 * @param observationName the name of the Observation to be returned
 	 * @param numberOfMostRecentObservationsToReturn the number of most recent observations to be returned
 	 * @return an ArrayList of size numberOfMostRecentObservationsToReturn with the elements being the Observation queried for. If not enough data
-	 * present, the rest of the ArrayList shall be null. 
+	 * present, the rest of the ArrayList shall be empty Observations. 
 	 * The Boolean indicate if timeRecorded is same, for e.g. systolic and diastolic has same time recorded so only shown once.
 	 * The Tuple<String, Observation> is for Observation and name of the Observation for e.g. "Total Cholesterol" and a totalCholesterol Observation
 	 * We have an arraylist of Tuple<String, Observation> because a FHIRObservation can have multiple Observations for e.g. FHIRBloodPressure has systolic and diastolic
 	 * ArrayList of these cause we want the n most recent Observations.
 	 */
 	public ArrayList<Tuple<ArrayList<Tuple<String, Observation>>, Boolean>> getObservations(String observationName, int numberOfMostRecentObservationsToReturn){
+		return this.getObservations(observationName, numberOfMostRecentObservationsToReturn, FHIRClient.getConfig().getPageSize());
+	}
+	
+	/**
+	 * Retrieve data from server, numberOfMostRecentObervationsToReturn observations of the type observationName.
+	 * The pages of the search are walked once, pageSize observations at a time.
+	 * @param observationName the name of the Observation to be returned
+	 * @param numberOfMostRecentObservationsToReturn the number of most recent observations to be returned
+	 * @param pageSize the number of observations asked for per request, at most ObservationHistoryCursor.MAX_PAGE_SIZE
+	 * @return see getObservations(String, int)
+	 */
+	public ArrayList<Tuple<ArrayList<Tuple<String, Observation>>, Boolean>> getObservations(String observationName, int numberOfMostRecentObservationsToReturn, int pageSize){
 		ArrayList<Tuple<ArrayList<Tuple<String, Observation>>, Boolean>> retArrayList = new ArrayList<Tuple<ArrayList<Tuple<String, Observation>>, Boolean>>();
-//		Tuple<ArrayList<Tuple<String, Observation>>, Boolean> tupleElement = new Tuple<ArrayList<Tuple<String, Observation>>, Boolean>(null, null);
-		if (observationName.equals(ObservationTypes.BLOOD_PRESSURE.toString())){ // if BloodPressure is queried
-			ArrayList<Tuple<String, Observation>> tempObservationConstructor = new ArrayList<Tuple<String, Observation>>();
-			JSONObject intermediateJSONObj = new JSONObject();
-			FHIRBloodPressure fhirBloodPressure = new FHIRBloodPressure();
+		boolean isBloodPressure = observationName.equals(ObservationTypes.BLOOD_PRESSURE.toString());
+		if (!isBloodPressure && !observationName.equals(ObservationTypes.CHOLESTEROL.toString())) {
+			return retArrayList;
+		}
+		ObservationHistoryCursor cursor = null;
+		try {
+			cursor = new ObservationHistoryCursor(isBloodPressure ? FHIRBloodPressure.CODE : FHIRCholesterol.CODE, this.patient.getIdentifier(),
+					Math.min(numberOfMostRecentObservationsToReturn, pageSize), Observation.NO_TIME_RECORDED);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		
+		// populate the most recent 'numberOfMostRecentObservationsToReturn' observations 
+		for (int i = 0; i < numberOfMostRecentObservationsToReturn; i ++) {
+			FHIRBundleEntry entry = null;
 			try {
-				// get the related JSONObject
-				intermediateJSONObj = fhirBloodPressure.getRelatedJSONObject(this.patient.getIdentifier(), numberOfMostRecentObservationsToReturn);
+				if (cursor != null && cursor.hasNext()) {
+					entry = cursor.next();
+				}
 			} catch (IOException e) {
 				e.printStackTrace();
+				cursor = null; // don't try the next pages either
 			}
 			
-			// populate the most recent 'numberOfMostRecentObservationsToReturn' observations 
-			for (int i = 0; i < numberOfMostRecentObservationsToReturn; i ++) {
-				
-				fhirBloodPressure = new FHIRBloodPressure();
-				tempObservationConstructor = new ArrayList<Tuple<String, Observation>>();
-				if (!fhirBloodPressure.retrieveDataFromServerAndInit(intermediateJSONObj, i)) { // try to get data from server, if can't...
+			ArrayList<Tuple<String, Observation>> tempObservationConstructor = new ArrayList<Tuple<String, Observation>>();
+			if (isBloodPressure) { // if BloodPressure is queried
+				FHIRBloodPressure fhirBloodPressure = new FHIRBloodPressure();
+				if (entry == null || !fhirBloodPressure.retrieveDataFromBundleEntryAndInit(entry)) { // if no more data...
 					// put into the tempObservationConstructor empty Observations
 					tempObservationConstructor.add(new Tuple(ObservationTypes.DIASTOLIC_BLOOD_PRESSURE.toString(), new Observation()));
 					tempObservationConstructor.add(new Tuple(ObservationTypes.SYSTOLIC_BLOOD_PRESSURE.toString(), new Observation()));
-					retArrayList.add(new Tuple(tempObservationConstructor, true));
 				}
 				else {
 					// get the diastolicBPObservation and systolicBPObservation and put into the tempObservationConstructor
-					Observation diastolicBPObservation = fhirBloodPressure.getDiastolicBPObservation();
-					Observation systolicBPObservation = fhirBloodPressure.getSystolicBPObservation(); // value, units, system, timerecorded
-					tempObservationConstructor.add(new Tuple(ObservationTypes.DIASTOLIC_BLOOD_PRESSURE.toString(), diastolicBPObservation));
-					tempObservationConstructor.add(new Tuple(ObservationTypes.SYSTOLIC_BLOOD_PRESSURE.toString(), systolicBPObservation));
-					
-					retArrayList.add(new Tuple(tempObservationConstructor, true));
+					tempObservationConstructor.add(new Tuple(ObservationTypes.DIASTOLIC_BLOOD_PRESSURE.toString(), fhirBloodPressure.getDiastolicBPObservation()));
+					tempObservationConstructor.add(new Tuple(ObservationTypes.SYSTOLIC_BLOOD_PRESSURE.toString(), fhirBloodPressure.getSystolicBPObservation()));
 				}
+				retArrayList.add(new Tuple(tempObservationConstructor, true));
 			}
-		}
-		else if (observationName.equals(ObservationTypes.CHOLESTEROL.toString())){
-			ArrayList<Tuple<String, Observation>> tempObservationConstructor = new ArrayList<Tuple<String, Observation>>();
-			JSONObject intermediateJSONObj = new JSONObject();
-			FHIRCholesterol fhirCholesterol = new FHIRCholesterol();
-			try {
-				// get the related JSONObject
-				intermediateJSONObj = fhirCholesterol.getRelatedJSONObject(this.patient.getIdentifier(), numberOfMostRecentObservationsToReturn);
-			} catch (IOException e) {
-				e.printStackTrace();
-			}
-			for (int i = 0; i < numberOfMostRecentObservationsToReturn; i ++) {
-				fhirCholesterol = new FHIRCholesterol();
-				if (!fhirCholesterol.retrieveDataFromServerAndInit(intermediateJSONObj, i)) { // try to get data from server, if cant..
+			else {
+				FHIRCholesterol fhirCholesterol = new FHIRCholesterol();
+				if (entry == null || !fhirCholesterol.retrieveDataFromBundleEntryAndInit(entry)) { // if no more data..
 					// put into the tempObservationConstructor an empty Observation
 					tempObservationConstructor.add(new Tuple(ObservationTypes.CHOLESTEROL.toString(), new Observation()));
-					retArrayList.add(new Tuple(tempObservationConstructor, false));
 				}
 				else {
 					// put into the tempObservationConstructor the totalCholesterol Observation
-					Observation cholesterolObservation = fhirCholesterol.getCholesterolObservation();
-					tempObservationConstructor.add(new Tuple(ObservationTypes.CHOLESTEROL.toString(), cholesterolObservation));
-					retArrayList.add(new Tuple(tempObservationConstructor, false));
+					tempObservationConstructor.add(new Tuple(ObservationTypes.CHOLESTEROL.toString(), fhirCholesterol.getCholesterolObservation()));
 				}
+				retArrayList.add(new Tuple(tempObservationConstructor, false));
 			}
 		}
 		return retArrayList;
 		
 	}
 	
+	/**
+	 * Fill the history of the patient with the numberOfMostRecentObservations latest observations of the type observationName,
+	 * only the observations that are not in the history yet are retrieved from the server
+	 * @param history the history of the patients' observations
+	 * @param observationName the name of the Observation to be retrieved
+	 * @param numberOfMostRecentObservations the number of most recent observations to be retrieved
+	 * @return the number of observations the history has for the patient, at most numberOfMostRecentObservations
+	 */
+	public int fillHistory(ObservationHistory history, String observationName, int numberOfMostRecentObservations) {
+		try {
+			return history.fill(this.patient.getIdentifier(), observationName, numberOfMostRecentObservations);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return 0;
+		}
+	}
+	
 	/**
 	 * Retrieve data from server, numberOfMostRecentObervationsToReturn observations of the type observationName
 	 * @param observationName the name of the Observation to be returned
@@ -0,0 +1,109 @@
+package model;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Class which keeps ObservationStatistics of the latest total cholesterol, systolic and diastolic blood pressure
+ * over a set of monitored patients. The value each patient contributes is remembered, so a patient being added,
+ * removed or getting a new value only updates the statistics with the difference, nothing is recomputed from scratch.
+ *
+ */
+public class PopulationStatistics {
+	private final HashMap<String, ObservationStatistics> statisticsOfCodes = new HashMap<String, ObservationStatistics>();
+	private final HashMap<Tuple<String, String>, HashMap<String, Double>> valuesOfPatients = new HashMap<Tuple<String, String>, HashMap<String, Double>>();
+
+	/**
+	 * Constructor of PopulationStatistics, the percentiles are to within 1 mg/dL or 1 mm[Hg]
+	 */
+	public PopulationStatistics() {
+		statisticsOfCodes.put(FHIRCholesterol.CODE, new ObservationStatistics(0, 500, 500));
+		statisticsOfCodes.put(FHIRBloodPressure.SYSTOLIC_BP_CODE, new ObservationStatistics(0, 300, 300));
+		statisticsOfCodes.put(FHIRBloodPressure.DIASTOLIC_BP_CODE, new ObservationStatistics(0, 200, 200));
+	}
+
+	/**
+	 * Get the statistics of a kind of Observation
+	 * @param code the loinc code e.g. FHIRCholesterol.CODE or FHIRBloodPressure.SYSTOLIC_BP_CODE
+	 * @return the statistics, or null if the code is not kept
+	 */
+	public ObservationStatistics getStatistics(String code) {
+		return statisticsOfCodes.get(code);
+	}
+
+	/**
+	 * Add a patient to the monitored set, or update the values it contributes if it is already in it
+	 * @param patient the patient
+	 */
+	public synchronized void put(FHIRPatient patient) {
+		HashMap<String, Double> values = valuesOfPatients.get(patient.getIdentifier());
+		if (values == null) {
+			values = new HashMap<String, Double>();
+			valuesOfPatients.put(patient.getIdentifier(), values);
+		}
+		FHIRCholesterol cholesterol = patient.getCholesterol();
+		FHIRBloodPressure bloodPressure = patient.getBloodPressure();
+		this.putValue(values, FHIRCholesterol.CODE, (cholesterol == null) ? Double.NaN : cholesterol.getCholesterolNumericValue());
+		this.putValue(values, FHIRBloodPressure.SYSTOLIC_BP_CODE, (bloodPressure == null) ? Double.NaN : bloodPressure.getSystolicBPNumericValue());
+		this.putValue(values, FHIRBloodPressure.DIASTOLIC_BP_CODE, (bloodPressure == null) ? Double.NaN : bloodPressure.getDiastolicBPNumericValue());
+	}
+
+	/**
+	 * Remove a patient from the monitored set
+	 * @param identifierOfPatient the patient's identifier
+	 */
+	public synchronized void remove(Tuple<String, String> identifierOfPatient) {
+		HashMap<String, Double> values = valuesOfPatients.remove(identifierOfPatient);
+		if (values != null) {
+			for (Map.Entry<String, Double> value: values.entrySet()) {
+				statisticsOfCodes.get(value.getKey()).remove(value.getValue());
+			}
+		}
+	}
+
+	/**
+	 * Make the monitored set the given patients: the ones that are new are added, the ones that are no longer in it removed
+	 * and the others updated
+	 * @param patients the monitored patients
+	 */
+	public synchronized void setPatients(Collection<FHIRPatient> patients) {
+		Set<Tuple<String, String>> identifiers = new HashSet<Tuple<String, String>>();
+		for (FHIRPatient patient: patients) {
+			identifiers.add(patient.getIdentifier());
+			this.put(patient);
+		}
+		Iterator<Tuple<String, String>> monitored = new HashSet<Tuple<String, String>>(valuesOfPatients.keySet()).iterator();
+		while (monitored.hasNext()) {
+			Tuple<String, String> identifier = monitored.next();
+			if (!identifiers.contains(identifier)) {
+				this.remove(identifier);
+			}
+		}
+	}
+
+	/**
+	 * Get the number of monitored patients
+	 * @return the number of monitored patients
+	 */
+	public synchronized int getNumberOfPatients() {
+		return valuesOfPatients.size();
+	}
+
+	/**
+	 * Replace the value a patient contributes to the statistics of a code
+	 */
+	private void putValue(HashMap<String, Double> values, String code, double newValue) {
+		Double oldValue = values.get(code);
+		statisticsOfCodes.get(code).replace((oldValue == null) ? Double.NaN : oldValue, newValue);
+		if (Double.isNaN(newValue)) {
+			values.remove(code);
+		}
+		else {
+			values.put(code, newValue);
+		}
+	}
+}
@@ -0,0 +1,109 @@
+package model;
+
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Class which remembers what has already been retrieved from the server so that a refresh only asks for what changed.
+ * It keeps a high-water mark, i.e. the server time from which on changes are searched for (_lastUpdated=gt...),
+ * and the ETag of every conditional request so unchanged results come back as 304 Not Modified.
+ *
+ * A refresh is a round: beginRound(), the requests of the round (which report the server's Date), then commitRound()
+ * if the round found changes. The high-water mark only moves on commit, so a round without changes sends exactly the
+ * same requests as the one before it, which is what lets the server answer with 304.
+ *
+ */
+public class SyncState {
+	private volatile String highWaterMark; // ISO-8601 instant, null if nothing has been retrieved yet
+	private final ConcurrentHashMap<String, String> eTags = new ConcurrentHashMap<String, String>(); // url -> ETag
+	private Instant roundServerDate; // the earliest Date the server reported in the current round
+	private Instant roundLocalStart; // used if the server doesn't report its Date
+
+	/**
+	 * Forget everything, the next refresh must retrieve everything again
+	 */
+	public synchronized void reset() {
+		this.highWaterMark = null;
+		this.eTags.clear();
+		this.roundServerDate = null;
+		this.roundLocalStart = null;
+	}
+
+	/**
+	 * Begin a round of requests
+	 */
+	public synchronized void beginRound() {
+		this.roundServerDate = null;
+		this.roundLocalStart = Instant.now();
+	}
+
+	/**
+	 * Report the Date header of a response of the current round
+	 * @param httpDate the value of the Date header, may be null
+	 */
+	public synchronized void observeServerDate(String httpDate) {
+		if (httpDate == null) {
+			return;
+		}
+		try {
+			Instant serverDate = ZonedDateTime.parse(httpDate, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+			if (roundServerDate == null || serverDate.isBefore(roundServerDate)) {
+				roundServerDate = serverDate;
+			}
+		} catch (DateTimeParseException e) {
+			// ignore a malformed Date header, the local time of the round is used instead
+		}
+	}
+
+	/**
+	 * Commit the current round: everything changed before the start of the round has now been retrieved.
+	 * The ETags are forgotten because the requests of the next round are different.
+	 */
+	public synchronized void commitRound() {
+		Instant roundStart = (roundServerDate != null) ? roundServerDate : roundLocalStart;
+		if (roundStart == null) {
+			return;
+		}
+		this.highWaterMark = roundStart.toString();
+		this.eTags.clear();
+	}
+
+	/**
+	 * Check if there is a high-water mark, i.e. if everything has been retrieved at least once
+	 * @return true if there is a high-water mark, otherwise false
+	 */
+	public boolean hasHighWaterMark() {
+		return this.highWaterMark != null;
+	}
+
+	/**
+	 * Get the high-water mark, the server time from which on changes have not been retrieved yet
+	 * @return the high-water mark as an ISO-8601 instant e.g. 2020-05-01T10:00:00Z, or null if there is none
+	 */
+	public String getHighWaterMark() {
+		return this.highWaterMark;
+	}
+
+	/**
+	 * Get the ETag of the last response to a url
+	 * @param urlString the url of the request
+	 * @return the ETag or null if there is none
+	 */
+	public String getETag(String urlString) {
+		return eTags.get(urlString);
+	}
+
+	/**
+	 * Remember the ETag of the response to a url
+	 * @param urlString the url of the request
+	 * @param eTag the ETag of the response, ignored if null
+	 */
+	public void putETag(String urlString, String eTag) {
+		if (eTag != null) {
+			eTags.put(urlString, eTag);
+		}
+	}
+}
@@ -0,0 +1,114 @@
+package observerpattern;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ *
+ * @param <T> Generic Class T, the keys of the map
+ * @param <V> Generic Class V, the values of the map
+ * 
+ * Class that describes one change of an ObservableHashMap: which keys were added, removed or changed,
+ * and their old and new values. So an observer can patch only what is affected instead of rebuilding everything.
+ * 
+ */
+public class MapChangeEvent<T, V> {
+	private final Set<T> addedKeys = new LinkedHashSet<T>();
+	private final Set<T> removedKeys = new LinkedHashSet<T>();
+	private final Set<T> changedKeys = new LinkedHashSet<T>();
+	private final Map<T, V> oldValues = new HashMap<T, V>();
+	private final Map<T, V> newValues = new HashMap<T, V>();
+
+	/**
+	 * Record that a key was put into the map
+	 * @param key the key
+	 * @param oldValue the value before, null if the key was added
+	 * @param newValue the value after
+	 */
+	void recordPut(T key, V oldValue, V newValue) {
+		if (oldValue == null) {
+			addedKeys.add(key);
+		}
+		else {
+			changedKeys.add(key);
+			oldValues.put(key, oldValue);
+		}
+		newValues.put(key, newValue);
+	}
+
+	/**
+	 * Record that a key was removed from the map
+	 * @param key the key
+	 * @param oldValue the value before
+	 */
+	void recordRemove(T key, V oldValue) {
+		removedKeys.add(key);
+		oldValues.put(key, oldValue);
+	}
+
+	/**
+	 * @return the keys that were not in the map before, in the order they were put
+	 */
+	public Set<T> getAddedKeys() {
+		return Collections.unmodifiableSet(addedKeys);
+	}
+
+	/**
+	 * @return the keys that are no longer in the map
+	 */
+	public Set<T> getRemovedKeys() {
+		return Collections.unmodifiableSet(removedKeys);
+	}
+
+	/**
+	 * @return the keys that are still in the map but with a different value
+	 */
+	public Set<T> getChangedKeys() {
+		return Collections.unmodifiableSet(changedKeys);
+	}
+
+	/**
+	 * Get the value of a key before the change
+	 * @param key a changed or removed key
+	 * @return the value before the change, or null if the key was added or is not part of the change
+	 */
+	public V getOldValue(T key) {
+		return oldValues.get(key);
+	}
+
+	/**
+	 * Get the value of a key after the change
+	 * @param key an added or changed key
+	 * @return the value after the change, or null if the key was removed or is not part of the change
+	 */
+	public V getNewValue(T key) {
+		return newValues.get(key);
+	}
+
+	/**
+	 * Check whether a key is part of the change
+	 * @param key the key to be checked
+	 * @return true if the key was added, removed or changed, otherwise false
+	 */
+	public boolean affects(T key) {
+		return addedKeys.contains(key) || removedKeys.contains(key) || changedKeys.contains(key);
+	}
+
+	/**
+	 * Check whether nothing changed
+	 * @return true if no key was added, removed or changed
+	 */
+	public boolean isEmpty() {
+		return addedKeys.isEmpty() && removedKeys.isEmpty() && changedKeys.isEmpty();
+	}
+
+	/**
+	 * returns a Stringified version of the change
+	 */
+	public String toString() {
+		return "added=" + addedKeys + ", removed=" + removedKeys + ", changed=" + changedKeys;
+	}
+}
@@ -0,0 +1,13 @@
+package observerpattern;
+/**
+ * 
+ * Interface for concrete observers that want to know exactly what changed in an ObservableHashMap,
+ * not just that something changed
+ *
+ * @param <T> Generic Class T, the keys of the map
+ * @param <V> Generic Class V, the values of the map
+ */
+public interface MapObserver<T, V> {
+	// called once for every change of the map that added, removed or changed at least one key
+	public abstract void mapChanged(MapChangeEvent<T, V> event);
+}
@@ -1,6 +1,6 @@
 package observerpattern;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 /***
  * 
  * @author sriram, Zhi Tan
@@ -10,8 +10,9 @@ import java.util.List;
  */
 public abstract class Observable {
 	// maintains a list of Observers that it keeps tracks of for a particular 
-	// type of observable that extends this class
-	private List<Observer> observers  = new ArrayList<Observer>();
+	// type of observable that extends this class. Observers are notified from background threads while others
+	// may attach or detach, so the list is copied on write and notifying iterates over a snapshot
+	private List<Observer> observers  = new CopyOnWriteArrayList<Observer>();
 	
 	/**
 	 * Adding Observers to the list of observers
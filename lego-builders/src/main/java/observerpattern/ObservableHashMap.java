@@ -1,14 +1,17 @@
 package observerpattern;
 
-import java.util.ArrayList;
+import java.util.AbstractMap;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.BiConsumer;
-import java.util.function.BiFunction;
-import java.util.function.Function;
 /**
  * 
  * @author sriram, Zhi Tan
@@ -19,36 +22,111 @@ import java.util.function.Function;
  * Class that is an observable, so everytime data changes all observers are notified.
  * It delegates most of its tasks to a hashmap
  * 
+ * It is written by refresh threads and read by the Swing thread, so the underlying map is a ConcurrentHashMap:
+ * single reads never block. Writes are serialized, and keySet(), values(), entrySet() and forEach() work on a snapshot
+ * taken under the same lock, so they never throw ConcurrentModificationException and never see half of a
+ * putAllThenNotify. Observers are notified after the lock is released. Like ConcurrentHashMap, null keys and values are not allowed.
+ * 
+ * Besides the plain Observers, MapObservers are told exactly which keys were added, removed or changed by a MapChangeEvent.
+ * 
  * Ref: Some Javadocs are obtained from the HashMap Javadocs (https://docs.oracle.com/javase/8/docs/api/java/util/Map.html#values--)
  * 
  */
 public class ObservableHashMap<T, V> extends Observable {
 	// only 2 original methods: putAllThenNotify(ObservableHashMap) and putAllThenNotify(HashMap)
 	// tasks delegated to HashMap. Only calling notifyDataSetChanged when appropriate
-	private HashMap<T, V> underlyingHashMap; 
+	private final ConcurrentHashMap<T, V> underlyingHashMap; 
+	private final Map<T, V> unmodifiableView; // reads straight through to the underlying map
+	private final Object writeLock = new Object(); // serializes writes and snapshots
+	private final List<MapObserver<T, V>> mapObservers = new CopyOnWriteArrayList<MapObserver<T, V>>();
 
 	
 	public ObservableHashMap() {
-		underlyingHashMap = new HashMap<T, V>();
+		underlyingHashMap = new ConcurrentHashMap<T, V>();
+		unmodifiableView = Collections.unmodifiableMap(underlyingHashMap);
 	}
 	
+	/**
+	 * Copy constructor, the copy has the same entries but its own map and no observers
+	 * @param observableHashmap the map to be copied
+	 */
 	public ObservableHashMap(ObservableHashMap<T, V> observableHashmap) {
 		super();
-		this.underlyingHashMap = observableHashmap.underlyingHashMap;
+		synchronized (observableHashmap.writeLock) { // copied once, consistent with every putAllThenNotify
+			this.underlyingHashMap = new ConcurrentHashMap<T, V>(observableHashmap.underlyingHashMap);
+		}
+		this.unmodifiableView = Collections.unmodifiableMap(underlyingHashMap);
+	}
+	
+	/**
+	 * Adding MapObservers that are told what changed
+	 * @param mapObserver the MapObserver that needs to observe this map
+	 */
+	public void attachMapObserver(MapObserver<T, V> mapObserver) {
+		mapObservers.add(mapObserver);
+	}
+
+	/**
+	 * Removing MapObservers
+	 * @param mapObserver the MapObserver that no longer needs to observe this map
+	 */
+	public void detachMapObserver(MapObserver<T, V> mapObserver) {
+		mapObservers.remove(mapObserver);
+	}
+
+	/**
+	 * Notifies the Observers that the map has changed and the MapObservers of what changed, if anything did
+	 * @param event the change
+	 */
+	private void notifyMapChanged(MapChangeEvent<T, V> event) {
+		if (event.isEmpty()) {
+			return;
+		}
+		this.notifyDatasetChanged();
+		for (MapObserver<T, V> mapObserver: mapObservers) {
+			mapObserver.mapChanged(event);
+		}
 	}
 	
 	/**
 	 * Clears the hashmap
 	 */
 	public void clear() {
-		underlyingHashMap.clear();
+		MapChangeEvent<T, V> event = new MapChangeEvent<T, V>();
+		synchronized (writeLock) {
+			for (Map.Entry<T, V> entry: underlyingHashMap.entrySet()) {
+				event.recordRemove(entry.getKey(), entry.getValue());
+			}
+			underlyingHashMap.clear();
+		}
+		this.notifyMapChanged(event);
 	}
 
 	/**
 	 * returns a clone of the hashmap
 	 */
 	public Object clone() {
-		return underlyingHashMap.clone();
+		return this.snapshot();
+	}
+	
+	/**
+	 * Returns a copy of the entries of this map that is consistent with every putAllThenNotify
+	 * @return a copy of the entries of this map
+	 */
+	public HashMap<T, V> snapshot() {
+		synchronized (writeLock) {
+			return new HashMap<T, V>(underlyingHashMap);
+		}
+	}
+
+	/**
+	 * Returns a read-only view of this map that is never copied: it sees every later change, and iterating it
+	 * never throws ConcurrentModificationException but may see part of a putAllThenNotify in progress.
+	 * Use snapshot() where a consistent copy is needed.
+	 * @return an unmodifiable view of this map
+	 */
+	public Map<T, V> unmodifiableView() {
+		return unmodifiableView;
 	}
 
 	/**
@@ -71,10 +149,14 @@ public class ObservableHashMap<T, V> extends Observable {
 
 	/**
 	 * Makes a set out of the entries in the hashmap
-	 * @return a set of entries in the hashmap
+	 * @return an unmodifiable snapshot of the entries in the hashmap
 	 */
 	public Set<Entry<T, V>> entrySet() {
-		return underlyingHashMap.entrySet();
+		Set<Entry<T, V>> entries = new HashSet<Entry<T, V>>();
+		for (Map.Entry<T, V> entry: this.snapshot().entrySet()) {
+			entries.add(new AbstractMap.SimpleImmutableEntry<T, V>(entry));
+		}
+		return Collections.unmodifiableSet(entries);
 	}
 
 	/**
@@ -90,7 +172,7 @@ public class ObservableHashMap<T, V> extends Observable {
 	 * @param arg0 The action to be performed for each entry
 	 */
 	public void forEach(BiConsumer<? super T, ? super V> arg0) {
-		underlyingHashMap.forEach(arg0);
+		this.snapshot().forEach(arg0);
 	}
 
 	/**
@@ -120,18 +202,7 @@ public class ObservableHashMap<T, V> extends Observable {
 	 * @param other the other observable hashmap
 	 */
 	public void putAllThenNotify(ObservableHashMap<T, V> other) { 
-		boolean hasChanges = false;
-		for (Map.Entry<T, V> pair: other.entrySet()) {
-			T key = pair.getKey();
-			V value = pair.getValue();
-			if (!value.equals(this.get(key))) {
-				underlyingHashMap.put(pair.getKey(), pair.getValue());
-				hasChanges = true;
-			}
-		}
-		if (hasChanges) {
-			this.notifyDatasetChanged();
-		}
+		this.putAllThenNotify((Map<T, V>) other.snapshot(), Collections.<T>emptySet());
 	}
 
 	/**
@@ -153,10 +224,10 @@ public class ObservableHashMap<T, V> extends Observable {
 
 	/**
 	 * 
-	 * @return a set view of the keys contained in this map
+	 * @return an unmodifiable snapshot of the keys contained in this map
 	 */
 	public Set<T> keySet() {
-		return underlyingHashMap.keySet();
+		return Collections.unmodifiableSet(this.snapshot().keySet());
 	}
 
 	/**
@@ -165,9 +236,18 @@ public class ObservableHashMap<T, V> extends Observable {
 	 * @param arg1 value expected to be associated with the specified key
 	 * @return true if the value was removed
 	 */
+	@SuppressWarnings("unchecked")
 	public boolean remove(Object arg0, Object arg1) {
-		this.notifyDatasetChanged();
-		return underlyingHashMap.remove(arg0, arg1);
+		boolean removed;
+		MapChangeEvent<T, V> event = new MapChangeEvent<T, V>();
+		synchronized (writeLock) {
+			removed = underlyingHashMap.remove(arg0, arg1);
+			if (removed) {
+				event.recordRemove((T) arg0, (V) arg1);
+			}
+		}
+		this.notifyMapChanged(event);
+		return removed;
 	}
 
 	/**
@@ -179,8 +259,16 @@ public class ObservableHashMap<T, V> extends Observable {
 	 * @return true if the value was replaced
 	 */
 	public boolean replace(T arg0, V arg1, V arg2) {
-		this.notifyDatasetChanged();
-		return underlyingHashMap.replace(arg0, arg1, arg2);
+		boolean replaced;
+		MapChangeEvent<T, V> event = new MapChangeEvent<T, V>();
+		synchronized (writeLock) {
+			replaced = underlyingHashMap.replace(arg0, arg1, arg2);
+			if (replaced && !arg2.equals(arg1)) {
+				event.recordPut(arg0, arg1, arg2);
+			}
+		}
+		this.notifyMapChanged(event);
+		return replaced;
 	}
 
 	/**
@@ -200,10 +288,10 @@ public class ObservableHashMap<T, V> extends Observable {
 
 	/**
 	 * Returns a Collection view of the values contained in this map
-	 * @return a collection view of the values contained in this map
+	 * @return an unmodifiable snapshot of the values contained in this map
 	 */
 	public Collection<V> values() {
-		return underlyingHashMap.values();
+		return Collections.unmodifiableCollection(this.snapshot().values());
 	}
 	
 	/**
@@ -214,18 +302,57 @@ public class ObservableHashMap<T, V> extends Observable {
 	 * @param other the other hashmap
 	 */
 	public void putAllThenNotify(HashMap<T, V> other) {
-		boolean hasChanges = false;
-		for (Map.Entry<T, V> pair: other.entrySet()) {
-			T key = pair.getKey();
-			V value = pair.getValue();
-			if (!value.equals(this.get(key))) {
-				underlyingHashMap.put(pair.getKey(), pair.getValue());
-				hasChanges = true;
+		this.putAllThenNotify((Map<T, V>) other, Collections.<T>emptySet());
+	}
+
+	/**
+	 * Remove every key and set every entry of the other hashmap in one step, then notify once with a single
+	 * MapChangeEvent if anything changed. A key that is both removed and in the other hashmap is set.
+	 * @param other the other hashmap
+	 * @param keysToRemove the keys to be removed
+	 */
+	public void putAllThenNotify(HashMap<T, V> other, Collection<? extends T> keysToRemove) {
+		this.putAllThenNotify((Map<T, V>) other, keysToRemove);
+	}
+
+	/**
+	 * Remove every key in one step, i.e. a snapshot sees either none or all of them removed, then notify once if any was removed.
+	 * @param keysToRemove the keys to be removed
+	 */
+	public void removeAllThenNotify(Collection<? extends T> keysToRemove) {
+		this.putAllThenNotify(Collections.<T, V>emptyMap(), keysToRemove);
+	}
+	
+	/**
+	 * Remove the keys then set every entry of the other map in one step, i.e. a snapshot sees either none or all of them,
+	 * then notify once if anything was different. Entries with a null key or value are skipped.
+	 */
+	private void putAllThenNotify(Map<T, V> other, Collection<? extends T> keysToRemove) {
+		MapChangeEvent<T, V> event = new MapChangeEvent<T, V>();
+		synchronized (writeLock) {
+			for (T key: keysToRemove) {
+				if (key == null || other.containsKey(key)) {
+					continue;
+				}
+				V oldValue = underlyingHashMap.remove(key);
+				if (oldValue != null) {
+					event.recordRemove(key, oldValue);
+				}
+			}
+			for (Map.Entry<T, V> pair: other.entrySet()) {
+				T key = pair.getKey();
+				V value = pair.getValue();
+				if (key == null || value == null) {
+					continue;
+				}
+				V oldValue = underlyingHashMap.get(key);
+				if (!value.equals(oldValue)) {
+					underlyingHashMap.put(key, value);
+					event.recordPut(key, oldValue, value);
+				}
 			}
 		}
-		if (hasChanges) {
-			this.notifyDatasetChanged();
-		}
+		this.notifyMapChanged(event);
 	}
 	
 	/**
@@ -236,13 +363,14 @@ public class ObservableHashMap<T, V> extends Observable {
 	 */
 	public V put(T key, V value) {
 		V retVal;
-		if (value.equals(this.get(key))) {
-			retVal = underlyingHashMap.put(key, value);
-		}
-		else {
+		MapChangeEvent<T, V> event = new MapChangeEvent<T, V>();
+		synchronized (writeLock) {
 			retVal = underlyingHashMap.put(key, value);
-			this.notifyDatasetChanged();
+			if (!value.equals(retVal)) {
+				event.recordPut(key, retVal, value);
+			}
 		}
+		this.notifyMapChanged(event);
 		return retVal;
 		
 	}
@@ -254,8 +382,15 @@ public class ObservableHashMap<T, V> extends Observable {
 	 * @return the previous value associated with the specified key, or null if there was no mapping for the key
 	 */
 	public V replace(T arg0, V arg1) {
-		V retVal = underlyingHashMap.replace(arg0, arg1);
-		this.notifyDatasetChanged();
+		V retVal;
+		MapChangeEvent<T, V> event = new MapChangeEvent<T, V>();
+		synchronized (writeLock) {
+			retVal = underlyingHashMap.replace(arg0, arg1);
+			if (retVal != null && !arg1.equals(retVal)) {
+				event.recordPut(arg0, retVal, arg1);
+			}
+		}
+		this.notifyMapChanged(event);
 		return retVal;
 	}
 
@@ -264,9 +399,17 @@ public class ObservableHashMap<T, V> extends Observable {
 	 * @param key key whose mapping is to be removed from the map
 	 * @return the previous value associated with key, or null if there was no mapping for key
 	 */
+	@SuppressWarnings("unchecked")
 	public V remove(Object key) {
-		V retVal = underlyingHashMap.remove(key);
-		this.notifyDatasetChanged();
+		V retVal;
+		MapChangeEvent<T, V> event = new MapChangeEvent<T, V>();
+		synchronized (writeLock) {
+			retVal = underlyingHashMap.remove(key);
+			if (retVal != null) {
+				event.recordRemove((T) key, retVal);
+			}
+		}
+		this.notifyMapChanged(event);
 		return retVal;
 	}
 }
@@ -0,0 +1,555 @@
+package server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Class which stands in for the HAPI FHIR server on the local machine, serving the SyntheticFHIRData to the app so
+ * practitioners with thousands of patients and a slow or failing server can be reproduced offline. Point the app at
+ * it with -Dfhir.baseUrl=http://localhost:{port}/fhir/ or a FHIRClientConfig with getBaseUrl(). Only the requests the
+ * app sends are understood:
+ *
+ *   Practitioner/{id}, Patient/{id}
+ *   Patient?identifier={system}|{value},...[&_lastUpdated=gt{instant}]
+ *   Encounter?practitioner.identifier={system}|{value}[&_include=Encounter:subject][&_lastUpdated=gt{instant}]
+ *   Observation?patient.identifier={system}|{value},...&code={loinc code}[&_include=Observation:subject]
+ *                [&_lastUpdated=gt{instant}][&date=gt{instant}|&date=lt{instant}]   always sorted by most recent date
+ *
+ * Every request may ask for only some elements of the resources with _elements, the resourceType, id and meta are always kept.
+ * Searches are paged by _count (defaultPageSize if missing, never more than maxPageSize), the next link carries the
+ * offset of the next page in _getpagesoffset like HAPI does. Every request is held back by the latency, and a share of
+ * the requests given by the error rate is answered with a 500 instead.
+ *
+ */
+public class MockFHIRServer {
+	public static final String CONTEXT = "/fhir/";
+	public static final int DEFAULT_PAGE_SIZE = 20; // what HAPI uses when there is no _count
+	public static final int DEFAULT_MAX_PAGE_SIZE = 200;
+	private static final String OFFSET_PARAMETER = "_getpagesoffset";
+	private static final String GREATER_THAN = "gt";
+	private static final String LESS_THAN = "lt";
+
+	private final SyntheticFHIRData data;
+	private final HttpServer httpServer;
+	private final ExecutorService executor;
+	private final AtomicLong requests = new AtomicLong();
+	private final AtomicLong injectedErrors = new AtomicLong();
+	private volatile int defaultPageSize = MockFHIRServer.DEFAULT_PAGE_SIZE;
+	private volatile int maxPageSize = MockFHIRServer.DEFAULT_MAX_PAGE_SIZE;
+	private volatile long latencyMillis = 0;
+	private volatile double errorRate = 0;
+
+	/**
+	 * Constructor of MockFHIRServer, the server is bound to the port straight away but only serves once started
+	 * @param data the resources to serve
+	 * @param port the port to listen on, 0 for any free port
+	 * @param threads the number of requests served at the same time, requests held back by the latency included
+	 * @throws IOException if the port could not be bound
+	 */
+	public MockFHIRServer(SyntheticFHIRData data, int port, int threads) throws IOException {
+		this.data = data;
+		this.httpServer = HttpServer.create(new InetSocketAddress(port), 0);
+		this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "mock-fhir-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		this.httpServer.setExecutor(executor);
+		this.httpServer.createContext(MockFHIRServer.CONTEXT, new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				serve(exchange);
+			}
+		});
+	}
+
+	/**
+	 * Start serving requests
+	 */
+	public void start() {
+		httpServer.start();
+	}
+
+	/**
+	 * Stop serving requests, the ones in progress are given up to a second to finish
+	 */
+	public void stop() {
+		httpServer.stop(1);
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Get the port the server listens on
+	 * @return the port
+	 */
+	public int getPort() {
+		return httpServer.getAddress().getPort();
+	}
+
+	/**
+	 * Get the base URL the app should use to send its requests to this server
+	 * @return the base URL, ending with a slash
+	 */
+	public String getBaseUrl() {
+		return "http://localhost:" + this.getPort() + MockFHIRServer.CONTEXT;
+	}
+
+	/**
+	 * Get the resources served
+	 * @return the resources served
+	 */
+	public SyntheticFHIRData getData() {
+		return data;
+	}
+
+	/**
+	 * Get the number of requests received so far, the ones answered with an injected error included
+	 * @return the number of requests
+	 */
+	public long getRequests() {
+		return requests.get();
+	}
+
+	/**
+	 * Get the number of requests answered with an injected error so far
+	 * @return the number of injected errors
+	 */
+	public long getInjectedErrors() {
+		return injectedErrors.get();
+	}
+
+	/**
+	 * Get the page size of a search without _count
+	 * @return the default page size
+	 */
+	public int getDefaultPageSize() {
+		return defaultPageSize;
+	}
+
+	/**
+	 * Set the page size of a search without _count
+	 * @param defaultPageSize the default page size, a positive integer
+	 */
+	public void setDefaultPageSize(int defaultPageSize) {
+		if (defaultPageSize < 1) {
+			throw new IllegalArgumentException("Page size must be a positive integer");
+		}
+		this.defaultPageSize = defaultPageSize;
+	}
+
+	/**
+	 * Get the largest page served, a larger _count is capped to it
+	 * @return the maximum page size
+	 */
+	public int getMaxPageSize() {
+		return maxPageSize;
+	}
+
+	/**
+	 * Set the largest page served, a larger _count is capped to it
+	 * @param maxPageSize the maximum page size, a positive integer
+	 */
+	public void setMaxPageSize(int maxPageSize) {
+		if (maxPageSize < 1) {
+			throw new IllegalArgumentException("Page size must be a positive integer");
+		}
+		this.maxPageSize = maxPageSize;
+	}
+
+	/**
+	 * Get how long every request is held back before it is answered
+	 * @return the latency in milliseconds
+	 */
+	public long getLatencyMillis() {
+		return latencyMillis;
+	}
+
+	/**
+	 * Set how long every request is held back before it is answered
+	 * @param latencyMillis the latency in milliseconds, 0 to answer straight away
+	 */
+	public void setLatencyMillis(long latencyMillis) {
+		if (latencyMillis < 0) {
+			throw new IllegalArgumentException("Latency must not be negative");
+		}
+		this.latencyMillis = latencyMillis;
+	}
+
+	/**
+	 * Get the share of the requests answered with a 500
+	 * @return the error rate, between 0 and 1
+	 */
+	public double getErrorRate() {
+		return errorRate;
+	}
+
+	/**
+	 * Set the share of the requests answered with a 500, picked at random
+	 * @param errorRate the error rate, 0 to never fail and 1 to always fail
+	 */
+	public void setErrorRate(double errorRate) {
+		if (errorRate < 0 || errorRate > 1) {
+			throw new IllegalArgumentException("Error rate must be between 0 and 1");
+		}
+		this.errorRate = errorRate;
+	}
+
+	private void serve(HttpExchange exchange) throws IOException {
+		requests.incrementAndGet();
+		try {
+			if (latencyMillis > 0) {
+				Thread.sleep(latencyMillis);
+			}
+			if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+				injectedErrors.incrementAndGet();
+				MockFHIRServer.sendOperationOutcome(exchange, 500, "Injected error");
+				return;
+			}
+			if (!exchange.getRequestMethod().equals("GET")) {
+				MockFHIRServer.sendOperationOutcome(exchange, 405, "Only GET is supported");
+				return;
+			}
+			String path = exchange.getRequestURI().getPath().substring(MockFHIRServer.CONTEXT.length());
+			if (path.endsWith("/")) { // the app searches Patient/?identifier=..., which HAPI takes as Patient?identifier=...
+				path = path.substring(0, path.length() - 1);
+			}
+			HashMap<String, String> query = MonitoringHttpServer.parseQuery(exchange.getRequestURI().getRawQuery());
+			String[] pathSegments = path.split("/");
+			JSONObject resource = null;
+			if (pathSegments.length == 2 && pathSegments[0].equals("Practitioner")) {
+				int practitioner = data.practitionerOfResourceId(pathSegments[1]);
+				resource = (practitioner < 0) ? null : data.practitioner(practitioner);
+			}
+			else if (pathSegments.length == 2 && pathSegments[0].equals("Patient")) {
+				int patient = data.patientOfResourceId(pathSegments[1]);
+				resource = (patient < 0) ? null : data.patient(patient);
+			}
+			else if (path.equals("Patient")) {
+				resource = this.searchPatients(exchange, query);
+			}
+			else if (path.equals("Encounter")) {
+				resource = this.searchEncounters(exchange, query);
+			}
+			else if (path.equals("Observation")) {
+				resource = this.searchObservations(exchange, query);
+			}
+			else {
+				MockFHIRServer.sendOperationOutcome(exchange, 404, "Unknown path " + exchange.getRequestURI().getPath());
+				return;
+			}
+			if (resource == null) {
+				MockFHIRServer.sendOperationOutcome(exchange, 404, "Resource " + path + " is not known");
+				return;
+			}
+			if (pathSegments.length == 2) { // the entries of a Bundle are subsetted when the page is built
+				resource = MockFHIRServer.subset(resource, query);
+			}
+			MockFHIRServer.sendResource(exchange, 200, resource);
+		} catch (InterruptedException e) { // the server is stopping
+			Thread.currentThread().interrupt();
+		} catch (IllegalArgumentException e) {
+			MockFHIRServer.sendOperationOutcome(exchange, 400, e.getMessage());
+		} catch (RuntimeException e) { // never leave a request without a response
+			e.printStackTrace();
+			MockFHIRServer.sendOperationOutcome(exchange, 500, e.toString());
+		} finally {
+			exchange.close();
+		}
+	}
+
+	/**
+	 * Patient?identifier=...
+	 */
+	private JSONObject searchPatients(HttpExchange exchange, HashMap<String, String> query) {
+		List<Integer> patients = this.isUpdatedAfter(query) ? this.patientsOfIdentifiers(query.get("identifier")) : Collections.<Integer>emptyList();
+		int offset = this.offsetOf(query);
+		int count = this.countOf(query);
+		ArrayList<JSONObject> matches = new ArrayList<JSONObject>();
+		for (int i = offset; i < Math.min(patients.size(), offset + count); i++) {
+			matches.add(data.patient(patients.get(i)));
+		}
+		return this.page(exchange, query, patients.size(), matches, Collections.<JSONObject>emptyList());
+	}
+
+	/**
+	 * Encounter?practitioner.identifier=...
+	 */
+	private JSONObject searchEncounters(HttpExchange exchange, HashMap<String, String> query) {
+		String identifier = MockFHIRServer.required(query, "practitioner.identifier");
+		int practitioner = data.practitionerOfIdentifier(MockFHIRServer.systemOf(identifier), MockFHIRServer.valueOf(identifier));
+		int total = (practitioner < 0 || !this.isUpdatedAfter(query)) ? 0 : data.getEncountersPerPractitioner();
+		int offset = this.offsetOf(query);
+		int count = this.countOf(query);
+		ArrayList<JSONObject> matches = new ArrayList<JSONObject>();
+		LinkedHashMap<Integer, JSONObject> includedPatients = new LinkedHashMap<Integer, JSONObject>();
+		for (int encounter = offset; encounter < Math.min(total, offset + count); encounter++) { // only the encounters of the page are built
+			matches.add(data.encounter(practitioner, encounter));
+			int patient = data.patientOfEncounter(practitioner, encounter);
+			if ("Encounter:subject".equals(query.get("_include")) && !includedPatients.containsKey(patient)) {
+				includedPatients.put(patient, data.patient(patient));
+			}
+		}
+		return this.page(exchange, query, total, matches, new ArrayList<JSONObject>(includedPatients.values()));
+	}
+
+	/**
+	 * Observation?patient.identifier=...&code=...
+	 */
+	private JSONObject searchObservations(HttpExchange exchange, HashMap<String, String> query) {
+		final String code = MockFHIRServer.required(query, "code");
+		long recordedAfter = Long.MIN_VALUE;
+		long recordedBefore = Long.MAX_VALUE;
+		if (query.containsKey("date") && query.get("date").startsWith(LESS_THAN)) {
+			recordedBefore = MockFHIRServer.parseDateTime(query.get("date").substring(LESS_THAN.length()));
+		}
+		else if (query.containsKey("date")) {
+			recordedAfter = MockFHIRServer.parseGreaterThan(query.get("date"));
+		}
+		// every Observation of the patients recorded in the range of the date, as (patient, k), most recent first
+		ArrayList<long[]> matches = new ArrayList<long[]>();
+		if (SyntheticFHIRData.hasObservations(code) && this.isUpdatedAfter(query)) {
+			for (int patient: this.patientsOfIdentifiers(query.get("patient.identifier"))) {
+				for (int k = 0; k < data.getObservationsPerPatient() && data.effectiveMillis(patient, k) > recordedAfter; k++) {
+					if (data.effectiveMillis(patient, k) < recordedBefore) {
+						matches.add(new long[] {patient, k, data.effectiveMillis(patient, k)});
+					}
+				}
+			}
+		}
+		Collections.sort(matches, new Comparator<long[]>() {
+			public int compare(long[] observation1, long[] observation2) {
+				return Long.compare(observation2[2], observation1[2]);
+			}
+		});
+
+		int offset = this.offsetOf(query);
+		int count = this.countOf(query);
+		ArrayList<JSONObject> observations = new ArrayList<JSONObject>();
+		LinkedHashMap<Integer, JSONObject> includedPatients = new LinkedHashMap<Integer, JSONObject>();
+		for (int i = offset; i < Math.min(matches.size(), offset + count); i++) {
+			int patient = (int) matches.get(i)[0];
+			observations.add(data.observation(patient, code, (int) matches.get(i)[1]));
+			if ("Observation:subject".equals(query.get("_include")) && !includedPatients.containsKey(patient)) {
+				includedPatients.put(patient, data.patient(patient));
+			}
+		}
+		return this.page(exchange, query, matches.size(), observations, new ArrayList<JSONObject>(includedPatients.values()));
+	}
+
+	/**
+	 * Build a page of a searchset Bundle
+	 * @param total the number of matches of the search, over every page
+	 * @param matches the resources matched on this page
+	 * @param includes the resources included on this page
+	 */
+	private JSONObject page(HttpExchange exchange, HashMap<String, String> query, int total, List<JSONObject> matches, List<JSONObject> includes) {
+		int offset = this.offsetOf(query);
+		int count = this.countOf(query);
+		JSONObject bundle = new JSONObject();
+		bundle.put("resourceType", "Bundle");
+		bundle.put("type", "searchset");
+		bundle.put("total", total);
+		JSONArray links = new JSONArray();
+		String requestUrl = this.getBaseUrl() + exchange.getRequestURI().getRawPath().substring(MockFHIRServer.CONTEXT.length());
+		String rawQuery = MockFHIRServer.withoutOffset(exchange.getRequestURI().getRawQuery());
+		links.put(new JSONObject().put("relation", "self").put("url", requestUrl + "?" + exchange.getRequestURI().getRawQuery()));
+		if (offset + count < total) {
+			links.put(new JSONObject().put("relation", "next").put("url", requestUrl + "?" + rawQuery + "&" + OFFSET_PARAMETER + "=" + (offset + count)));
+		}
+		bundle.put("link", links);
+		JSONArray entries = new JSONArray();
+		for (JSONObject match: matches) {
+			entries.put(this.entry(MockFHIRServer.subset(match, query), "match"));
+		}
+		for (JSONObject include: includes) {
+			entries.put(this.entry(MockFHIRServer.subset(include, query), "include"));
+		}
+		bundle.put("entry", entries);
+		return bundle;
+	}
+
+	private JSONObject entry(JSONObject resource, String mode) {
+		return new JSONObject().put("fullUrl", this.getBaseUrl() + resource.getString("resourceType") + "/" + resource.getString("id"))
+				.put("resource", resource).put("search", new JSONObject().put("mode", mode));
+	}
+
+	/**
+	 * Keep only the elements of a resource asked for by the _elements of the request, if any, and its resourceType, id and meta.
+	 * An element can be qualified by a resource type e.g. Patient.name, it is then only kept in the resources of that type.
+	 */
+	private static JSONObject subset(JSONObject resource, HashMap<String, String> query) {
+		if (!query.containsKey("_elements")) {
+			return resource;
+		}
+		HashSet<String> elements = new HashSet<String>(Arrays.asList("resourceType", "id", "meta"));
+		for (String element: query.get("_elements").split(",")) {
+			String name = element.trim();
+			int dot = name.indexOf('.');
+			if (dot >= 0) {
+				if (!name.substring(0, dot).equals(resource.getString("resourceType"))) {
+					continue;
+				}
+				name = name.substring(dot + 1);
+			}
+			elements.add(name);
+		}
+		JSONObject subset = new JSONObject();
+		for (String name: resource.keySet()) {
+			if (elements.contains(name)) {
+				subset.put(name, resource.get(name));
+			}
+		}
+		return subset;
+	}
+
+	/**
+	 * The indexes of the patients of a comma separated list of identifiers, unknown identifiers are left out
+	 */
+	private List<Integer> patientsOfIdentifiers(String identifiers) {
+		if (identifiers == null || identifiers.isEmpty()) {
+			throw new IllegalArgumentException("An identifier is required");
+		}
+		ArrayList<Integer> patients = new ArrayList<Integer>();
+		for (String identifier: identifiers.split(",")) {
+			int patient = data.patientOfIdentifier(MockFHIRServer.systemOf(identifier), MockFHIRServer.valueOf(identifier));
+			if (patient >= 0 && !patients.contains(patient)) {
+				patients.add(patient);
+			}
+		}
+		return patients;
+	}
+
+	/**
+	 * Whether the resources, which were all updated at the same time, match the _lastUpdated of the search
+	 */
+	private boolean isUpdatedAfter(HashMap<String, String> query) {
+		return !query.containsKey("_lastUpdated") || data.getLastUpdatedMillis() > MockFHIRServer.parseGreaterThan(query.get("_lastUpdated"));
+	}
+
+	private int offsetOf(HashMap<String, String> query) {
+		int offset = query.containsKey(OFFSET_PARAMETER) ? Integer.parseInt(query.get(OFFSET_PARAMETER)) : 0; // NumberFormatException is an IllegalArgumentException
+		if (offset < 0) {
+			throw new IllegalArgumentException(OFFSET_PARAMETER + " must not be negative");
+		}
+		return offset;
+	}
+
+	private int countOf(HashMap<String, String> query) {
+		int count = query.containsKey("_count") ? Integer.parseInt(query.get("_count")) : defaultPageSize;
+		if (count < 1) {
+			throw new IllegalArgumentException("_count must be a positive integer");
+		}
+		return Math.min(count, maxPageSize);
+	}
+
+	private static String required(HashMap<String, String> query, String parameter) {
+		String value = query.get(parameter);
+		if (value == null || value.isEmpty()) {
+			throw new IllegalArgumentException(parameter + " is required");
+		}
+		return value;
+	}
+
+	private static String systemOf(String identifier) {
+		int bar = identifier.indexOf('|');
+		return (bar < 0) ? null : identifier.substring(0, bar);
+	}
+
+	private static String valueOf(String identifier) {
+		return identifier.substring(identifier.indexOf('|') + 1);
+	}
+
+	/**
+	 * Parse gt{instant} or gt{date time with offset} into epoch milliseconds
+	 */
+	private static long parseGreaterThan(String value) {
+		if (!value.startsWith(GREATER_THAN)) {
+			throw new IllegalArgumentException("Only the gt prefix is supported, not " + value);
+		}
+		return MockFHIRServer.parseDateTime(value.substring(GREATER_THAN.length()));
+	}
+
+	/**
+	 * Parse an instant or a date time with offset into epoch milliseconds
+	 */
+	private static long parseDateTime(String dateTime) {
+		try {
+			return Instant.parse(dateTime).toEpochMilli();
+		} catch (DateTimeParseException e) {
+			try {
+				return OffsetDateTime.parse(dateTime).toInstant().toEpochMilli();
+			} catch (DateTimeParseException e2) {
+				throw new IllegalArgumentException("Not a date time: " + dateTime);
+			}
+		}
+	}
+
+	private static String withoutOffset(String rawQuery) {
+		StringBuilder withoutOffset = new StringBuilder();
+		for (String parameter: rawQuery.split("&")) {
+			if (!parameter.startsWith(OFFSET_PARAMETER + "=")) {
+				withoutOffset.append((withoutOffset.length() > 0) ? "&" : "").append(parameter);
+			}
+		}
+		return withoutOffset.toString();
+	}
+
+	private static void sendOperationOutcome(HttpExchange exchange, int status, String message) throws IOException {
+		JSONObject operationOutcome = new JSONObject();
+		operationOutcome.put("resourceType", "OperationOutcome");
+		operationOutcome.put("issue", new JSONArray().put(new JSONObject().put("severity", "error").put("code", "processing").put("diagnostics", message)));
+		MockFHIRServer.sendResource(exchange, status, operationOutcome);
+	}
+
+	/**
+	 * Send a resource, gzip compressed if the client asked for it like the HAPI server does
+	 */
+	private static void sendResource(HttpExchange exchange, int status, JSONObject resource) throws IOException {
+		byte[] bytes = resource.toString().getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/fhir+json; charset=utf-8");
+		String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+		if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+			exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+			exchange.sendResponseHeaders(status, 0); // chunked, the compressed length isn't known yet
+			OutputStream responseBody = new GZIPOutputStream(exchange.getResponseBody());
+			responseBody.write(bytes);
+			responseBody.close();
+		}
+		else {
+			exchange.sendResponseHeaders(status, bytes.length);
+			OutputStream responseBody = exchange.getResponseBody();
+			responseBody.write(bytes);
+			responseBody.close();
+		}
+	}
+}
@@ -0,0 +1,369 @@
+package server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import model.AlertRule;
+import model.FHIRBloodPressure;
+import model.FHIRCholesterol;
+import model.FHIRPatient;
+import model.Observation;
+import model.ObservationSeries;
+import model.ObservationStatistics;
+import model.ObservationTypes;
+import model.Tuple;
+
+/**
+ * Class which serves the monitoring data of the MonitoringService over a local HTTP/JSON API, so dashboards read the
+ * sessions kept by one backend process instead of each polling the FHIR server. Only GET requests are served:
+ *
+ *   /practitioners/{id}/patients      the practitioner's patients and their latest vitals
+ *   /practitioners/{id}/alerts        the rules of the alert engine and the patients in alert for each of them
+ *   /practitioners/{id}/statistics    the running statistics of the latest vitals over the practitioner's patients
+ *   /practitioners/{id}/history?identifier={system}|{value}&code={loinc code}[&count=n][&cached=true]
+ *                                     the latest n values of an Observation of a patient, filled from the server
+ *                                     first unless cached=true; n is at most the capacity of the session's
+ *                                     ObservationHistory (ObservationHistory.DEFAULT_CAPACITY), more is a 400
+ *
+ * The data is about patients, so the server listens on the loopback address unless another bind address is given, and
+ * if an access token is set every request must carry it as "Authorization: Bearer {token}".
+ *
+ */
+public class MonitoringHttpServer {
+	public static final String CONTEXT = "/practitioners/";
+	public static final int DEFAULT_HISTORY_COUNT = 5;
+
+	private final MonitoringService service;
+	private final HttpServer httpServer;
+	private final ExecutorService executor;
+	private volatile byte[] accessToken = null; // null if requests don't need a token
+
+	/**
+	 * Constructor of MonitoringHttpServer listening on the loopback address, the server is bound to the port straight away
+	 * but only serves once started
+	 * @param service the sessions of the practitioners
+	 * @param port the port to listen on, 0 for any free port
+	 * @param threads the number of requests served at the same time
+	 * @throws IOException if the port could not be bound
+	 */
+	public MonitoringHttpServer(MonitoringService service, int port, int threads) throws IOException {
+		this(service, InetAddress.getLoopbackAddress(), port, threads);
+	}
+
+	/**
+	 * Constructor of MonitoringHttpServer, the server is bound to the port straight away but only serves once started
+	 * @param service the sessions of the practitioners
+	 * @param bindAddress the address to listen on, e.g. InetAddress.getLoopbackAddress() to only serve this machine
+	 * @param port the port to listen on, 0 for any free port
+	 * @param threads the number of requests served at the same time
+	 * @throws IOException if the port could not be bound
+	 */
+	public MonitoringHttpServer(MonitoringService service, InetAddress bindAddress, int port, int threads) throws IOException {
+		if (bindAddress == null) {
+			throw new IllegalArgumentException("Bind address must not be null");
+		}
+		this.service = service;
+		this.httpServer = HttpServer.create(new InetSocketAddress(bindAddress, port), 0);
+		this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			public Thread newThread(Runnable runnable) {
+				return new Thread(runnable, "monitoring-http-" + count.incrementAndGet());
+			}
+		});
+		this.httpServer.setExecutor(executor);
+		this.httpServer.createContext(MonitoringHttpServer.CONTEXT, new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				serve(exchange);
+			}
+		});
+	}
+
+	/**
+	 * Start serving requests
+	 */
+	public void start() {
+		httpServer.start();
+	}
+
+	/**
+	 * Stop serving requests, the ones in progress are given up to a second to finish
+	 */
+	public void stop() {
+		httpServer.stop(1);
+		executor.shutdown();
+	}
+
+	/**
+	 * Get the port the server listens on
+	 * @return the port
+	 */
+	public int getPort() {
+		return httpServer.getAddress().getPort();
+	}
+
+	/**
+	 * Get the address the server listens on
+	 * @return the bind address
+	 */
+	public InetAddress getBindAddress() {
+		return httpServer.getAddress().getAddress();
+	}
+
+	/**
+	 * Set the token every request must carry as "Authorization: Bearer {token}"
+	 * @param accessToken the access token, or null to serve requests without a token
+	 */
+	public void setAccessToken(String accessToken) {
+		if (accessToken != null && accessToken.isEmpty()) {
+			throw new IllegalArgumentException("Access token must not be empty");
+		}
+		this.accessToken = (accessToken == null) ? null : accessToken.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private boolean isAuthorized(HttpExchange exchange) {
+		byte[] token = accessToken;
+		if (token == null) {
+			return true;
+		}
+		String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+		if (authorization == null || !authorization.startsWith("Bearer ")) {
+			return false;
+		}
+		// compared in constant time so the token can't be guessed byte by byte
+		return MessageDigest.isEqual(token, authorization.substring("Bearer ".length()).getBytes(StandardCharsets.UTF_8));
+	}
+
+	private void serve(HttpExchange exchange) throws IOException {
+		try {
+			if (!exchange.getRequestMethod().equals("GET")) {
+				MonitoringHttpServer.sendError(exchange, 405, "Only GET is supported");
+				return;
+			}
+			if (!this.isAuthorized(exchange)) {
+				exchange.getResponseHeaders().set("WWW-Authenticate", "Bearer");
+				MonitoringHttpServer.sendError(exchange, 401, "A valid access token is required");
+				return;
+			}
+			// {id}/{resource}
+			String[] pathSegments = exchange.getRequestURI().getPath().substring(MonitoringHttpServer.CONTEXT.length()).split("/");
+			if (pathSegments.length != 2 || pathSegments[0].isEmpty()) {
+				MonitoringHttpServer.sendError(exchange, 404, "Unknown path " + exchange.getRequestURI().getPath());
+				return;
+			}
+			MonitoringSession session = service.getSession(pathSegments[0]);
+			if (session == null) {
+				MonitoringHttpServer.sendError(exchange, 404, "Practitioner " + pathSegments[0] + " is not monitored or could not be retrieved");
+				return;
+			}
+			HashMap<String, String> query = MonitoringHttpServer.parseQuery(exchange.getRequestURI().getRawQuery());
+			if (pathSegments[1].equals("patients")) {
+				MonitoringHttpServer.sendJSON(exchange, 200, MonitoringHttpServer.patientsToJSON(session).toString());
+			}
+			else if (pathSegments[1].equals("alerts")) {
+				MonitoringHttpServer.sendJSON(exchange, 200, MonitoringHttpServer.alertsToJSON(session).toString());
+			}
+			else if (pathSegments[1].equals("statistics")) {
+				MonitoringHttpServer.sendJSON(exchange, 200, MonitoringHttpServer.statisticsToJSON(session).toString());
+			}
+			else if (pathSegments[1].equals("history")) {
+				this.serveHistory(exchange, session, query);
+			}
+			else {
+				MonitoringHttpServer.sendError(exchange, 404, "Unknown path " + exchange.getRequestURI().getPath());
+			}
+		} catch (IllegalArgumentException e) {
+			MonitoringHttpServer.sendError(exchange, 400, e.getMessage());
+		} catch (RuntimeException e) { // never leave a request without a response
+			e.printStackTrace();
+			MonitoringHttpServer.sendError(exchange, 500, e.toString());
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private void serveHistory(HttpExchange exchange, MonitoringSession session, HashMap<String, String> query) throws IOException {
+		String identifier = query.get("identifier");
+		String code = query.get("code");
+		if (identifier == null || identifier.indexOf('|') < 0 || code == null) {
+			throw new IllegalArgumentException("identifier={system}|{value} and code={loinc code} are required");
+		}
+		Tuple<String, String> identifierOfPatient = new Tuple<String, String>(identifier.substring(0, identifier.indexOf('|')), identifier.substring(identifier.indexOf('|') + 1));
+		if (!session.getPractitioner().containsPatient(identifierOfPatient)) {
+			MonitoringHttpServer.sendError(exchange, 404, "Patient " + identifier + " is not a patient of the practitioner");
+			return;
+		}
+		String observationName;
+		if (code.equals(FHIRBloodPressure.SYSTOLIC_BP_CODE) || code.equals(FHIRBloodPressure.DIASTOLIC_BP_CODE)) {
+			observationName = ObservationTypes.BLOOD_PRESSURE.toString();
+		}
+		else if (code.equals(FHIRCholesterol.CODE)) {
+			observationName = ObservationTypes.CHOLESTEROL.toString();
+		}
+		else {
+			throw new IllegalArgumentException("Unknown code " + code);
+		}
+		int count = MonitoringHttpServer.DEFAULT_HISTORY_COUNT;
+		if (query.containsKey("count")) {
+			count = Integer.parseInt(query.get("count")); // NumberFormatException is an IllegalArgumentException
+			if (count < 1) {
+				throw new IllegalArgumentException("count must be a positive integer");
+			}
+			if (count > session.getObservationHistory().getCapacity()) { // the older values would not be kept anyway
+				throw new IllegalArgumentException("count must be at most " + session.getObservationHistory().getCapacity());
+			}
+		}
+		if (!"true".equals(query.get("cached"))) {
+			try {
+				session.getObservationHistory().fill(identifierOfPatient, observationName, count);
+			} catch (IOException e) {
+				MonitoringHttpServer.sendError(exchange, 502, "The FHIR server could not be reached: " + e.getMessage());
+				return;
+			}
+		}
+		final JSONArray values = new JSONArray();
+		session.getObservationHistory().getSeries(identifierOfPatient, code).forEachLatest(count, new ObservationSeries.Visitor() {
+			public void visit(long timeRecorded, String timeRecordedAsGiven, double value) {
+				values.put(new JSONObject().put("timeRecorded", timeRecorded).put("value", value));
+			}
+		});
+		JSONObject history = new JSONObject();
+		history.put("identifier", identifier);
+		history.put("code", code);
+		history.put("values", values);
+		MonitoringHttpServer.sendJSON(exchange, 200, history.toString());
+	}
+
+	/**
+	 * The practitioner's patients and their latest vitals
+	 */
+	private static JSONArray patientsToJSON(MonitoringSession session) {
+		JSONArray patients = new JSONArray();
+		for (FHIRPatient patient: session.getPractitioner().getPatientsSnapshot().values()) {
+			JSONObject patientJSON = new JSONObject();
+			patientJSON.put("identifier", MonitoringHttpServer.identifierToString(patient.getIdentifier()));
+			patientJSON.put("givenName", patient.getGivenName());
+			patientJSON.put("familyName", patient.getFamilyName());
+			patientJSON.put("gender", patient.getGender());
+			patientJSON.put("birthDate", patient.getBirthday());
+			JSONObject vitals = new JSONObject();
+			if (patient.getCholesterol() != null) {
+				MonitoringHttpServer.putObservation(vitals, FHIRCholesterol.CODE, patient.getCholesterol().getCholesterolObservation());
+			}
+			if (patient.getBloodPressure() != null) {
+				MonitoringHttpServer.putObservation(vitals, FHIRBloodPressure.SYSTOLIC_BP_CODE, patient.getBloodPressure().getSystolicBPObservation());
+				MonitoringHttpServer.putObservation(vitals, FHIRBloodPressure.DIASTOLIC_BP_CODE, patient.getBloodPressure().getDiastolicBPObservation());
+			}
+			patientJSON.put("latest", vitals);
+			patients.put(patientJSON);
+		}
+		return patients;
+	}
+
+	/**
+	 * The rules of the alert engine and the patients in alert for each of them
+	 */
+	private static JSONArray alertsToJSON(MonitoringSession session) {
+		JSONArray alerts = new JSONArray();
+		for (AlertRule rule: session.getRules()) {
+			JSONArray alertingPatients = new JSONArray();
+			Set<Tuple<String, String>> identifiersOfPatients = session.getAlertEngine().getAlertingPatients(rule);
+			for (Tuple<String, String> identifierOfPatient: identifiersOfPatients) {
+				alertingPatients.put(MonitoringHttpServer.identifierToString(identifierOfPatient));
+			}
+			JSONObject alert = new JSONObject();
+			alert.put("rule", rule.getName());
+			alert.put("code", rule.getCode());
+			alert.put("raiseAbove", rule.getRaiseAbove());
+			alert.put("clearBelow", rule.getClearBelow());
+			alert.put("sustainedReadings", rule.getSustainedReadings());
+			alert.put("patients", alertingPatients);
+			alerts.put(alert);
+		}
+		return alerts;
+	}
+
+	/**
+	 * The running statistics of the latest vitals, the values that are not known (e.g. the mean of no values) are left out
+	 */
+	private static JSONObject statisticsToJSON(MonitoringSession session) {
+		JSONObject statistics = new JSONObject();
+		statistics.put("numberOfPatients", session.getStatistics().getNumberOfPatients());
+		String[] codes = {FHIRCholesterol.CODE, FHIRBloodPressure.SYSTOLIC_BP_CODE, FHIRBloodPressure.DIASTOLIC_BP_CODE};
+		for (String code: codes) {
+			ObservationStatistics statisticsOfCode = session.getStatistics().getStatistics(code);
+			JSONObject statisticsJSON = new JSONObject();
+			statisticsJSON.put("count", statisticsOfCode.getCount());
+			if (statisticsOfCode.getCount() > 0) {
+				statisticsJSON.put("mean", statisticsOfCode.getMean());
+				statisticsJSON.put("standardDeviation", statisticsOfCode.getStandardDeviation());
+				statisticsJSON.put("min", statisticsOfCode.getMin());
+				statisticsJSON.put("max", statisticsOfCode.getMax());
+				statisticsJSON.put("median", statisticsOfCode.getPercentile(50));
+			}
+			statistics.put(code, statisticsJSON);
+		}
+		return statistics;
+	}
+
+	private static void putObservation(JSONObject vitals, String code, Observation observation) {
+		if (observation == null || observation.isEmpty()) {
+			return;
+		}
+		JSONObject observationJSON = new JSONObject();
+		observationJSON.put("value", observation.getNumericValue());
+		observationJSON.put("units", observation.getUnits());
+		observationJSON.put("timeRecorded", observation.getTimeRecorded());
+		vitals.put(code, observationJSON);
+	}
+
+	private static String identifierToString(Tuple<String, String> identifier) {
+		return identifier.first + "|" + identifier.second;
+	}
+
+	static HashMap<String, String> parseQuery(String rawQuery) throws UnsupportedEncodingException {
+		HashMap<String, String> query = new HashMap<String, String>();
+		if (rawQuery == null) {
+			return query;
+		}
+		for (String parameter: rawQuery.split("&")) {
+			int equals = parameter.indexOf('=');
+			if (equals > 0) {
+				query.put(URLDecoder.decode(parameter.substring(0, equals), "UTF-8"), URLDecoder.decode(parameter.substring(equals + 1), "UTF-8"));
+			}
+		}
+		return query;
+	}
+
+	private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+		MonitoringHttpServer.sendJSON(exchange, status, new JSONObject().put("error", message).toString());
+	}
+
+	private static void sendJSON(HttpExchange exchange, int status, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		OutputStream responseBody = exchange.getResponseBody();
+		responseBody.write(bytes);
+		responseBody.close();
+	}
+}
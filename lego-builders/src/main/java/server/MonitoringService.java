@@ -0,0 +1,297 @@
+package server;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+import java.util.regex.Pattern;
+
+import model.AlertRule;
+import model.FHIRPractitioner;
+import model.PatientStore;
+
+/**
+ * Class which keeps one MonitoringSession per practitioner, so however many dashboards a practitioner has open, their
+ * patients are retrieved and refreshed from the server only once. A session is opened on the first request for a
+ * practitioner; requests for the same practitioner that arrive while it is opening wait for it instead of retrieving it again.
+ *
+ * Sessions are only opened on demand for the practitioners of the allow-list, if there is one. There are at most
+ * maxOnDemandSessions of them, the least recently used one is closed to make room for a new one, and a session that
+ * hasn't been asked for within the idle timeout is closed. A practitioner that could not be retrieved is not tried again
+ * for FAILURE_RETRY_MILLIS. The sessions added with putSession are kept until shutdown.
+ *
+ */
+public class MonitoringService {
+	public static final int DEFAULT_MAX_ON_DEMAND_SESSIONS = 16;
+	public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 30 * 60 * 1000L;
+	public static final long FAILURE_RETRY_MILLIS = 60 * 1000L;
+	private static final int MAX_REMEMBERED_FAILURES = 1024;
+	private static final Pattern RESOURCE_ID = Pattern.compile("[A-Za-z0-9\\-.]{1,64}"); // the id of a FHIR resource
+
+	private final ConcurrentHashMap<String, MonitoringSession> sessions = new ConcurrentHashMap<String, MonitoringSession>();
+	private final ConcurrentHashMap<String, Object> locks = new ConcurrentHashMap<String, Object>(); // one per practitioner being opened
+	private final ConcurrentHashMap<String, Long> lastAccessOfOnDemandSessions = new ConcurrentHashMap<String, Long>();
+	private final ConcurrentHashMap<String, Long> failureTimes = new ConcurrentHashMap<String, Long>(); // practitioners that could not be retrieved
+	private final List<AlertRule> rules;
+	private final long refreshDelaySeconds;
+	private final LongSupplier clock;
+	private volatile Set<String> allowedPractitioners = null; // null to open a session for any practitioner
+	private volatile int maxOnDemandSessions = MonitoringService.DEFAULT_MAX_ON_DEMAND_SESSIONS;
+	private volatile long idleTimeoutMillis = MonitoringService.DEFAULT_IDLE_TIMEOUT_MILLIS;
+	private volatile Path storeDirectory = PatientStore.DEFAULT_DIRECTORY; // null to not keep the patients between launches
+
+	/**
+	 * Constructor of MonitoringService
+	 * @param rules the rules of the alert engine of every session
+	 * @param refreshDelaySeconds the number of seconds between the refreshes of a session's patients, 0 to never refresh them
+	 */
+	public MonitoringService(List<AlertRule> rules, long refreshDelaySeconds) {
+		this(rules, refreshDelaySeconds, System::currentTimeMillis);
+	}
+
+	/**
+	 * Constructor of MonitoringService with the clock used for the idle timeout, for testing
+	 */
+	MonitoringService(List<AlertRule> rules, long refreshDelaySeconds, LongSupplier clock) {
+		if (refreshDelaySeconds < 0) {
+			throw new IllegalArgumentException("refreshDelaySeconds must not be negative");
+		}
+		this.rules = new ArrayList<AlertRule>(rules);
+		this.refreshDelaySeconds = refreshDelaySeconds;
+		this.clock = clock;
+	}
+
+	/**
+	 * Get the session of a practitioner, opening it if there is none yet. Opening a session restores the patients kept
+	 * from the last launch if there are any, otherwise it retrieves them from the server.
+	 * @param practitionerResourceID the resource id of the practitioner on the server
+	 * @return the session, or null if the practitioner is not allowed or could not be retrieved
+	 */
+	public MonitoringSession getSession(String practitionerResourceID) {
+		this.closeIdleSessions();
+		MonitoringSession session = sessions.get(practitionerResourceID);
+		if (session != null) {
+			lastAccessOfOnDemandSessions.replace(practitionerResourceID, clock.getAsLong()); // only the on-demand sessions are timed
+			return session;
+		}
+		if (!this.mayOpenSession(practitionerResourceID)) {
+			return null;
+		}
+		Object lock = this.lockOf(practitionerResourceID);
+		try {
+			synchronized (lock) {
+				session = sessions.get(practitionerResourceID);
+				if (session == null && !this.failedRecently(practitionerResourceID)) {
+					session = this.openSession(practitionerResourceID);
+					if (session == null) {
+						this.rememberFailure(practitionerResourceID);
+					}
+					else {
+						this.closeLeastRecentlyUsedSessionsBeyond(maxOnDemandSessions - 1);
+						lastAccessOfOnDemandSessions.put(practitionerResourceID, clock.getAsLong());
+						sessions.put(practitionerResourceID, session);
+					}
+				}
+				return session;
+			}
+		}
+		finally {
+			locks.remove(practitionerResourceID, lock); // the waiting requests hold on to the lock, later ones find the session or the failure
+		}
+	}
+
+	/**
+	 * Get the directory where the sessions opened on demand keep their patients between launches
+	 * @return the directory of the PatientStores, or null if the patients are not kept
+	 */
+	public Path getStoreDirectory() {
+		return storeDirectory;
+	}
+
+	/**
+	 * Set the directory where the sessions opened on demand keep their patients between launches
+	 * @param storeDirectory the directory of the PatientStores, or null to not keep the patients
+	 */
+	public void setStoreDirectory(Path storeDirectory) {
+		this.storeDirectory = storeDirectory;
+	}
+
+	/**
+	 * Get the practitioners whose session may be opened on demand
+	 * @return the resource ids of the practitioners, or null if a session may be opened for any practitioner
+	 */
+	public Set<String> getAllowedPractitioners() {
+		return allowedPractitioners;
+	}
+
+	/**
+	 * Set the practitioners whose session may be opened on demand, the sessions added with putSession are always served
+	 * @param allowedPractitioners the resource ids of the practitioners, or null to open a session for any practitioner
+	 */
+	public void setAllowedPractitioners(Collection<String> allowedPractitioners) {
+		this.allowedPractitioners = (allowedPractitioners == null) ? null : Collections.unmodifiableSet(new HashSet<String>(allowedPractitioners));
+	}
+
+	/**
+	 * Get the maximum number of sessions opened on demand that are kept at the same time
+	 * @return the maximum number of sessions opened on demand
+	 */
+	public int getMaxOnDemandSessions() {
+		return maxOnDemandSessions;
+	}
+
+	/**
+	 * Set the maximum number of sessions opened on demand that are kept at the same time
+	 * @param maxOnDemandSessions the maximum number of sessions opened on demand, 0 to only serve the sessions added with putSession
+	 */
+	public void setMaxOnDemandSessions(int maxOnDemandSessions) {
+		if (maxOnDemandSessions < 0) {
+			throw new IllegalArgumentException("maxOnDemandSessions must not be negative");
+		}
+		this.maxOnDemandSessions = maxOnDemandSessions;
+		this.closeLeastRecentlyUsedSessionsBeyond(maxOnDemandSessions);
+	}
+
+	/**
+	 * Get the time after which a session opened on demand that hasn't been asked for is closed
+	 * @return the idle timeout in milliseconds
+	 */
+	public long getIdleTimeoutMillis() {
+		return idleTimeoutMillis;
+	}
+
+	/**
+	 * Set the time after which a session opened on demand that hasn't been asked for is closed
+	 * @param idleTimeoutMillis the idle timeout in milliseconds
+	 */
+	public void setIdleTimeoutMillis(long idleTimeoutMillis) {
+		if (idleTimeoutMillis < 1) {
+			throw new IllegalArgumentException("idleTimeoutMillis must be positive");
+		}
+		this.idleTimeoutMillis = idleTimeoutMillis;
+	}
+
+	/**
+	 * Add the session of a practitioner whose patients have already been retrieved, replacing the current one if any
+	 * @param practitionerResourceID the resource id of the practitioner on the server
+	 * @param session the session of the practitioner
+	 */
+	public void putSession(String practitionerResourceID, MonitoringSession session) {
+		lastAccessOfOnDemandSessions.remove(practitionerResourceID); // kept until shutdown
+		MonitoringSession previousSession = sessions.put(practitionerResourceID, session);
+		if (previousSession != null && previousSession != session) {
+			previousSession.shutdown();
+		}
+	}
+
+	/**
+	 * Stop refreshing the patients of every session
+	 */
+	public void shutdown() {
+		for (MonitoringSession session: sessions.values()) {
+			session.shutdown();
+		}
+		sessions.clear();
+		lastAccessOfOnDemandSessions.clear();
+	}
+
+	private boolean mayOpenSession(String practitionerResourceID) {
+		Set<String> allowed = allowedPractitioners;
+		return RESOURCE_ID.matcher(practitionerResourceID).matches() && maxOnDemandSessions > 0
+				&& (allowed == null || allowed.contains(practitionerResourceID));
+	}
+
+	private boolean failedRecently(String practitionerResourceID) {
+		Long failedAt = failureTimes.get(practitionerResourceID);
+		return failedAt != null && clock.getAsLong() - failedAt < MonitoringService.FAILURE_RETRY_MILLIS;
+	}
+
+	private void rememberFailure(String practitionerResourceID) {
+		long now = clock.getAsLong();
+		for (Map.Entry<String, Long> failure: failureTimes.entrySet()) {
+			if (now - failure.getValue() >= MonitoringService.FAILURE_RETRY_MILLIS) {
+				failureTimes.remove(failure.getKey(), failure.getValue());
+			}
+		}
+		if (failureTimes.size() < MonitoringService.MAX_REMEMBERED_FAILURES) { // too many failing ids at once, they are just tried again
+			failureTimes.put(practitionerResourceID, now);
+		}
+	}
+
+	/**
+	 * Close the sessions opened on demand that haven't been asked for within the idle timeout
+	 */
+	private void closeIdleSessions() {
+		long now = clock.getAsLong();
+		for (Map.Entry<String, Long> lastAccess: lastAccessOfOnDemandSessions.entrySet()) {
+			if (now - lastAccess.getValue() >= idleTimeoutMillis) {
+				this.closeOnDemandSession(lastAccess.getKey(), lastAccess.getValue());
+			}
+		}
+	}
+
+	/**
+	 * Close the least recently used sessions opened on demand until at most maxSessions of them are left
+	 */
+	private void closeLeastRecentlyUsedSessionsBeyond(int maxSessions) {
+		synchronized (lastAccessOfOnDemandSessions) {
+			while (lastAccessOfOnDemandSessions.size() > Math.max(0, maxSessions)) {
+				Map.Entry<String, Long> leastRecentlyUsed = null;
+				for (Map.Entry<String, Long> lastAccess: lastAccessOfOnDemandSessions.entrySet()) {
+					if (leastRecentlyUsed == null || lastAccess.getValue() < leastRecentlyUsed.getValue()) {
+						leastRecentlyUsed = lastAccess;
+					}
+				}
+				this.closeOnDemandSession(leastRecentlyUsed.getKey(), leastRecentlyUsed.getValue());
+			}
+		}
+	}
+
+	private void closeOnDemandSession(String practitionerResourceID, Long lastAccess) {
+		if (lastAccessOfOnDemandSessions.remove(practitionerResourceID, lastAccess)) {
+			MonitoringSession session = sessions.remove(practitionerResourceID);
+			if (session != null) {
+				session.shutdown();
+			}
+		} // otherwise it was asked for again in the meantime, or already closed
+	}
+
+	private MonitoringSession openSession(String practitionerResourceID) {
+		FHIRPractitioner practitioner = new FHIRPractitioner();
+		Path directory = storeDirectory;
+		try {
+			practitioner.setPatientStore((directory == null) ? null : PatientStore.forPractitioner(directory, practitionerResourceID));
+		} catch (IOException e) {
+			e.printStackTrace(); // carry on without the store, everything comes from the server
+		}
+		boolean restored = practitioner.restoreFromPatientStore();
+		if (!restored && !practitioner.retrieveDataFromServerAndInitWithLatest(practitionerResourceID)) {
+			return null;
+		}
+		MonitoringSession session = new MonitoringSession(practitioner, rules);
+		if (refreshDelaySeconds > 0) {
+			// refreshes straight away, which also reconciles the patients restored from the last launch with the server
+			session.setRefreshDelay(refreshDelaySeconds);
+		}
+		return session;
+	}
+
+	private Object lockOf(String practitionerResourceID) {
+		Object lock = locks.get(practitionerResourceID);
+		if (lock == null) {
+			Object newLock = new Object();
+			lock = locks.putIfAbsent(practitionerResourceID, newLock);
+			if (lock == null) {
+				lock = newLock;
+			}
+		}
+		return lock;
+	}
+}
@@ -0,0 +1,131 @@
+package server;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import controller.RefreshScheduler;
+import model.AlertEngine;
+import model.AlertRule;
+import model.FHIRPatient;
+import model.FHIRPractitioner;
+import model.ObservationHistory;
+import model.PopulationStatistics;
+import model.Tuple;
+import observerpattern.MapChangeEvent;
+import observerpattern.MapObserver;
+
+/**
+ * Class which monitors the patients of one practitioner without any window: the alert engine and the running statistics
+ * follow every change of the practitioner's patients, the histories are filled on demand and kept between requests,
+ * and the patients are refreshed from the server on a background thread. It is shared by every dashboard of the practitioner.
+ *
+ */
+public class MonitoringSession implements MapObserver<Tuple<String, String>, FHIRPatient> {
+	private final FHIRPractitioner practitioner;
+	private final ArrayList<AlertRule> rules;
+	private final AlertEngine alertEngine = new AlertEngine();
+	private final PopulationStatistics statistics = new PopulationStatistics();
+	private final ObservationHistory observationHistory = new ObservationHistory();
+	private final RefreshScheduler refreshScheduler;
+
+	/**
+	 * Constructor of MonitoringSession, starts following the practitioner's patients known now
+	 * @param practitioner the practitioner, with its patients already retrieved or restored
+	 * @param rules the rules of the alert engine
+	 */
+	public MonitoringSession(final FHIRPractitioner practitioner, List<AlertRule> rules) {
+		this.practitioner = practitioner;
+		this.rules = new ArrayList<AlertRule>(rules);
+		for (AlertRule rule: rules) {
+			alertEngine.addRule(rule);
+		}
+		practitioner.addMapObserversForTheObservableHashMapOfPractitioner(alertEngine);
+		practitioner.addMapObserversForTheObservableHashMapOfPractitioner(this);
+		HashMap<Tuple<String, String>, FHIRPatient> patients = practitioner.getPatientsSnapshot(); // both start from the same patients
+		alertEngine.evaluatePatients(patients);
+		statistics.setPatients(patients.values());
+		this.refreshScheduler = new RefreshScheduler(new Runnable() {
+			public void run() {
+				try {
+					// only the patients are retrieved again, the alert engine and the statistics are told what changed
+					practitioner.retrieveDataFromServerAndInitWithLatest(practitioner.getIdentifier());
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}, "session-refresher-" + practitioner.getIdentifierValue());
+	}
+
+	/**
+	 * Keep the running statistics in step with the practitioner's patients
+	 */
+	public void mapChanged(MapChangeEvent<Tuple<String, String>, FHIRPatient> event) {
+		for (Tuple<String, String> identifierOfPatient: event.getRemovedKeys()) {
+			statistics.remove(identifierOfPatient);
+			observationHistory.remove(identifierOfPatient);
+		}
+		for (Tuple<String, String> identifierOfPatient: event.getAddedKeys()) {
+			statistics.put(event.getNewValue(identifierOfPatient));
+		}
+		for (Tuple<String, String> identifierOfPatient: event.getChangedKeys()) {
+			statistics.put(event.getNewValue(identifierOfPatient));
+		}
+	}
+
+	/**
+	 * Refresh the practitioner's patients from the server every delaySeconds after the previous refresh has finished
+	 * @param delaySeconds the number of seconds between the end of a refresh and the start of the next one, 0 to stop refreshing
+	 */
+	public void setRefreshDelay(long delaySeconds) {
+		refreshScheduler.setDelay(delaySeconds);
+	}
+
+	/**
+	 * Stop refreshing the practitioner's patients for good
+	 */
+	public void shutdown() {
+		refreshScheduler.shutdown();
+	}
+
+	/**
+	 * Get the practitioner of the session
+	 * @return the practitioner
+	 */
+	public FHIRPractitioner getPractitioner() {
+		return practitioner;
+	}
+
+	/**
+	 * Get the alert engine following the practitioner's patients
+	 * @return the alert engine
+	 */
+	public AlertEngine getAlertEngine() {
+		return alertEngine;
+	}
+
+	/**
+	 * Get the rules of the alert engine
+	 * @return the rules
+	 */
+	public List<AlertRule> getRules() {
+		return rules;
+	}
+
+	/**
+	 * Get the running statistics of the practitioner's patients
+	 * @return the running statistics
+	 */
+	public PopulationStatistics getStatistics() {
+		return statistics;
+	}
+
+	/**
+	 * Get the histories of the practitioner's patients, filled on demand
+	 * @return the histories
+	 */
+	public ObservationHistory getObservationHistory() {
+		return observationHistory;
+	}
+}
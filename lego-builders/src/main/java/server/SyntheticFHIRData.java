@@ -0,0 +1,344 @@
+package server;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import model.FHIRBloodPressure;
+import model.FHIRCholesterol;
+
+/**
+ * Class which makes up the resources served by a MockFHIRServer, shaped like the ones of the HAPI server. Nothing is
+ * stored: every resource is built from its index when it is asked for, so practitioners with tens of thousands of
+ * patients cost no memory. The same indexes always give the same resources.
+ *
+ * Practitioner p (0 based) has resource id p + 1 and the patients p * patientsPerPractitioner up to
+ * (p + 1) * patientsPerPractitioner - 1. Patient i has resource id i + 1, encountersPerPatient Encounters with its
+ * practitioner, and observationsPerPatient TotalCholesterol and Blood Pressure Observations a week apart, k == 0 being
+ * the most recent. Every resource was last updated when the data was made up.
+ *
+ */
+public class SyntheticFHIRData {
+	public static final String PRACTITIONER_IDENTIFIER_SYSTEM = "http://hl7.org/fhir/sid/us-npi";
+	public static final String PATIENT_IDENTIFIER_SYSTEM = "https://github.com/synthetichealth/synthea";
+	public static final String PRACTITIONER_IDENTIFIER_PREFIX = "mock-practitioner-";
+	public static final String PATIENT_IDENTIFIER_PREFIX = "mock-patient-";
+	public static final int DEFAULT_ENCOUNTERS_PER_PATIENT = 2;
+	public static final int DEFAULT_OBSERVATIONS_PER_PATIENT = 10;
+	private static final long MINUTE_MILLIS = 60 * 1000;
+	private static final long WEEK_MILLIS = 7 * 24 * 60 * SyntheticFHIRData.MINUTE_MILLIS;
+	private static final ZoneOffset ZONE = ZoneOffset.ofHours(10); // the HAPI server gives the dates in Melbourne time
+	private static final String[][] ADDRESSES = {{"Melbourne", "Victoria"}, {"Geelong", "Victoria"}, {"Sydney", "New South Wales"}, {"Brisbane", "Queensland"}};
+
+	private final int practitioners;
+	private final int patientsPerPractitioner;
+	private final int encountersPerPatient;
+	private final int observationsPerPatient;
+	private final long lastUpdatedMillis;
+	private final long latestObservationMillis;
+
+	/**
+	 * Constructor of SyntheticFHIRData with DEFAULT_ENCOUNTERS_PER_PATIENT and DEFAULT_OBSERVATIONS_PER_PATIENT
+	 * @param practitioners the number of practitioners
+	 * @param patientsPerPractitioner the number of patients of every practitioner
+	 */
+	public SyntheticFHIRData(int practitioners, int patientsPerPractitioner) {
+		this(practitioners, patientsPerPractitioner, SyntheticFHIRData.DEFAULT_ENCOUNTERS_PER_PATIENT, SyntheticFHIRData.DEFAULT_OBSERVATIONS_PER_PATIENT);
+	}
+
+	/**
+	 * Constructor of SyntheticFHIRData
+	 * @param practitioners the number of practitioners
+	 * @param patientsPerPractitioner the number of patients of every practitioner
+	 * @param encountersPerPatient the number of Encounters of every patient with its practitioner
+	 * @param observationsPerPatient the number of Observations of every patient for each loinc code
+	 */
+	public SyntheticFHIRData(int practitioners, int patientsPerPractitioner, int encountersPerPatient, int observationsPerPatient) {
+		if (practitioners < 1 || patientsPerPractitioner < 0 || encountersPerPatient < 1 || observationsPerPatient < 0) {
+			throw new IllegalArgumentException("There must be at least one practitioner and one encounter per patient");
+		}
+		this.practitioners = practitioners;
+		this.patientsPerPractitioner = patientsPerPractitioner;
+		this.encountersPerPatient = encountersPerPatient;
+		this.observationsPerPatient = observationsPerPatient;
+		this.lastUpdatedMillis = System.currentTimeMillis();
+		this.latestObservationMillis = lastUpdatedMillis - lastUpdatedMillis % SyntheticFHIRData.MINUTE_MILLIS - 24 * 60 * SyntheticFHIRData.MINUTE_MILLIS;
+	}
+
+	/**
+	 * Get the number of practitioners
+	 * @return the number of practitioners
+	 */
+	public int getPractitioners() {
+		return practitioners;
+	}
+
+	/**
+	 * Get the number of patients of every practitioner
+	 * @return the number of patients of every practitioner
+	 */
+	public int getPatientsPerPractitioner() {
+		return patientsPerPractitioner;
+	}
+
+	/**
+	 * Get the number of patients of all the practitioners
+	 * @return the number of patients
+	 */
+	public int getPatients() {
+		return practitioners * patientsPerPractitioner;
+	}
+
+	/**
+	 * Get the number of Encounters of every patient
+	 * @return the number of Encounters of every patient
+	 */
+	public int getEncountersPerPatient() {
+		return encountersPerPatient;
+	}
+
+	/**
+	 * Get the number of Observations of every patient for each loinc code
+	 * @return the number of Observations of every patient for each loinc code
+	 */
+	public int getObservationsPerPatient() {
+		return observationsPerPatient;
+	}
+
+	/**
+	 * Get when every resource was last updated
+	 * @return epoch milliseconds
+	 */
+	public long getLastUpdatedMillis() {
+		return lastUpdatedMillis;
+	}
+
+	/**
+	 * Get the index of a practitioner from its resource id
+	 * @param resourceId the resource id of the practitioner
+	 * @return the index of the practitioner, or -1 if there is no such practitioner
+	 */
+	public int practitionerOfResourceId(String resourceId) {
+		return SyntheticFHIRData.indexOf(resourceId, "", practitioners);
+	}
+
+	/**
+	 * Get the index of a practitioner from its identifier
+	 * @param system the identifier system
+	 * @param value the identifier value
+	 * @return the index of the practitioner, or -1 if there is no such practitioner
+	 */
+	public int practitionerOfIdentifier(String system, String value) {
+		return PRACTITIONER_IDENTIFIER_SYSTEM.equals(system) ? SyntheticFHIRData.indexOf(value, PRACTITIONER_IDENTIFIER_PREFIX, practitioners) : -1;
+	}
+
+	/**
+	 * Get the index of a patient from its resource id
+	 * @param resourceId the resource id of the patient
+	 * @return the index of the patient, or -1 if there is no such patient
+	 */
+	public int patientOfResourceId(String resourceId) {
+		return SyntheticFHIRData.indexOf(resourceId, "", this.getPatients());
+	}
+
+	/**
+	 * Get the index of a patient from its identifier
+	 * @param system the identifier system
+	 * @param value the identifier value
+	 * @return the index of the patient, or -1 if there is no such patient
+	 */
+	public int patientOfIdentifier(String system, String value) {
+		return PATIENT_IDENTIFIER_SYSTEM.equals(system) ? SyntheticFHIRData.indexOf(value, PATIENT_IDENTIFIER_PREFIX, this.getPatients()) : -1;
+	}
+
+	/**
+	 * Build a Practitioner
+	 * @param practitioner the index of the practitioner
+	 * @return the Practitioner resource
+	 */
+	public JSONObject practitioner(int practitioner) {
+		JSONObject resource = this.resource("Practitioner", Integer.toString(practitioner + 1));
+		resource.put("identifier", SyntheticFHIRData.identifier(PRACTITIONER_IDENTIFIER_SYSTEM, PRACTITIONER_IDENTIFIER_PREFIX + (practitioner + 1)));
+		resource.put("name", new JSONArray().put(new JSONObject().put("family", "Practitioner" + (practitioner + 1))
+				.put("given", new JSONArray().put("Mock")).put("prefix", new JSONArray().put("Dr."))));
+		return resource;
+	}
+
+	/**
+	 * Build a Patient
+	 * @param patient the index of the patient
+	 * @return the Patient resource
+	 */
+	public JSONObject patient(int patient) {
+		JSONObject resource = this.resource("Patient", Integer.toString(patient + 1));
+		resource.put("identifier", SyntheticFHIRData.identifier(PATIENT_IDENTIFIER_SYSTEM, PATIENT_IDENTIFIER_PREFIX + (patient + 1)));
+		resource.put("name", new JSONArray().put(new JSONObject().put("use", "official").put("family", "Family" + (patient + 1))
+				.put("given", new JSONArray().put("Given" + (patient + 1)))));
+		resource.put("gender", (patient % 2 == 0) ? "female" : "male");
+		resource.put("birthDate", String.format("%04d-%02d-%02d", 1930 + patient % 70, 1 + patient % 12, 1 + patient % 28));
+		String[] address = ADDRESSES[patient % ADDRESSES.length];
+		resource.put("address", new JSONArray().put(new JSONObject().put("city", address[0]).put("state", address[1]).put("country", "AU")));
+		return resource;
+	}
+
+	/**
+	 * Build an Encounter of a practitioner
+	 * @param practitioner the index of the practitioner
+	 * @param encounter the index of the Encounter amongst the ones of the practitioner, the Encounters of a patient follow each other
+	 * @return the Encounter resource
+	 */
+	public JSONObject encounter(int practitioner, int encounter) {
+		int patient = this.patientOfEncounter(practitioner, encounter);
+		JSONObject resource = this.resource("Encounter", Integer.toString(patient * encountersPerPatient + encounter % encountersPerPatient + 1));
+		resource.put("status", "finished");
+		resource.put("subject", new JSONObject().put("reference", "Patient/" + (patient + 1)));
+		resource.put("participant", new JSONArray().put(new JSONObject().put("individual", new JSONObject().put("reference", "Practitioner/" + (practitioner + 1)))));
+		return resource;
+	}
+
+	/**
+	 * Get the patient who is the subject of an Encounter of a practitioner
+	 * @param practitioner the index of the practitioner
+	 * @param encounter the index of the Encounter amongst the ones of the practitioner
+	 * @return the index of the patient
+	 */
+	public int patientOfEncounter(int practitioner, int encounter) {
+		return practitioner * patientsPerPractitioner + encounter / encountersPerPatient;
+	}
+
+	/**
+	 * Get the number of Encounters of a practitioner
+	 * @return the number of Encounters of every practitioner
+	 */
+	public int getEncountersPerPractitioner() {
+		return patientsPerPractitioner * encountersPerPatient;
+	}
+
+	/**
+	 * Get when an Observation of a patient was recorded, the same for every loinc code
+	 * @param patient the index of the patient
+	 * @param k the index of the Observation, 0 for the most recent
+	 * @return epoch milliseconds
+	 */
+	public long effectiveMillis(int patient, int k) {
+		return latestObservationMillis - k * SyntheticFHIRData.WEEK_MILLIS - (patient % 1440) * SyntheticFHIRData.MINUTE_MILLIS;
+	}
+
+	/**
+	 * Get the value of a TotalCholesterol Observation of a patient
+	 * @param patient the index of the patient
+	 * @param k the index of the Observation, 0 for the most recent
+	 * @return the value in mg/dL
+	 */
+	public double cholesterolValue(int patient, int k) {
+		return 150 + (patient * 31 + k * 17) % 110;
+	}
+
+	/**
+	 * Get the value of the systolic component of a Blood Pressure Observation of a patient
+	 * @param patient the index of the patient
+	 * @param k the index of the Observation, 0 for the most recent
+	 * @return the value in mm[Hg]
+	 */
+	public double systolicValue(int patient, int k) {
+		return 100 + (patient * 13 + k * 7) % 70;
+	}
+
+	/**
+	 * Get the value of the diastolic component of a Blood Pressure Observation of a patient
+	 * @param patient the index of the patient
+	 * @param k the index of the Observation, 0 for the most recent
+	 * @return the value in mm[Hg]
+	 */
+	public double diastolicValue(int patient, int k) {
+		return 60 + (patient * 11 + k * 5) % 40;
+	}
+
+	/**
+	 * Check if the patients have Observations with a loinc code
+	 * @param code the loinc code of the Observation e.g. FHIRCholesterol.CODE
+	 * @return true if the code is FHIRCholesterol.CODE or FHIRBloodPressure.CODE, otherwise false
+	 */
+	public static boolean hasObservations(String code) {
+		return code.equals(FHIRCholesterol.CODE) || code.equals(FHIRBloodPressure.CODE);
+	}
+
+	/**
+	 * Build an Observation of a patient
+	 * @param patient the index of the patient
+	 * @param code the loinc code of the Observation, FHIRCholesterol.CODE or FHIRBloodPressure.CODE
+	 * @param k the index of the Observation, 0 for the most recent
+	 * @return the Observation resource, or null if the code is neither
+	 */
+	public JSONObject observation(int patient, String code, int k) {
+		JSONObject resource;
+		if (code.equals(FHIRCholesterol.CODE)) {
+			resource = this.resource("Observation", "cholesterol-" + (patient + 1) + "-" + k);
+			resource.put("category", SyntheticFHIRData.category("laboratory"));
+			resource.put("code", SyntheticFHIRData.codeableConcept("2093-3", "Total Cholesterol"));
+			resource.put("valueQuantity", SyntheticFHIRData.quantity(this.cholesterolValue(patient, k), "mg/dL"));
+		}
+		else if (code.equals(FHIRBloodPressure.CODE)) {
+			resource = this.resource("Observation", "blood-pressure-" + (patient + 1) + "-" + k);
+			resource.put("category", SyntheticFHIRData.category("vital-signs"));
+			resource.put("code", SyntheticFHIRData.codeableConcept("55284-4", "Blood Pressure"));
+			resource.put("component", new JSONArray()
+					.put(new JSONObject().put("code", SyntheticFHIRData.codeableConcept(FHIRBloodPressure.DIASTOLIC_BP_CODE, "Diastolic Blood Pressure"))
+							.put("valueQuantity", SyntheticFHIRData.quantity(this.diastolicValue(patient, k), "mm[Hg]")))
+					.put(new JSONObject().put("code", SyntheticFHIRData.codeableConcept(FHIRBloodPressure.SYSTOLIC_BP_CODE, "Systolic Blood Pressure"))
+							.put("valueQuantity", SyntheticFHIRData.quantity(this.systolicValue(patient, k), "mm[Hg]"))));
+		}
+		else {
+			return null;
+		}
+		resource.put("status", "final");
+		resource.put("subject", new JSONObject().put("reference", "Patient/" + (patient + 1)));
+		resource.put("effectiveDateTime", OffsetDateTime.ofInstant(Instant.ofEpochMilli(this.effectiveMillis(patient, k)), ZONE).format(DateTimeFormatter.ISO_OFFSET_DATE_TIME));
+		return resource;
+	}
+
+	private JSONObject resource(String resourceType, String id) {
+		JSONObject resource = new JSONObject();
+		resource.put("resourceType", resourceType);
+		resource.put("id", id);
+		resource.put("meta", new JSONObject().put("versionId", "1").put("lastUpdated", Instant.ofEpochMilli(lastUpdatedMillis).toString()));
+		return resource;
+	}
+
+	private static JSONArray identifier(String system, String value) {
+		return new JSONArray().put(new JSONObject().put("system", system).put("value", value));
+	}
+
+	private static JSONObject codeableConcept(String code, String display) {
+		return new JSONObject().put("coding", new JSONArray().put(new JSONObject().put("system", "http://loinc.org").put("code", code).put("display", display)))
+				.put("text", display);
+	}
+
+	private static JSONArray category(String code) {
+		return new JSONArray().put(new JSONObject().put("coding", new JSONArray()
+				.put(new JSONObject().put("system", "http://terminology.hl7.org/CodeSystem/observation-category").put("code", code))));
+	}
+
+	private static JSONObject quantity(double value, String unit) {
+		return new JSONObject().put("value", value).put("unit", unit).put("system", "http://unitsofmeasure.org").put("code", unit);
+	}
+
+	/**
+	 * Parse the index out of an id of the form prefix + (index + 1)
+	 */
+	private static int indexOf(String id, String prefix, int count) {
+		if (id == null || !id.startsWith(prefix)) {
+			return -1;
+		}
+		try {
+			int index = Integer.parseInt(id.substring(prefix.length())) - 1;
+			return (index >= 0 && index < count) ? index : -1;
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+}
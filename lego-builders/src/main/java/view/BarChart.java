@@ -14,7 +14,6 @@ import javax.swing.SwingConstants;
 import javax.swing.border.TitledBorder;
 
 import org.jfree.chart.ChartFactory;
-import org.jfree.chart.ChartFrame;
 import org.jfree.chart.ChartPanel;
 import org.jfree.chart.JFreeChart;
 import org.jfree.chart.axis.CategoryAxis;
@@ -43,6 +42,9 @@ import model.FHIRPatient;
 public class BarChart extends GraphAbstractionWindow {
 
 	private JPanel contentPane;
+	// the chart is created on the first render, later renders only update its data set
+	private JFreeChart jchart = null;
+	private DefaultCategoryDataset chartDataSet = new DefaultCategoryDataset();
 	
 
 	/**
@@ -75,7 +77,7 @@ public class BarChart extends GraphAbstractionWindow {
 	}
 	
 	/**
-	 * Helps to render the chart using the given data set
+	 * Helps to render the chart using the given data set. The chart is created once, then its data set is updated in place.
 	 * @param dataSet set of data that needs to be plotted 
 	 * @param title title of the chart
 	 * @param xAxis x axis of the chart
@@ -83,9 +85,18 @@ public class BarChart extends GraphAbstractionWindow {
 	 */
 	@Override
 	public void renderChart(DefaultCategoryDataset dataSet, String title,String xAxis, String yAxis) {
+		if (jchart != null) {
+			jchart.setTitle(title);
+			jchart.getCategoryPlot().getDomainAxis().setLabel(xAxis);
+			jchart.getCategoryPlot().getRangeAxis().setLabel(yAxis);
+			// the chart redraws itself once the data set has changed
+			updateDataSet(chartDataSet, dataSet);
+			return;
+		}
+		updateDataSet(chartDataSet, dataSet);
 		
-		// creates a Bar chart with the passed data set
-		JFreeChart jchart= ChartFactory.createBarChart(title, xAxis, yAxis, dataSet, PlotOrientation.VERTICAL,true,true,false);
+		// creates a Bar chart with the data set of the window
+		jchart= ChartFactory.createBarChart(title, xAxis, yAxis, chartDataSet, PlotOrientation.VERTICAL,true,true,false);
 
 		CategoryPlot plot= jchart.getCategoryPlot();
 		
@@ -106,12 +117,6 @@ public class BarChart extends GraphAbstractionWindow {
 		
 		// setting color
 		plot.setRangeGridlinePaint(Color.black); 
-		// creating a chart frame
-		ChartFrame chartFrm= new ChartFrame("Patient Monitor",jchart,true);
-		//turning visiblity to false 
-		chartFrm.setVisible(false);
-		//setting the size of the frame 
-		chartFrm.setSize(800,800);
 		
 		ChartPanel chartPanel= new ChartPanel(jchart);
 		
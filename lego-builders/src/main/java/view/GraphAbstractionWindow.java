@@ -43,5 +43,32 @@ public abstract class GraphAbstractionWindow extends JFrame{
 	 * @param yAxis y axis of the chart
 	 */
 	public abstract void renderChart(DefaultCategoryDataset dataSet, String title,String xAxis, String yAxis);
+	
+	/**
+	 * Updates the data set of a chart in place with the values of another data set, so the chart is redrawn once
+	 * instead of being created again. The rows and columns that are not in the values anymore are removed.
+	 * @param chartDataSet the data set the chart was created with
+	 * @param values the values that need to be plotted
+	 */
+	protected static void updateDataSet(DefaultCategoryDataset chartDataSet, DefaultCategoryDataset values) {
+		// the chart is only told once all the values have been set
+		chartDataSet.setNotify(false);
+		for (int row = chartDataSet.getRowCount() - 1; row >= 0; row--) {
+			if (values.getRowIndex(chartDataSet.getRowKey(row)) < 0) {
+				chartDataSet.removeRow(row);
+			}
+		}
+		for (int column = chartDataSet.getColumnCount() - 1; column >= 0; column--) {
+			if (values.getColumnIndex(chartDataSet.getColumnKey(column)) < 0) {
+				chartDataSet.removeColumn(column);
+			}
+		}
+		for (int row = 0; row < values.getRowCount(); row++) {
+			for (int column = 0; column < values.getColumnCount(); column++) {
+				chartDataSet.setValue(values.getValue(row, column), values.getRowKey(row), values.getColumnKey(column));
+			}
+		}
+		chartDataSet.setNotify(true);
+	}
 
 }
@@ -15,7 +15,6 @@ import javax.swing.SwingConstants;
 import javax.swing.border.TitledBorder;
 
 import org.jfree.chart.ChartFactory;
-import org.jfree.chart.ChartFrame;
 import org.jfree.chart.ChartPanel;
 import org.jfree.chart.JFreeChart;
 import org.jfree.chart.axis.CategoryAxis;
@@ -31,6 +30,10 @@ import org.jfree.data.category.DefaultCategoryDataset;
 import java.awt.event.ActionListener;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.awt.event.ActionEvent;
 
 import model.FHIRPatient;
@@ -44,6 +47,10 @@ import model.Tuple;
  */
 
 public class LineChart extends GraphAbstractionWindow {
+	// the chart of each key e.g. of each patient, in the order they were created. A chart is created on its first render,
+	// later renders only update its data set
+	private LinkedHashMap<String, JFreeChart> charts = new LinkedHashMap<String, JFreeChart>();
+	private LinkedHashMap<String, ChartPanel> chartPanels = new LinkedHashMap<String, ChartPanel>();
 	
 	/**
 	 * Creates the frame
@@ -63,7 +70,7 @@ public class LineChart extends GraphAbstractionWindow {
 	}
 	
 	/**
-	 * Helps to render the chart using the given data set
+	 * Helps to render the chart using the given data set, the title is used as the key of the chart
 	 * @param dataSet set of data that needs to be plotted 
 	 * @param title title of the chart
 	 * @param xAxis x axis of the chart
@@ -71,25 +78,76 @@ public class LineChart extends GraphAbstractionWindow {
 	 */
 	@Override
 	public void renderChart(DefaultCategoryDataset dataSet, String title,String xAxis, String yAxis) {
+		this.renderChart(title, dataSet, title, xAxis, yAxis);
+	}
+	
+	/**
+	 * Helps to render the chart of a key using the given data set. The chart of a key is created once and added to the
+	 * graph panel, then its data set is updated in place.
+	 * @param key the key of the chart e.g. the identifier of the patient
+	 * @param dataSet set of data that needs to be plotted 
+	 * @param title title of the chart
+	 * @param xAxis x axis of the chart
+	 * @param yAxis y axis of the chart
+	 */
+	public void renderChart(String key, DefaultCategoryDataset dataSet, String title,String xAxis, String yAxis) {
+		JFreeChart jchart= charts.get(key);
+		if (jchart != null) {
+			jchart.setTitle(title);
+			jchart.getCategoryPlot().getDomainAxis().setLabel(xAxis);
+			jchart.getCategoryPlot().getRangeAxis().setLabel(yAxis);
+			// the chart redraws itself once its data set has changed
+			updateDataSet((DefaultCategoryDataset) jchart.getCategoryPlot().getDataset(), dataSet);
+			return;
+		}
+		DefaultCategoryDataset chartDataSet= new DefaultCategoryDataset();
+		updateDataSet(chartDataSet, dataSet);
 		
 		// creates a line chart
-		JFreeChart jchart= ChartFactory.createLineChart(title,xAxis, yAxis, dataSet, PlotOrientation.VERTICAL,true,true,false);
+		jchart= ChartFactory.createLineChart(title,xAxis, yAxis, chartDataSet, PlotOrientation.VERTICAL,true,true,false);
 		CategoryPlot plot= jchart.getCategoryPlot();
 		// setting color
 		plot.setRangeGridlinePaint(Color.black); 
-		// creating a chart frame
-		ChartFrame chartFrm= new ChartFrame("",jchart,true);
-		//turning visiblity to false 
-		chartFrm.setVisible(false);
-		//setting the size of the frame 
-		chartFrm.setSize(800,800);
 		ChartPanel chartPanel= new ChartPanel(jchart);
+		charts.put(key, jchart);
+		chartPanels.put(key, chartPanel);
 		//adding the chart panel to the graph panel
 		graphPanel.add(chartPanel);
 		//update the UI 
-		graphPanel.updateUI();
+		graphPanel.revalidate();
 
 	}
+	
+	/**
+	 * Removes the charts of the keys that are not shown anymore, e.g. of the patients that are not monitored anymore
+	 * @param keys the keys of the charts that are kept
+	 */
+	public void retainCharts(Collection<String> keys) {
+		boolean removed = false;
+		Iterator<Map.Entry<String, ChartPanel>> iterator = chartPanels.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Map.Entry<String, ChartPanel> entry = iterator.next();
+			if (!keys.contains(entry.getKey())) {
+				graphPanel.remove(entry.getValue());
+				charts.remove(entry.getKey());
+				iterator.remove();
+				removed = true;
+			}
+		}
+		if (removed) {
+			graphPanel.revalidate();
+			graphPanel.repaint();
+		}
+	}
+	
+	/**
+	 * 
+	 * @return the number of charts on the graph panel
+	 */
+	public int getNumberOfCharts() {
+		return charts.size();
+	}
+	
 	/**
 	 * 
 	 * @return the panel on which the graph is rendered on 
@@ -0,0 +1,146 @@
+package view;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+import javax.swing.JProgressBar;
+import javax.swing.SwingWorker;
+
+import model.ObservationHistory;
+import model.PatientWrapper;
+
+/**
+ * Class that fills the ObservationHistory of an Observation of many patients from the server in the background, so the
+ * Swing event dispatch thread never waits on the network. The patients are loaded in parallel on a bounded number of
+ * threads, the progress is shown on a progress bar and the callback is told on the event dispatch thread once the histories are filled.
+ * Starting a new load cancels the previous one, so only the histories of the latest selection are ever applied and the
+ * patients of the previous one that were not requested yet are never requested.
+ *
+ */
+public class ObservationHistoryLoader {
+
+	/**
+	 * Callback for when the histories have been loaded, called on the event dispatch thread
+	 */
+	public interface Callback {
+		/**
+		 * @param patients the patients whose histories were filled
+		 */
+		public void historiesLoaded(List<PatientWrapper> patients);
+	}
+
+	private final ExecutorService executor;
+	private final JProgressBar progressBar;
+	private SwingWorker<Void, Integer> currentLoad = null;
+
+	/**
+	 * Constructor of ObservationHistoryLoader
+	 * @param concurrency the maximum number of patients loaded at the same time
+	 * @param progressBar the progress bar that shows how many patients have been loaded, shown only while loading
+	 */
+	public ObservationHistoryLoader(int concurrency, JProgressBar progressBar) {
+		this.executor = Executors.newFixedThreadPool(concurrency, new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "history-loader-" + count.incrementAndGet());
+				thread.setDaemon(true); // never keeps the application alive
+				return thread;
+			}
+		});
+		this.progressBar = progressBar;
+		this.progressBar.setStringPainted(true);
+		this.progressBar.setVisible(false);
+	}
+
+	/**
+	 * Fill the history with the numberOfMostRecentObservations latest Observations of observationName of every patient in the background.
+	 * Must be called on the event dispatch thread, cancels the load in progress if there is one.
+	 * @param patients the patients whose histories are to be filled
+	 * @param observationName the name of the Observation e.g. ObservationTypes.BLOOD_PRESSURE.toString()
+	 * @param numberOfMostRecentObservations the number of most recent Observations of each patient
+	 * @param history the history to be filled
+	 * @param callback called on the event dispatch thread once the histories are filled, unless the load is cancelled
+	 */
+	public void load(final List<PatientWrapper> patients, final String observationName, final int numberOfMostRecentObservations, final ObservationHistory history, final Callback callback) {
+		if (currentLoad != null) {
+			currentLoad.cancel(true);
+		}
+		progressBar.setMaximum(patients.size());
+		progressBar.setValue(0);
+		progressBar.setString("Loading 0/" + patients.size());
+		progressBar.setVisible(!patients.isEmpty());
+
+		currentLoad = new SwingWorker<Void, Integer>() {
+			@Override
+			protected Void doInBackground() throws Exception {
+				// fan out over the executor, one request per patient
+				final AtomicInteger loaded = new AtomicInteger();
+				List<CompletableFuture<Integer>> futures = new ArrayList<CompletableFuture<Integer>>();
+				for (final PatientWrapper patient: patients) {
+					futures.add(CompletableFuture.supplyAsync(new Supplier<Integer>() {
+						public Integer get() {
+							if (isCancelled()) { // a newer load started before this patient's turn
+								return 0;
+							}
+							return patient.fillHistory(history, observationName, numberOfMostRecentObservations);
+						}
+					}, executor).whenComplete(new BiConsumer<Object, Throwable>() {
+						public void accept(Object recorded, Throwable exception) {
+							publish(loaded.incrementAndGet());
+						}
+					}));
+				}
+				try {
+					for (CompletableFuture<Integer> future: futures) {
+						future.get();
+					}
+				}
+				finally {
+					if (isCancelled()) { // the patients still queued are never requested
+						for (CompletableFuture<Integer> future: futures) {
+							future.cancel(false);
+						}
+					}
+				}
+				return null;
+			}
+
+			@Override
+			protected void process(List<Integer> loadedCounts) {
+				if (this != currentLoad) { // a newer load owns the progress bar
+					return;
+				}
+				int loaded = loadedCounts.get(loadedCounts.size() - 1);
+				progressBar.setValue(loaded);
+				progressBar.setString("Loading " + loaded + "/" + patients.size());
+			}
+
+			@Override
+			protected void done() {
+				if (isCancelled()) {
+					return;
+				}
+				currentLoad = null;
+				progressBar.setVisible(false);
+				try {
+					get(); // rethrows what went wrong in the background
+					callback.historiesLoaded(patients);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} catch (ExecutionException e) {
+					e.getCause().printStackTrace();
+				}
+			}
+		};
+		currentLoad.execute();
+	}
+}
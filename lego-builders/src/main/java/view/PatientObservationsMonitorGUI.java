@@ -8,7 +8,7 @@ import java.awt.Dimension;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.EnumMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
@@ -17,20 +17,30 @@ import javax.swing.DefaultListModel;
 import javax.swing.JButton;
 import javax.swing.JCheckBox;
 import javax.swing.JLabel;
+import javax.swing.JProgressBar;
 import javax.swing.JScrollPane;
 import javax.swing.JTable;
 import javax.swing.JTextField;
+import javax.swing.SwingUtilities;
 import javax.swing.table.DefaultTableCellRenderer;
-import javax.swing.table.DefaultTableModel;
 
 import org.jfree.data.category.DefaultCategoryDataset;
 
+import model.AlertEngine;
+import model.AlertRule;
+import model.FHIRBloodPressure;
+import model.FHIRCholesterol;
+import model.FHIRClient;
 import model.FHIRPatient;
 import model.FHIRPractitioner;
 import model.Observation;
+import model.ObservationHistory;
+import model.ObservationSeries;
 import model.ObservationTypes;
 import model.PatientWrapper;
+import model.PopulationStatistics;
 import model.Tuple;
+import observerpattern.MapChangeEvent;
 import observerpattern.Observer;
 
 /**
@@ -45,6 +55,8 @@ public class PatientObservationsMonitorGUI extends PatientSelectionGUI implement
 
 	// stores the average of the cholesterol values of the patients we are tracking.
     private Double average=0.0;
+    // running statistics of the Observations of the patients we are tracking, for the table colours and dashboards
+    private PopulationStatistics monitoredStatistics = new PopulationStatistics();
     
     // to store all check boxes in one place to remove if else blocks
     private ArrayList<JCheckBox> checkBoxList=new ArrayList<JCheckBox>(); 
@@ -59,11 +71,11 @@ public class PatientObservationsMonitorGUI extends PatientSelectionGUI implement
     //button to monitor patients that have a high BP based on the entered systolic value 
     JButton monitorHighBPButton = new JButton("Monitor High BP");
     
-    //default column of the table
-    private String columnNames[] = {"Name"};
-    // The 0 argument is number rows
-    private DefaultTableModel tableModel = new DefaultTableModel(columnNames,0); 
+    // the rows of the table are read straight from the monitored patients, starting with only the name column
+    private PatientTableModel tableModel = new PatientTableModel(); 
     private JTable table = new JTable(tableModel);
+    // one renderer shared by every Observation column, it colours the values above the practitioner's thresholds
+    private CellColorRenderer cellColorRenderer = new CellColorRenderer();
     
     //Bar chart to monitor patient cholesterol
     private BarChart cholesterolChart= new BarChart("Total Cholesterol Graph");
@@ -86,6 +98,22 @@ public class PatientObservationsMonitorGUI extends PatientSelectionGUI implement
     //List to keep track of all the patient wrappers that have high systolic BP based on the practitioner's entered values
     private ArrayList<PatientWrapper> highSystolicPatientWrapper =new ArrayList(); 
     
+    // shows how many patients' histories have been loaded from the server
+    private JProgressBar historyProgress = new JProgressBar();
+    // loads the patients' histories in the background so the window never freezes on the network
+    private ObservationHistoryLoader historyLoader = new ObservationHistoryLoader(FHIRClient.getConfig().getConcurrency(), historyProgress);
+    // the latest observations of the patients, kept between loads so only newer ones are retrieved
+    private ObservationHistory observationHistory = new ObservationHistory();
+    // the number of latest Systolic BP values shown per patient in the chart and the textual monitor
+    private int historyDepth = 5;
+    
+    // evaluates the readings of all the practitioner's patients as they arrive, and indexes them by value
+    private AlertEngine alertEngine = new AlertEngine();
+    // the rule for the Systolic BP value entered by the practitioner
+    private AlertRule systolicRule = null;
+    // shows how many of the practitioner's patients are in alert for the systolic rule
+    private JLabel alertLabel = new JLabel();
+    
     /***
      * 
      * @param practitioner: the current Practitioner
@@ -107,6 +135,9 @@ public class PatientObservationsMonitorGUI extends PatientSelectionGUI implement
 		// Use a set here to eliminate redundancy
 		objects = new LinkedHashSet();
 		
+		// the Observation columns are created again when the ticked Observations change, the renderer is set once for all of them
+		table.setDefaultRenderer(Observation.class, cellColorRenderer);
+		
 		
 		//action listener for the add button
 		addbutton.addActionListener(new ActionListener() {
@@ -114,7 +145,6 @@ public class PatientObservationsMonitorGUI extends PatientSelectionGUI implement
             	
                 //make sure you preserve the previously selected list items
                 int size = rightlist.getModel().getSize();
-                tableModel.setRowCount(0);
                 
                 // adding previous items from the right list
                 for (int i = 0; i < size; i++) {
@@ -150,8 +180,11 @@ public class PatientObservationsMonitorGUI extends PatientSelectionGUI implement
         table.addMouseListener(new java.awt.event.MouseAdapter(){
 			public void mouseClicked(java.awt.event.MouseEvent e){
 				int row=table.rowAtPoint(e.getPoint());
+				if (row == -1) { // clicked below the last row
+					return;
+				}
 	            // extracting the patient of that row selection
-	            FHIRPatient chosenPatient=selectedPatientList.get(row);
+	            FHIRPatient chosenPatient=tableModel.getPatient(row);
 	            new PatientInfoGUI(chosenPatient);  
 	        }
 		});
@@ -183,7 +216,6 @@ public class PatientObservationsMonitorGUI extends PatientSelectionGUI implement
     	        	listModel.addElement(temp[i]);
     	        }
        
-                tableModel.setRowCount(0);
               //update Table, chart(s), textual Monitoring windows 
                 update();
              
@@ -226,7 +258,6 @@ public class PatientObservationsMonitorGUI extends PatientSelectionGUI implement
         JButton showSystolicChartButton = new JButton("Show Systolic BP Chart(s)");
         showSystolicChartButton.addActionListener(new ActionListener() {
 			public void actionPerformed(ActionEvent e) {
-				systolicChart.getGraphPanel().removeAll();
 				// fill in the data for the chart
 				populateSystolicChart();
 			}
@@ -283,12 +314,76 @@ public class PatientObservationsMonitorGUI extends PatientSelectionGUI implement
 			public void actionPerformed(ActionEvent e) {
 				// updates highSystolicPatientWrapper list with the patients with high Systolic BP
 				checkHighSystolicPatients();
-				// diplays the text therafter
+				// diplays the text therafter, once the histories have been loaded
 				displaySystolicPatients();
 			}
 		});
         add(monitorHighBPButton);
         add(showSystolicChartButton);
+        add(historyProgress);
+        
+        // the alert count is updated whenever a patient goes into or comes out of alert, on the event dispatch thread
+        alertEngine.addAlertListener(new AlertEngine.AlertListener() {
+			public void alertRaised(AlertRule rule, Tuple<String, String> identifierOfPatient, double value, long timeRecorded) {
+				updateAlertLabelLater();
+			}
+			
+			public void alertCleared(AlertRule rule, Tuple<String, String> identifierOfPatient, double value, long timeRecorded) {
+				updateAlertLabelLater();
+			}
+		});
+        updateSystolicRule(Double.parseDouble(systolicValue.getText()));
+        add(alertLabel);
+	}
+	
+	/**
+	 * Getter for the alert engine, it is to be fed with the practitioner's patients e.g. as a MapObserver of them
+	 * @return the alert engine of the monitor
+	 */
+	public AlertEngine getAlertEngine() {
+		return alertEngine;
+	}
+	
+	/**
+	 * Getter for the running statistics of the Observations of the monitored patients
+	 * @return the running statistics of the monitored patients
+	 */
+	public PopulationStatistics getMonitoredStatistics() {
+		return monitoredStatistics;
+	}
+	
+	/**
+	 * Replaces the systolic rule of the alert engine if the practitioner entered another Systolic BP value
+	 * @param systolicThreshold the Systolic BP value entered by the practitioner
+	 */
+	private void updateSystolicRule(double systolicThreshold) {
+		if (systolicRule != null && systolicRule.getRaiseAbove() == systolicThreshold) {
+			return;
+		}
+		if (systolicRule != null) {
+			alertEngine.removeRule(systolicRule);
+		}
+		systolicRule = new AlertRule("High systolic BP", FHIRBloodPressure.SYSTOLIC_BP_CODE, systolicThreshold, systolicThreshold, 1);
+		alertEngine.addRule(systolicRule);
+		updateAlertLabel();
+	}
+	
+	/**
+	 * Updates the alert count on the event dispatch thread, alerts are raised on the thread that fed the engine
+	 */
+	private void updateAlertLabelLater() {
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				updateAlertLabel();
+			}
+		});
+	}
+	
+	/**
+	 * Updates the alert count with the number of patients in alert for the systolic rule
+	 */
+	private void updateAlertLabel() {
+		alertLabel.setText(systolicRule.getName() + ": " + alertEngine.getAlertingPatients(systolicRule).size() + " patient(s)");
 	}
 	/**
 	 * Action Listener for add Frequency button
@@ -322,7 +417,7 @@ public class PatientObservationsMonitorGUI extends PatientSelectionGUI implement
 			// name of the patient 
         	String name=monitoredPatients.get(i).getGivenName()+" "+monitoredPatients.get(i).getFamilyName();
         	// cholesterol value of the patient 
-        	Double cholesterolValue=Double.parseDouble(monitoredPatients.get(i).getCholesterol().getCholesterolValue());
+        	double cholesterolValue=monitoredPatients.get(i).getCholesterol().getCholesterolNumericValue();
         	// setting the dat set values
         	dataSet.setValue(cholesterolValue, "Total Cholesterol mg/dl", name);
 		}
@@ -332,61 +427,96 @@ public class PatientObservationsMonitorGUI extends PatientSelectionGUI implement
 	}
 
 	/**
-	 * Populates the data set for Systolic BP Line chart
+	 * Populates the data set for Systolic BP Line chart. The histories are loaded in the background,
+	 * the chart is rendered once they have arrived.
 	 */
 	public void populateSystolicChart() {
 		// updates highSystolicPatientWrapper list with the patients with high Systolic BP
 		checkHighSystolicPatients();
 		// make chart visible
 		systolicChart.setVisible(true);
-		
+		// the textual monitoring window shares the histories if it is open
+		loadSystolicHistories(true, systolicMonitor.isDisplayable());
+	}
+	
+	/**
+	 * Load the latest historyDepth BP observations of every patient with high Systolic BP in the background,
+	 * then render the Systolic BP chart and/or the textual monitoring window with them on the event dispatch thread
+	 * @param renderChart whether the Systolic BP chart is to be rendered
+	 * @param renderTextualMonitor whether the textual monitoring window is to be rendered
+	 */
+	private void loadSystolicHistories(final boolean renderChart, final boolean renderTextualMonitor) {
+		historyLoader.load(new ArrayList<PatientWrapper>(highSystolicPatientWrapper), ObservationTypes.BLOOD_PRESSURE.toString(), historyDepth, observationHistory, new ObservationHistoryLoader.Callback() {
+			public void historiesLoaded(List<PatientWrapper> patients) {
+				if (renderChart) {
+					renderSystolicChart(patients);
+				}
+				if (renderTextualMonitor) {
+					renderSystolicPatients(patients);
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Renders a Systolic BP Line chart for each patient with the latest BP observations of the patient
+	 * @param patients the patients with high Systolic BP, their histories have been filled
+	 */
+	private void renderSystolicChart(List<PatientWrapper> patients) {
+		// the charts are kept per patient and updated in place, the values are gathered in one data set for all of them
+		final DefaultCategoryDataset dataSet= new DefaultCategoryDataset();
+		ArrayList<String> shownPatients = new ArrayList<String>();
 		// going through each patient that has high sys BP
-		for (int i=0;i<highSystolicPatientWrapper.size();i++) {
+		for (int i=0;i<patients.size();i++) {
 			// extracting the name of the patient 
-			String name=highSystolicPatientWrapper.get(i).getPatient().getGivenName()+" "+highSystolicPatientWrapper.get(i).getPatient().getFamilyName();
-			DefaultCategoryDataset dataSet= new DefaultCategoryDataset();
+			String name=patients.get(i).getPatient().getGivenName()+" "+patients.get(i).getPatient().getFamilyName();
+			String key=patients.get(i).getPatient().getIdentifier().toString();
+			shownPatients.add(key);
+			dataSet.clear();
 
-			//fetch the data of the latest 5 BP observations for that patient
-			ArrayList<Tuple<ArrayList<Tuple<String, Observation>>, Boolean>> monitorPatient= highSystolicPatientWrapper.get(i).getObservations(ObservationTypes.BLOOD_PRESSURE.toString(), 5);
-			//reversing the order of the patient observations from previous observations to the most recent Observation 
-			Collections.reverse(monitorPatient);
-			// keeping track of the number of observations for the x axis 
-			int count=1;
-			for (int j =0;j<monitorPatient.size();j++) {
-				// extracting the Observation 
-				for(int k=0;k< monitorPatient.get(j).first.size();k++) {
-					// ensuring that the value isn't null
-					if (!(monitorPatient.get(j).first.get(k).second.isEmpty())) {
-						// ensuring that we only extract the value which is systolic blood pressure 
-						if (monitorPatient.get(j).first.get(k).first.equals(ObservationTypes.SYSTOLIC_BLOOD_PRESSURE.toString())) {
-							dataSet.setValue(Double.parseDouble(monitorPatient.get(j).first.get(k).second.getValue()), "Systolic BP Value", Integer.toString(count));
-							count++;
-							
-						}
-						
-					}
-					
-				}
+			// the latest historyDepth Systolic BP values of that patient, from the previous observations to the most recent Observation
+			observationHistory.getSeries(patients.get(i).getPatient().getIdentifier(), FHIRBloodPressure.SYSTOLIC_BP_CODE).forEachLatest(historyDepth, new ObservationSeries.Visitor() {
+				// keeping track of the number of observations for the x axis 
+				private int count=1;
 				
-			}
-			// updates the UI
-			systolicChart.getGraphPanel().updateUI();
+				public void visit(long timeRecorded, String timeRecordedAsGiven, double value) {
+					dataSet.setValue(value, "Systolic BP Value", Integer.toString(count));
+					count++;
+				}
+			});
 			// render the chart 
-			systolicChart.renderChart(dataSet,name,"","");
+			systolicChart.renderChart(key,dataSet,name,"","");
 			
 		}
+		// the patients that don't have a high Systolic BP anymore
+		systolicChart.retainCharts(shownPatients);
 	}
 	
 	
+	/**
+	 * Getter for the number of latest Systolic BP values shown per patient
+	 * @return the number of latest Systolic BP values shown per patient
+	 */
+	public int getHistoryDepth() {
+		return historyDepth;
+	}
+	
+	/**
+	 * Setter for the number of latest Systolic BP values shown per patient, e.g. 50 to 200 for a trend chart
+	 * @param historyDepth the number of latest Systolic BP values shown per patient, at most ObservationHistory.DEFAULT_CAPACITY
+	 */
+	public void setHistoryDepth(int historyDepth) {
+		if (historyDepth < 1 || historyDepth > ObservationHistory.DEFAULT_CAPACITY) {
+			throw new IllegalArgumentException("History depth must be between 1 and " + ObservationHistory.DEFAULT_CAPACITY);
+		}
+		this.historyDepth = historyDepth;
+	}
+	
 	/**
 	 * Update table with the current list of patients to be monitored
 	 * @param objects
 	 */
 	private void updateTableWithSelectedListPatients(Set objects){
-		tableModel.setColumnCount(0);
-		// add name column in the beginning
-		tableModel.addColumn("Name");
-	
 		selectedPatientList = new ArrayList<FHIRPatient>(objects);
 		// clearing the previous contents of the container 
 		patientWrapperList.clear();
@@ -394,102 +524,26 @@ public class PatientObservationsMonitorGUI extends PatientSelectionGUI implement
 		// Creating a list of wrapper patients based on the selected patients
 		for (int i=0;i<selectedPatientList.size();i++) {
     		patientWrapperList.add(new PatientWrapper(selectedPatientList.get(i)));
+    		// a reading the alert engine already has is not evaluated again
+    		alertEngine.evaluatePatient(selectedPatientList.get(i).getIdentifier(), selectedPatientList.get(i));
     	}
     	
-		// This sequence of loops is used to update the table with the column names 
-		// based on the Observation Chekcboxes that are ticked by the user
-    	// going through each checkbox list items
+		// the columns of the table are the Observations whose checkboxes are ticked by the user,
+		// they are only rebuilt if the ticked checkboxes changed
+		ArrayList<ObservationTypes> monitoredTypes = new ArrayList<ObservationTypes>();
     	for (int i=0;i<checkBoxList.size();i++) {
-    		// checking if the check box is selected
 			if (checkBoxList.get(i).isSelected()) {
-				// going through each patient in the wrapper list 
-				for (int j=0;j<patientWrapperList.size();j++) {
-					// check if the patient has an observation for the checkbox that's selected
-					if (patientWrapperList.get(j).getObservation(checkBoxList.get(i).getText())!=null) {
-						// getting the Observation based on the checkbox String 
-						Tuple <ArrayList<Tuple<String, Observation>>, Boolean> passedTuple=patientWrapperList.get(j).getObservation(checkBoxList.get(i).getText());
-						// Extracying a List of Tuples that contains the Observation
-						ArrayList <Tuple<String, Observation>> passedList= passedTuple.first;
-						// extracting the boolean value for time 
-						Boolean passedBool=passedTuple.second;
-						for (int k=0;k< passedList.size();k++) {
-							// adds the column name 
-							tableModel.addColumn(passedList.get(k).first);
-							// if the boolean value is false, then in the arraylist there is only one time field which needs to be added in the table 
-								if (passedBool==false) {
-									tableModel.addColumn("Time");
-								}
-							
-					    }
-						// if the boolean value is true, then in the arraylist there is 2 redundant time fields which need to be added in the table only once 
-						if (passedBool==true) {
-							tableModel.addColumn("Time");
-						}
-						break;
+				for (ObservationTypes observationType: ObservationTypes.values()) {
+					if (observationType.toString().equals(checkBoxList.get(i).getText())) {
+						monitoredTypes.add(observationType);
 					}
 				}
 			}
     	}
+    	tableModel.setObservationTypes(monitoredTypes);
     	
-	   selectedPatientList = new ArrayList<FHIRPatient>(objects);
-	   
-	   // storing each patient data as a row in the arraylist. 
-	   ArrayList<String> tableRows = new ArrayList<String>();
-	   String time="";
-	   
-	   // previous section was adding the columns in the table based on the observation selected by the practitioner
-	   // but Now we begin populating the data in the table
-	   Boolean hasTimeBeenAdded=false;
-	   // going through each patient in the wrapper list 
-	   for (int j=0;j<patientWrapperList.size();j++) {
-		   // adding the patient name in the beginning because that is the first column
-		   tableRows.add(patientWrapperList.get(j).getPatient().getGivenName()+" "+patientWrapperList.get(j).getPatient().getFamilyName());
-		   // going through each checkbox list items
-		   for (int i=0;i<checkBoxList.size();i++) {
-			   // check if that particular check box is selected 
-			   if (checkBoxList.get(i).isSelected()) {
-				   // check if the patient has an observation for the checkbox that's selected
-					if (patientWrapperList.get(j).getObservation(checkBoxList.get(i).getText())!=null) {
-						// getting the Obseravtion based on the checkbox String 
-						Tuple <ArrayList<Tuple<String, Observation>>, Boolean> passedTuple=patientWrapperList.get(j).getObservation(checkBoxList.get(i).getText());
-						// Extracying a List of Tuples that contains the Observation
-						ArrayList <Tuple<String, Observation>> passedList= passedTuple.first;
-						// extracting the boolean value for time 
-						Boolean passedBool=passedTuple.second;
-						for (int k =0;k< passedList.size();k++) {
-							// ensuring that the Observation value isnt empty
-							if (!passedList.get(k).second.isEmpty()) {
-								// adding the observation value and the units to the list 
-								tableRows.add(passedList.get(k).second.getValue()+" "+passedList.get(k).second.getUnits());
-								// if the boolean value is false, then in the arraylist there is only one time field which needs to be added in the table 
-								if (passedBool==false) {
-									tableRows.add(passedList.get(k).second.getTimeRecorded());
-									hasTimeBeenAdded=true;
-								}
-								time=passedList.get(k).second.getTimeRecorded();
-							}
-							// if it's empty add  - for value and time
-							else {
-								tableRows.add("-                  ");
-								time="-                  ";
-								
-							}
-						}
-					}
-					// if the boolean value is true, then in the arraylist there is 2 redundant time fields which need to be added in the table only once 	
-					if (!(hasTimeBeenAdded)) {
-						tableRows.add(time);
-					}
-				}	
-			   hasTimeBeenAdded=false;
-			}	
-			   // adding this to the table now by converting the arraylist into array because the tabel model accepts only array
-			   String[] array = tableRows.toArray(new String[0]);
-			   tableModel.addRow(array);
-			   tableRows = new ArrayList<String>();	
-			   hasTimeBeenAdded=false;
-		}
-
+    	// the rows read the values of the patients when they are painted, nothing is copied
+    	tableModel.setPatients(selectedPatientList);
 	}
 	
 	
@@ -503,45 +557,37 @@ public class PatientObservationsMonitorGUI extends PatientSelectionGUI implement
 	 */
 	private class CellColorRenderer extends DefaultTableCellRenderer {
 		//source---> https://stackoverflow.com/questions/17732005/trying-to-color-specific-cell-in-jtable-gettablecellrenderercomponent-overide
-        Color originalColor = null;
-        Double comparisonValue;
-        Color passedColor;
+        private EnumMap<ObservationTypes, Double> comparisonValues = new EnumMap<ObservationTypes, Double>(ObservationTypes.class);
+        private EnumMap<ObservationTypes, Color> passedColors = new EnumMap<ObservationTypes, Color>(ObservationTypes.class);
         
         /**
-         * 
+         * Set the condition of the cells of an Observation, the cells are repainted with the table
+         * @param observationType the Observation of the cells e.g. ObservationTypes.SYSTOLIC_BLOOD_PRESSURE
          * @param comparisonValue the value that the observation needs to be compared against
          * @param passedColor the color that the cell needs to be highlighted in
          */
-        public CellColorRenderer(Double comparisonValue, Color passedColor) {
-        	this.comparisonValue= comparisonValue;
-            this.passedColor= passedColor;
+        public void setCondition(ObservationTypes observationType, double comparisonValue, Color passedColor) {
+        	comparisonValues.put(observationType, comparisonValue);
+        	passedColors.put(observationType, passedColor);
         }
 
         @Override
         public java.awt.Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int column) {
             DefaultTableCellRenderer renderer = (DefaultTableCellRenderer) super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
-            // extracting the original color
-            if (originalColor == null) {
-                originalColor = getForeground();
-            }
-            if (value == null) {
-                renderer.setText("");
-            } else {
-                renderer.setText(value.toString());
+            Observation observation = (Observation) value;
+            // represent it in black unless it is above the comparison value
+            renderer.setForeground(Color.BLACK);
+            if (observation == null || observation.isEmpty()) {
+                renderer.setText(PatientTableModel.EMPTY_CELL);
+                return renderer;
             }
+            renderer.setText(observation.getValue() + " " + observation.getUnits());
             
-            // splitting the observation string into value and unit 
-            String[] splitted = value.toString().split("\\s+");
-            String observationString = splitted[0];
-
-        
-            // if the patient's observation is greater than the comparison value, highloght the value in the passed Color
-            if (!(observationString.substring(0, 1).equalsIgnoreCase("-")) && Double.parseDouble(observationString)>comparisonValue) {
-                renderer.setForeground(passedColor);
-            }
-            else {
-            	// represent it in black
-                renderer.setForeground(Color.BLACK); 
+            // if the patient's observation is greater than the comparison value, highlight the value in the passed Color
+            ObservationTypes observationType = tableModel.getObservationType(table.convertColumnIndexToModel(column));
+            Double comparisonValue = comparisonValues.get(observationType);
+            if (comparisonValue != null && observation.getNumericValue() > comparisonValue) {
+                renderer.setForeground(passedColors.get(observationType));
             }
 
             return renderer;
@@ -555,25 +601,11 @@ public class PatientObservationsMonitorGUI extends PatientSelectionGUI implement
 	 */
 	@Override
 	public void setTableColourProperty() {
-		CellColorRenderer cholesterolCondition = new CellColorRenderer(average,Color.RED);
-		CellColorRenderer systolicCondition = new CellColorRenderer(Double.parseDouble(systolicValue.getText()),Color.MAGENTA);
-		CellColorRenderer diastolicCondition = new CellColorRenderer(Double.parseDouble(diastolicValue.getText()),Color.MAGENTA);
-   	 	
-		// iterating through each table column and adding cell color properties depending on the columns
-		for (int i = 0; i < tableModel.getColumnCount(); i++) {
-			// Setting the cell properties for the column systolic pressure
-			if (tableModel.getColumnName(i).equals(ObservationTypes.SYSTOLIC_BLOOD_PRESSURE.toString())) {
-            	table.getColumn(ObservationTypes.SYSTOLIC_BLOOD_PRESSURE.toString()).setCellRenderer(systolicCondition);
-            }
-			// Setting the cell properties for the column diastolic pressure
-			if (tableModel.getColumnName(i).equals(ObservationTypes.DIASTOLIC_BLOOD_PRESSURE.toString())) {
-            	table.getColumn(ObservationTypes.DIASTOLIC_BLOOD_PRESSURE.toString()).setCellRenderer(diastolicCondition);
-            }
-			// Setting the cell properties for the column total cholesterol
-            if (tableModel.getColumnName(i).equals(ObservationTypes.CHOLESTEROL.toString())) {
-            	table.getColumn(ObservationTypes.CHOLESTEROL.toString()).setCellRenderer(cholesterolCondition);
-            }
-        }  
+		// the renderer is shared by all the Observation columns, only its conditions change
+		cellColorRenderer.setCondition(ObservationTypes.CHOLESTEROL, average, Color.RED);
+		cellColorRenderer.setCondition(ObservationTypes.SYSTOLIC_BLOOD_PRESSURE, Double.parseDouble(systolicValue.getText()), Color.MAGENTA);
+		cellColorRenderer.setCondition(ObservationTypes.DIASTOLIC_BLOOD_PRESSURE, Double.parseDouble(diastolicValue.getText()), Color.MAGENTA);
+		table.repaint();
    }
 
 	
@@ -595,8 +627,6 @@ public class PatientObservationsMonitorGUI extends PatientSelectionGUI implement
 
         int size = rightlist.getModel().getSize();
 
-        tableModel.setRowCount(0);
-        
         objects.clear();
         
         for (int i = 0; i < size; i++) {
@@ -615,10 +645,8 @@ public class PatientObservationsMonitorGUI extends PatientSelectionGUI implement
         
         this.updateTableWithSelectedListPatients(objects);
         //calculate average based on the current number of patients
-        for (int i = 0; i < tableModel.getColumnCount(); i++) {
-            if (tableModel.getColumnName(i).equals(ObservationTypes.CHOLESTEROL.toString())) {
-            	 calcAverageCholesterol(objects);
-            }            
+        if (tableModel.isMonitored(ObservationTypes.CHOLESTEROL)) {
+        	calcAverageCholesterol(objects);
         }
         
         // if the user is currently viewing the cholesterol bar chart
@@ -629,60 +657,117 @@ public class PatientObservationsMonitorGUI extends PatientSelectionGUI implement
         	
         }
         
-        // if the user is currently viewing the Systolic line chart
-        if (systolicChart.isDisplayable()) {
-        	systolicChart.getGraphPanel().removeAll();
-        	// populate the chart
-        	populateSystolicChart();
-        	// because populateSystolicChart() already uses the  checkHighSystolicPatients() updates the list we don't have to query it again
-        	// hence it was nested with this if condition
-        	if (systolicMonitor.isDisplayable()) {
-        		 // display all the textual history 
-        		 displaySystolicPatients();
-           }
-        	
-        }
-        // If the systolic chart window is not open but the systolicMonitor Window is open, we can now use checkHighSystolicPatients()
-        // separately and update the list of high Cholesterol Patients. So, in this case we are ensuring that the code is not redundant.
-        else if (systolicMonitor.isDisplayable()) {
-        	 checkHighSystolicPatients();
-        	// display all the textual history 
-     		 displaySystolicPatients();
-        }
+        // if the user is currently viewing the Systolic line chart and/or the Systolic monitor window, 
+        // load the histories once in the background for both of them
+        refreshSystolicViews();
        
 	}
 	
+	/**
+	 * Re-renders the Systolic BP chart and the textual monitoring window with fresh histories, if they are open
+	 */
+	private void refreshSystolicViews() {
+		boolean renderChart = systolicChart.isDisplayable();
+		boolean renderTextualMonitor = systolicMonitor.isDisplayable();
+		if (renderChart || renderTextualMonitor) {
+			// updates the list of high Systolic Patients
+			checkHighSystolicPatients();
+			loadSystolicHistories(renderChart, renderTextualMonitor);
+		}
+	}
+	
+	/**
+	 * Patch the view with what changed in the practitioner's patients: the changed patients are replaced in both lists
+	 * and only their rows of the table are updated. The average, chart(s) and textual monitoring window are only updated
+	 * if a monitored patient changed, the running statistics only take in the changed and removed monitored patients.
+	 * Falls back to update() if a monitored patient was removed, because the rows would move.
+	 * @param event which patients were added, removed or changed
+	 */
+	public void patientsChanged(MapChangeEvent<Tuple<String, String>, FHIRPatient> event) {
+		this.patientList = practitioner.getPatients();
+		
+		// left list: replace or remove the patients that changed, append the new ones
+		DefaultListModel leftListModel =  (DefaultListModel)(leftlist.getModel());
+		for (int i = leftListModel.getSize() - 1; i >= 0; i--) {
+			Tuple<String, String> id = ((FHIRPatient) leftListModel.getElementAt(i)).getIdentifier();
+			if (event.getRemovedKeys().contains(id)) {
+				leftListModel.remove(i);
+			}
+			else if (event.getChangedKeys().contains(id)) {
+				leftListModel.set(i, event.getNewValue(id));
+			}
+		}
+		for (Tuple<String, String> id: event.getAddedKeys()) {
+			leftListModel.addElement(event.getNewValue(id));
+		}
+		
+		// right list: only the monitored patients that changed matter for the table, chart(s) and textual monitoring window
+		DefaultListModel rightListModel =  (DefaultListModel)(rightlist.getModel());
+		boolean monitoredPatientRemoved = false;
+		ArrayList<Integer> changedRows = new ArrayList<Integer>();
+		for (int i = rightListModel.getSize() - 1; i >= 0; i--) {
+			Tuple<String, String> id = ((FHIRPatient) rightListModel.getElementAt(i)).getIdentifier();
+			if (event.getRemovedKeys().contains(id)) {
+				rightListModel.remove(i);
+				monitoredStatistics.remove(id);
+				monitoredPatientRemoved = true;
+			}
+			else if (event.getChangedKeys().contains(id)) {
+				rightListModel.set(i, event.getNewValue(id));
+				monitoredStatistics.put(event.getNewValue(id));
+				changedRows.add(i);
+			}
+		}
+		if (monitoredPatientRemoved) { // the rows moved, rebuild the table
+			this.update();
+			return;
+		}
+		if (changedRows.isEmpty()) {
+			return;
+		}
+		objects.clear();
+		for (int i = 0; i < rightListModel.getSize(); i++) {
+			objects.add(rightListModel.getElementAt(i));
+		}
+		selectedPatientList = new ArrayList<FHIRPatient>(objects);
+		
+		// the rows of the table are in the order of the right list, only the rows of the changed patients are repainted
+		for (int row: changedRows) {
+			if (row >= tableModel.getRowCount()) { // the table is not showing the right list yet, rebuild it
+				this.update();
+				return;
+			}
+			patientWrapperList.set(row, new PatientWrapper(selectedPatientList.get(row)));
+			tableModel.updatePatient(row, selectedPatientList.get(row));
+		}
+		
+		// the running statistics already have the changed patients, only the average is read again
+		if (tableModel.isMonitored(ObservationTypes.CHOLESTEROL)) {
+			updateAverageCholesterol();
+		}
+		if (cholesterolChart.isDisplayable()) {
+			populateCholesterolChart(new ArrayList<FHIRPatient>(objects));
+		}
+		refreshSystolicViews();
+	}
+	
 	@Override
 	public void calcAverageCholesterol(Set objects) {
 		//list of patients that the practitioner wants to monitor
     	selectedPatientList = new ArrayList<FHIRPatient>(objects);
-        int observableSize = 0;
-        
-        Double sum=0.0;
-        
-        for (int i=0;i<selectedPatientList.size();i++) {
-        	// initialising the values 
-        	Double cholesterolDoubleValue=0.0;
-        	String name=selectedPatientList.get(i).getGivenName()+" "+selectedPatientList.get(i).getFamilyName();
-        	String cholesterolValue="-                   ";
-        	String date="-                      ";
-        	
-        	// if the values aren't null, proceed to extract the data for cholesterol
-        	if (!(selectedPatientList.get(i).getCholesterol()==null)) {
-	        	String cholesterolUnitString = selectedPatientList.get(i).getCholesterol().getCholesterolUnits();
-	        	cholesterolValue=selectedPatientList.get(i).getCholesterol().getCholesterolValue()+" "+cholesterolUnitString;
-	       		date=selectedPatientList.get(i).getCholesterol().getCholesterolTimeRecorded();
-	       		String cholesterolString=cholesterolValue.substring(0,cholesterolValue.length()-cholesterolUnitString.length());
-	       		cholesterolDoubleValue=Double.parseDouble(cholesterolString);
-	       		observableSize+=1;
-        	}
-        	sum+=cholesterolDoubleValue;
-    	}
-        // calculating the average
-        average=sum/observableSize;
+    	// the selection may have changed, only the patients that were added, removed or have a new value update the running statistics
+    	monitoredStatistics.setPatients(selectedPatientList);
+    	updateAverageCholesterol();
+    }
+	
+	/**
+	 * Read the average cholesterol from the running statistics of the monitored patients and colour the table with it
+	 */
+	private void updateAverageCholesterol() {
+        // the average, NaN if none of the patients has a cholesterol value
+        average=monitoredStatistics.getStatistics(FHIRCholesterol.CODE).getMean();
         // setting the table properties for the table
      	setTableColourProperty();
-    	
     }
 	/**
 	 * Adds all the Observations that can be monitored by the system in a list of checkboxes
@@ -699,73 +784,60 @@ public class PatientObservationsMonitorGUI extends PatientSelectionGUI implement
 	public void checkHighSystolicPatients() {
 		// resetting the list
 		highSystolicPatientWrapper.clear();
-		// going through each patient in the patientWrapperList
+		// the value specified by the practitioner, parsed once for all the patients
+		double systolicThreshold=Double.parseDouble(systolicValue.getText());
+		updateSystolicRule(systolicThreshold);
+		// the patients whose latest Systolic BP is greater than the value, found with the index of the alert engine instead of a scan
+		Set<Tuple<String, String>> highSystolicPatients=alertEngine.getPatientsAbove(FHIRBloodPressure.SYSTOLIC_BP_CODE, systolicThreshold);
+		// keeping the monitored patients among them, in the order of the table
 		for (int i=0;i<patientWrapperList.size();i++) {
-			// ensuring that the Observation relating to Sytolic Blood pressure isn't empty
-			if (patientWrapperList.get(i).getObservation(ObservationTypes.BLOOD_PRESSURE.toString())!=null) {
-				// extracting the Observation Tuple that is linked to Blood Pressure 
-				Tuple <ArrayList<Tuple<String, Observation>>, Boolean> passedTuple=patientWrapperList.get(i).getObservation(ObservationTypes.BLOOD_PRESSURE.toString());
-				// extracting the arraylist that contains the Vakues related to the Blood pressure 
-				ArrayList <Tuple<String, Observation>> passedList= passedTuple.first;
-				for (int k =0;k< passedList.size();k++) {
-					// ensure that the value is not empty
-					if (!(passedList.get(k).second.isEmpty())) {
-						// ensure that the Observation that we are wanting to extrcat is systlic Blood pressure
-						if (passedList.get(k).first.equals(ObservationTypes.SYSTOLIC_BLOOD_PRESSURE.toString())){
-							// if the value is greater than the value specified by the practitioner, then add the patient to the list of highBPPatients which ofcourse is highSystolicPatientWrapper
-							if (Double.parseDouble(passedList.get(k).second.getValue())> Double.parseDouble(systolicValue.getText())){
-								highSystolicPatientWrapper.add(patientWrapperList.get(i));
-							}
-						}
-					}
-				}
+			if (highSystolicPatients.contains(patientWrapperList.get(i).getPatient().getIdentifier())) {
+				highSystolicPatientWrapper.add(patientWrapperList.get(i));
 			}
 		}
 	}
 	
 	/**
-	 * Generating the string to be displayed in the window to track patients' history of blood pressures 
+	 * Loads the histories of the patients with high BP in the background and then displays them in the textual monitoring window
 	 */
 	public void displaySystolicPatients() {
+		// the Systolic BP chart shares the histories if it is open
+		loadSystolicHistories(systolicChart.isDisplayable(), true);
+	}
+	
+	/**
+	 * Generating the string to be displayed in the window to track patients' history of blood pressures 
+	 * @param patients the patients with high Systolic BP, their histories have been filled
+	 */
+	private void renderSystolicPatients(List<PatientWrapper> patients) {
 		// opeening html tag
-		String outputString="<html>";
+		final StringBuilder outputString=new StringBuilder("<html>");
 		systolicMonitor.clearScreen();
 		// going through all the patients that have a high BP
-		for (int i=0;i<highSystolicPatientWrapper.size();i++) {
+		for (int i=0;i<patients.size();i++) {
 			//printing out the name of each patient 
-			outputString+=highSystolicPatientWrapper.get(i).getPatient().getGivenName()+" "+highSystolicPatientWrapper.get(i).getPatient().getFamilyName()+": ";
-			//fetch the data of the latest 5 BP observations for that patient
-			ArrayList<Tuple<ArrayList<Tuple<String, Observation>>, Boolean>> monitorPatient= highSystolicPatientWrapper.get(i).getObservations(ObservationTypes.BLOOD_PRESSURE.toString(), 5);
-			//reversing the order of the patient observations from previous observations to the most recent Observation 
-			Collections.reverse(monitorPatient);
-			//going through each of the instances of a BP recording
-			for (int j =0;j<monitorPatient.size();j++) {
-				// going through each of the BPs in that 'j' instance
-				for(int k=0;k< monitorPatient.get(j).first.size();k++) {
-					// ensuring that the value isn't null
-					if (!(monitorPatient.get(j).first.get(k).second.isEmpty())) {
-						// ensuring that we only extract the value which is systolic blood pressure 
-						if (monitorPatient.get(j).first.get(k).first.equals(ObservationTypes.SYSTOLIC_BLOOD_PRESSURE.toString())) {
-							// adding the value and the time recorded data to the string to be diplayed on the text based monitor
-							outputString+=monitorPatient.get(j).first.get(k).second.getValue() + " (" + monitorPatient.get(j).first.get(k).second.getTimeRecorded()+")";
-							// append "," after every observation as long it is not the last observation value
-							if (j<monitorPatient.size()-1) {
-								outputString+=", ";
-							}
-						}
-						
+			outputString.append(patients.get(i).getPatient().getGivenName()+" "+patients.get(i).getPatient().getFamilyName()+": ");
+			// the latest historyDepth Systolic BP values of that patient, from the previous observations to the most recent Observation
+			observationHistory.getSeries(patients.get(i).getPatient().getIdentifier(), FHIRBloodPressure.SYSTOLIC_BP_CODE).forEachLatest(historyDepth, new ObservationSeries.Visitor() {
+				private boolean first=true;
+				
+				public void visit(long timeRecorded, String timeRecordedAsGiven, double value) {
+					// append "," before every observation as long it is not the first observation value
+					if (!first) {
+						outputString.append(", ");
 					}
-					
+					first=false;
+					// adding the value and the time recorded data to the string to be diplayed on the text based monitor
+					outputString.append(Observation.formatValue(value)).append(" (").append(timeRecordedAsGiven).append(")");
 				}
-				
-			}
+			});
 			// formatting the string so that it identifies a line break
-			outputString+="<br><br>";
+			outputString.append("<br><br>");
 		}
 		// closing html tag
-		outputString+="</html>";
+		outputString.append("</html>");
 		// adding patient info to the textual monitor 
-		systolicMonitor.addPatientInfo(outputString,"None of the Selected Patients have a high BP");
+		systolicMonitor.addPatientInfo(outputString.toString(),"None of the Selected Patients have a high BP");
 		systolicMonitor.setVisible(true);
 
 	}
@@ -9,6 +9,7 @@ import java.util.Arrays;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import javax.swing.*;
@@ -23,7 +24,6 @@ import ch.qos.logback.classic.db.names.ColumnName;
 import model.FHIRPatient;
 import model.FHIRPractitioner;
 import model.Tuple;
-import observerpattern.ObservableHashMap;
 
 
 //ref --> https://stackoverflow.com/questions/27455775/java-gui-multiple-selection-program
@@ -48,7 +48,7 @@ public abstract class PatientSelectionGUI extends JFrame {
     
     public Set objects;
     
-    protected ObservableHashMap<Tuple<String, String>, FHIRPatient> patientList= new ObservableHashMap<Tuple<String, String>, FHIRPatient>(); 
+    protected Map<Tuple<String, String>, FHIRPatient> patientList; // read-only view of the practitioner's patients
     protected ArrayList<FHIRPatient> selectedPatientList=new ArrayList<FHIRPatient>(); 
 
     
@@ -145,14 +145,14 @@ public abstract class PatientSelectionGUI extends JFrame {
 	 * 
 	 * @return List of patients
 	 */
-	public ObservableHashMap<Tuple<String, String>, FHIRPatient> getPatientList() {
+	public Map<Tuple<String, String>, FHIRPatient> getPatientList() {
 		return patientList;
 	}
 	/**
 	 * Sets the lits of patients of the practitioner
 	 * @param patientList: List of practitioner patients
 	 */
-	public void setPatientList(ObservableHashMap<Tuple<String, String>, FHIRPatient> patientList) {
+	public void setPatientList(Map<Tuple<String, String>, FHIRPatient> patientList) {
 		this.patientList = patientList;
 	}
 	
@@ -0,0 +1,173 @@
+package view;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.table.AbstractTableModel;
+
+import model.FHIRBloodPressure;
+import model.FHIRCholesterol;
+import model.FHIRPatient;
+import model.Observation;
+import model.ObservationTypes;
+
+/**
+ * Table model of the monitoring table, backed directly by the monitored patients: a row is a patient and the cells are
+ * read from its latest Observations when they are painted, so nothing is copied into the model. The columns are the
+ * name of the patient followed by the value(s) and the time recorded of every kind of Observation that is monitored.
+ * A patient that changed only repaints its own row, and the columns are only rebuilt when the monitored Observations change.
+ *
+ */
+public class PatientTableModel extends AbstractTableModel {
+	public static final String NAME_COLUMN = "Name";
+	public static final String TIME_COLUMN = "Time";
+	public static final String EMPTY_CELL = "-";
+
+	/**
+	 * A column of the table: the name of the patient, the value of an Observation or the time it was recorded
+	 */
+	private static class Column {
+		private final String name;
+		private final ObservationTypes observationType; // null for the name of the patient
+		private final boolean isTime;
+
+		private Column(String name, ObservationTypes observationType, boolean isTime) {
+			this.name = name;
+			this.observationType = observationType;
+			this.isTime = isTime;
+		}
+	}
+
+	private final ArrayList<Column> columns = new ArrayList<Column>();
+	private ArrayList<FHIRPatient> patients = new ArrayList<FHIRPatient>();
+	private ArrayList<ObservationTypes> monitoredTypes = new ArrayList<ObservationTypes>();
+
+	/**
+	 * Constructor of PatientTableModel with only the name column and no patients
+	 */
+	public PatientTableModel() {
+		columns.add(new Column(PatientTableModel.NAME_COLUMN, null, false));
+	}
+
+	/**
+	 * Set the kinds of Observations shown in the table, the columns are only rebuilt if they changed
+	 * @param observationTypes the monitored Observations e.g. ObservationTypes.CHOLESTEROL or ObservationTypes.BLOOD_PRESSURE, in the order of the columns
+	 */
+	public void setObservationTypes(List<ObservationTypes> observationTypes) {
+		if (monitoredTypes.equals(observationTypes)) {
+			return;
+		}
+		monitoredTypes = new ArrayList<ObservationTypes>(observationTypes);
+		columns.clear();
+		columns.add(new Column(PatientTableModel.NAME_COLUMN, null, false));
+		for (ObservationTypes observationType: monitoredTypes) {
+			if (observationType == ObservationTypes.BLOOD_PRESSURE) {
+				// systolic and diastolic BP are recorded together, their time is shown once
+				columns.add(new Column(ObservationTypes.DIASTOLIC_BLOOD_PRESSURE.toString(), ObservationTypes.DIASTOLIC_BLOOD_PRESSURE, false));
+				columns.add(new Column(ObservationTypes.SYSTOLIC_BLOOD_PRESSURE.toString(), ObservationTypes.SYSTOLIC_BLOOD_PRESSURE, false));
+				columns.add(new Column(PatientTableModel.TIME_COLUMN, ObservationTypes.SYSTOLIC_BLOOD_PRESSURE, true));
+			}
+			else if (observationType == ObservationTypes.CHOLESTEROL) {
+				columns.add(new Column(ObservationTypes.CHOLESTEROL.toString(), ObservationTypes.CHOLESTEROL, false));
+				columns.add(new Column(PatientTableModel.TIME_COLUMN, ObservationTypes.CHOLESTEROL, true));
+			}
+		}
+		this.fireTableStructureChanged();
+	}
+
+	/**
+	 * Set the patients of the rows
+	 * @param patients the monitored patients, in the order of the rows
+	 */
+	public void setPatients(List<FHIRPatient> patients) {
+		this.patients = new ArrayList<FHIRPatient>(patients);
+		this.fireTableDataChanged();
+	}
+
+	/**
+	 * Replace the patient of a row, only that row is repainted
+	 * @param row the row of the patient
+	 * @param patient the new version of the patient
+	 */
+	public void updatePatient(int row, FHIRPatient patient) {
+		patients.set(row, patient);
+		this.fireTableRowsUpdated(row, row);
+	}
+
+	/**
+	 * Get the patient of a row
+	 * @param row the row of the patient
+	 * @return the patient
+	 */
+	public FHIRPatient getPatient(int row) {
+		return patients.get(row);
+	}
+
+	/**
+	 * Get the kind of Observation of a column
+	 * @param column the column
+	 * @return the kind of Observation e.g. ObservationTypes.SYSTOLIC_BLOOD_PRESSURE, null for the name of the patient
+	 */
+	public ObservationTypes getObservationType(int column) {
+		return columns.get(column).observationType;
+	}
+
+	/**
+	 * Check if a kind of Observation is shown in the table
+	 * @param observationType the monitored Observation e.g. ObservationTypes.CHOLESTEROL
+	 * @return true if it is shown, otherwise false
+	 */
+	public boolean isMonitored(ObservationTypes observationType) {
+		return monitoredTypes.contains(observationType);
+	}
+
+	@Override
+	public int getRowCount() {
+		return patients.size();
+	}
+
+	@Override
+	public int getColumnCount() {
+		return columns.size();
+	}
+
+	@Override
+	public String getColumnName(int column) {
+		return columns.get(column).name;
+	}
+
+	@Override
+	public Class<?> getColumnClass(int column) {
+		Column tableColumn = columns.get(column);
+		return (tableColumn.observationType == null || tableColumn.isTime) ? String.class : Observation.class;
+	}
+
+	/**
+	 * Get a cell: the name of the patient, the Observation (null if the patient has none) or the time it was recorded
+	 */
+	@Override
+	public Object getValueAt(int row, int column) {
+		FHIRPatient patient = patients.get(row);
+		Column tableColumn = columns.get(column);
+		if (tableColumn.observationType == null) {
+			return patient.getGivenName() + " " + patient.getFamilyName();
+		}
+		Observation observation = PatientTableModel.getLatestObservation(patient, tableColumn.observationType);
+		if (tableColumn.isTime) {
+			return (observation == null || observation.isEmpty()) ? PatientTableModel.EMPTY_CELL : observation.getTimeRecorded();
+		}
+		return observation;
+	}
+
+	private static Observation getLatestObservation(FHIRPatient patient, ObservationTypes observationType) {
+		if (observationType == ObservationTypes.CHOLESTEROL) {
+			FHIRCholesterol cholesterol = patient.getCholesterol();
+			return (cholesterol == null) ? null : cholesterol.getCholesterolObservation();
+		}
+		FHIRBloodPressure bloodPressure = patient.getBloodPressure();
+		if (bloodPressure == null) {
+			return null;
+		}
+		return (observationType == ObservationTypes.SYSTOLIC_BLOOD_PRESSURE) ? bloodPressure.getSystolicBPObservation() : bloodPressure.getDiastolicBPObservation();
+	}
+}
@@ -69,6 +69,17 @@ public class PractitionerLoginGUI extends JFrame {
     }
 
 
+    /**
+     * Shows that the practitioner's patients are being loaded, so the submit button can't be clicked again meanwhile
+     * @param loading true while loading, otherwise false
+     */
+    public void setLoading(boolean loading) {
+    	submit.setEnabled(!loading);
+    	pracID.setEnabled(!loading);
+    	setTitle(loading ? "Loading patients..." : "Practitioner Login");
+    }
+
+
     /**
      * Getter mothod for PracID
      * @return practitioner ID
@@ -0,0 +1,87 @@
+package controller;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for RefreshScheduler.
+ */
+public class RefreshSchedulerTest extends TestCase {
+
+	public void testRefreshesNeverOverlap() throws InterruptedException {
+		final AtomicInteger inFlight = new AtomicInteger();
+		final AtomicInteger maxInFlight = new AtomicInteger();
+		final CountDownLatch runs = new CountDownLatch(3);
+		RefreshScheduler scheduler = new RefreshScheduler(new Runnable() {
+			public void run() {
+				maxInFlight.set(Math.max(maxInFlight.get(), inFlight.incrementAndGet()));
+				try {
+					Thread.sleep(50); // a slow server
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				inFlight.decrementAndGet();
+				runs.countDown();
+			}
+		}, "test-refresher");
+
+		scheduler.setDelay(1);
+		for (int i = 0; i < 10; i++) {
+			scheduler.refreshNow();
+		}
+		assertTrue(runs.await(5, TimeUnit.SECONDS));
+		scheduler.shutdown();
+
+		assertEquals(1, maxInFlight.get());
+	}
+
+	public void testRefreshNowCallsAreMergedWhileARunIsInProgress() throws InterruptedException {
+		final AtomicInteger count = new AtomicInteger();
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		RefreshScheduler scheduler = new RefreshScheduler(new Runnable() {
+			public void run() {
+				count.incrementAndGet();
+				started.countDown();
+				try {
+					release.await(); // a slow server
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}, "test-refresher");
+
+		scheduler.refreshNow();
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		for (int i = 0; i < 10; i++) {
+			scheduler.refreshNow();
+		}
+		release.countDown();
+		Thread.sleep(200);
+		scheduler.shutdown();
+
+		assertEquals(2, count.get()); // the run in progress and one for the whole burst
+	}
+
+	public void testZeroDelayStopsRefreshing() throws InterruptedException {
+		final AtomicInteger count = new AtomicInteger();
+		RefreshScheduler scheduler = new RefreshScheduler(new Runnable() {
+			public void run() {
+				count.incrementAndGet();
+			}
+		}, "test-refresher");
+
+		scheduler.setDelay(1);
+		Thread.sleep(200);
+		scheduler.setDelay(0);
+		int countWhenStopped = count.get();
+		Thread.sleep(1500);
+		scheduler.shutdown();
+
+		assertEquals(1, countWhenStopped);
+		assertEquals(countWhenStopped, count.get());
+	}
+}
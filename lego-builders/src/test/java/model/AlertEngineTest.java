@@ -0,0 +1,78 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for AlertEngine.
+ */
+public class AlertEngineTest extends TestCase {
+	private static final Tuple<String, String> ALICE = new Tuple<String, String>("sys", "alice");
+	private static final Tuple<String, String> BOB = new Tuple<String, String>("sys", "bob");
+	private static final String SYSTOLIC = FHIRBloodPressure.SYSTOLIC_BP_CODE;
+
+	private AlertEngine engine;
+	private List<String> alerts = new ArrayList<String>();
+
+	protected void setUp() {
+		engine = new AlertEngine();
+		engine.addAlertListener(new AlertEngine.AlertListener() {
+			public void alertRaised(AlertRule rule, Tuple<String, String> identifierOfPatient, double value, long timeRecorded) {
+				alerts.add("raised " + identifierOfPatient.second + " " + value);
+			}
+
+			public void alertCleared(AlertRule rule, Tuple<String, String> identifierOfPatient, double value, long timeRecorded) {
+				alerts.add("cleared " + identifierOfPatient.second + " " + value);
+			}
+		});
+	}
+
+	public void testOnlyCrossingsWithHysteresisAreNotified() {
+		AlertRule rule = new AlertRule("High systolic BP", SYSTOLIC, 140, 130, 1);
+		engine.addRule(rule);
+		engine.evaluate(ALICE, SYSTOLIC, 1, 145);
+		engine.evaluate(ALICE, SYSTOLIC, 2, 150); // still in alert, no notification
+		engine.evaluate(ALICE, SYSTOLIC, 3, 135); // below the threshold but above clearBelow
+		engine.evaluate(ALICE, SYSTOLIC, 4, 125);
+		engine.evaluate(ALICE, SYSTOLIC, 4, 125); // the same reading again
+
+		assertEquals(Arrays.asList("raised alice 145.0", "cleared alice 125.0"), alerts);
+		assertTrue(engine.getAlertingPatients(rule).isEmpty());
+	}
+
+	public void testSustainedReadings() {
+		AlertRule rule = new AlertRule("Sustained high systolic BP", SYSTOLIC, 140, 140, 3);
+		engine.addRule(rule);
+		engine.evaluate(ALICE, SYSTOLIC, 1, 150);
+		engine.evaluate(ALICE, SYSTOLIC, 2, 150);
+		engine.evaluate(ALICE, SYSTOLIC, 3, 120); // breaks the run
+		engine.evaluate(ALICE, SYSTOLIC, 4, 150);
+		engine.evaluate(ALICE, SYSTOLIC, 5, 150);
+		assertTrue(alerts.isEmpty());
+		engine.evaluate(ALICE, SYSTOLIC, 6, 150);
+
+		assertEquals(Arrays.asList("raised alice 150.0"), alerts);
+		assertEquals(new HashSet<Tuple<String, String>>(Arrays.asList(ALICE)), engine.getAlertingPatients(rule));
+	}
+
+	public void testIndexFollowsTheLatestReadings() {
+		engine.evaluate(ALICE, SYSTOLIC, 1, 150);
+		engine.evaluate(BOB, SYSTOLIC, 1, 120);
+		assertEquals(new HashSet<Tuple<String, String>>(Arrays.asList(ALICE)), engine.getPatientsAbove(SYSTOLIC, 130));
+
+		engine.evaluate(ALICE, SYSTOLIC, 2, 110);
+		engine.evaluate(BOB, SYSTOLIC, 0, 200); // older than the latest reading of bob
+		assertTrue(engine.getPatientsAbove(SYSTOLIC, 130).isEmpty());
+		assertEquals(new HashSet<Tuple<String, String>>(Arrays.asList(ALICE, BOB)), engine.getPatientsAbove(SYSTOLIC, 100));
+
+		AlertRule rule = new AlertRule("High systolic BP", SYSTOLIC, 115, 115, 1);
+		engine.addRule(rule); // evaluated against the latest readings straight away
+		engine.removePatient(BOB);
+		assertEquals(Arrays.asList("raised bob 120.0", "cleared bob NaN"), alerts);
+		assertEquals(new HashSet<Tuple<String, String>>(Arrays.asList(ALICE)), engine.getPatientsAbove(SYSTOLIC, 100));
+	}
+}
@@ -0,0 +1,113 @@
+package model;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for CachingFHIRTransport, using a FHIRTransport that counts the requests that reach it.
+ */
+public class CachingFHIRTransportTest extends TestCase {
+	private static final String PATIENT_URL = FHIRClient.getBaseUrl() + "Patient/1?_format=json";
+	private static final String OBSERVATION_URL = FHIRClient.getBaseUrl() + "Observation?code=2093-3&_format=json";
+
+	private StubFHIRTransport server = new StubFHIRTransport("{\"resourceType\":\"Bundle\"}"); // 25 bytes
+	private List<String> requestedUrls = server.getRequestedUrls();
+	private long now = 0;
+
+	private LongSupplier clock = new LongSupplier() {
+		public long getAsLong() {
+			return now;
+		}
+	};
+
+	private static String read(FHIRResponse response) throws IOException {
+		try {
+			return new String(response.getBody().readAllBytes(), StandardCharsets.UTF_8);
+		}
+		finally {
+			response.close();
+		}
+	}
+
+	public void testRepeatedRequestIsAnsweredFromCacheUntilExpired() throws IOException {
+		CachingFHIRTransport transport = new CachingFHIRTransport(server, 1024, clock);
+
+		assertEquals("{\"resourceType\":\"Bundle\"}", read(transport.get(PATIENT_URL, Collections.<String, String>emptyMap())));
+		assertEquals("{\"resourceType\":\"Bundle\"}", read(transport.get(PATIENT_URL, Collections.<String, String>emptyMap())));
+		assertEquals(1, requestedUrls.size());
+		assertEquals(1, transport.getHitCount());
+		assertEquals(1, transport.getMissCount());
+
+		now = transport.getTimeToLive("Patient");
+		transport.get(PATIENT_URL, Collections.<String, String>emptyMap()).close();
+		assertEquals(2, requestedUrls.size());
+	}
+
+	public void testQueryParameterOrderDoesNotMatter() throws IOException {
+		CachingFHIRTransport transport = new CachingFHIRTransport(server, 1024, clock);
+
+		transport.get(OBSERVATION_URL, Collections.<String, String>emptyMap()).close();
+		transport.get(FHIRClient.getBaseUrl() + "Observation?_format=json&code=2093-3", Collections.<String, String>emptyMap()).close();
+
+		assertEquals(1, requestedUrls.size());
+		assertEquals("Observation", CachingFHIRTransport.resourceTypeOf(OBSERVATION_URL));
+		assertEquals("Patient", CachingFHIRTransport.resourceTypeOf(PATIENT_URL));
+	}
+
+	public void testEvictsLeastRecentlyUsed() throws IOException {
+		CachingFHIRTransport transport = new CachingFHIRTransport(server, 50, clock); // room for two bodies
+
+		transport.get(PATIENT_URL, Collections.<String, String>emptyMap()).close();
+		transport.get(OBSERVATION_URL, Collections.<String, String>emptyMap()).close();
+		transport.get(PATIENT_URL, Collections.<String, String>emptyMap()).close(); // Patient is now the most recently used
+		transport.get(FHIRClient.getBaseUrl() + "Encounter?_format=json", Collections.<String, String>emptyMap()).close();
+
+		assertEquals(1, transport.getEvictionCount());
+		assertEquals(2, transport.size());
+		transport.get(PATIENT_URL, Collections.<String, String>emptyMap()).close();
+		assertEquals(3, requestedUrls.size()); // Patient still cached, Observation was evicted
+	}
+
+	public void testConditionalRequestBypassesCache() throws IOException {
+		CachingFHIRTransport transport = new CachingFHIRTransport(server, 1024, clock);
+
+		transport.get(PATIENT_URL, Collections.<String, String>emptyMap()).close();
+		transport.get(PATIENT_URL, Collections.singletonMap("Cache-Control", "no-cache")).close();
+
+		assertEquals(2, requestedUrls.size());
+	}
+
+	public void testBypassingRequestReplacesTheCachedResponse() throws IOException {
+		CachingFHIRTransport transport = new CachingFHIRTransport(server, 1024, clock);
+
+		transport.get(PATIENT_URL, Collections.<String, String>emptyMap()).close();
+		server.setResponder(StubFHIRTransport.always("{\"resourceType\":\"Patient\"}"));
+		assertEquals("{\"resourceType\":\"Patient\"}", read(transport.get(PATIENT_URL, Collections.singletonMap("Cache-Control", "no-cache"))));
+
+		assertEquals("{\"resourceType\":\"Patient\"}", read(transport.get(PATIENT_URL, Collections.<String, String>emptyMap())));
+		assertEquals(2, requestedUrls.size()); // the last one came from the cache
+		assertEquals(1, transport.getHitCount());
+	}
+
+	public void testLargeBodiesAndNextPagesAreStreamedWithoutBeingKept() throws IOException {
+		CachingFHIRTransport transport = new CachingFHIRTransport(server, 1024, clock);
+		transport.setMaxBodyBytes(20); // smaller than the 25 bytes of a body
+
+		assertEquals("{\"resourceType\":\"Bundle\"}", read(transport.get(PATIENT_URL, Collections.<String, String>emptyMap())));
+		transport.get(PATIENT_URL, Collections.<String, String>emptyMap()).close();
+		assertEquals(2, requestedUrls.size());
+		assertEquals(0, transport.size());
+
+		transport.setMaxBodyBytes(1024);
+		String nextPageUrl = FHIRClient.getBaseUrl() + "?_getpages=abc&_getpagesoffset=20&_count=20&_format=json";
+		transport.get(nextPageUrl, Collections.<String, String>emptyMap()).close();
+		transport.get(nextPageUrl, Collections.<String, String>emptyMap()).close();
+		assertEquals(4, requestedUrls.size());
+		assertEquals(0, transport.size());
+	}
+}
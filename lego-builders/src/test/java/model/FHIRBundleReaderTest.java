@@ -0,0 +1,90 @@
+package model;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for FHIRBundleReader.
+ */
+public class FHIRBundleReaderTest extends TestCase {
+	private static final String BLOOD_PRESSURE_PAGE = "{\"resourceType\":\"Bundle\",\"meta\":{\"lastUpdated\":\"2020-05-01T10:00:00.000+10:00\"},"
+			+ "\"type\":\"searchset\",\"total\":2,"
+			+ "\"link\":[{\"relation\":\"self\",\"url\":\"http://fhir/Observation?_count=1\"},{\"relation\":\"next\",\"url\":\"http://fhir?_getpages=abc\"}],"
+			+ "\"entry\":[{\"fullUrl\":\"http://fhir/Observation/1\",\"resource\":{\"resourceType\":\"Observation\",\"id\":\"1\","
+			+ "\"code\":{\"coding\":[{\"system\":\"http://loinc.org\",\"code\":\"55284-4\"}]},\"subject\":{\"reference\":\"Patient/42\"},"
+			+ "\"effectiveDateTime\":\"2019-03-01T10:00:00+10:00\",\"note\":null,"
+			+ "\"component\":[{\"code\":{\"coding\":[{\"code\":\"8462-4\"}]},\"valueQuantity\":{\"value\":80,\"unit\":\"mm[Hg]\",\"system\":\"http://unitsofmeasure.org\"}},"
+			+ "{\"code\":{\"coding\":[{\"code\":\"8480-6\"}]},\"valueQuantity\":{\"value\":120.5,\"unit\":\"mm[Hg]\",\"system\":\"http://unitsofmeasure.org\"}}]},"
+			+ "\"search\":{\"mode\":\"match\"}}]}";
+
+	private static FHIRBundlePage read(String json) throws IOException {
+		return FHIRBundleReader.read(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	public void testReadsTotalNextLinkAndEntries() throws IOException {
+		FHIRBundlePage page = read(BLOOD_PRESSURE_PAGE);
+		assertEquals(2, page.getTotal());
+		assertEquals("http://fhir?_getpages=abc", page.getNextUrl());
+		assertEquals(1, page.getEntries().size());
+
+		FHIRBundleEntry entry = page.getEntries().get(0);
+		assertEquals("Observation", entry.getResourceType());
+		assertEquals("1", entry.getResourceId());
+		assertEquals("55284-4", entry.getCode());
+		assertEquals("Patient/42", entry.getSubjectReference());
+		assertEquals("2019-03-01T10:00:00+10:00", entry.getEffectiveDateTime());
+		assertEquals(120.5, entry.getComponentValueQuantity(FHIRBloodPressure.SYSTOLIC_BP_CODE).getValue(), 0.0);
+		assertEquals(80.0, entry.getComponentValueQuantity(FHIRBloodPressure.DIASTOLIC_BP_CODE).getValue(), 0.0);
+	}
+
+	public void testInitializesBloodPressureFromEntry() throws IOException {
+		FHIRBloodPressure bloodPressure = new FHIRBloodPressure();
+		assertTrue(bloodPressure.retrieveDataFromBundleEntryAndInit(read(BLOOD_PRESSURE_PAGE).getEntries().get(0)));
+		assertEquals("120.5", bloodPressure.getSystolicBPObservationValue());
+		assertEquals("80", bloodPressure.getDiastolicBPObservationValue());
+		assertEquals("mm[Hg]", bloodPressure.getSystolicBPObservationUnits());
+	}
+
+	public void testReadsDemographicsOfIncludedPatient() throws IOException {
+		FHIRBundlePage page = read("{\"resourceType\":\"Bundle\",\"entry\":[{\"resource\":{\"resourceType\":\"Encounter\",\"id\":\"7\","
+				+ "\"subject\":{\"reference\":\"Patient/42\"}},\"search\":{\"mode\":\"match\"}},"
+				+ "{\"resource\":{\"resourceType\":\"Patient\",\"id\":\"42\",\"identifier\":[{\"system\":\"sys\",\"value\":\"p42\"}],"
+				+ "\"name\":[{\"use\":\"official\",\"family\":\"Smith\",\"given\":[\"Anna\",\"Maria\"]},{\"family\":\"Jones\",\"given\":[\"Ann\"]}],"
+				+ "\"gender\":\"female\",\"birthDate\":\"1950-02-03\","
+				+ "\"address\":[{\"line\":[\"1 Main St\"],\"city\":\"Melbourne\",\"state\":\"Victoria\",\"country\":\"AU\"},{\"city\":\"Sydney\"}]},"
+				+ "\"search\":{\"mode\":\"include\"}}]}");
+		assertEquals("Patient/42", page.getEntries().get(0).getSubjectReference());
+
+		FHIRPatient patient = new FHIRPatient();
+		assertTrue(patient.retrieveDemographicsFromBundleEntryAndInit(page.getEntries().get(1)));
+		assertEquals(new Tuple<String, String>("sys", "p42"), patient.getIdentifier());
+		assertEquals("42", patient.getResourceId());
+		assertEquals("Anna", patient.getGivenName());
+		assertEquals("Smith", patient.getFamilyName());
+		assertEquals("female", patient.getGender());
+		assertEquals("1950-02-03", patient.getBirthday());
+		assertEquals("Melbourne", patient.getCity());
+		assertEquals("Victoria", patient.getState());
+		assertEquals("AU", patient.getCountry());
+		assertFalse(new FHIRPatient().retrieveDemographicsFromBundleEntryAndInit(page.getEntries().get(0))); // not a Patient
+	}
+
+	public void testLastPageHasNoNextUrl() throws IOException {
+		FHIRBundlePage page = read("{\"resourceType\":\"Bundle\",\"total\":0,\"link\":[{\"relation\":\"self\",\"url\":\"x\"}]}");
+		assertEquals(0, page.getTotal());
+		assertFalse(page.hasNextPage());
+		assertTrue(page.getEntries().isEmpty());
+	}
+
+	public void testRejectsInvalidBundle() {
+		try {
+			read("[1,2,3]");
+			fail("Expected IOException");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+}
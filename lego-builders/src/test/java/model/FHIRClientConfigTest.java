@@ -0,0 +1,109 @@
+package model;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for FHIRClientConfig and how FHIRClient hands it to the model classes.
+ */
+public class FHIRClientConfigTest extends TestCase {
+	private FHIRClientConfig originalConfig;
+	private FHIRTransport originalTransport;
+
+	protected void setUp() {
+		originalConfig = FHIRClient.getConfig();
+		originalTransport = FHIRClient.getTransport();
+	}
+
+	protected void tearDown() {
+		FHIRClient.setConfig(originalConfig);
+		FHIRClient.setTransport(originalTransport);
+	}
+
+	public void testMissingPropertiesKeepTheirDefault() {
+		Properties properties = new Properties();
+		properties.setProperty(FHIRClientConfig.BASE_URL_PROPERTY, "http://mirror.example.org/fhir");
+		properties.setProperty(FHIRClientConfig.CONCURRENCY_PROPERTY, " 16 ");
+
+		FHIRClientConfig config = FHIRClientConfig.fromProperties(properties);
+
+		assertEquals("http://mirror.example.org/fhir/", config.getBaseUrl());
+		assertEquals(16, config.getConcurrency());
+		assertEquals(FHIRClientConfig.DEFAULT_PAGE_SIZE, config.getPageSize());
+		assertEquals(FHIRClientConfig.DEFAULT_PATIENTS_PER_SEARCH, config.getPatientsPerSearch());
+		assertEquals(FHIRClientConfig.DEFAULT_READ_TIMEOUT_MILLIS, config.getReadTimeoutMillis());
+		assertEquals(FHIRClientConfig.DEFAULT_CACHE_MAX_BYTES, config.getCacheMaxBytes());
+	}
+
+	public void testConfigIsReadFromAFile() throws IOException {
+		File file = File.createTempFile("fhir-client", ".properties");
+		try {
+			FileWriter writer = new FileWriter(file);
+			writer.write("fhir.baseUrl=http://localhost:8090/fhir/\nfhir.pageSize=50\nfhir.patientsPerSearch=5\n"
+					+ "fhir.connectTimeoutMillis=1000\nfhir.readTimeoutMillis=2000\nfhir.cacheMaxBytes=0\n");
+			writer.close();
+
+			FHIRClientConfig config = FHIRClientConfig.fromFile(file.getPath());
+
+			assertEquals("http://localhost:8090/fhir/", config.getBaseUrl());
+			assertEquals(50, config.getPageSize());
+			assertEquals(5, config.getPatientsPerSearch());
+			assertEquals(1000, config.getConnectTimeoutMillis());
+			assertEquals(2000, config.getReadTimeoutMillis());
+			assertEquals(0, config.getCacheMaxBytes());
+			assertEquals(FHIRClientConfig.DEFAULT_CONCURRENCY, config.getConcurrency());
+		}
+		finally {
+			file.delete();
+		}
+	}
+
+	public void testInvalidValuesAreRejected() {
+		Properties properties = new Properties();
+		properties.setProperty(FHIRClientConfig.PAGE_SIZE_PROPERTY, "lots");
+		try {
+			FHIRClientConfig.fromProperties(properties);
+			fail("a page size that is not a number should be rejected");
+		}
+		catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().contains(FHIRClientConfig.PAGE_SIZE_PROPERTY));
+		}
+		try {
+			new FHIRClientConfig().setPageSize(ObservationHistoryCursor.MAX_PAGE_SIZE + 1);
+			fail("a page size above the cap should be rejected");
+		}
+		catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	public void testSetConfigChangesTheSearchesOfTheModelClasses() throws IOException {
+		FHIRClientConfig config = new FHIRClientConfig();
+		config.setBaseUrl("http://mirror.example.org/fhir/");
+		config.setPageSize(25);
+		config.setPatientsPerSearch(2);
+		config.setCacheMaxBytes(0);
+		FHIRClient.setConfig(config);
+		config.setBaseUrl("http://elsewhere.example.org/fhir/"); // the installed configuration is a copy
+		assertFalse(FHIRClient.getTransport() instanceof CachingFHIRTransport);
+
+		List<String> requestedUrls = new StubFHIRTransport("{\"resourceType\":\"Bundle\"}").install().getRequestedUrls();
+		List<Tuple<String, String>> identifiers = Arrays.asList(new Tuple<String, String>("sys", "1"), new Tuple<String, String>("sys", "2"),
+				new Tuple<String, String>("sys", "3"));
+
+		new ObservationBatchRetriever().retrieveLatestEntries(identifiers, FHIRCholesterol.CODE);
+
+		assertEquals(2, requestedUrls.size()); // 2 patients per search
+		for (String url: requestedUrls) {
+			assertTrue(url, url.startsWith("http://mirror.example.org/fhir/Observation"));
+			assertTrue(url, url.contains("_count=25"));
+		}
+	}
+
+}
@@ -0,0 +1,158 @@
+package model;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+import observerpattern.MapChangeEvent;
+import observerpattern.MapObserver;
+
+/**
+ * Unit test for the refresh of FHIRPractitioner, using a FHIRTransport that answers like a server whose data changes.
+ */
+public class FHIRPractitionerTest extends TestCase {
+	private static final Tuple<String, String> ALICE = new Tuple<String, String>("sys", "alice");
+	private static final String EMPTY_BUNDLE = "{\"resourceType\":\"Bundle\",\"entry\":[]}";
+
+	private volatile double cholesterolOfAlice = 200;
+	private volatile boolean aliceChanged = false;
+	private StubFHIRTransport server = new StubFHIRTransport(new StubFHIRTransport.Responder() {
+		public FHIRResponse respond(String urlString, Map<String, String> requestHeaders) {
+			return StubFHIRTransport.ok(answer(urlString));
+		}
+	});
+	private FHIRTransport originalTransport;
+
+	protected void setUp() {
+		originalTransport = FHIRClient.getTransport();
+	}
+
+	protected void tearDown() {
+		FHIRClient.setTransport(originalTransport);
+	}
+
+	private static String patient(String mode) {
+		return "{\"resource\":{\"resourceType\":\"Patient\",\"id\":\"1\",\"identifier\":[{\"system\":\"sys\",\"value\":\"alice\"}],"
+				+ "\"name\":[{\"family\":\"Smith\",\"given\":[\"Alice\"]}],\"gender\":\"female\",\"birthDate\":\"1970-01-01\","
+				+ "\"address\":[{\"city\":\"Geelong\",\"state\":\"Victoria\",\"country\":\"AU\"}]},\"search\":{\"mode\":\"" + mode + "\"}}";
+	}
+
+	/**
+	 * Answer the requests of a practitioner with one patient, alice, whose latest cholesterol can change
+	 */
+	private String answer(String urlString) {
+		boolean changesOnly = urlString.contains(FHIRClient.LAST_UPDATED_AFTER_PARAMETER);
+		if (urlString.contains("Practitioner/")) {
+			String value = urlString.contains("Practitioner/p2") ? "nurse" : "doctor";
+			return "{\"resourceType\":\"Practitioner\",\"id\":\"p1\",\"identifier\":[{\"system\":\"sys\",\"value\":\"" + value + "\"}],"
+					+ "\"name\":[{\"family\":\"Who\",\"given\":[\"Doctor\"]}]}";
+		}
+		if (urlString.contains("Encounter?")) {
+			return changesOnly ? EMPTY_BUNDLE : "{\"resourceType\":\"Bundle\",\"entry\":[{\"resource\":{\"resourceType\":\"Encounter\","
+					+ "\"subject\":{\"reference\":\"Patient/1\"}},\"search\":{\"mode\":\"match\"}}," + patient("include") + "]}";
+		}
+		if (urlString.contains("Patient/?")) {
+			return changesOnly ? EMPTY_BUNDLE : "{\"resourceType\":\"Bundle\",\"entry\":[" + patient("match") + "]}";
+		}
+		if (urlString.contains("Observation") && urlString.contains("2093-3") && (!changesOnly || aliceChanged)) {
+			return "{\"resourceType\":\"Bundle\",\"entry\":[{\"resource\":{\"resourceType\":\"Observation\",\"subject\":{\"reference\":\"Patient/1\"},"
+					+ "\"effectiveDateTime\":\"2020-02-01\",\"valueQuantity\":{\"value\":" + cholesterolOfAlice + ",\"unit\":\"mg/dL\"}},"
+					+ "\"search\":{\"mode\":\"match\"}}," + patient("include") + "]}";
+		}
+		return EMPTY_BUNDLE;
+	}
+
+	public void testIncrementalRefreshPicksUpAChangedPatientWhileTheCacheIsWarm() throws IOException {
+		CachingFHIRTransport cachingTransport = new CachingFHIRTransport(server);
+		FHIRClient.setTransport(cachingTransport);
+		FHIRPractitioner practitioner = new FHIRPractitioner();
+		practitioner.setPatientRegistry(null);
+		assertTrue(practitioner.retrieveDataFromServerAndInitWithLatest("p1"));
+		assertEquals(200.0, practitioner.getPatients().get(ALICE).getCholesterol().getCholesterolNumericValue(), 0.0);
+
+		// the GUI reads the latest cholesterol of alice, the same search the refresh makes is now cached
+		new ObservationBatchRetriever().retrieveLatestEntries(Arrays.asList(ALICE), FHIRCholesterol.CODE);
+		long hitsBefore = cachingTransport.getHitCount();
+		assertEquals(1, new ObservationBatchRetriever().retrieveLatestEntries(Arrays.asList(ALICE), FHIRCholesterol.CODE).size());
+		assertEquals(hitsBefore + 1, cachingTransport.getHitCount());
+
+		cholesterolOfAlice = 250;
+		aliceChanged = true;
+		assertTrue(practitioner.retrieveDataFromServerAndInitWithLatest("p1"));
+
+		assertEquals(250.0, practitioner.getPatients().get(ALICE).getCholesterol().getCholesterolNumericValue(), 0.0);
+	}
+
+	public void testSwitchingPractitionerRetrievesEverythingAgain() throws IOException {
+		server.install();
+		FHIRPractitioner practitioner = new FHIRPractitioner();
+		practitioner.setPatientRegistry(null);
+		assertTrue(practitioner.retrieveDataFromServerAndInitWithLatest("p1"));
+		assertTrue(practitioner.retrieveDataFromServerAndInitWithLatest("p1"));
+		assertTrue(this.lastEncounterUrl().contains(FHIRClient.LAST_UPDATED_AFTER_PARAMETER)); // the same practitioner only asks for changes
+
+		assertTrue(practitioner.retrieveDataFromServerAndInitWithLatest("p2"));
+
+		assertEquals("nurse", practitioner.getIdentifierValue());
+		assertTrue(this.lastEncounterUrl().contains("nurse"));
+		assertFalse(this.lastEncounterUrl().contains(FHIRClient.LAST_UPDATED_AFTER_PARAMETER)); // not the high-water mark of the doctor
+		assertEquals(Collections.singleton(ALICE), practitioner.getPatients().keySet());
+	}
+
+	private String lastEncounterUrl() {
+		String lastEncounterUrl = null;
+		for (String urlString: server.getRequestedUrls()) {
+			if (urlString.contains("Encounter?")) {
+				lastEncounterUrl = urlString;
+			}
+		}
+		return lastEncounterUrl;
+	}
+
+	public void testPatientsThatLeftAreRemovedWithTheRefreshInOneEvent() throws IOException {
+		Path directory = Files.createTempDirectory("practitioner-store");
+		PatientStore store = PatientStore.forPractitioner(directory, "p1");
+		try {
+			store.savePractitioner(new FHIRPractitioner("Doctor", "Who", "sys", "doctor"));
+			HashMap<Tuple<String, String>, FHIRPatient> storedPatients = new HashMap<Tuple<String, String>, FHIRPatient>();
+			for (String value: Arrays.asList("alice", "bob", "carol")) {
+				FHIRPatient patient = new FHIRPatient(value, "Smith", "sys", value, "AU", "Victoria", "Geelong", "1970-01-01", "female", null, null);
+				patient.setResourceId(value);
+				storedPatients.put(patient.getIdentifier(), patient);
+			}
+			store.savePatients(storedPatients);
+			server.install();
+			FHIRPractitioner practitioner = new FHIRPractitioner();
+			practitioner.setPatientRegistry(null);
+			practitioner.setPatientStore(store);
+			assertTrue(practitioner.restoreFromPatientStore());
+			final List<MapChangeEvent<Tuple<String, String>, FHIRPatient>> events = new ArrayList<MapChangeEvent<Tuple<String, String>, FHIRPatient>>();
+			practitioner.addMapObserversForTheObservableHashMapOfPractitioner(new MapObserver<Tuple<String, String>, FHIRPatient>() {
+				public void mapChanged(MapChangeEvent<Tuple<String, String>, FHIRPatient> event) {
+					events.add(event);
+				}
+			});
+
+			assertTrue(practitioner.retrieveDataFromServerAndInitWithLatest("p1")); // alice is the only subject left
+
+			assertEquals(1, events.size());
+			assertEquals(new HashSet<Tuple<String, String>>(Arrays.asList(new Tuple<String, String>("sys", "bob"), new Tuple<String, String>("sys", "carol"))),
+					events.get(0).getRemovedKeys());
+			assertEquals(Collections.singleton(ALICE), practitioner.getPatients().keySet());
+			assertEquals(Collections.singleton(ALICE), store.loadPatients().keySet());
+		}
+		finally {
+			server.uninstall();
+			Files.deleteIfExists(store.getFile());
+			Files.deleteIfExists(directory);
+		}
+	}
+}
@@ -0,0 +1,106 @@
+package model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.zip.GZIPOutputStream;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for HttpClientTransport and HttpURLConnectionTransport, against a server on the loopback address that
+ * compresses its responses when asked to.
+ */
+public class HttpTransportTest extends TestCase {
+	private static final String BODY = "{\"resourceType\":\"Bundle\"}";
+
+	private HttpServer server;
+	private volatile String lastAcceptEncoding;
+	private volatile String lastIfNoneMatch;
+
+	protected void setUp() throws IOException {
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		server.createContext("/fhir/", new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				lastAcceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+				lastIfNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+				if ("\"1\"".equals(lastIfNoneMatch)) {
+					exchange.sendResponseHeaders(304, -1);
+					exchange.close();
+					return;
+				}
+				int status = exchange.getRequestURI().getPath().endsWith("/missing") ? 404 : 200;
+				byte[] body = BODY.getBytes(StandardCharsets.UTF_8);
+				if ("gzip".equals(lastAcceptEncoding)) {
+					ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+					GZIPOutputStream gzip = new GZIPOutputStream(compressed);
+					gzip.write(body);
+					gzip.close();
+					body = compressed.toByteArray();
+					exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+				}
+				exchange.sendResponseHeaders(status, body.length);
+				OutputStream responseBody = exchange.getResponseBody();
+				responseBody.write(body);
+				responseBody.close();
+			}
+		});
+		server.start();
+	}
+
+	protected void tearDown() {
+		server.stop(0);
+	}
+
+	private String url(String path) {
+		return "http://" + server.getAddress().getAddress().getHostAddress() + ":" + server.getAddress().getPort() + "/fhir/" + path;
+	}
+
+	private static String read(FHIRResponse response) throws IOException {
+		try {
+			return new String(response.getBody().readAllBytes(), StandardCharsets.UTF_8);
+		}
+		finally {
+			response.close();
+		}
+	}
+
+	private void checkTransport(FHIRTransport transport) throws IOException {
+		FHIRResponse response = transport.get(this.url("Patient/1"), Collections.<String, String>emptyMap());
+		assertEquals(200, response.getStatusCode());
+		assertEquals(BODY, read(response)); // decompressed
+		assertEquals("gzip", lastAcceptEncoding);
+
+		response = transport.get(this.url("Patient/1"), Collections.singletonMap("If-None-Match", "\"1\""));
+		assertEquals(304, response.getStatusCode());
+		response.close();
+		assertEquals("\"1\"", lastIfNoneMatch);
+
+		response = transport.get(this.url("missing"), Collections.<String, String>emptyMap());
+		assertEquals(404, response.getStatusCode());
+		assertEquals(BODY, read(response)); // the body of an error can be read too
+	}
+
+	public void testHttpClientTransport() throws IOException {
+		this.checkTransport(new HttpClientTransport(1000, 5000));
+	}
+
+	public void testHttpURLConnectionTransport() throws IOException {
+		this.checkTransport(new HttpURLConnectionTransport(1000, 5000));
+	}
+
+	public void testCreateTransportPutsTheCacheInFront() {
+		FHIRClientConfig config = new FHIRClientConfig();
+		assertTrue(FHIRClient.createTransport(config) instanceof CachingFHIRTransport);
+		config.setCacheMaxBytes(0);
+		assertTrue(FHIRClient.createTransport(config) instanceof HttpClientTransport);
+	}
+}
@@ -0,0 +1,130 @@
+package model;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for ObservationBatchRetriever, using a FHIRTransport that serves canned pages.
+ */
+public class ObservationBatchRetrieverTest extends TestCase {
+	private static final Tuple<String, String> ALICE = new Tuple<String, String>("sys", "alice");
+	private static final Tuple<String, String> BOB = new Tuple<String, String>("sys", "bob");
+	private static final Tuple<String, String> CAROL = new Tuple<String, String>("sys", "carol");
+
+	private StubFHIRTransport transport;
+	private List<String> requestedUrls;
+
+	protected void setUp() {
+		transport = new StubFHIRTransport("{\"resourceType\":\"Bundle\",\"entry\":[]}").install();
+		requestedUrls = transport.getRequestedUrls();
+	}
+
+	protected void tearDown() {
+		transport.uninstall();
+	}
+
+	private static String patient(String id, String identifierValue) {
+		return "{\"resource\":{\"resourceType\":\"Patient\",\"id\":\"" + id + "\",\"identifier\":[{\"system\":\"sys\",\"value\":\"" + identifierValue + "\"}]},\"search\":{\"mode\":\"include\"}}";
+	}
+
+	private static String cholesterol(String patientId, double value, String date) {
+		return "{\"resource\":{\"resourceType\":\"Observation\",\"subject\":{\"reference\":\"Patient/" + patientId + "\"},\"effectiveDateTime\":\"" + date
+				+ "\",\"valueQuantity\":{\"value\":" + value + ",\"unit\":\"mg/dL\",\"system\":\"http://unitsofmeasure.org\"}},\"search\":{\"mode\":\"match\"}}";
+	}
+
+	private void serve(final Map<String, String> pages) {
+		transport.setResponder(new StubFHIRTransport.Responder() {
+			public FHIRResponse respond(String urlString, Map<String, String> requestHeaders) {
+				return StubFHIRTransport.ok(pages.get(urlString.startsWith("page2") ? "page2" : "page1"));
+			}
+		});
+	}
+
+	public void testSplitsLatestObservationPerPatientAcrossPages() throws IOException {
+		Map<String, String> pages = new HashMap<String, String>();
+		pages.put("page1", "{\"resourceType\":\"Bundle\",\"link\":[{\"relation\":\"next\",\"url\":\"page2\"}],\"entry\":["
+				+ cholesterol("1", 200, "2020-02-01") + "," + cholesterol("1", 150, "2019-02-01") + "," + patient("1", "alice") + "]}");
+		pages.put("page2", "{\"resourceType\":\"Bundle\",\"link\":[],\"entry\":["
+				+ cholesterol("1", 100, "2018-02-01") + "," + cholesterol("2", 180, "2018-01-01") + "," + patient("1", "alice") + "," + patient("2", "bob") + "]}");
+		serve(pages);
+
+		HashMap<Tuple<String, String>, FHIRBundleEntry> latest = new ObservationBatchRetriever(20, 2).retrieveLatestEntries(Arrays.asList(ALICE, BOB, CAROL), FHIRCholesterol.CODE);
+
+		assertEquals(2, requestedUrls.size()); // one search, two pages
+		assertEquals(200.0, latest.get(ALICE).getValueQuantity().getValue(), 0.0);
+		assertEquals(180.0, latest.get(BOB).getValueQuantity().getValue(), 0.0);
+		assertFalse(latest.containsKey(CAROL));
+	}
+
+	public void testStopsPagingOnceEveryPatientIsFound() throws IOException {
+		Map<String, String> pages = new HashMap<String, String>();
+		pages.put("page1", "{\"resourceType\":\"Bundle\",\"link\":[{\"relation\":\"next\",\"url\":\"page2\"}],\"entry\":["
+				+ cholesterol("1", 200, "2020-02-01") + "," + patient("1", "alice") + "]}");
+		serve(pages);
+
+		HashMap<Tuple<String, String>, FHIRBundleEntry> latest = new ObservationBatchRetriever(20, 2).retrieveLatestEntries(Arrays.asList(ALICE), FHIRCholesterol.CODE);
+
+		assertEquals(1, requestedUrls.size());
+		assertEquals(1, latest.size());
+	}
+
+	public void testPatientWithoutObservationsIsSearchedOnItsOwnAfterThePageBudget() throws IOException {
+		transport.setResponder(new StubFHIRTransport.Responder() {
+			public FHIRResponse respond(String urlString, Map<String, String> requestHeaders) {
+				if (urlString.contains("patient.identifier=sys%7Ccarol&")) { // the search of carol on her own
+					return StubFHIRTransport.ok("{\"resourceType\":\"Bundle\",\"entry\":[]}");
+				}
+				// the history of alice goes on and on, carol is never on a page
+				return StubFHIRTransport.ok("{\"resourceType\":\"Bundle\",\"link\":[{\"relation\":\"next\",\"url\":\"next" + requestedUrls.size() + "\"}],\"entry\":["
+						+ cholesterol("1", 200, "2020-02-01") + "," + patient("1", "alice") + "]}");
+			}
+		});
+
+		HashMap<Tuple<String, String>, FHIRBundleEntry> latest = new ObservationBatchRetriever(20, 1).retrieveLatestEntries(Arrays.asList(ALICE, CAROL), FHIRCholesterol.CODE);
+
+		assertEquals(ObservationBatchRetriever.MAX_PAGES_PER_SEARCH + 1, requestedUrls.size());
+		assertTrue(requestedUrls.get(requestedUrls.size() - 1).contains("_count=1&"));
+		assertEquals(200.0, latest.get(ALICE).getValueQuantity().getValue(), 0.0);
+		assertFalse(latest.containsKey(CAROL));
+	}
+
+	public void testSplitsPatientsIntoSearches() throws IOException {
+		Map<String, String> pages = new HashMap<String, String>();
+		pages.put("page1", "{\"resourceType\":\"Bundle\",\"entry\":[]}");
+		serve(pages);
+
+		new ObservationBatchRetriever(2, 1).retrieveLatestEntries(Arrays.asList(ALICE, BOB, CAROL), FHIRCholesterol.CODE);
+
+		assertEquals(2, requestedUrls.size());
+		assertTrue(requestedUrls.get(0).contains("patient.identifier=sys%7Calice,sys%7Cbob&"));
+		assertTrue(requestedUrls.get(1).contains("patient.identifier=sys%7Ccarol&"));
+	}
+
+	public void testConditionalSearchSinceHighWaterMark() throws IOException {
+		transport.setResponder(new StubFHIRTransport.Responder() {
+			public FHIRResponse respond(String urlString, Map<String, String> requestHeaders) {
+				if (requestHeaders.containsKey("If-None-Match")) {
+					return StubFHIRTransport.status(304);
+				}
+				Map<String, List<String>> headers = new HashMap<String, List<String>>();
+				headers.put("ETag", Arrays.asList("W/\"1\""));
+				return StubFHIRTransport.ok("{\"resourceType\":\"Bundle\",\"entry\":[]}", headers);
+			}
+		});
+		SyncState syncState = new SyncState();
+		ObservationBatchRetriever retriever = new ObservationBatchRetriever(20, 1);
+
+		retriever.retrieveLatestEntries(Arrays.asList(ALICE), FHIRCholesterol.CODE, "2020-01-01T00:00:00Z", syncState);
+		HashMap<Tuple<String, String>, FHIRBundleEntry> latest = retriever.retrieveLatestEntries(Arrays.asList(ALICE), FHIRCholesterol.CODE, "2020-01-01T00:00:00Z", syncState);
+
+		assertTrue(requestedUrls.get(0).contains("&_lastUpdated=gt2020-01-01T00:00:00Z&"));
+		assertNull(transport.getRequestHeaders().get(0).get("If-None-Match"));
+		assertEquals("W/\"1\"", transport.getRequestHeaders().get(1).get("If-None-Match")); // the second search is answered with 304 Not Modified
+		assertTrue(latest.isEmpty());
+	}
+}
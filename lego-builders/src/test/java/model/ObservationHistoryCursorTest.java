@@ -0,0 +1,62 @@
+package model;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for ObservationHistoryCursor, using a FHIRTransport that serves pages of two Observations.
+ */
+public class ObservationHistoryCursorTest extends TestCase {
+	private static final Tuple<String, String> ALICE = new Tuple<String, String>("sys", "alice");
+
+	private StubFHIRTransport transport;
+	private List<String> requestedUrls;
+
+	protected void setUp() {
+		transport = new StubFHIRTransport(new StubFHIRTransport.Responder() {
+			public FHIRResponse respond(String urlString, Map<String, String> requestHeaders) {
+				int page = urlString.startsWith("page") ? Integer.parseInt(urlString.substring(4)) : 1;
+				String next = (page < 3) ? "{\"relation\":\"next\",\"url\":\"page" + (page + 1) + "\"}" : "";
+				return StubFHIRTransport.ok("{\"resourceType\":\"Bundle\",\"link\":[" + next + "],\"entry\":[" + cholesterol(page * 10) + "," + cholesterol(page * 10 + 1) + "]}");
+			}
+		}).install();
+		requestedUrls = transport.getRequestedUrls();
+	}
+
+	protected void tearDown() {
+		transport.uninstall();
+	}
+
+	private static String cholesterol(int day) {
+		return "{\"resource\":{\"resourceType\":\"Observation\",\"effectiveDateTime\":\"2020-01-" + day
+				+ "\",\"valueQuantity\":{\"value\":" + day + ",\"unit\":\"mg/dL\",\"system\":\"s\"}}}";
+	}
+
+	public void testEveryPageIsFetchedOnce() throws IOException {
+		ObservationHistoryCursor cursor = new ObservationHistoryCursor(FHIRCholesterol.CODE, ALICE, 2, Observation.NO_TIME_RECORDED);
+		List<String> dates = new ArrayList<String>();
+		while (cursor.hasNext()) {
+			dates.add(cursor.next().getEffectiveDateTime());
+		}
+
+		assertEquals(6, dates.size());
+		assertEquals("2020-01-10", dates.get(0));
+		assertEquals("2020-01-31", dates.get(5));
+		assertEquals(3, cursor.getPagesFetched());
+		assertEquals(3, requestedUrls.size());
+		assertTrue(requestedUrls.get(0).contains("&" + FHIRClient.COUNT_PARAMETER + "2&"));
+	}
+
+	public void testGetObservationsStopsAtTheDepthAsked() {
+		FHIRPatient patient = new FHIRPatient("Alice", "Smith", ALICE.first, ALICE.second, "AU", "VIC", "Melbourne", "1970-01-01", "female", null, null);
+		ArrayList<Tuple<ArrayList<Tuple<String, Observation>>, Boolean>> observations = new PatientWrapper(patient).getObservations(ObservationTypes.CHOLESTEROL.toString(), 3, 2);
+
+		assertEquals(3, observations.size());
+		assertEquals(20.0, observations.get(2).first.get(0).second.getNumericValue());
+		assertEquals(2, requestedUrls.size());
+	}
+}
@@ -0,0 +1,148 @@
+package model;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for ObservationSeries and the filling of an ObservationHistory.
+ */
+public class ObservationSeriesTest extends TestCase {
+	private static final Tuple<String, String> ALICE = new Tuple<String, String>("sys", "alice");
+
+	private static List<Double> values(ObservationSeries series) {
+		final List<Double> values = new ArrayList<Double>();
+		series.forEachLatest(series.size(), new ObservationSeries.Visitor() {
+			public void visit(long timeRecorded, String timeRecordedAsGiven, double value) {
+				values.add(value);
+			}
+		});
+		return values;
+	}
+
+	public void testFullSeriesOverwritesOldest() {
+		ObservationSeries series = new ObservationSeries(3);
+		for (int i = 1; i <= 5; i++) {
+			assertTrue(series.record(i * 1000L, i));
+		}
+
+		assertEquals(3, series.size());
+		assertEquals(3000L, series.getTimeRecorded(0));
+		assertEquals(5000L, series.getLatestTimeRecorded());
+		assertEquals(Arrays.asList(3.0, 4.0, 5.0), values(series));
+	}
+
+	public void testOutOfOrderAndDuplicateValues() {
+		ObservationSeries series = new ObservationSeries(3);
+		series.record(1000L, 1);
+		series.record(3000L, 3);
+		assertTrue(series.record(2000L, 2)); // in between
+		assertFalse(series.record(2000L, 2)); // already kept
+		assertFalse(series.record(500L, 0.5)); // older than everything in a full series
+		assertTrue(series.record(2500L, 2.5)); // drops the oldest
+
+		assertEquals(Arrays.asList(2.0, 2.5, 3.0), values(series));
+	}
+
+	public void testRangeQuery() {
+		ObservationSeries series = new ObservationSeries(10);
+		for (int i = 1; i <= 10; i++) {
+			series.record(i * 1000L, i);
+		}
+		final List<Double> inRange = new ArrayList<Double>();
+		int visited = series.forEachInRange(3000L, 6000L, new ObservationSeries.Visitor() {
+			public void visit(long timeRecorded, String timeRecordedAsGiven, double value) {
+				inRange.add(value);
+			}
+		});
+
+		assertEquals(3, visited);
+		assertEquals(Arrays.asList(3.0, 4.0, 5.0), inRange);
+	}
+
+	public void testTimeRecordedIsVisitedAsGiven() {
+		ObservationHistory history = new ObservationHistory(3);
+		Observation observation = new Observation();
+		observation.setObservation("120", "mm[Hg]", "http://unitsofmeasure.org", "2020-02-01T10:30:00+10:00");
+		history.record(ALICE, FHIRBloodPressure.SYSTOLIC_BP_CODE, observation);
+		final List<String> timesRecorded = new ArrayList<String>();
+		history.getSeries(ALICE, FHIRBloodPressure.SYSTOLIC_BP_CODE).forEachLatest(1, new ObservationSeries.Visitor() {
+			public void visit(long timeRecorded, String timeRecordedAsGiven, double value) {
+				timesRecorded.add(timeRecordedAsGiven);
+			}
+		});
+
+		assertEquals(Arrays.asList("2020-02-01T10:30:00+10:00"), timesRecorded); // not the UTC instant
+	}
+
+	private static String cholesterol(String date, double value) {
+		return "{\"resource\":{\"resourceType\":\"Observation\",\"effectiveDateTime\":\"" + date + "T00:00:00Z\",\"valueQuantity\":{\"value\":" + value + ",\"unit\":\"mg/dL\",\"system\":\"s\"}}}";
+	}
+
+	public void testFillAsksForNewerThenOlderObservations() throws IOException {
+		StubFHIRTransport transport = new StubFHIRTransport("{\"resourceType\":\"Bundle\",\"entry\":[" + cholesterol("2020-02-01", 200) + "," + cholesterol("2019-02-01", 150) + "]}").install();
+		List<String> requestedUrls = transport.getRequestedUrls();
+		try {
+			ObservationHistory history = new ObservationHistory();
+			assertEquals(2, history.fill(ALICE, ObservationTypes.CHOLESTEROL.toString(), 5));
+			transport.setResponder(StubFHIRTransport.always("{\"resourceType\":\"Bundle\",\"entry\":[]}"));
+			assertEquals(2, history.fill(ALICE, ObservationTypes.CHOLESTEROL.toString(), 5)); // the server has no more of them
+
+			assertEquals(Arrays.asList(150.0, 200.0), values(history.getSeries(ALICE, FHIRCholesterol.CODE)));
+			assertEquals(3, requestedUrls.size());
+			assertFalse(requestedUrls.get(0).contains(FHIRClient.DATE_AFTER_PARAMETER));
+			assertTrue(requestedUrls.get(1).endsWith("&" + FHIRClient.DATE_AFTER_PARAMETER + "2020-02-01T00:00:00Z"));
+			assertTrue(requestedUrls.get(2).endsWith("&" + FHIRClient.DATE_BEFORE_PARAMETER + "2019-02-01T00:00:00Z"));
+		} finally {
+			transport.uninstall();
+		}
+	}
+
+	public void testFillBackfillsASeriesHoldingOneReading() throws IOException {
+		StubFHIRTransport transport = new StubFHIRTransport(new StubFHIRTransport.Responder() {
+			public FHIRResponse respond(String urlString, Map<String, String> requestHeaders) {
+				if (!urlString.contains(FHIRClient.DATE_BEFORE_PARAMETER)) { // nothing newer than the reading kept
+					return StubFHIRTransport.ok("{\"resourceType\":\"Bundle\",\"entry\":[]}");
+				}
+				StringBuilder entries = new StringBuilder();
+				for (int day = 6; day >= 1; day--) {
+					entries.append((day == 6) ? "" : ",").append(cholesterol("2020-01-0" + day, 100 + day));
+				}
+				return StubFHIRTransport.ok("{\"resourceType\":\"Bundle\",\"entry\":[" + entries + "]}");
+			}
+		}).install();
+		try {
+			ObservationHistory history = new ObservationHistory();
+			Observation latest = new Observation();
+			latest.setObservation(200.0, "mg/dL", "s", "2020-02-01T00:00:00Z");
+			history.record(ALICE, FHIRCholesterol.CODE, latest);
+
+			assertEquals(5, history.fill(ALICE, ObservationTypes.CHOLESTEROL.toString(), 5));
+
+			assertEquals(Arrays.asList(103.0, 104.0, 105.0, 106.0, 200.0), values(history.getSeries(ALICE, FHIRCholesterol.CODE)));
+			String backfill = transport.getRequestedUrls().get(1);
+			assertTrue(backfill.contains("&" + FHIRClient.COUNT_PARAMETER + "4&"));
+			assertTrue(backfill.endsWith("&" + FHIRClient.DATE_BEFORE_PARAMETER + "2020-02-01T00:00:00Z"));
+		} finally {
+			transport.uninstall();
+		}
+	}
+
+	public void testFillAsksForNoMoreThanTheCapacity() throws IOException {
+		StubFHIRTransport transport = new StubFHIRTransport("{\"resourceType\":\"Bundle\",\"entry\":[" + cholesterol("2020-02-03", 3) + ","
+				+ cholesterol("2020-02-02", 2) + "," + cholesterol("2020-02-01", 1) + "]}").install();
+		try {
+			ObservationHistory history = new ObservationHistory(3);
+			assertEquals(3, history.fill(ALICE, ObservationTypes.CHOLESTEROL.toString(), 1000));
+
+			assertEquals(1, transport.getRequestedUrls().size());
+			assertTrue(transport.getRequestedUrls().get(0).contains("&" + FHIRClient.COUNT_PARAMETER + "3&"));
+		} finally {
+			transport.uninstall();
+		}
+	}
+}
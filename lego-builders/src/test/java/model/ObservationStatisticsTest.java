@@ -0,0 +1,62 @@
+package model;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for ObservationStatistics and PopulationStatistics.
+ */
+public class ObservationStatisticsTest extends TestCase {
+
+	public void testRemovingAValueGivesTheSameStatisticsAsNeverAddingIt() {
+		ObservationStatistics statistics = new ObservationStatistics(0, 500, 500);
+		double[] values = {180, 220, 150, 240, 199.5};
+		for (double value: values) {
+			statistics.add(value);
+		}
+		statistics.add(400);
+		statistics.remove(400);
+
+		assertEquals(5, statistics.getCount());
+		assertEquals(197.9, statistics.getMean(), 1e-9);
+		assertEquals(975.64, statistics.getVariance(), 1e-6);
+		assertEquals(150.0, statistics.getMin());
+		assertEquals(240.0, statistics.getMax());
+		assertEquals(199.5, statistics.getPercentile(50), 1.0);
+	}
+
+	public void testEmptyStatistics() {
+		ObservationStatistics statistics = new ObservationStatistics(0, 500, 500);
+		statistics.add(100);
+		statistics.replace(100, Double.NaN);
+
+		assertEquals(0, statistics.getCount());
+		assertTrue(Double.isNaN(statistics.getMean()));
+		assertTrue(Double.isNaN(statistics.getMax()));
+		assertTrue(Double.isNaN(statistics.getPercentile(90)));
+	}
+
+	private static FHIRPatient patient(String identifierValue, String cholesterolValue) {
+		FHIRCholesterol cholesterol = null;
+		if (cholesterolValue != null) {
+			cholesterol = new FHIRCholesterol();
+			cholesterol.setCholesterol(cholesterolValue, "mg/dL", "http://unitsofmeasure.org", "2020-02-01");
+		}
+		return new FHIRPatient("Alice", "Smith", "sys", identifierValue, "AU", "VIC", "Melbourne", "1970-01-01", "female", cholesterol, null);
+	}
+
+	public void testPopulationFollowsTheMonitoredPatients() {
+		PopulationStatistics population = new PopulationStatistics();
+		population.setPatients(Arrays.asList(patient("a", "100.0"), patient("b", "200.0"), patient("c", null)));
+		ObservationStatistics cholesterol = population.getStatistics(FHIRCholesterol.CODE);
+		assertEquals(2, cholesterol.getCount());
+		assertEquals(150.0, cholesterol.getMean());
+
+		population.setPatients(Arrays.asList(patient("b", "260.0"), patient("c", "140.0")));
+		assertEquals(2, population.getNumberOfPatients());
+		assertEquals(2, cholesterol.getCount());
+		assertEquals(200.0, cholesterol.getMean());
+		assertEquals(140.0, cholesterol.getMin());
+	}
+}
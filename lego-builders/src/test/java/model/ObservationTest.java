@@ -0,0 +1,57 @@
+package model;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for Observation.
+ */
+public class ObservationTest extends TestCase {
+
+	public void testValueAndTimeAreParsedOnce() {
+		Observation observation = new Observation();
+		observation.setObservation("120.0", "mm[Hg]", "http://unitsofmeasure.org", "2020-02-01T10:30:00+10:00");
+
+		assertEquals(120.0, observation.getNumericValue());
+		assertEquals(1580517000000L, observation.getTimeRecordedMillis());
+		assertEquals("120", observation.getValue());
+		assertEquals("2020-02-01T10:30:00+10:00", observation.getTimeRecorded());
+		assertSame("mm[Hg]".intern(), observation.getUnits());
+	}
+
+	public void testTimeRecordedIsGivenBackAsSet() {
+		Observation observation = new Observation();
+		observation.setObservation("120", "mm[Hg]", "http://unitsofmeasure.org", "2020-02-01T00:30:00.5+00:00");
+		assertEquals("120", observation.getValue());
+		assertEquals("2020-02-01T00:30:00.5+00:00", observation.getTimeRecorded());
+		assertEquals(1580517000500L, observation.getTimeRecordedMillis());
+
+		observation.setObservation("n/a", null, null, "2020-02");
+		assertTrue(observation.isEmpty());
+		assertEquals("", observation.getValue());
+		assertEquals("2020-02", observation.getTimeRecorded());
+		assertEquals(Observation.NO_TIME_RECORDED, observation.getTimeRecordedMillis());
+	}
+
+	public void testFractionsAreKept() {
+		Observation observation = new Observation();
+		observation.setObservation("5.25", "mmol/L", "http://unitsofmeasure.org", "2020-02-01");
+		assertEquals("5.25", observation.getValue());
+		observation.setValue(-3);
+		assertEquals("-3", observation.getValue());
+	}
+
+	public void testEmptyAndEquality() {
+		Observation empty = new Observation();
+		assertTrue(empty.isEmpty());
+		assertEquals("", empty.getValue());
+		assertEquals("", empty.getTimeRecorded());
+
+		Observation fromString = new Observation();
+		fromString.setObservation("150.0", "mg/dL", "http://unitsofmeasure.org", "2020-02-01");
+		Observation fromDouble = new Observation();
+		fromDouble.setObservation(150.0, "mg/dL", "http://unitsofmeasure.org", "2020-02-01");
+		assertEquals(fromString, fromDouble);
+		assertEquals(fromString, new Observation(fromString));
+		assertFalse(fromString.equals(empty));
+	}
+}
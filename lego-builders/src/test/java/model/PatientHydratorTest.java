@@ -0,0 +1,167 @@
+package model;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for PatientHydrator, using a FHIRTransport that answers like a server with a patient "patient<id>" for
+ * every resource id.
+ */
+public class PatientHydratorTest extends TestCase {
+	private static final String EMPTY_BUNDLE = "{\"resourceType\":\"Bundle\",\"entry\":[]}";
+
+	private final HashSet<String> failingDemographics = new HashSet<String>();
+	private StubFHIRTransport server;
+
+	protected void setUp() {
+		server = new StubFHIRTransport(new StubFHIRTransport.Responder() {
+			public FHIRResponse respond(String urlString, Map<String, String> requestHeaders) throws IOException {
+				return PatientHydratorTest.this.answer(urlString);
+			}
+		}).install();
+	}
+
+	protected void tearDown() {
+		server.uninstall();
+	}
+
+	private static String patient(String id, String mode) {
+		return "{\"resource\":{\"resourceType\":\"Patient\",\"id\":\"" + id + "\",\"identifier\":[{\"system\":\"sys\",\"value\":\"patient" + id + "\"}],"
+				+ "\"name\":[{\"family\":\"Smith\",\"given\":[\"Pat" + id + "\"]}],\"gender\":\"female\",\"birthDate\":\"1970-01-01\","
+				+ "\"address\":[{\"city\":\"Geelong\",\"state\":\"Victoria\",\"country\":\"AU\"}]},\"search\":{\"mode\":\"" + mode + "\"}}";
+	}
+
+	/**
+	 * Answer the identifier of Patient/<id> and the demographics of Patient?identifier=sys|patient<id>
+	 */
+	private FHIRResponse answer(String urlString) throws IOException {
+		if (urlString.contains("Patient/?identifier=")) {
+			String id = urlString.substring(urlString.indexOf("patient") + "patient".length(), urlString.indexOf('&'));
+			if (failingDemographics.contains(id)) {
+				return StubFHIRTransport.status(404);
+			}
+			return StubFHIRTransport.ok("{\"resourceType\":\"Bundle\",\"entry\":[" + patient(id, "match") + "]}");
+		}
+		if (urlString.contains("Patient/")) {
+			String id = urlString.substring(urlString.indexOf("Patient/") + "Patient/".length(), urlString.indexOf('?'));
+			return StubFHIRTransport.ok("{\"resourceType\":\"Patient\",\"id\":\"" + id + "\",\"identifier\":[{\"system\":\"sys\",\"value\":\"patient" + id + "\"}]}");
+		}
+		return StubFHIRTransport.ok(EMPTY_BUNDLE);
+	}
+
+	private static Tuple<String, String> identifier(String id) {
+		return new Tuple<String, String>("sys", "patient" + id);
+	}
+
+	public void testHydratesEveryPatient() throws IOException {
+		HashMap<Tuple<String, String>, FHIRPatient> patients = new PatientHydrator(2).hydrate(Arrays.asList("1", "2", "3"));
+
+		assertEquals(new HashSet<Tuple<String, String>>(Arrays.asList(identifier("1"), identifier("2"), identifier("3"))), patients.keySet());
+		assertEquals("Pat2", patients.get(identifier("2")).getGivenName());
+		assertEquals("2", patients.get(identifier("2")).getResourceId());
+	}
+
+	public void testNoMoreRequestsThanTheConcurrencyAtTheSameTime() throws IOException {
+		final AtomicInteger inFlight = new AtomicInteger();
+		final AtomicInteger maxInFlight = new AtomicInteger();
+		final CountDownLatch together = new CountDownLatch(2);
+		server.setResponder(new StubFHIRTransport.Responder() {
+			public FHIRResponse respond(String urlString, Map<String, String> requestHeaders) throws IOException {
+				int now = inFlight.incrementAndGet();
+				maxInFlight.set(Math.max(maxInFlight.get(), now));
+				together.countDown();
+				try {
+					together.await(1, TimeUnit.SECONDS); // the first two requests are in flight at the same time
+					Thread.sleep(5);
+				} catch (InterruptedException e) {
+					throw new InterruptedIOException();
+				}
+				finally {
+					inFlight.decrementAndGet();
+				}
+				return PatientHydratorTest.this.answer(urlString);
+			}
+		});
+
+		HashMap<Tuple<String, String>, FHIRPatient> patients = new PatientHydrator(2).hydrate(Arrays.asList("1", "2", "3", "4", "5", "6"));
+
+		assertEquals(6, patients.size());
+		assertEquals(2, maxInFlight.get());
+	}
+
+	public void testIncludedPatientsAreNotAskedForAgain() throws IOException {
+		String bundle = "{\"resourceType\":\"Bundle\",\"entry\":[" + patient("1", "include") + "]}";
+		FHIRBundlePage page = FHIRBundleReader.read(new ByteArrayInputStream(bundle.getBytes(StandardCharsets.UTF_8)));
+
+		HashMap<Tuple<String, String>, FHIRPatient> patients = new PatientHydrator(2, page.getEntries()).hydrate(Arrays.asList("1", "2"));
+
+		assertEquals("Pat1", patients.get(identifier("1")).getGivenName());
+		assertEquals("Pat2", patients.get(identifier("2")).getGivenName());
+		for (String urlString: server.getRequestedUrls()) {
+			assertFalse(urlString, urlString.contains("Patient/1?") || urlString.contains("Patient/?identifier=sys%7Cpatient1&")); // only its Observations
+		}
+	}
+
+	public void testNullIfTheDemographicsOfOnePatientFail() throws IOException {
+		failingDemographics.add("2");
+
+		assertNull(new PatientHydrator(2).hydrate(Arrays.asList("1", "2", "3")));
+	}
+
+	public void testInterruptedRequestIsPropagated() {
+		server.setResponder(new StubFHIRTransport.Responder() {
+			public FHIRResponse respond(String urlString, Map<String, String> requestHeaders) throws IOException {
+				if (urlString.contains("Patient/?identifier=")) {
+					throw new InterruptedIOException("interrupted");
+				}
+				return PatientHydratorTest.this.answer(urlString);
+			}
+		});
+
+		try {
+			new PatientHydrator(2).hydrate(Arrays.asList("1", "2"));
+			fail("the InterruptedIOException of a request must reach the caller");
+		} catch (InterruptedIOException e) {
+			// expected
+		} catch (IOException e) {
+			fail("expected an InterruptedIOException but got " + e);
+		}
+	}
+
+	public void testInterruptedCallerStopsWaiting() {
+		server.setResponder(new StubFHIRTransport.Responder() {
+			public FHIRResponse respond(String urlString, Map<String, String> requestHeaders) throws IOException {
+				try {
+					Thread.sleep(200); // a slow server
+				} catch (InterruptedException e) {
+					throw new InterruptedIOException();
+				}
+				return PatientHydratorTest.this.answer(urlString);
+			}
+		});
+
+		Thread.currentThread().interrupt();
+		try {
+			new PatientHydrator(2).hydrate(Arrays.asList("1", "2"));
+			fail("an interrupted caller must not wait for the patients");
+		} catch (InterruptedIOException e) {
+			assertTrue(Thread.interrupted()); // the interrupt is kept, and cleared here for the next test
+		} catch (IOException e) {
+			fail("expected an InterruptedIOException but got " + e);
+		}
+		finally {
+			Thread.interrupted();
+		}
+	}
+}
@@ -0,0 +1,166 @@
+package model;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for PatientRegistry, with a hydrator that counts the patients it is asked to retrieve instead of going to the server.
+ */
+public class PatientRegistryTest extends TestCase {
+	private static final Tuple<String, String> ALICE = new Tuple<String, String>("sys", "alice");
+	private static final Tuple<String, String> BOB = new Tuple<String, String>("sys", "bob");
+
+	/**
+	 * Hydrator which gives every patient a cholesterol value instead of retrieving it, the first retrieval can be held back
+	 */
+	private static class CountingHydrator extends PatientHydrator {
+		private final List<Tuple<String, String>> retrieved = new ArrayList<Tuple<String, String>>();
+		private final List<String> identified = new ArrayList<String>();
+		private final CountDownLatch firstRetrievalStarted = new CountDownLatch(1);
+		private final CountDownLatch releaseFirstRetrieval;
+
+		private CountingHydrator(boolean holdBackFirstRetrieval) {
+			releaseFirstRetrieval = new CountDownLatch(holdBackFirstRetrieval ? 1 : 0);
+		}
+
+		public HashMap<Tuple<String, String>, FHIRPatient> identify(Collection<String> patientResourceIds) {
+			HashMap<Tuple<String, String>, FHIRPatient> patients = new HashMap<Tuple<String, String>, FHIRPatient>();
+			for (String patientResourceId: patientResourceIds) {
+				synchronized (this) {
+					identified.add(patientResourceId);
+				}
+				FHIRPatient patient = new FHIRPatient();
+				patient.setIdentifier(new Tuple<String, String>("sys", patientResourceId));
+				patient.setResourceId(patientResourceId);
+				patients.put(patient.getIdentifier(), patient);
+			}
+			return patients;
+		}
+
+		public HashMap<Tuple<String, String>, FHIRPatient> hydrateIdentifiedPatients(HashMap<Tuple<String, String>, FHIRPatient> patients) throws IOException {
+			boolean first;
+			synchronized (this) {
+				first = firstRetrievalStarted.getCount() == 1;
+				retrieved.addAll(patients.keySet());
+			}
+			firstRetrievalStarted.countDown();
+			if (first) {
+				try {
+					releaseFirstRetrieval.await();
+				} catch (InterruptedException e) {
+					throw new IOException(e);
+				}
+			}
+			for (FHIRPatient patient: patients.values()) {
+				FHIRCholesterol cholesterol = new FHIRCholesterol();
+				cholesterol.setCholesterol(180, "mg/dL", "http://unitsofmeasure.org", "2020-02-01");
+				patient.setCholesterol(cholesterol);
+			}
+			return patients;
+		}
+	}
+
+	@SafeVarargs
+	private static HashMap<Tuple<String, String>, FHIRPatient> identified(Tuple<String, String>... identifiers) {
+		HashMap<Tuple<String, String>, FHIRPatient> patients = new HashMap<Tuple<String, String>, FHIRPatient>();
+		for (Tuple<String, String> identifier: identifiers) {
+			FHIRPatient patient = new FHIRPatient();
+			patient.setIdentifier(identifier);
+			patient.setResourceId(identifier.second);
+			patients.put(identifier, patient);
+		}
+		return patients;
+	}
+
+	public void testRecentPatientsAreNotRetrievedAgain() throws IOException {
+		PatientRegistry registry = new PatientRegistry(60000);
+		CountingHydrator hydrator = new CountingHydrator(false);
+
+		FHIRPatient alice = registry.hydrate(Arrays.asList("alice"), hydrator).get(ALICE);
+		assertSame(alice, registry.hydrate(Arrays.asList("alice"), hydrator).get(ALICE));
+		assertEquals(Arrays.asList("alice"), hydrator.identified); // the identifier of a resource is only asked for once
+		assertEquals(Arrays.asList(ALICE), hydrator.retrieved);
+
+		// a refresh that found alice changed after she was retrieved
+		FHIRPatient changedAlice = registry.hydrateIdentifiedPatients(identified(ALICE), hydrator, System.currentTimeMillis() + 1).get(ALICE);
+		assertNotSame(alice, changedAlice);
+		assertEquals(2, hydrator.retrieved.size());
+		assertEquals(2, registry.getRetrievedPatients());
+	}
+
+	public void testConcurrentRetrievalsAreCoalesced() throws Exception {
+		final PatientRegistry registry = new PatientRegistry(60000);
+		final CountingHydrator hydrator = new CountingHydrator(true);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<HashMap<Tuple<String, String>, FHIRPatient>> first = executor.submit(new Callable<HashMap<Tuple<String, String>, FHIRPatient>>() {
+				public HashMap<Tuple<String, String>, FHIRPatient> call() throws IOException {
+					return registry.hydrateIdentifiedPatients(identified(ALICE), hydrator, 0);
+				}
+			});
+			assertTrue(hydrator.firstRetrievalStarted.await(5, TimeUnit.SECONDS));
+			Future<HashMap<Tuple<String, String>, FHIRPatient>> second = executor.submit(new Callable<HashMap<Tuple<String, String>, FHIRPatient>>() {
+				public HashMap<Tuple<String, String>, FHIRPatient> call() throws IOException {
+					return registry.hydrateIdentifiedPatients(identified(ALICE, BOB), hydrator, 0);
+				}
+			});
+			Thread.sleep(100); // the second one retrieves bob and waits for alice
+			assertFalse(second.isDone());
+			hydrator.releaseFirstRetrieval.countDown();
+
+			FHIRPatient alice = first.get(5, TimeUnit.SECONDS).get(ALICE);
+			HashMap<Tuple<String, String>, FHIRPatient> patients = second.get(5, TimeUnit.SECONDS);
+			assertSame(alice, patients.get(ALICE));
+			assertNotNull(patients.get(BOB));
+			assertEquals(Arrays.asList(ALICE, BOB), hydrator.retrieved);
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	public void testPatientsAreForgottenWithTheirLastSubscriber() throws IOException {
+		PatientRegistry registry = new PatientRegistry(60000);
+		CountingHydrator hydrator = new CountingHydrator(false);
+		registry.hydrate(Arrays.asList("alice"), hydrator);
+		registry.subscribe(ALICE);
+		registry.subscribe(ALICE);
+		registry.unsubscribe(ALICE);
+		assertEquals(1, registry.getSubscribers(ALICE));
+		registry.hydrate(Arrays.asList("alice"), hydrator);
+		assertEquals(1, hydrator.retrieved.size());
+
+		registry.unsubscribe(ALICE);
+		assertEquals(0, registry.getSubscribers(ALICE));
+		registry.hydrate(Arrays.asList("alice"), hydrator);
+		assertEquals(2, hydrator.identified.size());
+		assertEquals(2, hydrator.retrieved.size());
+	}
+
+	public void testUnsubscribedPatientsAreForgottenOnceTooOld() throws IOException {
+		PatientRegistry registry = new PatientRegistry(0);
+		CountingHydrator hydrator = new CountingHydrator(false);
+		assertNotNull(registry.hydrate(Arrays.asList("alice"), hydrator).get(ALICE));
+		assertEquals(0, registry.getPatientCount()); // never subscribed to, and a new refresh retrieves it again anyway
+
+		registry.subscribe(ALICE);
+		registry.hydrate(Arrays.asList("alice"), hydrator);
+		assertEquals(1, registry.getPatientCount());
+		assertEquals(2, hydrator.identified.size()); // the resource id was forgotten with the patient
+
+		registry.hydrate(Arrays.asList("alice"), hydrator);
+		assertEquals(2, hydrator.identified.size()); // a subscribed patient keeps its resource id
+	}
+}
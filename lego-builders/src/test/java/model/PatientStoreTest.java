@@ -0,0 +1,111 @@
+package model;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for PatientStore, using a log in a temporary directory.
+ */
+public class PatientStoreTest extends TestCase {
+	private static final Tuple<String, String> ALICE = new Tuple<String, String>("sys", "alice");
+	private static final Tuple<String, String> BOB = new Tuple<String, String>("sys", "bob");
+
+	private Path directory;
+	private Path file;
+
+	protected void setUp() throws IOException {
+		directory = Files.createTempDirectory("patient-store");
+		file = directory.resolve("practitioner-1.jsonl");
+	}
+
+	protected void tearDown() throws IOException {
+		Files.deleteIfExists(file);
+		Files.deleteIfExists(file.getParent());
+		Files.deleteIfExists(directory);
+	}
+
+	private static FHIRPatient alice(String cholesterolValue) {
+		FHIRCholesterol cholesterol = new FHIRCholesterol();
+		cholesterol.setCholesterol(cholesterolValue, "mg/dL", "http://unitsofmeasure.org", "2020-02-01");
+		FHIRBloodPressure bloodPressure = new FHIRBloodPressure();
+		bloodPressure.setSystolicBPObservation("120.0", "mm[Hg]", "http://unitsofmeasure.org", "2020-02-01");
+		bloodPressure.setDiastolicBPObservation("80.0", "mm[Hg]", "http://unitsofmeasure.org", "2020-02-01");
+		FHIRPatient patient = new FHIRPatient("Alice", "Smith", ALICE.first, ALICE.second, "AU", "VIC", "Melbourne", "1970-01-01", "female", cholesterol, bloodPressure);
+		patient.setResourceId("1");
+		return patient;
+	}
+
+	private static HashMap<Tuple<String, String>, FHIRPatient> patients(FHIRPatient patient) {
+		HashMap<Tuple<String, String>, FHIRPatient> patients = new HashMap<Tuple<String, String>, FHIRPatient>();
+		patients.put(patient.getIdentifier(), patient);
+		return patients;
+	}
+
+	public void testLastRecordWinsAfterReopening() throws IOException {
+		PatientStore store = new PatientStore(file);
+		store.savePractitioner(new FHIRPractitioner("Greg", "House", "prac", "99"));
+		assertEquals(1, store.savePatients(patients(alice("150.0"))));
+		assertEquals(0, store.savePatients(patients(alice("150.0")))); // unchanged patients are not appended
+		assertEquals(1, store.savePatients(patients(alice("180.0"))));
+
+		PatientStore reopened = new PatientStore(file);
+		assertEquals(3, reopened.getLineCount());
+		assertEquals(new Tuple<String, String>("prac", "99"), reopened.loadPractitioner().getIdentifier());
+		FHIRPatient restored = reopened.loadPatients().get(ALICE);
+		assertEquals(alice("180.0"), restored);
+		assertEquals("1", restored.getResourceId());
+	}
+
+	public void testTornLastLineIsIgnored() throws IOException {
+		new PatientStore(file).savePatients(patients(alice("150.0")));
+		Files.write(file, "{\"resourceType\":\"Patient\",\"identif".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+		assertEquals(alice("150.0"), new PatientStore(file).loadPatients().get(ALICE));
+	}
+
+	public void testCompactKeepsOneRecordPerIdentifier() throws IOException {
+		PatientStore store = new PatientStore(file);
+		for (int i = 0; i < 10; i++) {
+			store.savePatients(patients(alice(i + ".0")));
+		}
+		store.compact();
+
+		assertEquals(1, Files.readAllLines(file, StandardCharsets.UTF_8).size());
+		assertEquals(alice("9.0"), new PatientStore(file).loadPatients().get(ALICE));
+	}
+
+	public void testLogIsReadableByItsOwnerOnly() throws IOException {
+		if (!directory.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+			return; // nothing to check without POSIX permissions
+		}
+		file = directory.resolve("store").resolve("practitioner-1.jsonl");
+		PatientStore store = new PatientStore(file);
+		store.savePatients(patients(alice("150.0")));
+
+		assertEquals("rwx------", PosixFilePermissions.toString(Files.getPosixFilePermissions(file.getParent())));
+		assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(file)));
+		store.compact();
+		assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(file)));
+	}
+
+	public void testPatientsThatLeftAreRemovedFromTheLog() throws IOException {
+		PatientStore store = new PatientStore(file);
+		HashMap<Tuple<String, String>, FHIRPatient> both = patients(alice("150.0"));
+		both.put(BOB, new FHIRPatient("Bob", "Jones", BOB.first, BOB.second, "AU", "VIC", "Geelong", "1980-01-01", "male", null, null));
+		store.savePatients(both);
+
+		assertEquals(1, store.retainPatients(Arrays.asList(ALICE)));
+
+		assertFalse(new String(Files.readAllBytes(file), StandardCharsets.UTF_8).contains("Jones"));
+		assertEquals(1, new PatientStore(file).loadPatients().size());
+		assertEquals(0, store.retainPatients(Arrays.asList(ALICE)));
+	}
+}
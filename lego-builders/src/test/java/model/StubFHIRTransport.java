@@ -0,0 +1,142 @@
+package model;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * FHIRTransport for the unit tests which answers every request with a Responder instead of going to a server, and
+ * remembers the URLs and headers it was asked for. install() makes it the transport of FHIRClient and uninstall()
+ * puts back the transport that was there before.
+ */
+public class StubFHIRTransport implements FHIRTransport {
+
+	/**
+	 * Answers the requests that reach the stub
+	 */
+	public interface Responder {
+		/**
+		 * @param urlString the URL of the request
+		 * @param requestHeaders the headers of the request
+		 * @return the response to the request
+		 * @throws IOException to fail the request
+		 */
+		public FHIRResponse respond(String urlString, Map<String, String> requestHeaders) throws IOException;
+	}
+
+	private final List<String> requestedUrls = Collections.synchronizedList(new ArrayList<String>());
+	private final List<Map<String, String>> requestHeaders = Collections.synchronizedList(new ArrayList<Map<String, String>>());
+	private volatile Responder responder;
+	private FHIRTransport originalTransport;
+
+	/**
+	 * Constructor of a stub that answers every request with the responder
+	 * @param responder answers the requests
+	 */
+	public StubFHIRTransport(Responder responder) {
+		this.responder = responder;
+	}
+
+	/**
+	 * Constructor of a stub that answers every request with 200 OK and the same body
+	 * @param body the body of every response
+	 */
+	public StubFHIRTransport(String body) {
+		this(StubFHIRTransport.always(body));
+	}
+
+	/**
+	 * Create a responder that answers every request with 200 OK and the same body
+	 * @param body the body of every response
+	 * @return the responder
+	 */
+	public static Responder always(final String body) {
+		return new Responder() {
+			public FHIRResponse respond(String urlString, Map<String, String> requestHeaders) {
+				return StubFHIRTransport.ok(body);
+			}
+		};
+	}
+
+	/**
+	 * Create a 200 OK response
+	 * @param body the body of the response
+	 * @return the response
+	 */
+	public static FHIRResponse ok(String body) {
+		return StubFHIRTransport.ok(body, Collections.<String, List<String>>emptyMap());
+	}
+
+	/**
+	 * Create a 200 OK response with headers
+	 * @param body the body of the response
+	 * @param headers the headers of the response
+	 * @return the response
+	 */
+	public static FHIRResponse ok(String body, Map<String, List<String>> headers) {
+		return new FHIRResponse(200, headers, new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	/**
+	 * Create a response without a body
+	 * @param statusCode the HTTP status code of the response
+	 * @return the response
+	 */
+	public static FHIRResponse status(int statusCode) {
+		return new FHIRResponse(statusCode, Collections.<String, List<String>>emptyMap(), null);
+	}
+
+	public FHIRResponse get(String urlString, Map<String, String> headers) throws IOException {
+		requestedUrls.add(urlString);
+		requestHeaders.add(headers);
+		return responder.respond(urlString, headers);
+	}
+
+	/**
+	 * Change how the following requests are answered
+	 * @param responder answers the requests
+	 */
+	public void setResponder(Responder responder) {
+		this.responder = responder;
+	}
+
+	/**
+	 * Get the URLs requested so far, in the order they were requested
+	 * @return the URLs
+	 */
+	public List<String> getRequestedUrls() {
+		return requestedUrls;
+	}
+
+	/**
+	 * Get the headers of the requests so far, in the order they were requested
+	 * @return the headers of each request
+	 */
+	public List<Map<String, String>> getRequestHeaders() {
+		return requestHeaders;
+	}
+
+	/**
+	 * Make the stub the transport of FHIRClient
+	 * @return the stub
+	 */
+	public StubFHIRTransport install() {
+		originalTransport = FHIRClient.getTransport();
+		FHIRClient.setTransport(this);
+		return this;
+	}
+
+	/**
+	 * Put back the transport FHIRClient had before install()
+	 */
+	public void uninstall() {
+		if (originalTransport != null) {
+			FHIRClient.setTransport(originalTransport);
+			originalTransport = null;
+		}
+	}
+}
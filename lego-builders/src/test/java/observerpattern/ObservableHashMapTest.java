@@ -0,0 +1,146 @@
+package observerpattern;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for ObservableHashMap.
+ */
+public class ObservableHashMapTest extends TestCase {
+
+	public void testPutAllThenNotifyNotifiesOnceOnlyIfChanged() {
+		final AtomicInteger updates = new AtomicInteger();
+		ObservableHashMap<String, Integer> map = new ObservableHashMap<String, Integer>();
+		map.attach(new Observer() {
+			public void update() {
+				updates.incrementAndGet();
+			}
+		});
+		HashMap<String, Integer> batch = new HashMap<String, Integer>();
+		batch.put("a", 1);
+		batch.put("b", 2);
+
+		map.putAllThenNotify(batch);
+		map.putAllThenNotify(batch);
+
+		assertEquals(1, updates.get());
+		assertEquals(2, map.size());
+	}
+
+	public void testCopyDoesNotShareEntries() {
+		ObservableHashMap<String, Integer> map = new ObservableHashMap<String, Integer>();
+		map.put("a", 1);
+		ObservableHashMap<String, Integer> copy = new ObservableHashMap<String, Integer>(map);
+
+		map.put("b", 2);
+
+		assertEquals(1, copy.size());
+		assertFalse(copy.containsKey("b"));
+	}
+
+	public void testUnmodifiableViewFollowsTheMap() {
+		ObservableHashMap<String, Integer> map = new ObservableHashMap<String, Integer>();
+		Map<String, Integer> view = map.unmodifiableView();
+		map.put("a", 1);
+
+		assertSame(view, map.unmodifiableView()); // never copied
+		assertEquals(Integer.valueOf(1), view.get("a"));
+		try {
+			view.put("b", 2);
+			fail("the view should be read-only");
+		}
+		catch (UnsupportedOperationException e) {
+			// expected
+		}
+		map.remove("a");
+		assertTrue(view.isEmpty());
+	}
+
+	public void testIterationWhileWritingSeesWholeBatches() throws InterruptedException {
+		final ObservableHashMap<Integer, Integer> map = new ObservableHashMap<Integer, Integer>();
+		Thread writer = new Thread(new Runnable() {
+			public void run() {
+				for (int round = 1; round <= 200; round++) {
+					HashMap<Integer, Integer> batch = new HashMap<Integer, Integer>();
+					for (int key = 0; key < 50; key++) {
+						batch.put(key, round);
+					}
+					map.putAllThenNotify(batch);
+				}
+			}
+		});
+		writer.start();
+		while (writer.isAlive()) {
+			Integer roundSeen = null;
+			for (Map.Entry<Integer, Integer> entry: map.entrySet()) { // never throws ConcurrentModificationException
+				if (roundSeen == null) {
+					roundSeen = entry.getValue();
+				}
+				assertEquals(roundSeen, entry.getValue()); // never half of a batch
+			}
+		}
+		writer.join();
+		assertEquals(Integer.valueOf(200), map.get(0));
+	}
+
+	public void testMapObserverIsToldWhatChanged() {
+		final List<MapChangeEvent<String, Integer>> events = new ArrayList<MapChangeEvent<String, Integer>>();
+		ObservableHashMap<String, Integer> map = new ObservableHashMap<String, Integer>();
+		map.put("a", 1);
+		map.put("b", 2);
+		map.attachMapObserver(new MapObserver<String, Integer>() {
+			public void mapChanged(MapChangeEvent<String, Integer> event) {
+				events.add(event);
+			}
+		});
+		HashMap<String, Integer> batch = new HashMap<String, Integer>();
+		batch.put("a", 1); // unchanged
+		batch.put("b", 3);
+		batch.put("c", 4);
+
+		map.putAllThenNotify(batch);
+		map.putAllThenNotify(batch); // nothing changed, no event
+		map.remove("a");
+
+		assertEquals(2, events.size());
+		MapChangeEvent<String, Integer> event = events.get(0);
+		assertEquals(Collections.singleton("c"), event.getAddedKeys());
+		assertEquals(Collections.singleton("b"), event.getChangedKeys());
+		assertTrue(event.getRemovedKeys().isEmpty());
+		assertEquals(Integer.valueOf(2), event.getOldValue("b"));
+		assertEquals(Integer.valueOf(3), event.getNewValue("b"));
+		assertFalse(event.affects("a"));
+		assertEquals(Collections.singleton("a"), events.get(1).getRemovedKeys());
+	}
+
+	public void testRemovedAndPutKeysAreOneEvent() {
+		final List<MapChangeEvent<String, Integer>> events = new ArrayList<MapChangeEvent<String, Integer>>();
+		ObservableHashMap<String, Integer> map = new ObservableHashMap<String, Integer>();
+		map.put("a", 1);
+		map.put("b", 2);
+		map.put("c", 3);
+		map.attachMapObserver(new MapObserver<String, Integer>() {
+			public void mapChanged(MapChangeEvent<String, Integer> event) {
+				events.add(event);
+			}
+		});
+		HashMap<String, Integer> batch = new HashMap<String, Integer>();
+		batch.put("a", 10);
+
+		map.putAllThenNotify(batch, Arrays.asList("b", "c", "missing"));
+		map.removeAllThenNotify(Arrays.asList("missing")); // nothing removed, no event
+
+		assertEquals(1, events.size());
+		assertEquals(new HashSet<String>(Arrays.asList("b", "c")), events.get(0).getRemovedKeys());
+		assertEquals(Collections.singleton("a"), events.get(0).getChangedKeys());
+		assertEquals(Collections.singleton("a"), map.keySet());
+	}
+}
@@ -0,0 +1,121 @@
+package server;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+
+import org.json.JSONObject;
+
+import junit.framework.TestCase;
+import model.FHIRClient;
+import model.FHIRClientConfig;
+import model.FHIRPatient;
+import model.FHIRPractitioner;
+import model.FHIRResponse;
+import model.FHIRTransport;
+import model.HttpClientTransport;
+import model.Observation;
+import model.ObservationTypes;
+import model.PatientWrapper;
+import model.Tuple;
+
+/**
+ * Unit test for MockFHIRServer, the app is pointed at it and retrieves the data through a real HTTP transport.
+ */
+public class MockFHIRServerTest extends TestCase {
+	private SyntheticFHIRData data;
+	private MockFHIRServer server;
+	private FHIRClientConfig originalConfig;
+	private FHIRTransport originalTransport;
+
+	protected void setUp() throws Exception {
+		data = new SyntheticFHIRData(2, 45, 2, 30);
+		server = new MockFHIRServer(data, 0, 4);
+		server.setMaxPageSize(10); // every search of the app spans several pages
+		server.start();
+		originalConfig = FHIRClient.getConfig();
+		originalTransport = FHIRClient.getTransport();
+		FHIRClientConfig config = FHIRClient.getConfig();
+		config.setBaseUrl(server.getBaseUrl());
+		FHIRClient.setConfig(config);
+		FHIRClient.setTransport(new HttpClientTransport(2000, 5000)); // not cached, every request goes to the server
+	}
+
+	protected void tearDown() {
+		FHIRClient.setConfig(originalConfig);
+		FHIRClient.setTransport(originalTransport);
+		server.stop();
+	}
+
+	private static FHIRPractitioner practitioner() {
+		FHIRPractitioner practitioner = new FHIRPractitioner();
+		practitioner.setPatientRegistry(null);
+		return practitioner;
+	}
+
+	public void testPatientsOfPractitionerAreRetrievedAcrossPages() {
+		FHIRPractitioner practitioner = MockFHIRServerTest.practitioner();
+		assertTrue(practitioner.retrieveDataFromServerAndInitWithLatest("2"));
+
+		assertEquals(new Tuple<String, String>(SyntheticFHIRData.PRACTITIONER_IDENTIFIER_SYSTEM, "mock-practitioner-2"), practitioner.getIdentifier());
+		assertEquals(45, practitioner.getPatients().size());
+		FHIRPatient patient = practitioner.getPatients().get(new Tuple<String, String>(SyntheticFHIRData.PATIENT_IDENTIFIER_SYSTEM, "mock-patient-50"));
+		assertEquals("Given50", patient.getGivenName());
+		assertEquals("Geelong", patient.getCity());
+		assertEquals(data.cholesterolValue(49, 0), patient.getCholesterol().getCholesterolNumericValue(), 0.0); // the latest one
+		assertEquals(data.systolicValue(49, 0), patient.getBloodPressure().getSystolicBPNumericValue(), 0.0);
+		assertEquals(data.diastolicValue(49, 0), patient.getBloodPressure().getDiastolicBPNumericValue(), 0.0);
+	}
+
+	public void testPatientsIncludedWithTheEncountersAreNotAskedForAgain() {
+		assertTrue(MockFHIRServerTest.practitioner().retrieveDataFromServerAndInitWithLatest("1"));
+		assertTrue(server.getRequests() < 45); // without the include every patient takes a Patient read and a Patient search
+	}
+
+	public void testOnlyTheElementsAskedForAreReturned() throws IOException {
+		FHIRResponse response = FHIRClient.getTransport().get(server.getBaseUrl() + "Patient/1?_elements=identifier&_format=json", Collections.<String, String>emptyMap());
+		try {
+			JSONObject patient = new JSONObject(new String(response.getBody().readAllBytes(), StandardCharsets.UTF_8));
+			assertEquals("1", patient.getString("id"));
+			assertTrue(patient.has("identifier"));
+			assertFalse(patient.has("name"));
+			assertFalse(patient.has("address"));
+		}
+		finally {
+			response.close();
+		}
+	}
+
+	public void testHistoryIsReadAcrossPages() {
+		FHIRPatient patient = new FHIRPatient();
+		patient.setIdentifier(new Tuple<String, String>(SyntheticFHIRData.PATIENT_IDENTIFIER_SYSTEM, "mock-patient-3"));
+		long requestsBefore = server.getRequests();
+
+		ArrayList<Tuple<ArrayList<Tuple<String, Observation>>, Boolean>> history = new PatientWrapper(patient).getObservations(ObservationTypes.CHOLESTEROL.toString(), 25);
+
+		assertEquals(3, server.getRequests() - requestsBefore); // pages of 10
+		assertEquals(25, history.size());
+		for (int k = 0; k < 25; k++) {
+			assertEquals(data.cholesterolValue(2, k), history.get(k).first.get(0).second.getNumericValue(), 0.0);
+		}
+	}
+
+	public void testInjectedErrorsFailTheRetrieval() {
+		server.setErrorRate(1);
+		assertFalse(MockFHIRServerTest.practitioner().retrieveDataFromServerAndInitWithLatest("1"));
+		assertTrue(server.getInjectedErrors() > 0);
+		assertEquals(server.getRequests(), server.getInjectedErrors());
+	}
+
+	public void testUnknownPractitionerIsNotFound() {
+		assertFalse(MockFHIRServerTest.practitioner().retrieveDataFromServerAndInitWithLatest("3"));
+	}
+
+	public void testRequestsAreHeldBackByTheLatency() {
+		server.setLatencyMillis(200);
+		long start = System.currentTimeMillis();
+		assertNotNull(new FHIRPatient().retrieveIdentifierFromServer("1"));
+		assertTrue(System.currentTimeMillis() - start >= 200);
+	}
+}
@@ -0,0 +1,148 @@
+package server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import junit.framework.TestCase;
+import model.AlertRule;
+import model.FHIRBloodPressure;
+import model.FHIRPatient;
+import model.FHIRPractitioner;
+import model.Observation;
+import model.PatientStore;
+import model.Tuple;
+
+/**
+ * Unit test for MonitoringHttpServer, the practitioner's patients are restored from a PatientStore in a temporary directory.
+ */
+public class MonitoringHttpServerTest extends TestCase {
+	private static final String SYSTOLIC = FHIRBloodPressure.SYSTOLIC_BP_CODE;
+
+	private Path directory;
+	private PatientStore store;
+	private FHIRPractitioner practitioner;
+	private MonitoringService service;
+	private MonitoringHttpServer server;
+
+	protected void setUp() throws IOException {
+		directory = Files.createTempDirectory("monitoring-server");
+		store = new PatientStore(directory.resolve("practitioner-p1.jsonl"));
+		store.savePractitioner(new FHIRPractitioner("Greg", "House", "sys", "p1"));
+		this.savePatient(MonitoringHttpServerTest.patient("Alice", "alice", 150, "2020-02-01T00:00:00Z"));
+		this.savePatient(MonitoringHttpServerTest.patient("Bob", "bob", 120, "2020-02-01T00:00:00Z"));
+		practitioner = new FHIRPractitioner();
+		practitioner.setPatientStore(store);
+		assertTrue(practitioner.restoreFromPatientStore());
+
+		ArrayList<AlertRule> rules = new ArrayList<AlertRule>(Arrays.asList(new AlertRule("High systolic BP", SYSTOLIC, 140, 140, 1)));
+		service = new MonitoringService(rules, 0);
+		service.putSession("p1", new MonitoringSession(practitioner, rules));
+		server = new MonitoringHttpServer(service, 0, 2);
+		server.start();
+	}
+
+	protected void tearDown() throws IOException {
+		server.stop();
+		service.shutdown();
+		Files.deleteIfExists(store.getFile());
+		Files.deleteIfExists(directory);
+	}
+
+	public void testPatientsAlertsAndStatistics() throws IOException {
+		JSONArray patients = new JSONArray(this.get("/practitioners/p1/patients", 200));
+		assertEquals(2, patients.length());
+
+		JSONArray alerts = new JSONArray(this.get("/practitioners/p1/alerts", 200));
+		assertEquals(1, alerts.length());
+		assertEquals("sys|alice", alerts.getJSONObject(0).getJSONArray("patients").getString(0));
+		assertEquals(1, alerts.getJSONObject(0).getJSONArray("patients").length());
+
+		JSONObject systolic = new JSONObject(this.get("/practitioners/p1/statistics", 200)).getJSONObject(SYSTOLIC);
+		assertEquals(2, systolic.getLong("count"));
+		assertEquals(135.0, systolic.getDouble("mean"), 1e-9);
+	}
+
+	public void testTheSessionFollowsThePatients() throws IOException {
+		this.savePatient(MonitoringHttpServerTest.patient("Bob", "bob", 160, "2020-02-02T00:00:00Z"));
+		practitioner.restoreFromPatientStore(); // the observers are told that bob changed
+
+		JSONArray alertingPatients = new JSONArray(this.get("/practitioners/p1/alerts", 200)).getJSONObject(0).getJSONArray("patients");
+		assertEquals(2, alertingPatients.length());
+		JSONObject systolic = new JSONObject(this.get("/practitioners/p1/statistics", 200)).getJSONObject(SYSTOLIC);
+		assertEquals(155.0, systolic.getDouble("mean"), 1e-9);
+	}
+
+	public void testCachedHistory() throws IOException {
+		Observation observation = new Observation();
+		observation.setObservation(130, "mm[Hg]", "http://unitsofmeasure.org", "2020-02-01T00:00:00Z");
+		service.getSession("p1").getObservationHistory().record(new Tuple<String, String>("sys", "alice"), SYSTOLIC, observation);
+
+		JSONObject history = new JSONObject(this.get("/practitioners/p1/history?identifier=sys%7Calice&code=" + SYSTOLIC + "&cached=true", 200));
+		assertEquals(1, history.getJSONArray("values").length());
+		assertEquals(130.0, history.getJSONArray("values").getJSONObject(0).getDouble("value"), 1e-9);
+	}
+
+	public void testOnlyTheLoopbackAddressIsServedByDefault() {
+		assertTrue(server.getBindAddress().isLoopbackAddress());
+	}
+
+	public void testAccessToken() throws IOException {
+		server.setAccessToken("secret");
+
+		this.get("/practitioners/p1/patients", null, 401);
+		this.get("/practitioners/p1/patients", "Bearer wrong", 401);
+		assertEquals(2, new JSONArray(this.get("/practitioners/p1/patients", "Bearer secret", 200)).length());
+	}
+
+	public void testErrors() throws IOException {
+		this.get("/practitioners/p1/history?code=" + SYSTOLIC, 400);
+		this.get("/practitioners/p1/history?identifier=sys%7Ccarol&code=" + SYSTOLIC + "&cached=true", 404);
+		this.get("/practitioners/p1/history?identifier=sys%7Calice&code=" + SYSTOLIC + "&count=100000000", 400); // never reaches the FHIR server
+		this.get("/practitioners/p1/unknown", 404);
+	}
+
+	private String get(String path, int expectedStatus) throws IOException {
+		return this.get(path, null, expectedStatus);
+	}
+
+	private String get(String path, String authorization, int expectedStatus) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL("http://" + server.getBindAddress().getHostAddress() + ":" + server.getPort() + path).openConnection();
+		if (authorization != null) {
+			connection.setRequestProperty("Authorization", authorization);
+		}
+		assertEquals(expectedStatus, connection.getResponseCode());
+		InputStream body = (expectedStatus < 400) ? connection.getInputStream() : connection.getErrorStream();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		for (int read = body.read(buffer); read != -1; read = body.read(buffer)) {
+			bytes.write(buffer, 0, read);
+		}
+		body.close();
+		return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	private void savePatient(FHIRPatient patient) throws IOException {
+		HashMap<Tuple<String, String>, FHIRPatient> patients = new HashMap<Tuple<String, String>, FHIRPatient>();
+		patients.put(patient.getIdentifier(), patient);
+		store.savePatients(patients);
+	}
+
+	private static FHIRPatient patient(String givenName, String identifierValue, double systolic, String timeRecorded) {
+		FHIRBloodPressure bloodPressure = new FHIRBloodPressure();
+		bloodPressure.setSystolicBPObservation(systolic, "mm[Hg]", "http://unitsofmeasure.org", timeRecorded);
+		bloodPressure.setDiastolicBPObservation(80, "mm[Hg]", "http://unitsofmeasure.org", timeRecorded);
+		return new FHIRPatient(givenName, "Doe", "sys", identifierValue, "AU", "VIC", "Clayton", "1970-01-01", "female", null, bloodPressure);
+	}
+}
@@ -0,0 +1,102 @@
+package server;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+import junit.framework.TestCase;
+import model.AlertRule;
+import model.FHIRPatient;
+import model.FHIRPractitioner;
+import model.FHIRResponse;
+import model.PatientStore;
+import model.StubFHIRTransport;
+import model.Tuple;
+
+/**
+ * Unit test for the sessions MonitoringService opens on demand, the practitioners are restored from PatientStores in a
+ * temporary directory and every request to the FHIR server is answered with 404 Not Found.
+ */
+public class MonitoringServiceTest extends TestCase {
+	private Path directory;
+	private StubFHIRTransport transport;
+	private List<String> requestedUrls;
+	private long now = 0;
+	private MonitoringService service;
+
+	protected void setUp() throws IOException {
+		directory = Files.createTempDirectory("monitoring-service");
+		for (String practitionerResourceID: Arrays.asList("p1", "p2")) {
+			PatientStore store = PatientStore.forPractitioner(directory, practitionerResourceID);
+			store.savePractitioner(new FHIRPractitioner("Greg", "House", "sys", practitionerResourceID));
+			HashMap<Tuple<String, String>, FHIRPatient> patients = new HashMap<Tuple<String, String>, FHIRPatient>();
+			patients.put(new Tuple<String, String>("sys", "alice"), new FHIRPatient("Alice", "Doe", "sys", "alice", "AU", "VIC", "Clayton", "1970-01-01", "female", null, null));
+			store.savePatients(patients);
+		}
+		transport = new StubFHIRTransport(new StubFHIRTransport.Responder() {
+			public FHIRResponse respond(String urlString, Map<String, String> requestHeaders) {
+				return StubFHIRTransport.status(404);
+			}
+		}).install();
+		requestedUrls = transport.getRequestedUrls();
+		service = new MonitoringService(new ArrayList<AlertRule>(), 0, new LongSupplier() {
+			public long getAsLong() {
+				return now;
+			}
+		});
+		service.setStoreDirectory(directory);
+	}
+
+	protected void tearDown() throws IOException {
+		service.shutdown();
+		transport.uninstall();
+		for (String practitionerResourceID: Arrays.asList("p1", "p2")) {
+			Files.deleteIfExists(PatientStore.forPractitioner(directory, practitionerResourceID).getFile());
+		}
+		Files.deleteIfExists(directory);
+	}
+
+	public void testSessionsAreOnlyOpenedForAllowedPractitioners() {
+		service.setAllowedPractitioners(Arrays.asList("p1"));
+
+		assertNotNull(service.getSession("p1"));
+		assertNull(service.getSession("p2"));
+		assertNull(service.getSession("../p1"));
+		assertTrue(requestedUrls.isEmpty());
+	}
+
+	public void testFailedPractitionerIsNotRetrievedAgainRightAway() {
+		assertNull(service.getSession("unknown"));
+		int requests = requestedUrls.size();
+		assertTrue(requests > 0);
+
+		assertNull(service.getSession("unknown"));
+		assertEquals(requests, requestedUrls.size());
+
+		now += MonitoringService.FAILURE_RETRY_MILLIS;
+		assertNull(service.getSession("unknown"));
+		assertTrue(requestedUrls.size() > requests);
+	}
+
+	public void testIdleAndLeastRecentlyUsedSessionsAreClosed() {
+		service.setMaxOnDemandSessions(1);
+		MonitoringSession first = service.getSession("p1");
+		assertSame(first, service.getSession("p1"));
+
+		service.getSession("p2"); // no room for p1 anymore
+		MonitoringSession reopened = service.getSession("p1");
+		assertNotNull(reopened);
+		assertNotSame(first, reopened);
+
+		now += service.getIdleTimeoutMillis() - 1;
+		assertSame(reopened, service.getSession("p1")); // asked for again, so idle from now on
+		now += service.getIdleTimeoutMillis();
+		assertNotSame(reopened, service.getSession("p1"));
+	}
+}
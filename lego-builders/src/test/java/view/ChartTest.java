@@ -0,0 +1,65 @@
+package view;
+
+import java.awt.GraphicsEnvironment;
+import java.util.Arrays;
+
+import org.jfree.data.category.DefaultCategoryDataset;
+import org.jfree.data.general.DatasetChangeEvent;
+import org.jfree.data.general.DatasetChangeListener;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for the in place updates of the charts. The tests of LineChart need a display for its window and are
+ * skipped in a headless environment.
+ */
+public class ChartTest extends TestCase {
+	private int changes = 0;
+
+	private static DefaultCategoryDataset dataSet(String row, double... values) {
+		DefaultCategoryDataset dataSet = new DefaultCategoryDataset();
+		for (int i = 0; i < values.length; i++) {
+			dataSet.setValue(values[i], row, Integer.toString(i + 1));
+		}
+		return dataSet;
+	}
+
+	public void testDataSetIsUpdatedInPlaceWithOneNotification() {
+		DefaultCategoryDataset chartDataSet = dataSet("Systolic BP Value", 120, 130, 140);
+		chartDataSet.setValue(1, "Old row", "1");
+		chartDataSet.addChangeListener(new DatasetChangeListener() {
+			public void datasetChanged(DatasetChangeEvent event) {
+				changes++;
+			}
+		});
+
+		GraphAbstractionWindow.updateDataSet(chartDataSet, dataSet("Systolic BP Value", 150, 160));
+
+		assertEquals(1, changes); // the chart is redrawn once
+		assertEquals(Arrays.asList("Systolic BP Value"), chartDataSet.getRowKeys()); // the rows and columns not in the values are removed
+		assertEquals(Arrays.asList("1", "2"), chartDataSet.getColumnKeys());
+		assertEquals(150.0, chartDataSet.getValue("Systolic BP Value", "1").doubleValue(), 0.0);
+		assertEquals(160.0, chartDataSet.getValue("Systolic BP Value", "2").doubleValue(), 0.0);
+	}
+
+	public void testLineChartReusesTheChartOfAKey() {
+		if (GraphicsEnvironment.isHeadless()) {
+			return; // a window can't be created without a display
+		}
+		LineChart lineChart = new LineChart("Systolic BP");
+		try {
+			lineChart.renderChart("sys|alice", dataSet("Systolic BP Value", 150), "Alice", "", "");
+			lineChart.renderChart("sys|alice", dataSet("Systolic BP Value", 150, 160), "Alice", "", "");
+			lineChart.renderChart("sys|bob", dataSet("Systolic BP Value", 170), "Bob", "", "");
+			assertEquals(2, lineChart.getNumberOfCharts());
+			assertEquals(2, lineChart.getGraphPanel().getComponentCount()); // no panel is added for an update
+
+			lineChart.retainCharts(Arrays.asList("sys|bob"));
+			assertEquals(1, lineChart.getNumberOfCharts());
+			assertEquals(1, lineChart.getGraphPanel().getComponentCount());
+		}
+		finally {
+			lineChart.dispose();
+		}
+	}
+}
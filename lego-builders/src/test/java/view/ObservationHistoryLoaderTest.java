@@ -0,0 +1,126 @@
+package view;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.JProgressBar;
+import javax.swing.SwingUtilities;
+
+import junit.framework.TestCase;
+import model.FHIRClient;
+import model.FHIRCholesterol;
+import model.FHIRPatient;
+import model.FHIRResponse;
+import model.ObservationHistory;
+import model.ObservationTypes;
+import model.PatientWrapper;
+import model.StubFHIRTransport;
+
+/**
+ * Unit test for ObservationHistoryLoader, the histories are filled from a FHIRTransport that has one cholesterol
+ * reading for every patient and can hold back the requests of a patient.
+ */
+public class ObservationHistoryLoaderTest extends TestCase {
+	private static final String EMPTY_BUNDLE = "{\"resourceType\":\"Bundle\",\"entry\":[]}";
+	private static final String CHOLESTEROL = ObservationTypes.CHOLESTEROL.toString();
+
+	private final CountDownLatch slowRequestStarted = new CountDownLatch(1);
+	private final CountDownLatch releaseSlowRequest = new CountDownLatch(1);
+	private StubFHIRTransport server;
+	private ObservationHistory history = new ObservationHistory();
+
+	protected void setUp() {
+		server = new StubFHIRTransport(new StubFHIRTransport.Responder() {
+			public FHIRResponse respond(String urlString, Map<String, String> requestHeaders) throws IOException {
+				if (urlString.contains("slow")) {
+					slowRequestStarted.countDown();
+					try {
+						releaseSlowRequest.await(5, TimeUnit.SECONDS);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				if (urlString.contains(FHIRClient.DATE_AFTER_PARAMETER) || urlString.contains(FHIRClient.DATE_BEFORE_PARAMETER)) {
+					return StubFHIRTransport.ok(EMPTY_BUNDLE); // the server has no other readings
+				}
+				return StubFHIRTransport.ok("{\"resourceType\":\"Bundle\",\"entry\":[{\"resource\":{\"resourceType\":\"Observation\","
+						+ "\"effectiveDateTime\":\"2020-02-01T00:00:00Z\",\"valueQuantity\":{\"value\":200,\"unit\":\"mg/dL\",\"system\":\"s\"}}}]}");
+			}
+		}).install();
+	}
+
+	protected void tearDown() {
+		releaseSlowRequest.countDown();
+		server.uninstall();
+	}
+
+	private static PatientWrapper patient(String identifierValue) {
+		return new PatientWrapper(new FHIRPatient(identifierValue, "Doe", "sys", identifierValue, "AU", "VIC", "Clayton", "1970-01-01", "female", null, null));
+	}
+
+	/**
+	 * A callback that remembers every load it was told about and whether it was told on the event dispatch thread
+	 */
+	private static class RecordingCallback implements ObservationHistoryLoader.Callback {
+		private final List<List<PatientWrapper>> loads = Collections.synchronizedList(new ArrayList<List<PatientWrapper>>());
+		private final CountDownLatch loaded = new CountDownLatch(1);
+		private volatile boolean onEventDispatchThread = true;
+
+		public void historiesLoaded(List<PatientWrapper> patients) {
+			onEventDispatchThread &= SwingUtilities.isEventDispatchThread();
+			loads.add(patients);
+			loaded.countDown();
+		}
+	}
+
+	private void load(final ObservationHistoryLoader loader, final List<PatientWrapper> patients, final RecordingCallback callback) throws InterruptedException, InvocationTargetException {
+		SwingUtilities.invokeAndWait(new Runnable() {
+			public void run() {
+				loader.load(patients, CHOLESTEROL, 5, history, callback);
+			}
+		});
+	}
+
+	public void testFillsTheHistoriesInTheBackground() throws InterruptedException, InvocationTargetException {
+		final JProgressBar progressBar = new JProgressBar();
+		ObservationHistoryLoader loader = new ObservationHistoryLoader(2, progressBar);
+		List<PatientWrapper> patients = Arrays.asList(patient("alice"), patient("bob"), patient("carol"));
+		RecordingCallback callback = new RecordingCallback();
+
+		this.load(loader, patients, callback);
+
+		assertTrue(callback.loaded.await(5, TimeUnit.SECONDS));
+		assertTrue(callback.onEventDispatchThread);
+		assertEquals(Arrays.asList(patients), callback.loads);
+		for (PatientWrapper patient: patients) {
+			assertEquals(1, history.getSeries(patient.getPatient().getIdentifier(), FHIRCholesterol.CODE).size());
+		}
+		assertFalse(progressBar.isVisible());
+	}
+
+	public void testANewLoadCancelsThePreviousOne() throws InterruptedException, InvocationTargetException {
+		ObservationHistoryLoader loader = new ObservationHistoryLoader(1, new JProgressBar()); // one patient at a time
+		RecordingCallback firstCallback = new RecordingCallback();
+		RecordingCallback secondCallback = new RecordingCallback();
+		List<PatientWrapper> secondPatients = Arrays.asList(patient("second"));
+
+		this.load(loader, Arrays.asList(patient("slow"), patient("queued1"), patient("queued2")), firstCallback);
+		assertTrue(slowRequestStarted.await(5, TimeUnit.SECONDS));
+		this.load(loader, secondPatients, secondCallback);
+		releaseSlowRequest.countDown();
+
+		assertTrue(secondCallback.loaded.await(5, TimeUnit.SECONDS));
+		assertEquals(Arrays.asList(secondPatients), secondCallback.loads);
+		assertFalse(firstCallback.loaded.await(200, TimeUnit.MILLISECONDS)); // the cancelled load is never applied
+		for (String urlString: server.getRequestedUrls()) {
+			assertFalse(urlString, urlString.contains("queued")); // nor are its queued patients requested
+		}
+	}
+}
@@ -0,0 +1,91 @@
+package view;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
+
+import junit.framework.TestCase;
+import model.FHIRBloodPressure;
+import model.FHIRCholesterol;
+import model.FHIRPatient;
+import model.Observation;
+import model.ObservationTypes;
+
+/**
+ * Unit test for PatientTableModel.
+ */
+public class PatientTableModelTest extends TestCase {
+	private PatientTableModel model = new PatientTableModel();
+	private final List<TableModelEvent> events = new ArrayList<TableModelEvent>();
+
+	protected void setUp() {
+		model.addTableModelListener(new TableModelListener() {
+			public void tableChanged(TableModelEvent event) {
+				events.add(event);
+			}
+		});
+	}
+
+	private static FHIRPatient patient(String givenName, double cholesterol) {
+		FHIRCholesterol latestCholesterol = new FHIRCholesterol();
+		latestCholesterol.setCholesterol(cholesterol, "mg/dL", "http://unitsofmeasure.org", "2020-02-01T00:00:00Z");
+		return new FHIRPatient(givenName, "Doe", "sys", givenName, "AU", "VIC", "Clayton", "1970-01-01", "female", latestCholesterol, null);
+	}
+
+	public void testColumnsFollowTheMonitoredObservations() {
+		model.setObservationTypes(Arrays.asList(ObservationTypes.CHOLESTEROL, ObservationTypes.BLOOD_PRESSURE));
+
+		assertEquals(6, model.getColumnCount());
+		assertEquals(PatientTableModel.NAME_COLUMN, model.getColumnName(0));
+		assertEquals(ObservationTypes.CHOLESTEROL.toString(), model.getColumnName(1));
+		assertEquals(PatientTableModel.TIME_COLUMN, model.getColumnName(2));
+		assertEquals(ObservationTypes.SYSTOLIC_BLOOD_PRESSURE, model.getObservationType(4));
+		assertEquals(Observation.class, model.getColumnClass(1));
+
+		events.clear();
+		model.setObservationTypes(Arrays.asList(ObservationTypes.CHOLESTEROL, ObservationTypes.BLOOD_PRESSURE));
+		assertTrue(events.isEmpty()); // the same Observations don't rebuild the columns
+	}
+
+	public void testCellsAreReadFromThePatients() {
+		model.setObservationTypes(Arrays.asList(ObservationTypes.CHOLESTEROL, ObservationTypes.BLOOD_PRESSURE));
+		model.setPatients(Arrays.asList(patient("Alice", 150)));
+
+		assertEquals(1, model.getRowCount());
+		assertEquals("Alice Doe", model.getValueAt(0, 0));
+		assertEquals(150.0, ((Observation) model.getValueAt(0, 1)).getNumericValue(), 0.0);
+		assertEquals("2020-02-01T00:00:00Z", model.getValueAt(0, 2));
+		assertNull(model.getValueAt(0, 3)); // no blood pressure
+		assertEquals(PatientTableModel.EMPTY_CELL, model.getValueAt(0, 5));
+	}
+
+	public void testUpdatingAPatientOnlyRepaintsItsRow() {
+		model.setObservationTypes(Arrays.asList(ObservationTypes.CHOLESTEROL));
+		model.setPatients(Arrays.asList(patient("Alice", 150), patient("Bob", 200), patient("Carol", 250)));
+		events.clear();
+
+		model.updatePatient(1, patient("Bob", 260));
+
+		assertEquals(1, events.size());
+		assertEquals(TableModelEvent.UPDATE, events.get(0).getType());
+		assertEquals(1, events.get(0).getFirstRow());
+		assertEquals(1, events.get(0).getLastRow());
+		assertEquals(260.0, ((Observation) model.getValueAt(1, 1)).getNumericValue(), 0.0);
+	}
+
+	public void testBloodPressureShowsItsTimeOnce() {
+		FHIRBloodPressure bloodPressure = new FHIRBloodPressure();
+		bloodPressure.setSystolicBPObservation(150, "mm[Hg]", "http://unitsofmeasure.org", "2020-02-01T10:30:00+10:00");
+		bloodPressure.setDiastolicBPObservation(90, "mm[Hg]", "http://unitsofmeasure.org", "2020-02-01T10:30:00+10:00");
+		model.setObservationTypes(Arrays.asList(ObservationTypes.BLOOD_PRESSURE));
+		model.setPatients(Arrays.asList(new FHIRPatient("Alice", "Doe", "sys", "alice", "AU", "VIC", "Clayton", "1970-01-01", "female", null, bloodPressure)));
+
+		assertEquals(4, model.getColumnCount());
+		assertEquals("90", ((Observation) model.getValueAt(0, 1)).getValue());
+		assertEquals("150", ((Observation) model.getValueAt(0, 2)).getValue());
+		assertEquals("2020-02-01T10:30:00+10:00", model.getValueAt(0, 3));
+	}
+}